@@ -254,6 +254,18 @@ public class UserController {
         return userService.searchUsers(keyword.trim());
     }
     
+    /**
+     * 按用户名或昵称前缀补全用户
+     */
+    public List<User> suggestUsers(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return List.of();
+        }
+        if (limit <= 0 || limit > 100) limit = 10;
+        
+        return userService.suggestUsers(prefix.trim(), limit);
+    }
+    
     /**
      * 获取用户统计信息（需要管理员权限）
      */
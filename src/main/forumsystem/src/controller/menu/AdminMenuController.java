@@ -331,12 +331,17 @@ public class AdminMenuController {
                 "被封用户", "封禁原因", "执行管理员", "开始时间", "结束时间", "状态");
         System.out.println("--------------------------------------------------------------------------------");
         
+        // 被封用户和执行管理员一次解析
+        UserNameResolver userNames = new UserNameResolver(userService)
+                .addAll(banRecords, BanRecord::getAdminId)
+                .addAll(banRecords, BanRecord::getUserId);
+        
         for (BanRecord record : banRecords) {
             String endTime = record.isPermanent() ? "永久" : 
                            (record.getBanEnd() != null ? record.getBanEnd().toString() : "未知");
-            String adminName = getUserNameById(record.getAdminId());
+            String adminName = userNames.getName(record.getAdminId());
             // 获取被封用户名
-            String userName = getUserNameById(record.getUserId());
+            String userName = userNames.getName(record.getUserId());
             
             // 显示用户名而不是用户ID
             System.out.printf("%-15s %-15s %-15s %-20s %-20s %-10s\n",
@@ -379,10 +384,12 @@ public class AdminMenuController {
                 "封禁原因", "执行管理员", "开始时间", "结束时间", "状态");
         System.out.println("--------------------------------------------------------------------------------");
         
+        UserNameResolver userNames = new UserNameResolver(userService).addAll(banRecords, BanRecord::getAdminId);
+        
         for (BanRecord record : banRecords) {
             String endTime = record.isPermanent() ? "永久" : 
                            (record.getBanEnd() != null ? record.getBanEnd().toString() : "未知");
-            String adminName = getUserNameById(record.getAdminId());
+            String adminName = userNames.getName(record.getAdminId());
             
             System.out.printf("%-15s %-15s %-20s %-20s %-10s\n",
                     record.getReason(),
@@ -737,6 +744,19 @@ public class AdminMenuController {
         System.out.println("\n系统管理:");
         System.out.println("  当前封禁: " + stats.getOrDefault("activeBans", 0));
         System.out.println("  敏感词数: " + stats.getOrDefault("totalSensitiveWords", 0));
+        System.out.println("  敏感词自动机: " + stats.getOrDefault("sensitiveWordMatcher", "未知"));
+        System.out.println("  连接池: " + stats.getOrDefault("connectionPool", "未知"));
+        System.out.println("  用户缓存: " + stats.getOrDefault("userCache", "未知"));
+        Object viewCountBuffer = stats.get("viewCountBuffer");
+        System.out.println("  浏览量缓冲: " + (viewCountBuffer != null ? viewCountBuffer : "未启用"));
+        Object counterAggregator = stats.get("counterAggregator");
+        System.out.println("  计数聚合: " + (counterAggregator != null ? counterAggregator : "未启用"));
+        Object searchIndex = stats.get("searchIndex");
+        System.out.println("  搜索索引: " + (searchIndex != null ? searchIndex : "尚未构建"));
+        System.out.println("  索引更新: " + stats.get("searchIndexer"));
+        System.out.println("  摘录缓存: " + stats.get("searchContent"));
+        Object searchRebuild = stats.get("searchRebuild");
+        System.out.println("  索引重建: " + (searchRebuild != null ? searchRebuild : "本次启动未重建"));
         
         System.out.println("\n详细统计:");
         System.out.println("1. 用户详细统计");
@@ -953,11 +973,6 @@ public class AdminMenuController {
         };
     }
     
-    private String getUserNameById(int userId) {
-        User user = userService.getUserById(userId);
-        return user != null ? user.getUsername() : "未知用户";
-    }
-    
     private int getIntInput() {
         try {
             String input = scanner.nextLine();
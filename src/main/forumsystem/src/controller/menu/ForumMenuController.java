@@ -5,7 +5,10 @@ import main.forumsystem.src.controller.ForumController;
 import main.forumsystem.src.entity.*;
 import main.forumsystem.src.service.UserBlockService;
 import main.forumsystem.src.service.impl.UserBlockServiceImpl;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Scanner;
 import main.forumsystem.src.service.UserService;
 import main.forumsystem.src.service.impl.UserServiceImpl;
@@ -19,12 +22,14 @@ public class ForumMenuController {
     private final ForumController forumController;
     private final Scanner scanner;
     private final UserBlockService userBlockService;
+    private final UserService userService;
     
     public ForumMenuController(ForumService forumService, ForumController forumController, Scanner scanner) {
         this.forumService = forumService;
         this.forumController = forumController;
         this.scanner = scanner;
         this.userBlockService = new UserBlockServiceImpl();
+        this.userService = new UserServiceImpl();
     }
     
     /**
@@ -91,27 +96,32 @@ public class ForumMenuController {
      * 显示板块内容
      */
     private void showForumContent(Forum forum, User currentUser) {
+        // 当前页游标（null为第一页）及之前各页的游标，用于翻页和返回上一页
+        String cursor = null;
+        List<String> previousCursors = new ArrayList<>();
+        
         while (true) {
             System.out.println("\n=== " + forum.getForumName() + " ===");
             System.out.println(forum.getDescription());
             
             // 显示主题列表
-            List<Topic> topics = forumService.getTopicsByForum(forum.getForumId(), 1, 10);
+            ForumService.TopicPage topicPage = forumService.getTopicsByForum(forum.getForumId(), cursor, 10);
             
             // 过滤被拉黑用户的主题
-            List<Topic> filteredTopics = userBlockService.filterBlockedContent(currentUser.getUserId(), topics);
+            List<Topic> filteredTopics = userBlockService.filterBlockedContent(currentUser.getUserId(), topicPage.getTopics());
             
-            if (filteredTopics.isEmpty()) {
+            if (filteredTopics.isEmpty() && previousCursors.isEmpty() && !topicPage.hasMore()) {
                 System.out.println("该板块暂无主题，快来发布第一个主题吧！");
             } else {
-                System.out.println("\n主题列表:");
+                UserNameResolver userNames = new UserNameResolver(userService).addAll(filteredTopics, Topic::getUserId);
+                System.out.println("\n主题列表（第 " + (previousCursors.size() + 1) + " 页）:");
                 for (int i = 0; i < filteredTopics.size(); i++) {
                     Topic topic = filteredTopics.get(i);
                     String pinStatus = topic.isPinned() ? "[置顶]" : "";
                     String lockStatus = topic.isLocked() ? "[锁定]" : "";
                     System.out.printf("%d. %s%s%s (作者: %s, 回复: %d, 浏览: %d)\n",
                             i + 1, pinStatus, lockStatus, topic.getTitle(),
-                            getUserName(topic.getUserId()),
+                            userNames.getName(topic.getUserId()),
                             topic.getReplyCount(),
                             topic.getViewCount());
                 }
@@ -123,6 +133,12 @@ public class ForumMenuController {
             if (canManageForum(currentUser, forum.getForumId())) {
                 System.out.println("3. 板块管理");
             }
+            if (topicPage.hasMore()) {
+                System.out.println("8. 下一页");
+            }
+            if (!previousCursors.isEmpty()) {
+                System.out.println("9. 上一页");
+            }
             System.out.println("0. 返回主菜单");
             System.out.print("请选择操作: ");
             
@@ -130,6 +146,9 @@ public class ForumMenuController {
             switch (choice) {
                 case 1:
                     createTopicInForum(forum.getForumId(), currentUser);
+                    // 回到第一页查看最新列表
+                    cursor = null;
+                    previousCursors.clear();
                     break;
                 case 2:
                     viewTopicDetail(filteredTopics, currentUser);
@@ -141,6 +160,21 @@ public class ForumMenuController {
                         System.out.println("权限不足！");
                     }
                     break;
+                case 8:
+                    if (topicPage.hasMore()) {
+                        previousCursors.add(cursor);
+                        cursor = topicPage.getNextCursor();
+                    } else {
+                        System.out.println("已经是最后一页！");
+                    }
+                    break;
+                case 9:
+                    if (!previousCursors.isEmpty()) {
+                        cursor = previousCursors.remove(previousCursors.size() - 1);
+                    } else {
+                        System.out.println("已经是第一页！");
+                    }
+                    break;
                 case 0:
                     return;
                 default:
@@ -282,8 +316,6 @@ public class ForumMenuController {
      */
     public void viewTopics(User currentUser, int forumId) {
         System.out.println("\n=== 主题列表 ===");
-
-        UserService userService = new UserServiceImpl();
         
         // 获取主题列表
         List<Topic> topics = forumService.getTopicsByForum(forumId, 1, 20);
@@ -296,6 +328,8 @@ public class ForumMenuController {
             return;
         }
         
+        UserNameResolver userNames = new UserNameResolver(userService).addAll(filteredTopics, Topic::getUserId);
+        
         System.out.printf("%-5s %-30s %-15s %-10s %-10s\n", 
                 "名称", "标题", "作者", "回复数", "浏览数");
         System.out.println("------------------------------------------------------------------------");
@@ -304,7 +338,7 @@ public class ForumMenuController {
             System.out.printf("%-5d %-30s %-15s %-10d %-10d\n",
                     topic.getTopicId(),
                     topic.getTitle().length() > 25 ? topic.getTitle().substring(0, 25) + "..." : topic.getTitle(),
-                    userService.getUserName(topic.getUserId()),
+                    userNames.getName(topic.getUserId()),
                     topic.getReplyCount(),
                     topic.getViewCount());
         }
@@ -318,23 +352,61 @@ public class ForumMenuController {
         System.out.print("请输入搜索关键词: ");
         String keyword = scanner.nextLine();
         
-        List<Topic> topics = forumService.searchTopics(keyword, 1, 20);
-        if (topics.isEmpty()) {
-            System.out.println("没有找到相关主题！");
-        } else {
-            System.out.println("搜索结果:");
-            for (int i = 0; i < topics.size(); i++) {
-                Topic topic = topics.get(i);
+        int page = 1;
+        int totalHits = -1;
+        while (true) {
+            // 总数只在第一页统计一次
+            ForumService.SearchPage searchPage = forumService.searchTopicPage(keyword, page, 20, totalHits < 0);
+            if (totalHits < 0) {
+                totalHits = searchPage.getTotalHits();
+            }
+            List<TopicSearchHit> hits = searchPage.getHits();
+            if (hits.isEmpty() && page == 1) {
+                System.out.println("没有找到相关主题！");
+                return;
+            }
+            
+            UserNameResolver userNames = new UserNameResolver(userService)
+                    .addAll(hits, hit -> hit.getTopic().getUserId())
+                    .addAll(hits, hit -> hit.getMatchedReply() != null ? hit.getMatchedReply().getUserId() : 0);
+            System.out.println("搜索结果（共 " + totalHits + " 个，第 " + page + " 页）:");
+            for (int i = 0; i < hits.size(); i++) {
+                TopicSearchHit hit = hits.get(i);
+                Topic topic = hit.getTopic();
                 System.out.printf("%d. %s (作者: %s, 板块: %s)\n",
                         i + 1, topic.getTitle(),
-                        getUserName(topic.getUserId()),
+                        userNames.getName(topic.getUserId()),
                         getForumName(topic.getForumId()));
+                if (hit.getMatchedReply() != null) {
+                    System.out.println("   " + userNames.getName(hit.getMatchedReply().getUserId()) + " 回复: " + hit.getExcerpt());
+                } else if (!hit.getExcerpt().isEmpty()) {
+                    System.out.println("   " + hit.getExcerpt());
+                }
             }
             
+            if (searchPage.hasMore()) {
+                System.out.println("98. 下一页");
+            }
+            if (page > 1) {
+                System.out.println("99. 上一页");
+            }
             System.out.print("请选择要查看的主题编号(0返回): ");
             int choice = getIntInput();
-            if (choice > 0 && choice <= topics.size()) {
-                showTopicDetail(topics.get(choice - 1), currentUser);
+            if (choice == 98 && searchPage.hasMore()) {
+                page++;
+            } else if (choice == 99 && page > 1) {
+                page--;
+            } else if (choice > 0 && choice <= hits.size()) {
+                // 查看详情时重新读取，计入浏览量
+                Topic topic = forumService.getTopicById(hits.get(choice - 1).getTopic().getTopicId());
+                if (topic != null) {
+                    showTopicDetail(topic, currentUser);
+                } else {
+                    System.out.println("主题不存在或已被删除！");
+                }
+                return;
+            } else {
+                return;
             }
         }
     }
@@ -376,25 +448,30 @@ public class ForumMenuController {
         // 增加浏览量
         forumService.increaseTopicViewCount(topic.getTopicId());
         
-        System.out.println("\n=== " + topic.getTitle() + " ===");
-        System.out.println("作者: " + getUserName(topic.getUserId()));
-        System.out.println("发布时间: " + topic.getCreateTime());
-        System.out.println("浏览量: " + (topic.getViewCount() + 1));
-        System.out.println("\n内容:");
-        System.out.println(topic.getContent());
-        
         // 显示回复列表
         List<Reply> replies = forumService.getRepliesByTopic(topic.getTopicId(), 1, 10);
         
         // 过滤被拉黑用户的回复
         List<Reply> filteredReplies = userBlockService.filterBlockedContent(currentUser.getUserId(), replies);
         
+        // 作者和所有回复者一次解析
+        UserNameResolver userNames = new UserNameResolver(userService)
+                .add(topic.getUserId())
+                .addAll(filteredReplies, Reply::getUserId);
+        
+        System.out.println("\n=== " + topic.getTitle() + " ===");
+        System.out.println("作者: " + userNames.getName(topic.getUserId()));
+        System.out.println("发布时间: " + topic.getCreateTime());
+        System.out.println("浏览量: " + (topic.getViewCount() + 1));
+        System.out.println("\n内容:");
+        System.out.println(topic.getContent());
+        
         if (!filteredReplies.isEmpty()) {
             System.out.println("\n=== 回复列表 ===");
             for (int i = 0; i < filteredReplies.size(); i++) {
                 Reply reply = filteredReplies.get(i);
                 System.out.printf("%d楼 %s (%s):\n%s\n\n",
-                        i + 2, getUserName(reply.getUserId()),
+                        i + 2, userNames.getName(reply.getUserId()),
                         reply.getCreateTime(), reply.getContent());
             }
         }
@@ -403,12 +480,80 @@ public class ForumMenuController {
         if (!topic.isLocked()) {
             System.out.println("1. 发表回复");
         }
+        System.out.println("2. 树形查看回复");
         System.out.println("0. 返回");
         System.out.print("请选择操作: ");
         
         int choice = getIntInput();
         if (choice == 1 && !topic.isLocked()) {
             createReply(topic.getTopicId(), currentUser);
+        } else if (choice == 2) {
+            showReplyThread(topic, currentUser);
+        }
+    }
+    
+    /**
+     * 树形显示回复（楼中楼），按顶级回复分页
+     */
+    private void showReplyThread(Topic topic, User currentUser) {
+        int page = 1;
+        while (true) {
+            ReplyThread thread = forumService.getReplyThread(topic.getTopicId(), page, 10);
+            
+            // 过滤被拉黑用户的回复，被过滤回复的子回复一并隐藏
+            List<Reply> visibleReplies = userBlockService.filterBlockedContent(currentUser.getUserId(), thread.flatten());
+            Set<Integer> visibleIds = new HashSet<>();
+            for (Reply reply : visibleReplies) {
+                visibleIds.add(reply.getReplyId());
+            }
+            UserNameResolver userNames = new UserNameResolver(userService).addAll(visibleReplies, Reply::getUserId);
+            
+            System.out.println("\n=== " + topic.getTitle() + " 回复（第 " + page + " 页）===");
+            if (thread.getBranches().isEmpty()) {
+                System.out.println("暂无回复！");
+            }
+            for (ReplyThread.Node branch : thread.getBranches()) {
+                printReplyNode(branch, visibleIds, userNames);
+            }
+            if (thread.isTruncated()) {
+                System.out.println("（回复较多，部分回复未显示）");
+            }
+            
+            System.out.println("\n操作选项:");
+            if (thread.hasMoreBranches()) {
+                System.out.println("8. 下一页");
+            }
+            if (page > 1) {
+                System.out.println("9. 上一页");
+            }
+            System.out.println("0. 返回");
+            System.out.print("请选择操作: ");
+            
+            int choice = getIntInput();
+            if (choice == 8 && thread.hasMoreBranches()) {
+                page++;
+            } else if (choice == 9 && page > 1) {
+                page--;
+            } else if (choice == 0) {
+                return;
+            } else {
+                System.out.println("无效选择！");
+            }
+        }
+    }
+    
+    private void printReplyNode(ReplyThread.Node node, Set<Integer> visibleIds, UserNameResolver userNames) {
+        Reply reply = node.getReply();
+        if (!visibleIds.contains(reply.getReplyId())) {
+            return;
+        }
+        
+        String indent = "    ".repeat(node.getDepth());
+        String marker = node.getDepth() > 0 ? "└ " : "";
+        System.out.printf("%s%s%s (%s): %s\n", indent, marker,
+                userNames.getName(reply.getUserId()), reply.getCreateTime(), reply.getContent());
+        for (ReplyThread.Node child : node.getChildren()) {
+            printReplyNode(child, visibleIds, userNames);
         }
     }
     
@@ -436,12 +581,6 @@ public class ForumMenuController {
         }
     }
     
-    private String getUserName(int userId) {
-        // 这里应该调用userService获取用户信息，简化处理
-        UserService userService = new UserServiceImpl();
-        return userService.getUserName(userId);
-    }
-    
     private String getModeratorName(int moderatorId) {
         if (moderatorId <= 0) return "无";
         return "版主" + moderatorId;
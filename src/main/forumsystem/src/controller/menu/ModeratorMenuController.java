@@ -3,7 +3,9 @@ package main.forumsystem.src.controller.menu;
 import main.forumsystem.src.service.ForumService;
 import main.forumsystem.src.service.ModeratorService;
 import main.forumsystem.src.entity.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import main.forumsystem.src.service.impl.UserServiceImpl;
 import main.forumsystem.src.service.UserService;
@@ -17,11 +19,13 @@ public class ModeratorMenuController {
     private final ForumService forumService;
     private final ModeratorService moderatorService;
     private final Scanner scanner;
+    private final UserService userService;
     
     public ModeratorMenuController(ForumService forumService, ModeratorService moderatorService, Scanner scanner) {
         this.forumService = forumService;
         this.moderatorService = moderatorService;
         this.scanner = scanner;
+        this.userService = new UserServiceImpl();
     }
     
     /**
@@ -170,13 +174,14 @@ public class ModeratorMenuController {
         System.out.println("\n=== " + forum.getForumName() + " 主题列表 ===");
         
         List<Topic> topics = forumService.getTopicsByForum(forum.getForumId(), 1, 20);
-        UserService userService = new UserServiceImpl();
 
         if (topics.isEmpty()) {
             System.out.println("该板块暂无主题！");
             return;
         }
         
+        UserNameResolver userNames = new UserNameResolver(userService).addAll(topics, Topic::getUserId);
+        
         System.out.printf("%-5s %-30s %-15s %-10s %-10s %-10s\n", 
                 "ID", "标题", "作者", "回复数", "浏览数", "状态");
         System.out.println("--------------------------------------------------------------------------------");
@@ -188,9 +193,9 @@ public class ModeratorMenuController {
             if (status.isEmpty()) status = "正常";
             
             System.out.printf("%-5d %-30s %-15s %-10d %-10d %-10s\n",
-                    userService.getUserName(topic.getUserId()),
+                    topic.getTopicId(),
                     topic.getTitle().length() > 25 ? topic.getTitle().substring(0, 25) + "..." : topic.getTitle(),
-                    userService.getUserName(topic.getUserId()),
+                    userNames.getName(topic.getUserId()),
                     topic.getReplyCount(),
                     topic.getViewCount(),
                     status);
@@ -349,23 +354,23 @@ public class ModeratorMenuController {
         
         // 获取待审核主题
         List<Topic> pendingTopics = moderatorService.getPendingTopics(forum.getForumId(), currentUser.getUserId());
-
-        UserService userService = new UserServiceImpl();
         
         if (pendingTopics.isEmpty()) {
             System.out.println("没有待审核的主题！");
             return;
         }
         
+        UserNameResolver userNames = new UserNameResolver(userService).addAll(pendingTopics, Topic::getUserId);
+        
         System.out.println("待审核主题列表:");
         System.out.printf("%-5s %-30s %-15s\n", "ID", "标题", "作者");
         System.out.println("-------------------------------------------------------");
         
         for (Topic topic : pendingTopics) {
             System.out.printf("%-5d %-30s %-15s\n",
-                    userService.getUserName(topic.getUserId()),
+                    topic.getTopicId(),
                     topic.getTitle().length() > 25 ? topic.getTitle().substring(0, 25) + "..." : topic.getTitle(),
-                    userService.getUserName(topic.getUserId()));
+                    userNames.getName(topic.getUserId()));
         }
         
         System.out.print("请输入要审核的主题ID: ");
@@ -672,12 +677,20 @@ public class ModeratorMenuController {
         System.out.println("\n=== 所有待审核主题 ===");
         
         List<Forum> myForums = moderatorService.getForumsByModerator(currentUser.getUserId());
-
-        UserService userService = new UserServiceImpl();
-        boolean hasPendingTopics = false;
         
+        // 先取出所有板块的待审核主题，作者名一次解析
+        Map<Forum, List<Topic>> pendingByForum = new LinkedHashMap<>();
+        UserNameResolver userNames = new UserNameResolver(userService);
         for (Forum forum : myForums) {
             List<Topic> pendingTopics = moderatorService.getPendingTopics(forum.getForumId(), currentUser.getUserId());
+            pendingByForum.put(forum, pendingTopics);
+            userNames.addAll(pendingTopics, Topic::getUserId);
+        }
+        
+        boolean hasPendingTopics = false;
+        for (Map.Entry<Forum, List<Topic>> entry : pendingByForum.entrySet()) {
+            Forum forum = entry.getKey();
+            List<Topic> pendingTopics = entry.getValue();
             if (!pendingTopics.isEmpty()) {
                 hasPendingTopics = true;
                 System.out.println("\n板块: " + forum.getForumName());
@@ -688,7 +701,7 @@ public class ModeratorMenuController {
                     System.out.printf("%-5d %-30s %-15s\n",
                             topic.getTopicId(),
                             topic.getTitle().length() > 25 ? topic.getTitle().substring(0, 25) + "..." : topic.getTitle(),
-                            userService.getUserName(topic.getUserId()));
+                            userNames.getName(topic.getUserId()));
                 }
             }
         }
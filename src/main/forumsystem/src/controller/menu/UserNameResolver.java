@@ -0,0 +1,67 @@
+package main.forumsystem.src.controller.menu;
+
+import main.forumsystem.src.service.UserService;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * 页面级用户名解析器
+ * 渲染列表前先登记本页所有作者、版主、管理员ID，首次取名时一次批量查询，
+ * 避免逐行查询用户表。只在一次页面渲染内使用，不做跨页面缓存。
+ */
+class UserNameResolver {
+
+    private static final String UNKNOWN_USER = "未知用户";
+
+    private final UserService userService;
+    private final Set<Integer> pending = new LinkedHashSet<>();
+    private final Map<Integer, String> names = new HashMap<>();
+
+    UserNameResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * 登记待解析的用户ID
+     */
+    UserNameResolver add(int userId) {
+        if (userId > 0 && !names.containsKey(userId)) {
+            pending.add(userId);
+        }
+        return this;
+    }
+
+    /**
+     * 登记列表中每个元素的用户ID
+     * @param items 列表
+     * @param idGetter 从元素中取用户ID
+     */
+    <T> UserNameResolver addAll(Collection<T> items, ToIntFunction<T> idGetter) {
+        for (T item : items) {
+            add(idGetter.applyAsInt(item));
+        }
+        return this;
+    }
+
+    /**
+     * 获取用户名，有未解析的ID时先批量查询
+     * @param userId 用户ID
+     * @return 用户名，用户不存在时返回"未知用户"
+     */
+    String getName(int userId) {
+        add(userId);
+        if (!pending.isEmpty()) {
+            Map<Integer, String> resolved = userService.getUserNames(pending);
+            for (Integer id : pending) {
+                names.put(id, resolved.getOrDefault(id, UNKNOWN_USER));
+            }
+            pending.clear();
+        }
+        return names.getOrDefault(userId, UNKNOWN_USER);
+    }
+}
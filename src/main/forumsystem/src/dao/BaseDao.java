@@ -1,18 +1,28 @@
 package main.forumsystem.src.dao;
 
+import main.forumsystem.src.util.ConnectionPool;
+import main.forumsystem.src.util.TransactionTemplate;
+
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class BaseDao {
     private static String DRIVER;
     private static String URL;
     private static String USERNAME;
     private static String PASSWORD;
+    private static ConnectionPool POOL;
+    private static Properties CONFIG = new Properties();
+    // 关闭连接池之前执行的任务，如写回缓冲中的计数
+    private static final List<Runnable> SHUTDOWN_TASKS = new CopyOnWriteArrayList<>();
 
     static {
         // 初始化数据库连接
@@ -32,6 +42,7 @@ public class BaseDao {
                 throw new RuntimeException("配置文件未找到！");
             }
             properties.load(resourceAsStream);
+            CONFIG = properties;
 
             DRIVER = properties.getProperty("driver");
             URL = properties.getProperty("url");
@@ -40,6 +51,10 @@ public class BaseDao {
 
             // 加载数据库驱动
             Class.forName(DRIVER);
+
+            // 初始化连接池，进程退出时释放物理连接
+            POOL = new ConnectionPool(URL, USERNAME, PASSWORD, properties);
+            Runtime.getRuntime().addShutdownHook(new Thread(BaseDao::shutdown, "connection-pool-shutdown"));
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("配置文件加载失败或驱动加载失败！");
@@ -47,15 +62,96 @@ public class BaseDao {
     }
 
     /**
-     * 获取数据库连接
+     * 从连接池获取数据库连接，关闭连接即归还连接池
+     * 当前线程处于 {@link TransactionTemplate} 事务中时返回事务绑定的连接，关闭该连接不会归还
      * @return Connection 对象
      */
     public static Connection getConnection() {
+        Connection bound = TransactionTemplate.currentConnection();
+        if (bound != null) {
+            return bound;
+        }
         try {
-            return DriverManager.getConnection(URL, USERNAME, PASSWORD);
+            return POOL.getConnection();
         } catch (SQLException e) {
             e.printStackTrace();
-            throw new RuntimeException("数据库连接失败！");
+            throw new RuntimeException("数据库连接失败！" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取 database.properties 中的整数配置项
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return int 配置值
+     */
+    public static int getIntConfig(String key, int defaultValue) {
+        String value = CONFIG.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * 读取 database.properties 中的长整数配置项
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return long 配置值
+     */
+    public static long getLongConfig(String key, long defaultValue) {
+        String value = CONFIG.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * 读取 database.properties 中的小数配置项
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return double 配置值
+     */
+    public static double getDoubleConfig(String key, double defaultValue) {
+        String value = CONFIG.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * 读取 database.properties 中的字符串配置项
+     * @param key 配置项
+     * @param defaultValue 未配置时的默认值
+     * @return String 配置值
+     */
+    public static String getStringConfig(String key, String defaultValue) {
+        String value = CONFIG.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * 获取连接池状态
+     * @return ConnectionPool.PoolStats 状态快照
+     */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    /**
+     * 注册关闭连接池之前执行的任务，任务仍可使用数据库连接
+     * @param task 关闭任务
+     */
+    public static void addShutdownTask(Runnable task) {
+        SHUTDOWN_TASKS.add(task);
+    }
+
+    /**
+     * 关闭连接池，先按注册顺序执行关闭任务
+     */
+    public static void shutdown() {
+        for (Runnable task : SHUTDOWN_TASKS) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        if (POOL != null) {
+            POOL.shutdown();
         }
     }
 
@@ -111,18 +207,83 @@ public class BaseDao {
             return pstmt.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
+            TransactionTemplate.setRollbackOnly();
             return 0;
         } finally {
             close(conn, pstmt, null);
         }
     }
 
+    /**
+     * 插入一行并返回自增主键
+     * @param sql INSERT语句
+     * @param params 参数列表
+     * @return 自增主键，插入失败时返回0
+     */
+    public static int executeInsert(String sql, Object... params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            setParameters(pstmt, params);
+
+            if (pstmt.executeUpdate() == 0) {
+                return 0;
+            }
+            rs = pstmt.getGeneratedKeys();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            TransactionTemplate.setRollbackOnly();
+            return 0;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 批量增删改操作，所有参数组在同一事务中执行
+     * 已处于 {@link TransactionTemplate} 事务中时加入该事务
+     * @param sql SQL语句
+     * @param batchParams 每条语句的参数列表
+     * @return 每条语句影响的行数，执行失败时返回null
+     */
+    public static int[] executeBatch(String sql, List<Object[]> batchParams) {
+        if (batchParams.isEmpty()) {
+            return new int[0];
+        }
+        return TransactionTemplate.inTransaction(() -> {
+            Connection conn = null;
+            PreparedStatement pstmt = null;
+            try {
+                conn = getConnection();
+                pstmt = conn.prepareStatement(sql);
+                for (Object[] params : batchParams) {
+                    setParameters(pstmt, params);
+                    pstmt.addBatch();
+                }
+                return pstmt.executeBatch();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                TransactionTemplate.setRollbackOnly();
+                return null;
+            } finally {
+                close(conn, pstmt, null);
+            }
+        });
+    }
+
     /**
      * 查询操作
+     * 返回的结果集持有连接，调用方必须自行关闭其语句和连接，否则连接无法归还连接池
      * @param sql SQL语句
      * @param params 参数列表
      * @return ResultSet 结果集
+     * @deprecated 使用 {@link #queryForList}、{@link #queryForObject}、{@link #query} 或 {@link #queryForInt}，由框架负责关闭资源
      */
+    @Deprecated
     public static ResultSet executeQuery(String sql, Object... params) {
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -145,6 +306,139 @@ public class BaseDao {
         }
     }
 
+    /**
+     * 查询多行记录，逐行映射为对象
+     * 映射完成后立即关闭结果集、语句并归还连接
+     * @param sql SQL语句
+     * @param mapper 行映射器
+     * @param params 参数列表
+     * @return 对象列表，查询失败时返回空列表
+     */
+    public static <T> List<T> queryForList(String sql, RowMapper<T> mapper, Object... params) {
+        List<T> list = new ArrayList<>();
+        query(sql, rs -> list.add(mapper.mapRow(rs)), params);
+        return list;
+    }
+
+    /**
+     * 查询单行记录，只映射第一行
+     * @param sql SQL语句
+     * @param mapper 行映射器
+     * @param params 参数列表
+     * @return 映射后的对象，无记录或查询失败时返回null
+     */
+    public static <T> T queryForObject(String sql, RowMapper<T> mapper, Object... params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            setParameters(pstmt, params);
+
+            rs = pstmt.executeQuery();
+            return rs.next() ? mapper.mapRow(rs) : null;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            TransactionTemplate.setRollbackOnly();
+            return null;
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 查询并逐行回调，适用于不需要中间列表的聚合或流式处理
+     * @param sql SQL语句
+     * @param callback 行回调
+     * @param params 参数列表
+     */
+    public static void query(String sql, RowCallback callback, Object... params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            setParameters(pstmt, params);
+
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                callback.processRow(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            TransactionTemplate.setRollbackOnly();
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 流式查询并逐行回调，驱动逐行从服务器读取而不是先缓存整个结果集，适用于大范围扫描
+     * 使用只进只读结果集并把读取批量设为 {@link Integer#MIN_VALUE}（MySQL 驱动的流式读取标志）；
+     * 读取完成前连接不能执行其它语句，回调中不能再访问数据库
+     * @param sql SQL语句
+     * @param callback 行回调
+     * @param params 参数列表
+     */
+    public static void queryStream(String sql, RowCallback callback, Object... params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = getConnection();
+            // 带结果集类型的预编译不经过语句缓存，读取批量不会影响其它查询
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            setParameters(pstmt, params);
+
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                callback.processRow(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            TransactionTemplate.setRollbackOnly();
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 查询单个整数值（第一行第一列），常用于 COUNT、MAX 等聚合查询
+     * @param sql SQL语句
+     * @param params 参数列表
+     * @return 整数值，无记录、值为NULL或查询失败时返回0
+     */
+    public static int queryForInt(String sql, Object... params) {
+        Integer value = queryForObject(sql, rs -> rs.getInt(1), params);
+        return value != null ? value : 0;
+    }
+
+    // 按顺序设置预编译语句参数
+    private static void setParameters(PreparedStatement pstmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            pstmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * 行映射器，将结果集当前行转换为对象
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T mapRow(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 行回调，处理结果集当前行
+     */
+    @FunctionalInterface
+    public interface RowCallback {
+        void processRow(ResultSet rs) throws SQLException;
+    }
+
     /**
      * 插入数据
      * @param tableName 表名
@@ -39,6 +39,13 @@ public interface ForumDao {
      */
     Forum getForumById(int forumId);
     
+    /**
+     * 根据版块ID查询版块并锁定该行，直到当前事务结束
+     * @param forumId 版块ID
+     * @return 版块对象
+     */
+    Forum getForumByIdForUpdate(int forumId);
+    
     /**
      * 根据版块ID查询版块（包含版主信息）
      * @param forumId 版块ID
@@ -93,6 +100,14 @@ public interface ForumDao {
      * @return 版块列表
      */
     List<Forum> searchForums(String keyword);
+
+    /**
+     * 按前缀补全版块名称，由内存中的前缀索引查询，匹配时忽略大小写和全角半角的差异
+     * @param prefix 前缀
+     * @param limit 最多返回的版块数
+     * @return 版块列表，按名称排序
+     */
+    List<Forum> suggestForums(String prefix, int limit);
     
     /**
      * 修改版块状态
@@ -133,6 +148,14 @@ public interface ForumDao {
      */
     boolean recalculateForumStats(int forumId);
     
+    /**
+     * 直接统计版块内未删除的主题数，并锁定扫描到的主题行和索引间隙
+     * 不读取可能还有增量未写回的冗余主题数；在事务中调用时，其他事务在本事务结束前无法向该版块插入主题
+     * @param forumId 版块ID
+     * @return 主题数，查询失败时返回-1
+     */
+    int countTopicsForUpdate(int forumId);
+    
     /**
      * 调整版块排序
      * @param forumId 版块ID
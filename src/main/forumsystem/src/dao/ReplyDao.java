@@ -1,6 +1,7 @@
 package main.forumsystem.src.dao;
 
 import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.ReplyThread;
 import main.forumsystem.src.entity.User;
 import java.util.List;
 import java.util.Map;
@@ -99,6 +100,18 @@ public interface ReplyDao {
      */
     List<Reply> getReplyTreeByTopicId(int topicId);
     
+    /**
+     * 分页加载主题的回复树
+     * 一次递归查询取出一页顶级回复及其全部子回复，在内存中组装树形结构；是否还有下一页另用一条只取一行的查询判断
+     * @param topicId 主题ID
+     * @param page 顶级回复页码（从1开始）
+     * @param size 每页顶级回复数
+     * @param maxDepth 最大深度，顶级回复深度为0
+     * @param maxReplies 本页最多加载的回复总数，超出时优先保留较浅的回复
+     * @return 回复树
+     */
+    ReplyThread getReplyThread(int topicId, int page, int size, int maxDepth, int maxReplies);
+    
     /**
      * 修改回复状态
      * @param replyId 回复ID
@@ -123,22 +136,27 @@ public interface ReplyDao {
     int batchChangeReplyStatus(int[] replyIds, Reply.ReplyStatus status);
     
     /**
-     * 根据内容搜索回复
+     * 根据内容搜索回复，LIKE 全表扫描
      * @param keyword 关键词
      * @param topicId 主题ID（0表示全局搜索）
      * @return 回复列表
+     * @deprecated 使用 {@link TopicDao#searchDiscussions(String, int, int, int, int)}，
+     *             主题和回复由搜索索引一起检索，回复命中折叠到所属主题
      */
+    @Deprecated
     List<Reply> searchReplies(String keyword, int topicId);
     
     /**
-     * 高级搜索回复
+     * 高级搜索回复，LIKE 全表扫描
      * @param keyword 关键词
      * @param topicId 主题ID
      * @param userId 用户ID
      * @param startTime 开始时间
      * @param endTime 结束时间
      * @return 回复列表
+     * @deprecated 使用 {@link TopicDao#searchDiscussions(String, int, int, int, int)}
      */
+    @Deprecated
     List<Reply> advancedSearchReplies(String keyword, int topicId, int userId, 
                                     String startTime, String endTime);
     
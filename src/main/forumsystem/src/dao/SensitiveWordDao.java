@@ -1,6 +1,7 @@
 package main.forumsystem.src.dao;
 
 import main.forumsystem.src.entity.SensitiveWord;
+import main.forumsystem.src.util.ContentScreeningResult;
 import java.util.List;
 import java.util.Set;
 
@@ -119,6 +120,13 @@ public interface SensitiveWordDao {
      */
     List<String> findSensitiveWordsInText(String text);
     
+    /**
+     * 检查文本是否包含敏感词
+     * @param text 待检查的文本
+     * @return 是否包含敏感词
+     */
+    boolean containsSensitiveWord(String text);
+    
     /**
      * 替换文本中的敏感词
      * @param text 原始文本
@@ -126,6 +134,13 @@ public interface SensitiveWordDao {
      */
     String replaceSensitiveWords(String text);
     
+    /**
+     * 审查多个文本字段，一次扫描同时完成检测和替换
+     * @param fields 待审查的字段
+     * @return 审查结果，包含替换后的文本、匹配位置和是否命中
+     */
+    ContentScreeningResult screen(String... fields);
+    
     /**
      * 根据长度范围查询敏感词
      * @param minLength 最小长度
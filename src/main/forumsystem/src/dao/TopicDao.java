@@ -1,7 +1,9 @@
 package main.forumsystem.src.dao;
 
 import main.forumsystem.src.entity.Topic;
+import main.forumsystem.src.entity.TopicSearchHit;
 import main.forumsystem.src.entity.User;
+import main.forumsystem.src.util.TopicCursor;
 import java.util.List;
 import java.util.Map;
 
@@ -71,6 +73,17 @@ public interface TopicDao {
      */
     List<Topic> getTopicsByPage(int forumId, int page, int size, String orderBy, boolean isDesc);
     
+    /**
+     * 游标分页查询版块的主题列表
+     * 按 is_pinned DESC, last_reply_time DESC, topic_id DESC 排序，从游标位置之后开始查询，
+     * 任意页的开销与第一页相同
+     * @param forumId 版块ID
+     * @param cursor 上一页最后一行的游标，null表示第一页
+     * @param limit 最多返回的行数
+     * @return 主题列表
+     */
+    List<Topic> getTopicsAfter(int forumId, TopicCursor cursor, int limit);
+    
     /**
      * 获取置顶主题列表
      * @param forumId 版块ID（0表示全站置顶）
@@ -79,7 +92,7 @@ public interface TopicDao {
     List<Topic> getPinnedTopics(int forumId);
     
     /**
-     * 搜索主题（按标题和内容）
+     * 搜索主题（按标题和内容），最多返回1000个
      * @param keyword 关键词
      * @param forumId 版块ID（0表示全站搜索）
      * @return 主题列表
@@ -87,7 +100,57 @@ public interface TopicDao {
     List<Topic> searchTopics(String keyword, int forumId);
     
     /**
-     * 高级搜索主题
+     * 分页搜索主题，结果按相关度排序（标题/正文匹配程度、回复和浏览热度、最后回复时间），由搜索索引直接返回当前页
+     * @param keyword 关键词，空格分隔的多个词须同时命中，双引号括起的部分按短语匹配
+     * @param forumId 版块ID（0表示全站搜索）
+     * @param page 页码（从1开始）
+     * @param size 每页大小
+     * @return 主题列表
+     */
+    List<Topic> searchTopics(String keyword, int forumId, int page, int size);
+
+    /**
+     * 搜索主题摘要，排序同 {@link #searchTopics(String, int, int, int)}
+     * 只读取列表展示需要的列，不含正文（content 为null），查看详情时需按ID重新读取
+     * @param keyword 关键词
+     * @param forumId 版块ID（0表示全站搜索）
+     * @param offset 跳过的结果数
+     * @param limit 最多返回的结果数
+     * @return 主题摘要列表
+     */
+    List<Topic> searchTopicSummaries(String keyword, int forumId, int offset, int limit);
+
+    /**
+     * 统计搜索命中的主题数，只在需要显示总数时调用
+     * @param keyword 关键词
+     * @param forumId 版块ID（0表示全站搜索）
+     * @return 命中数
+     */
+    int countSearchTopics(String keyword, int forumId);
+
+    /**
+     * 搜索讨论：主题和回复一起检索，回复的命中折叠到所属主题，一次检索返回当前页
+     * 同一主题只出现一次，按主题本身和其下回复中的最高得分排序，并附上得分最高一篇的摘录
+     * @param keyword 关键词，语法同 {@link #searchTopics(String, int, int, int)}
+     * @param forumId 版块ID（0表示全站搜索）
+     * @param userId 作者ID（0表示不限），只匹配该用户发表的主题和回复
+     * @param offset 跳过的结果数
+     * @param limit 最多返回的结果数
+     * @return 搜索结果列表
+     */
+    List<TopicSearchHit> searchDiscussions(String keyword, int forumId, int userId, int offset, int limit);
+
+    /**
+     * 统计搜索命中的讨论数（折叠后的主题数）
+     * @param keyword 关键词
+     * @param forumId 版块ID（0表示全站搜索）
+     * @param userId 作者ID（0表示不限）
+     * @return 命中数
+     */
+    int countDiscussions(String keyword, int forumId, int userId);
+    
+    /**
+     * 高级搜索主题，最多返回1000个
      * @param keyword 关键词
      * @param forumId 版块ID
      * @param userId 作者ID
@@ -100,6 +163,7 @@ public interface TopicDao {
     
     /**
      * 增加主题浏览次数
+     * 启用浏览量写回缓冲时只记入内存，由后台定期批量写回，查询主题时叠加未写回的增量
      * @param topicId 主题ID
      * @return 是否更新成功
      */
@@ -246,10 +310,10 @@ public interface TopicDao {
     boolean canUserPostInForum(int userId, int forumId);
     
     /**
-     * 获取相关主题（基于标题相似度）
+     * 获取相关主题（基于标题和正文的内容相似度）
      * @param topicId 当前主题ID
      * @param limit 数量限制
-     * @return 相关主题列表
+     * @return 相关主题列表，按相似度降序；没有足够相似的主题时可能少于 limit 条
      */
     List<Topic> getRelatedTopics(int topicId, int limit);
 
@@ -1,6 +1,7 @@
 package main.forumsystem.src.dao;
 
 import main.forumsystem.src.entity.User;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -37,6 +38,14 @@ public interface UserDao {
      */
     User getUserById(int userId);
     
+    /**
+     * 根据用户ID批量查询用户
+     * 使用 IN 查询，ID较多时分批执行
+     * @param userIds 用户ID集合
+     * @return 用户列表，不存在的ID不出现在结果中，顺序不保证
+     */
+    List<User> getUsersByIds(Collection<Integer> userIds);
+    
     /**
      * 根据用户名查询用户
      * @param username 用户名
@@ -154,6 +163,15 @@ public interface UserDao {
      * @return 用户列表
      */
     List<User> searchUsers(String keyword);
+
+    /**
+     * 按前缀补全用户名或昵称，由内存中的前缀索引查询，耗时与用户总数基本无关
+     * 匹配时忽略大小写和全角半角的差异
+     * @param prefix 前缀
+     * @param limit 最多返回的用户数
+     * @return 用户列表，按匹配的名称排序
+     */
+    List<User> suggestUsers(String prefix, int limit);
     
     /**
      * 获取用户总数
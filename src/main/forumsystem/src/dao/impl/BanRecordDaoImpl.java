@@ -138,35 +138,29 @@ public class BanRecordDaoImpl extends BaseDao implements BanRecordDao {
             WHERE br.ban_id = ?
             """;
         
-        try {
-            ResultSet rs = executeQuery(sql, banId);
-            if (rs != null && rs.next()) {
-                BanRecord banRecord = mapResultSetToBanRecord(rs);
-                
-                // 设置用户信息
-                if (rs.getString("user_name") != null) {
-                    User user = new User();
-                    user.setUserId(banRecord.getUserId());
-                    user.setUsername(rs.getString("user_name"));
-                    user.setNickName(rs.getString("user_nick"));
-                    banRecord.setUser(user);
-                }
-                
-                // 设置管理员信息
-                if (rs.getString("admin_name") != null) {
-                    User admin = new User();
-                    admin.setUserId(banRecord.getAdminId());
-                    admin.setUsername(rs.getString("admin_name"));
-                    admin.setNickName(rs.getString("admin_nick"));
-                    banRecord.setAdmin(admin);
-                }
-                
-                return banRecord;
+        return queryForObject(sql, rs -> {
+            BanRecord banRecord = mapResultSetToBanRecord(rs);
+            
+            // 设置用户信息
+            if (rs.getString("user_name") != null) {
+                User user = new User();
+                user.setUserId(banRecord.getUserId());
+                user.setUsername(rs.getString("user_name"));
+                user.setNickName(rs.getString("user_nick"));
+                banRecord.setUser(user);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+            
+            // 设置管理员信息
+            if (rs.getString("admin_name") != null) {
+                User admin = new User();
+                admin.setUserId(banRecord.getAdminId());
+                admin.setUsername(rs.getString("admin_name"));
+                admin.setNickName(rs.getString("admin_nick"));
+                banRecord.setAdmin(admin);
+            }
+            
+            return banRecord;
+        }, banId);
     }
 
     /**
@@ -661,42 +655,17 @@ public class BanRecordDaoImpl extends BaseDao implements BanRecordDao {
 
     // 私有辅助方法：获取单个封禁记录
     private BanRecord getSingleBanRecord(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return mapResultSetToBanRecord(rs);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return queryForObject(sql, this::mapResultSetToBanRecord, params);
     }
 
     // 私有辅助方法：获取多个封禁记录
     private List<BanRecord> getMultipleBanRecords(String sql, Object... params) {
-        List<BanRecord> banRecords = new ArrayList<>();
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            while (rs != null && rs.next()) {
-                banRecords.add(mapResultSetToBanRecord(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return banRecords;
+        return queryForList(sql, this::mapResultSetToBanRecord, params);
     }
 
     // 私有辅助方法：获取数量
     private int getCount(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return rs.getInt("count");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+        return queryForInt(sql, params);
     }
 
     // 私有辅助方法：将ResultSet映射为BanRecord对象
@@ -0,0 +1,119 @@
+package main.forumsystem.src.dao.impl;
+
+import main.forumsystem.src.dao.BaseDao;
+import main.forumsystem.src.util.CounterAggregator;
+import main.forumsystem.src.util.CounterAggregator.CounterKey;
+import main.forumsystem.src.util.TransactionTemplate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 冗余计数存储实现类
+ * 把 {@link CounterAggregator} 合并后的增量按（表, 列）分组批量写回，
+ * 并在同一事务中推进 counter_checkpoints 中的检查点。
+ * 同时持有所有DAO共享的计数聚合器。
+ */
+public class CounterDaoImpl extends BaseDao implements CounterAggregator.CounterStore {
+
+    private static final String CHECKPOINT_NAME = "counters";
+
+    // 固定写回顺序，并发写回与普通更新按相同顺序加行锁
+    private static final Comparator<CounterKey> KEY_ORDER = Comparator
+            .comparing(CounterKey::getTable)
+            .thenComparing(CounterKey::getColumn)
+            .thenComparingInt(CounterKey::getId);
+
+    // 所有DAO共享的计数聚合器，写回间隔为0或增量日志不可用时为null，计数直接更新数据库
+    private static final CounterAggregator AGGREGATOR = createAggregator();
+
+    private static CounterAggregator createAggregator() {
+        long flushIntervalMillis = getLongConfig("counter.flushIntervalMillis", 2000);
+        if (flushIntervalMillis <= 0) {
+            return null;
+        }
+        try {
+            CounterAggregator aggregator = new CounterAggregator(new CounterDaoImpl(),
+                    flushIntervalMillis,
+                    getIntConfig("counter.maxPendingKeys", 1000),
+                    new File(getStringConfig("counter.logDir", "counter-log")),
+                    Boolean.parseBoolean(getStringConfig("counter.syncLog", "false")));
+            addShutdownTask(aggregator::shutdown);
+            return aggregator;
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            System.out.println("计数聚合不可用，计数将直接更新数据库");
+            return null;
+        }
+    }
+
+    /**
+     * 获取共享的计数聚合器
+     * @return CounterAggregator 聚合器，未启用时返回null
+     */
+    public static CounterAggregator getAggregator() {
+        return AGGREGATOR;
+    }
+
+    /**
+     * 获取尚未落库的计数增量，未启用聚合时为0
+     * @param key 计数键
+     * @return long 未落库的增量
+     */
+    public static long getPending(CounterKey key) {
+        return AGGREGATOR != null ? AGGREGATOR.getPending(key) : 0;
+    }
+
+    /**
+     * 获取计数聚合器状态
+     * @return CounterAggregator.AggregatorStats 状态快照，未启用时返回null
+     */
+    public static CounterAggregator.AggregatorStats getStats() {
+        return AGGREGATOR != null ? AGGREGATOR.getStats() : null;
+    }
+
+    @Override
+    public long loadCheckpoint() {
+        String sql = "SELECT COALESCE(MAX(last_seq), 0) FROM counter_checkpoints WHERE name = ?";
+        Long checkpoint = queryForObject(sql, rs -> rs.getLong(1), CHECKPOINT_NAME);
+        if (checkpoint == null) {
+            throw new IllegalStateException("读取计数检查点失败！");
+        }
+        return checkpoint;
+    }
+
+    @Override
+    public boolean apply(Map<CounterKey, Long> deltas, long checkpoint) {
+        // 每组（表, 主键列, 列）一条批量更新语句
+        Map<String, List<Object[]>> batches = new TreeMap<>();
+        List<CounterKey> keys = new ArrayList<>(deltas.keySet());
+        keys.sort(KEY_ORDER);
+        for (CounterKey key : keys) {
+            String sql = "UPDATE " + key.getTable() + " SET " + key.getColumn() + " = GREATEST(0, "
+                    + key.getColumn() + " + ?) WHERE " + key.getIdColumn() + " = ?";
+            batches.computeIfAbsent(sql, k -> new ArrayList<>()).add(new Object[]{deltas.get(key), key.getId()});
+        }
+
+        return TransactionTemplate.inTransaction(() -> {
+            for (Map.Entry<String, List<Object[]>> batch : batches.entrySet()) {
+                if (executeBatch(batch.getKey(), batch.getValue()) == null) {
+                    TransactionTemplate.setRollbackOnly();
+                    return false;
+                }
+            }
+            if (checkpoint > 0) {
+                String sql = """
+                    INSERT INTO counter_checkpoints (name, last_seq) VALUES (?, ?)
+                    ON DUPLICATE KEY UPDATE last_seq = GREATEST(last_seq, VALUES(last_seq))
+                    """;
+                // 检查点未变化时影响行数为0，以是否被标记回滚判断失败
+                executeUpdate(sql, CHECKPOINT_NAME, checkpoint);
+            }
+            return !TransactionTemplate.isRollbackOnly();
+        });
+    }
+}
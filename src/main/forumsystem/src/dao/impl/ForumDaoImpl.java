@@ -4,13 +4,19 @@ import main.forumsystem.src.dao.BaseDao;
 import main.forumsystem.src.dao.ForumDao;
 import main.forumsystem.src.entity.Forum;
 import main.forumsystem.src.entity.User;
+import main.forumsystem.src.util.CounterAggregator;
+import main.forumsystem.src.util.CounterAggregator.CounterKey;
+import main.forumsystem.src.util.PrefixIndex;
+import main.forumsystem.src.util.TransactionTemplate;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,6 +25,20 @@ import java.util.Map;
  */
 public class ForumDaoImpl extends BaseDao implements ForumDao {
 
+    // 校正计数时等待该版块未结束的计数事务的最长时间
+    private static final long RECOUNT_WAIT_MILLIS = 5000;
+
+    // 版块名称的前缀补全索引，首次查询时加载，写操作提交后更新
+    private static final PrefixIndex NAME_INDEX = new PrefixIndex(() -> TransactionTemplate.inTransaction(() -> {
+        Map<Integer, List<String>> names = new HashMap<>();
+        query("SELECT forum_id, forum_name FROM forums",
+                rs -> names.put(rs.getInt("forum_id"), List.of(rs.getString("forum_name"))));
+        if (TransactionTemplate.isRollbackOnly()) {
+            throw new IllegalStateException("加载版块名称索引失败！");
+        }
+        return names;
+    }));
+
     @Override
     public boolean addForum(Forum forum) {
         String sql = """
@@ -38,7 +58,7 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
                 forum.setSortOrder(getMaxSortOrder() + 1);
             }
             
-            int result = executeUpdate(sql,
+            int forumId = executeInsert(sql,
                 forum.getForumName(),
                 forum.getDescription(),
                 forum.getModeratorId() > 0 ? forum.getModeratorId() : null,
@@ -48,8 +68,13 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
                 Timestamp.valueOf(forum.getCreateTime()),
                 forum.getSortOrder()
             );
-            
-            return result > 0;
+            if (forumId <= 0) {
+                return false;
+            }
+            forum.setForumId(forumId);
+            String forumName = forum.getForumName();
+            TransactionTemplate.afterCommit(() -> NAME_INDEX.put(forumId, forumName));
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -62,6 +87,9 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
         String sql = "DELETE FROM forums WHERE forum_id = ?";
         try {
             int result = executeUpdate(sql, forumId);
+            if (result > 0) {
+                TransactionTemplate.afterCommit(() -> NAME_INDEX.remove(forumId));
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -71,9 +99,10 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
 
     @Override
     public boolean updateForum(Forum forum) {
+        // 主题数和帖子数由计数方法维护，这里写回会覆盖尚未落库的增量
         String sql = """
             UPDATE forums SET forum_name = ?, description = ?, moderator_id = ?, 
-                            topic_count = ?, post_count = ?, status = ?, sort_order = ? 
+                            status = ?, sort_order = ? 
             WHERE forum_id = ?
             """;
         
@@ -82,13 +111,15 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
                 forum.getForumName(),
                 forum.getDescription(),
                 forum.getModeratorId() > 0 ? forum.getModeratorId() : null,
-                forum.getTopicCount(),
-                forum.getPostCount(),
                 forum.getStatus().getValue(),
                 forum.getSortOrder(),
                 forum.getForumId()
             );
-            
+            if (result > 0) {
+                int forumId = forum.getForumId();
+                String forumName = forum.getForumName();
+                TransactionTemplate.afterCommit(() -> NAME_INDEX.put(forumId, forumName));
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -102,6 +133,12 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
         return getSingleForum(sql, forumId);
     }
 
+    @Override
+    public Forum getForumByIdForUpdate(int forumId) {
+        String sql = "SELECT * FROM forums WHERE forum_id = ? FOR UPDATE";
+        return getSingleForum(sql, forumId);
+    }
+
     @Override
     public Forum getForumWithModerator(int forumId) {
         String sql = """
@@ -111,26 +148,20 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
             WHERE f.forum_id = ?
             """;
         
-        try {
-            ResultSet rs = executeQuery(sql, forumId);
-            if (rs != null && rs.next()) {
-                Forum forum = mapResultSetToForum(rs);
-                
-                // 设置版主信息
-                if (rs.getString("moderator_name") != null) {
-                    User moderator = new User();
-                    moderator.setUserId(forum.getModeratorId());
-                    moderator.setUsername(rs.getString("moderator_name"));
-                    moderator.setNickName(rs.getString("moderator_nick"));
-                    forum.setModerator(moderator);
-                }
-                
-                return forum;
+        return queryForObject(sql, rs -> {
+            Forum forum = mapResultSetToForum(rs);
+            
+            // 设置版主信息
+            if (rs.getString("moderator_name") != null) {
+                User moderator = new User();
+                moderator.setUserId(forum.getModeratorId());
+                moderator.setUsername(rs.getString("moderator_name"));
+                moderator.setNickName(rs.getString("moderator_nick"));
+                forum.setModerator(moderator);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+            
+            return forum;
+        }, forumId);
     }
 
     @Override
@@ -181,6 +212,31 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
         return getMultipleForums(sql, searchPattern, searchPattern);
     }
 
+    @Override
+    public List<Forum> suggestForums(String prefix, int limit) {
+        List<Integer> forumIds = NAME_INDEX.suggest(prefix, limit);
+        if (forumIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Forum> byId = new LinkedHashMap<>();
+        for (int forumId : forumIds) {
+            byId.put(forumId, null);
+        }
+        String placeholders = String.join(", ", Collections.nCopies(forumIds.size(), "?"));
+        for (Forum forum : getMultipleForums("SELECT * FROM forums WHERE forum_id IN (" + placeholders + ")",
+                forumIds.toArray())) {
+            byId.put(forum.getForumId(), forum);
+        }
+        // 按补全索引的顺序返回
+        List<Forum> forums = new ArrayList<>(forumIds.size());
+        for (Forum forum : byId.values()) {
+            if (forum != null) {
+                forums.add(forum);
+            }
+        }
+        return forums;
+    }
+
     @Override
     public boolean changeForumStatus(int forumId, Forum.ForumStatus status) {
         String sql = "UPDATE forums SET status = ? WHERE forum_id = ?";
@@ -207,6 +263,12 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
 
     @Override
     public boolean updateTopicCount(int forumId, int increment) {
+        // 启用计数聚合时只记录增量，由后台批量写回
+        CounterAggregator counters = CounterDaoImpl.getAggregator();
+        if (counters != null && counters.add(topicCountKey(forumId), increment)) {
+            return true;
+        }
+
         String sql = "UPDATE forums SET topic_count = topic_count + ? WHERE forum_id = ?";
         try {
             int result = executeUpdate(sql, increment, forumId);
@@ -219,6 +281,11 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
 
     @Override
     public boolean updatePostCount(int forumId, int increment) {
+        CounterAggregator counters = CounterDaoImpl.getAggregator();
+        if (counters != null && counters.add(postCountKey(forumId), increment)) {
+            return true;
+        }
+
         String sql = "UPDATE forums SET post_count = GREATEST(0, post_count + ?) WHERE forum_id = ?";
         try {
             int result = executeUpdate(sql, increment, forumId);
@@ -232,34 +299,26 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
     @Override
     public boolean recalculateForumStats(int forumId) {
         try {
-            // 重新计算主题数
-            String topicCountSql = """
-                UPDATE forums SET topic_count = (
-                    SELECT COUNT(*) FROM topics 
-                    WHERE forum_id = ? AND status != 'deleted'
-                ) WHERE forum_id = ?
-                """;
-            executeUpdate(topicCountSql, forumId, forumId);
-            
-            // 重新计算帖子数（主题数 + 回复数）
-            String postCountSql = """
-                UPDATE forums SET post_count = (
-                    SELECT 
-                        COALESCE((SELECT COUNT(*) FROM topics WHERE forum_id = ? AND status != 'deleted'), 0) +
-                        COALESCE((SELECT COUNT(*) FROM replies r 
-                                 JOIN topics t ON r.topic_id = t.topic_id 
-                                 WHERE t.forum_id = ? AND r.status != 'deleted'), 0)
-                ) WHERE forum_id = ?
-                """;
-            executeUpdate(postCountSql, forumId, forumId, forumId);
-            
-            return true;
+            // 校正期间该版块的计数增量直接写库，先等未结束的增量写回，否则重算结果之上还会再叠加一次
+            CounterAggregator counters = CounterDaoImpl.getAggregator();
+            if (counters == null) {
+                return recountForumStats(forumId);
+            }
+            return counters.recount(List.of(topicCountKey(forumId), postCountKey(forumId)),
+                    RECOUNT_WAIT_MILLIS, () -> recountForumStats(forumId));
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    @Override
+    public int countTopicsForUpdate(int forumId) {
+        String sql = "SELECT COUNT(*) FROM topics WHERE forum_id = ? AND status != 'deleted' FOR UPDATE";
+        Integer count = queryForObject(sql, rs -> rs.getInt(1), forumId);
+        return count != null ? count : -1;
+    }
+
     @Override
     public boolean updateSortOrder(int forumId, int sortOrder) {
         String sql = "UPDATE forums SET sort_order = ? WHERE forum_id = ?";
@@ -311,15 +370,7 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
     @Override
     public boolean forumNameExists(String forumName, int excludeId) {
         String sql = "SELECT COUNT(*) as count FROM forums WHERE forum_name = ? AND forum_id != ?";
-        try {
-            ResultSet rs = executeQuery(sql, forumName, excludeId);
-            if (rs != null && rs.next()) {
-                return rs.getInt("count") > 0;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return getCount(sql, forumName, excludeId) > 0;
     }
 
     @Override
@@ -410,23 +461,14 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
             LIMIT ?
             """;
         
-        List<Map<String, Object>> topicsInfo = new ArrayList<>();
-        
-        try {
-            ResultSet rs = executeQuery(sql, forumId, limit);
-            while (rs != null && rs.next()) {
-                Map<String, Object> topicInfo = new HashMap<>();
-                topicInfo.put("topicId", rs.getInt("topic_id"));
-                topicInfo.put("title", rs.getString("title"));
-                topicInfo.put("createTime", rs.getTimestamp("create_time"));
-                topicInfo.put("author", rs.getString("author"));
-                topicsInfo.add(topicInfo);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        
-        return topicsInfo;
+        return queryForList(sql, rs -> {
+            Map<String, Object> topicInfo = new HashMap<>();
+            topicInfo.put("topicId", rs.getInt("topic_id"));
+            topicInfo.put("title", rs.getString("title"));
+            topicInfo.put("createTime", rs.getTimestamp("create_time"));
+            topicInfo.put("author", rs.getString("author"));
+            return topicInfo;
+        }, forumId, limit);
     }
 
     @Override
@@ -449,7 +491,15 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
             for (int i = 0; i < forumIds.length; i++) {
                 params[i] = forumIds[i];
             }
-            return executeUpdate(sql.toString(), params);
+            int result = executeUpdate(sql.toString(), params);
+            if (result > 0) {
+                TransactionTemplate.afterCommit(() -> {
+                    for (int forumId : forumIds) {
+                        NAME_INDEX.remove(forumId);
+                    }
+                });
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -466,55 +516,58 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
     // 私有辅助方法：获取最大排序值
     private int getMaxSortOrder() {
         String sql = "SELECT COALESCE(MAX(sort_order), 0) as max_order FROM forums";
-        try {
-            ResultSet rs = executeQuery(sql);
-            if (rs != null && rs.next()) {
-                return rs.getInt("max_order");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+        return queryForInt(sql);
     }
 
     // 私有辅助方法：获取单个版块
     private Forum getSingleForum(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return mapResultSetToForum(rs);
+        return queryForObject(sql, this::mapResultSetToForum, params);
+    }
+
+    // 先锁定版块行，校正期间直接写库的计数更新排在本事务之后；
+    // 统计使用加锁之后建立的一致性快照，不等待其他事务的行锁
+    private boolean recountForumStats(int forumId) {
+        return TransactionTemplate.inTransaction(() -> {
+            Integer locked = queryForObject("SELECT forum_id FROM forums WHERE forum_id = ? FOR UPDATE",
+                    rs -> rs.getInt(1), forumId);
+            if (locked == null) {
+                TransactionTemplate.setRollbackOnly();
+                return false;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+
+            // 重新计算主题数
+            int topicCount = queryForInt("SELECT COUNT(*) FROM topics WHERE forum_id = ? AND status != 'deleted'", forumId);
+
+            // 重新计算帖子数（主题数 + 回复数）
+            String replyCountSql = """
+                SELECT COUNT(*) FROM replies r
+                JOIN topics t ON r.topic_id = t.topic_id
+                WHERE t.forum_id = ? AND r.status != 'deleted'
+                """;
+            int replyCount = queryForInt(replyCountSql, forumId);
+
+            executeUpdate("UPDATE forums SET topic_count = ?, post_count = ? WHERE forum_id = ?",
+                    topicCount, topicCount + replyCount, forumId);
+            return !TransactionTemplate.isRollbackOnly();
+        });
     }
 
     // 私有辅助方法：获取多个版块
     private List<Forum> getMultipleForums(String sql, Object... params) {
-        List<Forum> forums = new ArrayList<>();
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            while (rs != null && rs.next()) {
-                forums.add(mapResultSetToForum(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return forums;
+        return queryForList(sql, this::mapResultSetToForum, params);
     }
 
     // 私有辅助方法：获取数量
     private int getCount(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return rs.getInt("count");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+        return queryForInt(sql, params);
+    }
+
+    private static CounterKey topicCountKey(int forumId) {
+        return new CounterKey("forums", "forum_id", "topic_count", forumId);
+    }
+
+    private static CounterKey postCountKey(int forumId) {
+        return new CounterKey("forums", "forum_id", "post_count", forumId);
     }
 
     // 私有辅助方法：将ResultSet映射为Forum对象
@@ -524,8 +577,9 @@ public class ForumDaoImpl extends BaseDao implements ForumDao {
         forum.setForumName(rs.getString("forum_name"));
         forum.setDescription(rs.getString("description"));
         forum.setModeratorId(rs.getInt("moderator_id"));
-        forum.setTopicCount(rs.getInt("topic_count"));
-        forum.setPostCount(rs.getInt("post_count"));
+        // 叠加尚未写回的计数增量
+        forum.setTopicCount((int) Math.max(0, rs.getInt("topic_count") + CounterDaoImpl.getPending(topicCountKey(forum.getForumId()))));
+        forum.setPostCount((int) Math.max(0, rs.getInt("post_count") + CounterDaoImpl.getPending(postCountKey(forum.getForumId()))));
         forum.setStatus(Forum.ForumStatus.fromValue(rs.getString("status")));
         forum.setSortOrder(rs.getInt("sort_order"));
 
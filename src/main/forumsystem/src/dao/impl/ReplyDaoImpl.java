@@ -3,6 +3,7 @@ package main.forumsystem.src.dao.impl;
 import main.forumsystem.src.dao.BaseDao;
 import main.forumsystem.src.dao.ReplyDao;
 import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.ReplyThread;
 import main.forumsystem.src.entity.User;
 import main.forumsystem.src.entity.Topic;
 
@@ -17,6 +18,9 @@ import java.util.*;
  */
 public class ReplyDaoImpl extends BaseDao implements ReplyDao {
 
+    // 展开回复树时的最大深度
+    private static final int MAX_TREE_DEPTH = 10;
+
     @Override
     public boolean addReply(Reply reply) {
         String sql = """
@@ -30,7 +34,7 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
                 reply.setCreateTime(LocalDateTime.now());
             }
             
-            int result = executeUpdate(sql,
+            int replyId = executeInsert(sql,
                 reply.getTopicId(),
                 reply.getUserId(),
                 reply.getContent(),
@@ -38,8 +42,12 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
                 reply.getStatus().getValue(),
                 reply.getReplyToId() > 0 ? reply.getReplyToId() : null
             );
-            
-            return result > 0;
+            if (replyId <= 0) {
+                return false;
+            }
+            reply.setReplyId(replyId);
+            TopicDaoImpl.replyChangedAfterCommit(replyId);
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -51,6 +59,9 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
         String sql = "UPDATE replies SET status = 'deleted' WHERE reply_id = ?";
         try {
             int result = executeUpdate(sql, replyId);
+            if (result > 0) {
+                TopicDaoImpl.replyChangedAfterCommit(replyId);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -62,7 +73,12 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
     public boolean hardDeleteReply(int replyId) {
         String sql = "DELETE FROM replies WHERE reply_id = ?";
         try {
+            // 删除后无法再由回复找到主题，先记下所属主题
+            int topicId = queryForInt("SELECT topic_id FROM replies WHERE reply_id = ?", replyId);
             int result = executeUpdate(sql, replyId);
+            if (result > 0 && topicId > 0) {
+                TopicDaoImpl.reindexAfterCommit(topicId);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -80,7 +96,9 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
                 reply.getStatus().getValue(),
                 reply.getReplyId()
             );
-            
+            if (result > 0) {
+                TopicDaoImpl.replyChangedAfterCommit(reply.getReplyId());
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -108,47 +126,41 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
             WHERE r.reply_id = ?
             """;
         
-        try {
-            ResultSet rs = executeQuery(sql, replyId);
-            if (rs != null && rs.next()) {
-                Reply reply = mapResultSetToReply(rs);
-                
-                // 设置作者信息
-                if (rs.getString("author_name") != null) {
-                    User author = new User();
-                    author.setUserId(reply.getUserId());
-                    author.setUsername(rs.getString("author_name"));
-                    author.setNickName(rs.getString("author_nick"));
-                    reply.setAuthor(author);
-                }
-                
-                // 设置主题信息
-                if (rs.getString("topic_title") != null) {
-                    Topic topic = new Topic();
-                    topic.setTopicId(reply.getTopicId());
-                    topic.setTitle(rs.getString("topic_title"));
-                    reply.setTopic(topic);
-                }
+        return queryForObject(sql, rs -> {
+            Reply reply = mapResultSetToReply(rs);
+            
+            // 设置作者信息
+            if (rs.getString("author_name") != null) {
+                User author = new User();
+                author.setUserId(reply.getUserId());
+                author.setUsername(rs.getString("author_name"));
+                author.setNickName(rs.getString("author_nick"));
+                reply.setAuthor(author);
+            }
+            
+            // 设置主题信息
+            if (rs.getString("topic_title") != null) {
+                Topic topic = new Topic();
+                topic.setTopicId(reply.getTopicId());
+                topic.setTitle(rs.getString("topic_title"));
+                reply.setTopic(topic);
+            }
+            
+            // 设置被回复的回复信息
+            if (reply.getReplyToId() > 0 && rs.getString("reply_to_content") != null) {
+                Reply replyTo = new Reply();
+                replyTo.setReplyId(reply.getReplyToId());
+                replyTo.setContent(rs.getString("reply_to_content"));
                 
-                // 设置被回复的回复信息
-                if (reply.getReplyToId() > 0 && rs.getString("reply_to_content") != null) {
-                    Reply replyTo = new Reply();
-                    replyTo.setReplyId(reply.getReplyToId());
-                    replyTo.setContent(rs.getString("reply_to_content"));
-                    
-                    User replyToAuthor = new User();
-                    replyToAuthor.setUsername(rs.getString("reply_to_author"));
-                    replyTo.setAuthor(replyToAuthor);
-                    
-                    reply.setReplyTo(replyTo);
-                }
+                User replyToAuthor = new User();
+                replyToAuthor.setUsername(rs.getString("reply_to_author"));
+                replyTo.setAuthor(replyToAuthor);
                 
-                return reply;
+                reply.setReplyTo(replyTo);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+            
+            return reply;
+        }, replyId);
     }
 
     @Override
@@ -207,37 +219,70 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
 
     @Override
     public List<Reply> getReplyTreeByTopicId(int topicId) {
-        // 首先获取所有顶级回复（reply_to_id为NULL或0）
-        String topLevelSql = """
-            SELECT * FROM replies 
-            WHERE topic_id = ? AND (reply_to_id IS NULL OR reply_to_id = 0) 
-            AND status != 'deleted' 
-            ORDER BY create_time ASC
+        // 一次查出主题下全部回复，在内存中组装后按层级展开
+        String sql = """
+            SELECT * FROM replies
+            WHERE topic_id = ? AND status != 'deleted'
+            ORDER BY create_time ASC, reply_id ASC
+            """;
+        List<Reply> replies = getMultipleReplies(sql, topicId);
+        return new ReplyThread(ReplyThread.assemble(replies, MAX_TREE_DEPTH), false, false).flatten();
+    }
+
+    @Override
+    public ReplyThread getReplyThread(int topicId, int page, int size, int maxDepth, int maxReplies) {
+        // 锚点只取本页的顶级回复，递归部分沿回复关系向下展开；
+        // 不多取下一页的顶级回复，否则它的子树也会展开并占用 maxReplies 的名额
+        String sql = """
+            WITH RECURSIVE reply_tree AS (
+                SELECT top.*, 0 AS depth
+                FROM (
+                    SELECT * FROM replies
+                    WHERE topic_id = ? AND (reply_to_id IS NULL OR reply_to_id = 0)
+                    AND status != 'deleted'
+                    ORDER BY create_time ASC, reply_id ASC
+                    LIMIT ? OFFSET ?
+                ) top
+
+                UNION ALL
+
+                SELECT r.*, rt.depth + 1
+                FROM replies r
+                INNER JOIN reply_tree rt ON r.reply_to_id = rt.reply_id
+                WHERE r.status != 'deleted' AND rt.depth < ?
+            )
+            SELECT * FROM reply_tree
+            ORDER BY depth ASC, create_time ASC, reply_id ASC
+            LIMIT ?
             """;
         
-        List<Reply> topLevelReplies = getMultipleReplies(topLevelSql, topicId);
-        List<Reply> allReplies = new ArrayList<>();
+        int offset = (page - 1) * size;
+        List<Reply> replies = getMultipleReplies(sql, topicId, size, offset, maxDepth, maxReplies + 1);
         
-        // 为每个顶级回复构建子回复树
-        for (Reply topReply : topLevelReplies) {
-            allReplies.add(topReply);
-            addChildRepliesToList(topReply.getReplyId(), allReplies, 0);
+        boolean truncated = replies.size() > maxReplies;
+        if (truncated) {
+            replies = replies.subList(0, maxReplies);
         }
         
-        return allReplies;
+        // 递归结果按深度排序，组装前恢复按时间的顺序以保证同级回复有序
+        List<Reply> ordered = new ArrayList<>(replies);
+        ordered.sort(Comparator.comparing(Reply::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingInt(Reply::getReplyId));
+        
+        List<ReplyThread.Node> branches = ReplyThread.assemble(ordered, maxDepth);
+        return new ReplyThread(branches, hasTopLevelReplyAt(topicId, offset + size), truncated);
     }
 
-    /**
-     * 递归添加子回复到列表中
-     */
-    private void addChildRepliesToList(int parentReplyId, List<Reply> allReplies, int depth) {
-        if (depth > 10) return; // 防止无限递归，限制最大深度
-        
-        List<Reply> childReplies = getChildReplies(parentReplyId);
-        for (Reply childReply : childReplies) {
-            allReplies.add(childReply);
-            addChildRepliesToList(childReply.getReplyId(), allReplies, depth + 1);
-        }
+    // 按顺序第 offset 条（从0开始）顶级回复是否存在，用于判断是否还有下一页
+    private boolean hasTopLevelReplyAt(int topicId, int offset) {
+        String sql = """
+            SELECT 1 FROM replies
+            WHERE topic_id = ? AND (reply_to_id IS NULL OR reply_to_id = 0)
+            AND status != 'deleted'
+            ORDER BY create_time ASC, reply_id ASC
+            LIMIT 1 OFFSET ?
+            """;
+        return queryForObject(sql, rs -> Boolean.TRUE, topicId, offset) != null;
     }
 
     @Override
@@ -245,6 +290,9 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
         String sql = "UPDATE replies SET status = ? WHERE reply_id = ?";
         try {
             int result = executeUpdate(sql, status.getValue(), replyId);
+            if (result > 0) {
+                TopicDaoImpl.replyChangedAfterCommit(replyId);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -272,7 +320,11 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
             for (int i = 0; i < replyIds.length; i++) {
                 params[i] = replyIds[i];
             }
-            return executeUpdate(sql.toString(), params);
+            int result = executeUpdate(sql.toString(), params);
+            if (result > 0) {
+                TopicDaoImpl.replyChangedAfterCommit(replyIds.clone());
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -300,13 +352,18 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
             for (int i = 0; i < replyIds.length; i++) {
                 params[i + 1] = replyIds[i];
             }
-            return executeUpdate(sql.toString(), params);
+            int result = executeUpdate(sql.toString(), params);
+            if (result > 0) {
+                TopicDaoImpl.replyChangedAfterCommit(replyIds.clone());
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
         }
     }
 
+    @Deprecated
     @Override
     public List<Reply> searchReplies(String keyword, int topicId) {
         String sql;
@@ -329,6 +386,7 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
         }
     }
 
+    @Deprecated
     @Override
     public List<Reply> advancedSearchReplies(String keyword, int topicId, int userId, 
                                            String startTime, String endTime) {
@@ -469,7 +527,11 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
     public int deleteAllRepliesByTopicId(int topicId) {
         String sql = "UPDATE replies SET status = 'deleted' WHERE topic_id = ?";
         try {
-            return executeUpdate(sql, topicId);
+            int result = executeUpdate(sql, topicId);
+            if (result > 0) {
+                TopicDaoImpl.reindexAfterCommit(topicId);
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -494,16 +556,7 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
             SELECT MAX(depth) as max_depth FROM reply_tree
             """;
         
-        try {
-            ResultSet rs = executeQuery(sql, replyId);
-            if (rs != null && rs.next()) {
-                return rs.getInt("max_depth");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        
-        return 0;
+        return queryForInt(sql, replyId);
     }
 
     @Override
@@ -522,42 +575,17 @@ public class ReplyDaoImpl extends BaseDao implements ReplyDao {
 
     // 私有辅助方法：获取单个回复
     private Reply getSingleReply(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return mapResultSetToReply(rs);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return queryForObject(sql, this::mapResultSetToReply, params);
     }
 
     // 私有辅助方法：获取多个回复
     private List<Reply> getMultipleReplies(String sql, Object... params) {
-        List<Reply> replies = new ArrayList<>();
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            while (rs != null && rs.next()) {
-                replies.add(mapResultSetToReply(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return replies;
+        return queryForList(sql, this::mapResultSetToReply, params);
     }
 
     // 私有辅助方法：获取数量
     private int getCount(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return rs.getInt("count");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+        return queryForInt(sql, params);
     }
 
     // 私有辅助方法：将ResultSet映射为Reply对象
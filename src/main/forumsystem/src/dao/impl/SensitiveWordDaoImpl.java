@@ -3,6 +3,9 @@ package main.forumsystem.src.dao.impl;
 import main.forumsystem.src.dao.BaseDao;
 import main.forumsystem.src.dao.SensitiveWordDao;
 import main.forumsystem.src.entity.SensitiveWord;
+import main.forumsystem.src.util.ContentScreeningResult;
+import main.forumsystem.src.util.SensitiveWordMatcher;
+import main.forumsystem.src.util.TransactionTemplate;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -11,7 +14,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 敏感词数据访问实现类
@@ -19,6 +22,22 @@ import java.util.regex.Pattern;
  */
 public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
 
+    // 匹配时跳过的干扰字符（不含断句的标点，避免跨句拼出敏感词）、是否跳过空白，
+    // 以及两个有效字符之间最多跳过的连续干扰字符数（0表示不跳过）
+    private static final String NOISE_CHARS = BaseDao.getStringConfig("sensitiveWord.noiseChars",
+            "*-_'\"`~@#$%^&+=|\\/()[]{}<>·…—‘’“”【】《》");
+    private static final boolean SKIP_WHITESPACE =
+            Boolean.parseBoolean(BaseDao.getStringConfig("sensitiveWord.skipWhitespace", "true"));
+    private static final int MAX_NOISE_RUN = BaseDao.getIntConfig("sensitiveWord.maxNoiseRun", 3);
+
+    // 所有实例共享的敏感词自动机，词表变化后整体重建并替换（写时复制）
+    private static volatile SensitiveWordMatcher matcher;
+    // 词表变化后重建失败，当前自动机是旧词表的，下次使用时重试
+    private static volatile boolean matcherStale;
+    // 词表版本，每次变化提交后加1；当前自动机构建前读到的版本由类锁保护，只发布不比它旧的自动机
+    private static final AtomicLong WORD_LIST_VERSION = new AtomicLong();
+    private static long matcherVersion = -1;
+
     /**
      * 添加敏感词
      * 将新的敏感词插入到数据库中。
@@ -46,6 +65,9 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
                 Timestamp.valueOf(sensitiveWord.getCreateTime())
             );
             
+            if (result > 0) {
+                refreshMatcher();
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -92,6 +114,9 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
             }
         }
         
+        if (successCount > 0) {
+            refreshMatcher();
+        }
         return successCount;
     }
 
@@ -106,6 +131,9 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
         String sql = "DELETE FROM sensitive_words WHERE word_id = ?";
         try {
             int result = executeUpdate(sql, wordId);
+            if (result > 0) {
+                refreshMatcher();
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -124,6 +152,9 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
         String sql = "DELETE FROM sensitive_words WHERE word = ?";
         try {
             int result = executeUpdate(sql, word.trim());
+            if (result > 0) {
+                refreshMatcher();
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -157,7 +188,11 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
             for (int i = 0; i < wordIds.length; i++) {
                 params[i] = wordIds[i];
             }
-            return executeUpdate(sql.toString(), params);
+            int result = executeUpdate(sql.toString(), params);
+            if (result > 0) {
+                refreshMatcher();
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -181,6 +216,9 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
                 sensitiveWord.getWordId()
             );
             
+            if (result > 0) {
+                refreshMatcher();
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -232,16 +270,7 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
     public Set<String> getAllSensitiveWordSet() {
         String sql = "SELECT word FROM sensitive_words";
         Set<String> wordSet = new HashSet<>();
-        
-        try {
-            ResultSet rs = executeQuery(sql);
-            while (rs != null && rs.next()) {
-                wordSet.add(rs.getString("word"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        
+        query(sql, rs -> wordSet.add(rs.getString("word")));
         return wordSet;
     }
 
@@ -281,15 +310,7 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
     @Override
     public boolean existsSensitiveWord(String word) {
         String sql = "SELECT COUNT(*) as count FROM sensitive_words WHERE word = ?";
-        try {
-            ResultSet rs = executeQuery(sql, word.trim());
-            if (rs != null && rs.next()) {
-                return rs.getInt("count") > 0;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return getCount(sql, word.trim()) > 0;
     }
 
     /**
@@ -322,26 +343,29 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
      */
     @Override
     public List<String> findSensitiveWordsInText(String text) {
-        List<String> foundWords = new ArrayList<>();
         if (text == null || text.trim().isEmpty()) {
-            return foundWords;
+            return new ArrayList<>();
         }
-        
-        Set<String> sensitiveWords = getAllSensitiveWordSet();
-        String lowerText = text.toLowerCase();
-        
-        for (String word : sensitiveWords) {
-            if (lowerText.contains(word.toLowerCase())) {
-                foundWords.add(word);
-            }
+        return new ArrayList<>(getMatcher().findWords(text));
+    }
+
+    /**
+     * 检查文本是否包含敏感词
+     * 遇到第一个敏感词即返回，不查询数据库。
+     * @param text 待检查的文本
+     * @return boolean 是否包含敏感词
+     */
+    @Override
+    public boolean containsSensitiveWord(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return false;
         }
-        
-        return foundWords;
+        return getMatcher().containsAny(text);
     }
 
     /**
      * 替换文本中的敏感词
-     * 将文本中的敏感词替换为指定的替换字符。
+     * 将文本中的敏感词替换为各自的替换字符，重叠时优先替换最靠左、最长的敏感词。
      * @param text 待替换的文本
      * @return String 替换后的文本
      */
@@ -350,36 +374,99 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
         if (text == null || text.trim().isEmpty()) {
             return text;
         }
-        
-        List<SensitiveWord> sensitiveWords = getAllSensitiveWords();
-        String result = text;
-        
-        for (SensitiveWord sensitiveWord : sensitiveWords) {
-            String word = sensitiveWord.getWord();
-            String replacement = sensitiveWord.getReplacement();
-            
-            // 添加空值检查
-            if (word == null || word.trim().isEmpty()) {
-                continue; // 跳过无效的敏感词
+        return getMatcher().replace(text);
+    }
+
+    /**
+     * 审查多个文本字段
+     * 使用内存中的敏感词自动机，每个字段只扫描一次，不查询数据库。
+     * @param fields 待审查的字段
+     * @return ContentScreeningResult 审查结果
+     */
+    @Override
+    public ContentScreeningResult screen(String... fields) {
+        return getMatcher().screen(fields);
+    }
+
+    /**
+     * 获取敏感词自动机，首次使用时从数据库加载
+     * 加载失败时不发布空自动机：首次加载失败直接抛出异常，下次调用重试；
+     * 词表变化后重建失败时继续使用旧自动机，并在下次调用时重试
+     * @return SensitiveWordMatcher 当前词表的自动机
+     * @throws IllegalStateException 首次加载词表失败
+     */
+    public static SensitiveWordMatcher getMatcher() {
+        SensitiveWordMatcher current = matcher;
+        if (current == null || matcherStale) {
+            synchronized (SensitiveWordDaoImpl.class) {
+                current = matcher;
+                if (current == null) {
+                    long version = WORD_LIST_VERSION.get();
+                    publish(buildMatcher(), version);
+                    current = matcher;
+                } else if (matcherStale) {
+                    try {
+                        long version = WORD_LIST_VERSION.get();
+                        publish(buildMatcher(), version);
+                        current = matcher;
+                    } catch (RuntimeException e) {
+                        System.err.println("重建敏感词自动机失败，继续使用旧词表: " + e.getMessage());
+                    }
+                }
             }
-            
-            // 如果替换字符为空，使用默认值
-            if (replacement == null) {
-                replacement = "***"; // 默认替换字符
+        }
+        return current;
+    }
+
+    /**
+     * 获取敏感词自动机状态
+     * @return SensitiveWordMatcher.MatcherStats 状态快照
+     */
+    public static SensitiveWordMatcher.MatcherStats getMatcherStats() {
+        return getMatcher().getStats();
+    }
+
+    // 在一个事务中读取词表，查询出错时抛出异常，而不是得到空词表
+    private static SensitiveWordMatcher buildMatcher() {
+        List<SensitiveWord> words = TransactionTemplate.inTransaction(() -> {
+            List<SensitiveWord> all = new SensitiveWordDaoImpl().getAllSensitiveWords();
+            if (TransactionTemplate.isRollbackOnly()) {
+                throw new IllegalStateException("加载敏感词表失败！");
             }
-            
+            return all;
+        });
+        return new SensitiveWordMatcher(words, NOISE_CHARS, SKIP_WHITESPACE, MAX_NOISE_RUN);
+    }
+
+    /**
+     * 词表变化后重建自动机
+     * 新自动机构建完成前，检测仍使用旧自动机；处于事务中时等事务结束后再重建，避免读到未提交的词表。
+     * 多个修改并发重建时，先递增词表版本再读取词表，后读到旧词表的重建不会覆盖新的自动机。
+     * 重建失败时保留旧自动机，标记为过时，由下次 {@link #getMatcher()} 重试
+     */
+    private static void refreshMatcher() {
+        TransactionTemplate.afterCompletion(() -> {
+            long version = WORD_LIST_VERSION.incrementAndGet();
             try {
-                // 使用正则表达式进行不区分大小写的替换
-                Pattern pattern = Pattern.compile(Pattern.quote(word), Pattern.CASE_INSENSITIVE);
-                result = pattern.matcher(result).replaceAll(replacement);
-            } catch (Exception e) {
-                // 如果正则替换失败，使用简单字符串替换
-                System.err.println("正则替换失败，使用简单替换: " + word);
-                result = result.replaceAll("(?i)" + Pattern.quote(word), replacement);
+                publish(buildMatcher(), version);
+            } catch (RuntimeException e) {
+                System.err.println("重建敏感词自动机失败，继续使用旧词表: " + e.getMessage());
+                matcherStale = true;
             }
+        });
+    }
+
+    // 发布按 version 版本词表构建的自动机，比当前自动机的版本旧时丢弃
+    private static synchronized void publish(SensitiveWordMatcher rebuilt, long version) {
+        if (version < matcherVersion) {
+            return;
+        }
+        matcher = rebuilt;
+        matcherVersion = version;
+        // 还有更新的版本时由其对应的重建发布，失败时由它标记过时
+        if (version == WORD_LIST_VERSION.get()) {
+            matcherStale = false;
         }
-        
-        return result;
     }
 
     /**
@@ -405,6 +492,7 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
         String sql = "DELETE FROM sensitive_words";
         try {
             executeUpdate(sql);
+            refreshMatcher();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -480,42 +568,17 @@ public class SensitiveWordDaoImpl extends BaseDao implements SensitiveWordDao {
 
     // 私有辅助方法：获取单个敏感词
     private SensitiveWord getSingleSensitiveWord(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return mapResultSetToSensitiveWord(rs);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return queryForObject(sql, this::mapResultSetToSensitiveWord, params);
     }
 
     // 私有辅助方法：获取多个敏感词
     private List<SensitiveWord> getMultipleSensitiveWords(String sql, Object... params) {
-        List<SensitiveWord> sensitiveWords = new ArrayList<>();
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            while (rs != null && rs.next()) {
-                sensitiveWords.add(mapResultSetToSensitiveWord(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return sensitiveWords;
+        return queryForList(sql, this::mapResultSetToSensitiveWord, params);
     }
 
     // 私有辅助方法：获取数量
     private int getCount(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return rs.getInt("count");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+        return queryForInt(sql, params);
     }
 
     // 私有辅助方法：将ResultSet映射为SensitiveWord对象
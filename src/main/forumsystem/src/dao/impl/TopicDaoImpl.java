@@ -2,24 +2,297 @@ package main.forumsystem.src.dao.impl;
 
 import main.forumsystem.src.dao.BaseDao;
 import main.forumsystem.src.dao.TopicDao;
+import main.forumsystem.src.entity.Reply;
 import main.forumsystem.src.entity.Topic;
+import main.forumsystem.src.entity.TopicSearchHit;
 import main.forumsystem.src.entity.User;
 import main.forumsystem.src.entity.Forum;
+import main.forumsystem.src.search.ContentStore;
+import main.forumsystem.src.search.Highlighter;
+import main.forumsystem.src.search.InvertedIndex;
+import main.forumsystem.src.search.ParallelIndexBuilder;
+import main.forumsystem.src.search.SearchQuery;
+import main.forumsystem.src.search.SearchIndexer;
+import main.forumsystem.src.search.SearchResult;
+import main.forumsystem.src.search.SegmentDirectory;
+import main.forumsystem.src.search.TopicScorer;
+import main.forumsystem.src.search.TopicSearchEngine;
+import main.forumsystem.src.util.CounterAggregator;
+import main.forumsystem.src.util.CounterAggregator.CounterKey;
+import main.forumsystem.src.util.TopicCursor;
+import main.forumsystem.src.util.TransactionTemplate;
+import main.forumsystem.src.util.ViewCountBuffer;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Consumer;
 
 /**
  * 主题帖数据访问实现类
  */
 public class TopicDaoImpl extends BaseDao implements TopicDao {
 
+    // 浏览量写回间隔，0表示每次浏览直接更新数据库
+    private static final long VIEW_COUNT_FLUSH_INTERVAL_MILLIS =
+            BaseDao.getLongConfig("viewCount.flushIntervalMillis", 5000);
+
+    // 所有实例共享的浏览量写回缓冲，进程退出前写回剩余增量
+    private static final ViewCountBuffer VIEW_COUNTS = createViewCountBuffer();
+
+    private static ViewCountBuffer createViewCountBuffer() {
+        if (VIEW_COUNT_FLUSH_INTERVAL_MILLIS <= 0) {
+            return null;
+        }
+        ViewCountBuffer buffer = new ViewCountBuffer(VIEW_COUNT_FLUSH_INTERVAL_MILLIS, TopicDaoImpl::writeViewCounts);
+        BaseDao.addShutdownTask(buffer::shutdown);
+        return buffer;
+    }
+
+    // 一次批量更新写回所有浏览增量
+    private static boolean writeViewCounts(SortedMap<Integer, Long> deltas) {
+        String sql = "UPDATE topics SET view_count = view_count + ? WHERE topic_id = ?";
+        List<Object[]> batchParams = new ArrayList<>(deltas.size());
+        deltas.forEach((topicId, delta) -> batchParams.add(new Object[]{delta, topicId}));
+        return executeBatch(sql, batchParams) != null;
+    }
+
+    // IN 查询每批最多的ID数量
+    private static final int IN_QUERY_BATCH_SIZE = 500;
+
+    // 不分页的搜索最多返回的主题数
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
+    // 主题列表展示用的列，不读取正文
+    private static final String SUMMARY_COLUMNS = "topic_id, forum_id, user_id, title, NULL AS content, is_pinned, "
+            + "is_locked, view_count, reply_count, last_reply_user_id, status, create_time, last_reply_time";
+
+    // 搜索索引变更队列容量和每批应用的变更数
+    private static final int SEARCH_QUEUE_CAPACITY = BaseDao.getIntConfig("search.queueCapacity", 10000);
+    private static final int SEARCH_BATCH_SIZE = BaseDao.getIntConfig("search.batchSize", 200);
+    // 搜索索引目录（为空表示只保存在内存中）和内存段写成磁盘段的文档数
+    private static final String SEARCH_INDEX_DIR = BaseDao.getStringConfig("search.indexDir", "search-index");
+    private static final int SEARCH_FLUSH_DOCS = BaseDao.getIntConfig("search.flushDocs", 5000);
+    // 全量重建的并行线程数（默认取CPU核数，最多4）和每秒最多读取的行数（0表示不限速）
+    private static final int SEARCH_REBUILD_THREADS = BaseDao.getIntConfig("search.rebuildThreads",
+            Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    private static final int SEARCH_REBUILD_MAX_ROWS_PER_SECOND =
+            BaseDao.getIntConfig("search.rebuildMaxRowsPerSecond", 0);
+    // 搜索结果排序：标题权重、热度权重、最后回复时间的半衰期（天）
+    private static final TopicScorer SEARCH_SCORER = new TopicScorer(
+            BaseDao.getDoubleConfig("search.titleBoost", 2.0),
+            BaseDao.getDoubleConfig("search.engagementWeight", 0.2),
+            BaseDao.getDoubleConfig("search.recencyHalfLifeDays", 30));
+
+    // 正文缓存上限（MB）；搜索结果摘录的长度，命中部分用【】标出
+    private static final long SEARCH_CONTENT_CACHE_BYTES = BaseDao.getLongConfig("search.contentCacheMB", 32) << 20;
+    private static final Highlighter SEARCH_HIGHLIGHTER =
+            new Highlighter(BaseDao.getIntConfig("search.excerptLength", 80), "【", "】");
+
+    // 所有实例共享的主题搜索引擎，首次搜索时构建
+    private static final TopicSearchEngine SEARCH_ENGINE = new TopicSearchEngine(new TopicSearchEngine.TopicSource() {
+        @Override
+        public Map<Integer, Topic> loadTopics(Collection<Integer> topicIds) {
+            return readForIndex(() -> {
+                Map<Integer, Topic> topics = new HashMap<>();
+                List<Integer> ids = new ArrayList<>(topicIds);
+                for (int from = 0; from < ids.size(); from += IN_QUERY_BATCH_SIZE) {
+                    List<Integer> batch = ids.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, ids.size()));
+                    String sql = "SELECT topic_id, forum_id, user_id, title, content, create_time, status, "
+                            + "reply_count, view_count, last_reply_time FROM topics WHERE topic_id IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                    for (Topic topic : queryForList(sql, TopicDaoImpl::mapSearchableTopic, batch.toArray())) {
+                        topics.put(topic.getTopicId(), topic);
+                    }
+                }
+                return topics;
+            });
+        }
+
+        @Override
+        public Map<Integer, Reply> loadReplies(Collection<Integer> replyIds) {
+            return readForIndex(() -> {
+                Map<Integer, Reply> replies = new HashMap<>();
+                List<Integer> ids = new ArrayList<>(replyIds);
+                for (int from = 0; from < ids.size(); from += IN_QUERY_BATCH_SIZE) {
+                    List<Integer> batch = ids.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, ids.size()));
+                    String sql = "SELECT reply_id, topic_id, user_id, content, create_time, status FROM replies "
+                            + "WHERE reply_id IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                    for (Reply reply : queryForList(sql, TopicDaoImpl::mapSearchableReply, batch.toArray())) {
+                        replies.put(reply.getReplyId(), reply);
+                    }
+                }
+                return replies;
+            });
+        }
+
+        @Override
+        public int maxTopicId() {
+            return readForIndex(() -> queryForInt("SELECT MAX(topic_id) FROM topics"));
+        }
+
+        @Override
+        public void scanTopics(int fromId, int toId, Consumer<Topic> consumer) {
+            // 主键范围扫描，结果流式读取，不把整个区间加载进内存
+            String sql = """
+                SELECT topic_id, forum_id, user_id, title, content, create_time, status,
+                       reply_count, view_count, last_reply_time
+                FROM topics WHERE status = 'normal' AND topic_id > ? AND topic_id <= ?
+                ORDER BY topic_id
+                """;
+            readForIndex(() -> {
+                queryStream(sql, rs -> consumer.accept(mapSearchableTopic(rs)), fromId, toId);
+                return null;
+            });
+        }
+
+        @Override
+        public void scanReplies(int fromTopicId, int toTopicId, Consumer<Reply> consumer) {
+            // 按 replies.topic_id 索引范围扫描，已删除主题下的回复不入索引
+            String sql = """
+                SELECT r.reply_id, r.topic_id, r.user_id, r.content, r.create_time, r.status
+                FROM replies r JOIN topics t ON r.topic_id = t.topic_id
+                WHERE r.status = 'normal' AND t.status = 'normal' AND r.topic_id > ? AND r.topic_id <= ?
+                ORDER BY r.topic_id, r.reply_id
+                """;
+            readForIndex(() -> {
+                queryStream(sql, rs -> consumer.accept(mapSearchableReply(rs)), fromTopicId, toTopicId);
+                return null;
+            });
+        }
+
+        @Override
+        public Map<Integer, String> loadContents(Collection<Integer> keys) {
+            List<Integer> topicIds = new ArrayList<>();
+            List<Integer> replyIds = new ArrayList<>();
+            for (int key : keys) {
+                if (key > 0) {
+                    topicIds.add(key);
+                } else {
+                    replyIds.add(-key);
+                }
+            }
+            return readForIndex(() -> {
+                Map<Integer, String> contents = new HashMap<>();
+                for (int from = 0; from < topicIds.size(); from += IN_QUERY_BATCH_SIZE) {
+                    List<Integer> batch = topicIds.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, topicIds.size()));
+                    String sql = "SELECT topic_id, content FROM topics WHERE topic_id IN ("
+                            + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                    query(sql, rs -> contents.put(rs.getInt(1), rs.getString(2)), batch.toArray());
+                }
+                for (int from = 0; from < replyIds.size(); from += IN_QUERY_BATCH_SIZE) {
+                    List<Integer> batch = replyIds.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, replyIds.size()));
+                    String sql = "SELECT reply_id, content FROM replies WHERE reply_id IN ("
+                            + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+                    query(sql, rs -> contents.put(-rs.getInt(1), rs.getString(2)), batch.toArray());
+                }
+                return contents;
+            });
+        }
+    }, SEARCH_QUEUE_CAPACITY, SEARCH_BATCH_SIZE, openSearchIndexDirectory(), SEARCH_FLUSH_DOCS, SEARCH_SCORER,
+            SEARCH_REBUILD_THREADS, SEARCH_REBUILD_MAX_ROWS_PER_SECOND, SEARCH_CONTENT_CACHE_BYTES);
+
+    static {
+        // 进程退出前应用剩余的索引变更并提交，下次启动直接加载
+        BaseDao.addShutdownTask(SEARCH_ENGINE::shutdown);
+    }
+
+    private static SegmentDirectory openSearchIndexDirectory() {
+        if (SEARCH_INDEX_DIR.isEmpty()) {
+            return null;
+        }
+        try {
+            return new SegmentDirectory(new File(SEARCH_INDEX_DIR));
+        } catch (IOException e) {
+            System.err.println("打开搜索索引目录失败，索引只保存在内存中: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 在一个事务中读取建索引的数据，查询出错时抛出异常，由索引更新线程转为重建或重试
+    private static <T> T readForIndex(TransactionTemplate.TransactionCallback<T> reader) {
+        return TransactionTemplate.inTransaction(() -> {
+            T result = reader.doInTransaction();
+            if (TransactionTemplate.isRollbackOnly()) {
+                throw new IllegalStateException("读取搜索索引数据失败！");
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 获取主题搜索索引状态
+     * @return InvertedIndex.IndexStats 状态快照，索引尚未构建时返回null
+     */
+    public static InvertedIndex.IndexStats getSearchIndexStats() {
+        return SEARCH_ENGINE.getStats();
+    }
+
+    /**
+     * 获取最近一次搜索索引全量重建的进度
+     * @return ParallelIndexBuilder.Progress 进度快照，本次启动未重建过时返回null
+     */
+    public static ParallelIndexBuilder.Progress getSearchRebuildProgress() {
+        return SEARCH_ENGINE.getRebuildProgress();
+    }
+
+    /**
+     * 获取搜索结果正文缓存状态
+     * @return ContentStore.StoreStats 状态快照
+     */
+    public static ContentStore.StoreStats getSearchContentStats() {
+        return SEARCH_ENGINE.getContentStats();
+    }
+
+    /**
+     * 获取搜索索引更新线程状态
+     * @return SearchIndexer.IndexerStats 状态快照
+     */
+    public static SearchIndexer.IndexerStats getSearchIndexerStats() {
+        return SEARCH_ENGINE.getIndexerStats();
+    }
+
+    /**
+     * 回复已变更，提交后登记到搜索索引更新队列
+     * @param replyIds 回复ID
+     */
+    static void replyChangedAfterCommit(int... replyIds) {
+        TransactionTemplate.afterCommit(() -> {
+            for (int replyId : replyIds) {
+                SEARCH_ENGINE.replyChanged(replyId);
+            }
+        });
+    }
+
+    // 提交后登记到搜索索引更新队列，回滚则不登记
+    static void reindexAfterCommit(int... topicIds) {
+        TransactionTemplate.afterCommit(() -> {
+            for (int topicId : topicIds) {
+                SEARCH_ENGINE.topicChanged(topicId);
+            }
+        });
+    }
+
+    /**
+     * 获取浏览量写回缓冲状态
+     * @return ViewCountBuffer.BufferStats 状态快照，未启用写回缓冲时返回null
+     */
+    public static ViewCountBuffer.BufferStats getViewCountStats() {
+        return VIEW_COUNTS != null ? VIEW_COUNTS.getStats() : null;
+    }
+
     @Override
     public boolean addTopic(Topic topic) {
         String sql = """
@@ -34,7 +307,7 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
                 topic.setCreateTime(LocalDateTime.now());
             }
             
-            int result = executeUpdate(sql,
+            int topicId = executeInsert(sql,
                 topic.getForumId(),
                 topic.getUserId(),
                 topic.getTitle(),
@@ -46,8 +319,13 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
                 Timestamp.valueOf(topic.getCreateTime()),
                 topic.getStatus().getValue()
             );
+            if (topicId <= 0) {
+                return false;
+            }
             
-            return result > 0;
+            topic.setTopicId(topicId);
+            reindexAfterCommit(topicId);
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -59,6 +337,9 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
         String sql = "UPDATE topics SET status = 'deleted' WHERE topic_id = ?";
         try {
             int result = executeUpdate(sql, topicId);
+            if (result > 0) {
+                reindexAfterCommit(topicId);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -68,9 +349,10 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
 
     @Override
     public boolean updateTopic(Topic topic) {
+        // 浏览量和回复数由计数方法维护，这里写回会覆盖尚未落库的增量
         String sql = """
             UPDATE topics SET title = ?, content = ?, is_pinned = ?, is_locked = ?, 
-                            view_count = ?, reply_count = ?, status = ? 
+                            status = ? 
             WHERE topic_id = ?
             """;
         
@@ -80,12 +362,13 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
                 topic.getContent(),
                 topic.isPinned(),
                 topic.isLocked(),
-                topic.getViewCount(),
-                topic.getReplyCount(),
                 topic.getStatus().getValue(),
                 topic.getTopicId()
             );
             
+            if (result > 0) {
+                reindexAfterCommit(topic.getTopicId());
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -111,40 +394,34 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
             WHERE t.topic_id = ? AND t.status != 'deleted'
             """;
         
-        try {
-            ResultSet rs = executeQuery(sql, topicId);
-            if (rs != null && rs.next()) {
-                Topic topic = mapResultSetToTopic(rs);
-                
-                // 设置关联对象信息
-                if (rs.getString("author_name") != null) {
-                    User author = new User();
-                    author.setUserId(topic.getUserId());
-                    author.setUsername(rs.getString("author_name"));
-                    author.setNickName(rs.getString("author_nick"));
-                    topic.setAuthor(author);
-                }
-                
-                if (rs.getString("forum_name") != null) {
-                    Forum forum = new Forum();
-                    forum.setForumId(topic.getForumId());
-                    forum.setForumName(rs.getString("forum_name"));
-                    topic.setForum(forum);
-                }
-                
-                if (rs.getString("last_reply_name") != null) {
-                    User lastReplyUser = new User();
-                    lastReplyUser.setUserId(topic.getLastReplyUserId());
-                    lastReplyUser.setUsername(rs.getString("last_reply_name"));
-                    topic.setLastReplyUser(lastReplyUser);
-                }
-                
-                return topic;
+        return queryForObject(sql, rs -> {
+            Topic topic = mapResultSetToTopic(rs);
+            
+            // 设置关联对象信息
+            if (rs.getString("author_name") != null) {
+                User author = new User();
+                author.setUserId(topic.getUserId());
+                author.setUsername(rs.getString("author_name"));
+                author.setNickName(rs.getString("author_nick"));
+                topic.setAuthor(author);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+            
+            if (rs.getString("forum_name") != null) {
+                Forum forum = new Forum();
+                forum.setForumId(topic.getForumId());
+                forum.setForumName(rs.getString("forum_name"));
+                topic.setForum(forum);
+            }
+            
+            if (rs.getString("last_reply_name") != null) {
+                User lastReplyUser = new User();
+                lastReplyUser.setUserId(topic.getLastReplyUserId());
+                lastReplyUser.setUsername(rs.getString("last_reply_name"));
+                topic.setLastReplyUser(lastReplyUser);
+            }
+            
+            return topic;
+        }, topicId);
     }
 
     @Override
@@ -181,6 +458,47 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
         return getMultipleTopics(sql, forumId, size, offset);
     }
 
+    @Override
+    public List<Topic> getTopicsAfter(int forumId, TopicCursor cursor, int limit) {
+        if (cursor == null) {
+            String sql = """
+                SELECT * FROM topics
+                WHERE forum_id = ? AND status = 'normal'
+                ORDER BY is_pinned DESC, last_reply_time DESC, topic_id DESC
+                LIMIT ?
+                """;
+            return getMultipleTopics(sql, forumId, limit);
+        }
+        
+        // 降序排列时 last_reply_time 为NULL的行排在最后，需单独处理
+        if (cursor.getLastReplyTime() == null) {
+            String sql = """
+                SELECT * FROM topics
+                WHERE forum_id = ? AND status = 'normal'
+                  AND (is_pinned < ?
+                       OR (is_pinned = ? AND last_reply_time IS NULL AND topic_id < ?))
+                ORDER BY is_pinned DESC, last_reply_time DESC, topic_id DESC
+                LIMIT ?
+                """;
+            return getMultipleTopics(sql, forumId, cursor.isPinned(), cursor.isPinned(),
+                cursor.getTopicId(), limit);
+        }
+        
+        String sql = """
+            SELECT * FROM topics
+            WHERE forum_id = ? AND status = 'normal'
+              AND (is_pinned < ?
+                   OR (is_pinned = ? AND (last_reply_time < ?
+                                          OR last_reply_time IS NULL
+                                          OR (last_reply_time = ? AND topic_id < ?))))
+            ORDER BY is_pinned DESC, last_reply_time DESC, topic_id DESC
+            LIMIT ?
+            """;
+        Timestamp lastReplyTime = Timestamp.valueOf(cursor.getLastReplyTime());
+        return getMultipleTopics(sql, forumId, cursor.isPinned(), cursor.isPinned(),
+            lastReplyTime, lastReplyTime, cursor.getTopicId(), limit);
+    }
+
     @Override
     public List<Topic> getPinnedTopics(int forumId) {
         String sql;
@@ -199,39 +517,176 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
 
     @Override
     public List<Topic> searchTopics(String keyword, int forumId) {
-        String sql;
-        String searchPattern = "%" + keyword + "%";
-        
-        if (forumId == 0) {
-            sql = """
-                SELECT * FROM topics 
-                WHERE (title LIKE ? OR content LIKE ?) AND status = 'normal' 
-                ORDER BY create_time DESC
-                """;
-            return getMultipleTopics(sql, searchPattern, searchPattern);
-        } else {
-            sql = """
-                SELECT * FROM topics 
-                WHERE forum_id = ? AND (title LIKE ? OR content LIKE ?) AND status = 'normal' 
-                ORDER BY create_time DESC
-                """;
-            return getMultipleTopics(sql, forumId, searchPattern, searchPattern);
+        SearchQuery query = new SearchQuery(keyword, 0, MAX_SEARCH_RESULTS);
+        query.setForumId(forumId);
+        return getTopicsByIds(search(query).getTopicIds());
+    }
+
+    @Override
+    public List<Topic> searchTopics(String keyword, int forumId, int page, int size) {
+        SearchQuery query = new SearchQuery(keyword, (page - 1) * size, size);
+        query.setForumId(forumId);
+        return getTopicsByIds(search(query).getTopicIds());
+    }
+
+    @Override
+    public List<Topic> searchTopicSummaries(String keyword, int forumId, int offset, int limit) {
+        SearchQuery query = new SearchQuery(keyword, offset, limit);
+        query.setForumId(forumId);
+        return getTopicsByIds(search(query).getTopicIds(), SUMMARY_COLUMNS);
+    }
+
+    @Override
+    public int countSearchTopics(String keyword, int forumId) {
+        // 不取结果时索引只计数，不计算相关度
+        SearchQuery query = new SearchQuery(keyword, 0, 0);
+        query.setForumId(forumId);
+        return search(query).getTotalHits();
+    }
+
+    @Override
+    public List<TopicSearchHit> searchDiscussions(String keyword, int forumId, int userId, int offset, int limit) {
+        SearchQuery query = new SearchQuery(keyword, offset, limit);
+        query.setForumId(forumId);
+        query.setUserId(userId);
+        query.setIncludeReplies(true);
+        SearchResult result = search(query);
+
+        // 主题和回复只读取展示用的列，摘录由搜索引擎从正文缓存生成
+        List<Integer> replyIds = new ArrayList<>();
+        for (int replyId : result.getMatchedReplyIds()) {
+            if (replyId > 0) {
+                replyIds.add(replyId);
+            }
+        }
+        Map<Integer, Topic> topics = new HashMap<>();
+        for (Topic topic : getTopicsByIds(result.getTopicIds(), SUMMARY_COLUMNS)) {
+            topics.put(topic.getTopicId(), topic);
+        }
+        Map<Integer, Reply> replies = getReplySummariesByIds(replyIds);
+        List<String> excerpts = SEARCH_ENGINE.excerpts(query, result, SEARCH_HIGHLIGHTER);
+
+        List<TopicSearchHit> hits = new ArrayList<>(topics.size());
+        for (int i = 0; i < result.getTopicIds().size(); i++) {
+            Topic topic = topics.get(result.getTopicIds().get(i));
+            if (topic == null) {
+                continue;
+            }
+            // 回复在检索后被删除时不再显示其摘录
+            int replyId = result.getMatchedReplyIds().get(i);
+            Reply reply = replies.get(replyId);
+            String excerpt = replyId != 0 && reply == null ? "" : excerpts.get(i);
+            hits.add(new TopicSearchHit(topic, reply, excerpt));
         }
+        return hits;
+    }
+
+    @Override
+    public int countDiscussions(String keyword, int forumId, int userId) {
+        SearchQuery query = new SearchQuery(keyword, 0, 0);
+        query.setForumId(forumId);
+        query.setUserId(userId);
+        query.setIncludeReplies(true);
+        return search(query).getTotalHits();
+    }
+
+    // 索引尚未构建时搜索引擎不等待构建，改用数据库 LIKE 子串匹配
+    private SearchResult search(SearchQuery query) {
+        SearchResult result = SEARCH_ENGINE.search(query);
+        return result != null ? result : likeSearch(query);
+    }
+
+    // 与索引检索相同的过滤条件，关键词整体作为子串匹配标题和正文，包含回复时回复正文命中也算（不定位到具体回复），
+    // 结果按发布时间降序
+    private SearchResult likeSearch(SearchQuery query) {
+        long start = System.nanoTime();
+        String keyword = query.getKeyword() != null ? query.getKeyword().trim() : "";
+        if (keyword.isEmpty()) {
+            return new SearchResult(0, new ArrayList<>(), System.nanoTime() - start);
+        }
+        String pattern = "%" + keyword + "%";
+        StringBuilder where = new StringBuilder(" FROM topics WHERE status = 'normal'");
+        List<Object> params = new ArrayList<>();
+
+        where.append(" AND (((title LIKE ? OR content LIKE ?)");
+        params.add(pattern);
+        params.add(pattern);
+        if (query.getUserId() > 0) {
+            where.append(" AND user_id = ?");
+            params.add(query.getUserId());
+        }
+        where.append(")");
+        if (query.isIncludeReplies()) {
+            where.append(" OR EXISTS (SELECT 1 FROM replies r WHERE r.topic_id = topics.topic_id"
+                    + " AND r.status = 'normal' AND r.content LIKE ?");
+            params.add(pattern);
+            if (query.getUserId() > 0) {
+                where.append(" AND r.user_id = ?");
+                params.add(query.getUserId());
+            }
+            where.append(")");
+        }
+        where.append(")");
+
+        if (query.getForumId() > 0) {
+            where.append(" AND forum_id = ?");
+            params.add(query.getForumId());
+        }
+        if (query.getStartTime() != null) {
+            where.append(" AND create_time >= ?");
+            params.add(Timestamp.valueOf(query.getStartTime()));
+        }
+        if (query.getEndTime() != null) {
+            where.append(" AND create_time <= ?");
+            params.add(Timestamp.valueOf(query.getEndTime()));
+        }
+
+        int total = getCount("SELECT COUNT(*) as count" + where, params.toArray());
+        List<Integer> topicIds = new ArrayList<>();
+        if (query.getLimit() > 0 && query.getOffset() < total) {
+            params.add(query.getLimit());
+            params.add(query.getOffset());
+            topicIds = queryForList("SELECT topic_id" + where + " ORDER BY create_time DESC, topic_id DESC LIMIT ? OFFSET ?",
+                    rs -> rs.getInt(1), params.toArray());
+        }
+        return new SearchResult(total, topicIds, System.nanoTime() - start);
+    }
+
+    // 按ID批量读取正常状态的回复，不读取正文（content 为null）
+    private Map<Integer, Reply> getReplySummariesByIds(List<Integer> replyIds) {
+        Map<Integer, Reply> replies = new HashMap<>();
+        for (int from = 0; from < replyIds.size(); from += IN_QUERY_BATCH_SIZE) {
+            List<Integer> batch = replyIds.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, replyIds.size()));
+            String sql = "SELECT reply_id, topic_id, user_id, NULL AS content, create_time, status FROM replies "
+                    + "WHERE status = 'normal' AND reply_id IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+            for (Reply reply : queryForList(sql, TopicDaoImpl::mapSearchableReply, batch.toArray())) {
+                replies.put(reply.getReplyId(), reply);
+            }
+        }
+        return replies;
     }
 
     @Override
     public List<Topic> advancedSearchTopics(String keyword, int forumId, int userId, 
                                           String startTime, String endTime) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            // 没有关键词时只有过滤条件，走索引列
+            return advancedFilterTopics(forumId, userId, startTime, endTime);
+        }
+        
+        SearchQuery query = new SearchQuery(keyword, 0, MAX_SEARCH_RESULTS);
+        query.setForumId(forumId);
+        query.setUserId(userId);
+        query.setStartTime(parseTime(startTime));
+        query.setEndTime(parseTime(endTime));
+        return getTopicsByIds(search(query).getTopicIds());
+    }
+
+    // 无关键词的高级搜索
+    private List<Topic> advancedFilterTopics(int forumId, int userId, String startTime, String endTime) {
         StringBuilder sql = new StringBuilder("SELECT * FROM topics WHERE status = 'normal'");
         List<Object> params = new ArrayList<>();
         
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            sql.append(" AND (title LIKE ? OR content LIKE ?)");
-            String searchPattern = "%" + keyword + "%";
-            params.add(searchPattern);
-            params.add(searchPattern);
-        }
-        
         if (forumId > 0) {
             sql.append(" AND forum_id = ?");
             params.add(forumId);
@@ -252,13 +707,36 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
             params.add(endTime);
         }
         
-        sql.append(" ORDER BY create_time DESC");
+        sql.append(" ORDER BY create_time DESC LIMIT ?");
+        params.add(MAX_SEARCH_RESULTS);
         
         return getMultipleTopics(sql.toString(), params.toArray());
     }
 
+    // 解析 yyyy-MM-dd 或 yyyy-MM-dd HH:mm:ss，只有日期时取当天零点，与直接比较 create_time 的语义一致
+    private static LocalDateTime parseTime(String time) {
+        if (time == null || time.trim().isEmpty()) {
+            return null;
+        }
+        String value = time.trim();
+        try {
+            return LocalDateTime.parse(value, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value).atStartOfDay();
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("时间格式无效: " + time, e);
+            }
+        }
+    }
+
     @Override
     public boolean incrementViewCount(int topicId) {
+        if (VIEW_COUNTS != null) {
+            VIEW_COUNTS.increment(topicId);
+            return true;
+        }
+
         String sql = "UPDATE topics SET view_count = view_count + 1 WHERE topic_id = ?";
         try {
             int result = executeUpdate(sql, topicId);
@@ -271,6 +749,12 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
 
     @Override
     public boolean updateReplyCount(int topicId, int increment) {
+        // 启用计数聚合时只记录增量，由后台批量写回
+        CounterAggregator counters = CounterDaoImpl.getAggregator();
+        if (counters != null && counters.add(replyCountKey(topicId), increment)) {
+            return true;
+        }
+
         String sql = "UPDATE topics SET reply_count = reply_count + ? WHERE topic_id = ?";
         try {
             int result = executeUpdate(sql, increment, topicId);
@@ -329,6 +813,9 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
         String sql = "UPDATE topics SET status = ? WHERE topic_id = ?";
         try {
             int result = executeUpdate(sql, status.getValue(), topicId);
+            if (result > 0) {
+                reindexAfterCommit(topicId);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -341,6 +828,9 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
         String sql = "UPDATE topics SET forum_id = ? WHERE topic_id = ?";
         try {
             int result = executeUpdate(sql, newForumId, topicId);
+            if (result > 0) {
+                reindexAfterCommit(topicId);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -445,7 +935,11 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
             for (int i = 0; i < topicIds.length; i++) {
                 params[i] = topicIds[i];
             }
-            return executeUpdate(sql.toString(), params);
+            int result = executeUpdate(sql.toString(), params);
+            if (result > 0) {
+                reindexAfterCommit(topicIds.clone());
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -473,7 +967,11 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
             for (int i = 0; i < topicIds.length; i++) {
                 params[i + 1] = topicIds[i];
             }
-            return executeUpdate(sql.toString(), params);
+            int result = executeUpdate(sql.toString(), params);
+            if (result > 0) {
+                reindexAfterCommit(topicIds.clone());
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
             return 0;
@@ -536,14 +1034,20 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
 
     @Override
     public List<Topic> getRelatedTopics(int topicId, int limit) {
-        // 获取当前主题的标题关键词，查找相关主题
+        // 由搜索索引中的 MinHash 签名查找内容相似的主题，不再自连接全表
+        List<Integer> related = SEARCH_ENGINE.relatedTopics(topicId, limit);
+        if (related != null) {
+            return getTopicsByIds(related);
+        }
+
+        // 索引尚未构建：按标题前缀或同版块查找
         String sql = """
-            SELECT t2.* FROM topics t1, topics t2 
-            WHERE t1.topic_id = ? AND t2.topic_id != ? 
-            AND t2.status = 'normal' 
-            AND (t2.title LIKE CONCAT('%', SUBSTRING(t1.title, 1, 10), '%') 
+            SELECT t2.* FROM topics t1, topics t2
+            WHERE t1.topic_id = ? AND t2.topic_id != ?
+            AND t2.status = 'normal'
+            AND (t2.title LIKE CONCAT('%', SUBSTRING(t1.title, 1, 10), '%')
                  OR t2.forum_id = t1.forum_id)
-            ORDER BY t2.reply_count DESC, t2.view_count DESC 
+            ORDER BY t2.reply_count DESC, t2.view_count DESC
             LIMIT ?
             """;
         return getMultipleTopics(sql, topicId, topicId, limit);
@@ -581,44 +1085,92 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
         return getMultipleTopics(sql, forumId);
     }
 
-    // 私有辅助方法：获取单个主题
-    private Topic getSingleTopic(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return mapResultSetToTopic(rs);
+    // 私有辅助方法：按ID批量加载正常状态的主题，保持传入顺序
+    private List<Topic> getTopicsByIds(List<Integer> topicIds) {
+        return getTopicsByIds(topicIds, "*");
+    }
+
+    // 按给定的列读取，列中须包含 mapResultSetToTopic 用到的所有列名
+    private List<Topic> getTopicsByIds(List<Integer> topicIds, String columns) {
+        if (topicIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Topic> byId = new HashMap<>();
+        for (int from = 0; from < topicIds.size(); from += IN_QUERY_BATCH_SIZE) {
+            List<Integer> batch = topicIds.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, topicIds.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT " + columns + " FROM topics WHERE status = 'normal' AND topic_id IN (" + placeholders + ")";
+            for (Topic topic : getMultipleTopics(sql, batch.toArray())) {
+                byId.put(topic.getTopicId(), topic);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return null;
+        
+        List<Topic> topics = new ArrayList<>(topicIds.size());
+        for (Integer topicId : topicIds) {
+            Topic topic = byId.get(topicId);
+            if (topic != null) {
+                topics.add(topic);
+            }
+        }
+        return topics;
+    }
+
+    // 私有辅助方法：获取单个主题
+    private Topic getSingleTopic(String sql, Object... params) {
+        return queryForObject(sql, this::mapResultSetToTopic, params);
     }
 
     // 私有辅助方法：获取多个主题
     private List<Topic> getMultipleTopics(String sql, Object... params) {
-        List<Topic> topics = new ArrayList<>();
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            while (rs != null && rs.next()) {
-                topics.add(mapResultSetToTopic(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return topics;
+        return queryForList(sql, this::mapResultSetToTopic, params);
     }
 
     // 私有辅助方法：获取数量
     private int getCount(String sql, Object... params) {
-        try {
-            ResultSet rs = executeQuery(sql, params);
-            if (rs != null && rs.next()) {
-                return rs.getInt("count");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        return queryForInt(sql, params);
+    }
+
+    private static CounterKey replyCountKey(int topicId) {
+        return new CounterKey("topics", "topic_id", "reply_count", topicId);
+    }
+
+    // 私有辅助方法：映射建索引所需的列
+    private static Topic mapSearchableTopic(ResultSet rs) throws SQLException {
+        Topic topic = new Topic();
+        topic.setTopicId(rs.getInt("topic_id"));
+        topic.setForumId(rs.getInt("forum_id"));
+        topic.setUserId(rs.getInt("user_id"));
+        topic.setTitle(rs.getString("title"));
+        topic.setContent(rs.getString("content"));
+        topic.setStatus(Topic.TopicStatus.fromValue(rs.getString("status")));
+        // 排序用的计数同样叠加尚未写回的增量
+        int viewCount = rs.getInt("view_count");
+        topic.setViewCount(VIEW_COUNTS != null ? (int) (viewCount + VIEW_COUNTS.getUnflushed(topic.getTopicId())) : viewCount);
+        topic.setReplyCount((int) Math.max(0, rs.getInt("reply_count") + CounterDaoImpl.getPending(replyCountKey(topic.getTopicId()))));
+        Timestamp createTime = rs.getTimestamp("create_time");
+        if (createTime != null) {
+            topic.setCreateTime(createTime.toLocalDateTime());
+        }
+        Timestamp lastReplyTime = rs.getTimestamp("last_reply_time");
+        if (lastReplyTime != null) {
+            topic.setLastReplyTime(lastReplyTime.toLocalDateTime());
+        }
+        return topic;
+    }
+
+    // 私有辅助方法：映射建索引所需的回复列
+    private static Reply mapSearchableReply(ResultSet rs) throws SQLException {
+        Reply reply = new Reply();
+        reply.setReplyId(rs.getInt("reply_id"));
+        reply.setTopicId(rs.getInt("topic_id"));
+        reply.setUserId(rs.getInt("user_id"));
+        reply.setContent(rs.getString("content"));
+        reply.setStatus(Reply.ReplyStatus.fromValue(rs.getString("status")));
+        Timestamp createTime = rs.getTimestamp("create_time");
+        if (createTime != null) {
+            reply.setCreateTime(createTime.toLocalDateTime());
         }
-        return 0;
+        return reply;
     }
 
     // 私有辅助方法：将ResultSet映射为Topic对象
@@ -631,8 +1183,10 @@ public class TopicDaoImpl extends BaseDao implements TopicDao {
         topic.setContent(rs.getString("content"));
         topic.setPinned(rs.getBoolean("is_pinned"));
         topic.setLocked(rs.getBoolean("is_locked"));
-        topic.setViewCount(rs.getInt("view_count"));
-        topic.setReplyCount(rs.getInt("reply_count"));
+        // 叠加尚未写回的浏览增量
+        int viewCount = rs.getInt("view_count");
+        topic.setViewCount(VIEW_COUNTS != null ? (int) (viewCount + VIEW_COUNTS.getUnflushed(topic.getTopicId())) : viewCount);
+        topic.setReplyCount((int) Math.max(0, rs.getInt("reply_count") + CounterDaoImpl.getPending(replyCountKey(topic.getTopicId()))));
         topic.setLastReplyUserId(rs.getInt("last_reply_user_id"));
         topic.setStatus(Topic.TopicStatus.fromValue(rs.getString("status")));
 
@@ -3,21 +3,64 @@ package main.forumsystem.src.dao.impl;
 import main.forumsystem.src.dao.BaseDao;
 import main.forumsystem.src.dao.UserDao;
 import main.forumsystem.src.entity.User;
+import main.forumsystem.src.util.CounterAggregator;
+import main.forumsystem.src.util.CounterAggregator.CounterKey;
+import main.forumsystem.src.util.PrefixIndex;
+import main.forumsystem.src.util.TransactionTemplate;
+import main.forumsystem.src.util.UserCache;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户数据访问实现类
  */
 public class UserDaoImpl implements UserDao {
 
+    // IN 查询每批最多的ID数量
+    private static final int IN_QUERY_BATCH_SIZE = 500;
+
+    // 所有实例共享的用户缓存，用户信息变更时失效
+    private static final UserCache CACHE = new UserCache(
+            BaseDao.getIntConfig("userCache.maxSize", 1000),
+            BaseDao.getLongConfig("userCache.ttlMillis", 60000));
+
+    // 用户名和昵称的前缀补全索引，首次查询时加载，写操作提交后更新
+    private static final PrefixIndex NAME_INDEX = new PrefixIndex(() -> TransactionTemplate.inTransaction(() -> {
+        Map<Integer, List<String>> names = new HashMap<>();
+        BaseDao.query("SELECT user_id, username, nick_name FROM users",
+                rs -> names.put(rs.getInt("user_id"), Arrays.asList(rs.getString("username"), rs.getString("nick_name"))));
+        if (TransactionTemplate.isRollbackOnly()) {
+            throw new IllegalStateException("加载用户名索引失败！");
+        }
+        return names;
+    }));
+
+    static {
+        // 计数写回后缓存中的帖子数已过时
+        CounterAggregator counters = CounterDaoImpl.getAggregator();
+        if (counters != null) {
+            counters.addFlushListener(key -> {
+                if ("users".equals(key.getTable())) {
+                    CACHE.invalidate(key.getId());
+                }
+            });
+        }
+    }
+
     /**
      * 添加用户到数据库。
      * 如果用户的注册时间为空，则设置为当前时间。
@@ -43,7 +86,7 @@ public class UserDaoImpl implements UserDao {
             }
             
             conn = BaseDao.getConnection();
-            pstmt = conn.prepareStatement(sql);
+            pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             
             // 设置SQL参数
             pstmt.setString(1, user.getUsername());
@@ -60,6 +103,14 @@ public class UserDaoImpl implements UserDao {
             
             // 执行插入操作
             int result = pstmt.executeUpdate();
+            if (result > 0) {
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        user.setUserId(keys.getInt(1));
+                        indexNamesAfterCommit(user);
+                    }
+                }
+            }
             return result > 0;
             
         } catch (SQLException e) {
@@ -89,20 +140,25 @@ public class UserDaoImpl implements UserDao {
             pstmt.setInt(1, userId);
             
             int result = pstmt.executeUpdate();
+            if (result > 0) {
+                TransactionTemplate.afterCommit(() -> NAME_INDEX.remove(userId));
+            }
             return result > 0;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
     @Override
     public boolean updateUser(User user) {
+        // 帖子数由 updatePostCount 维护，这里写回会覆盖尚未落库的增量
         String sql = """
             UPDATE users SET username = ?, email = ?, nick_name = ?, avatar = ?, 
-                           role = ?, status = ?, post_count = ?, reputation = ? 
+                           role = ?, status = ?, reputation = ? 
             WHERE user_id = ?
             """;
         
@@ -119,11 +175,13 @@ public class UserDaoImpl implements UserDao {
             pstmt.setString(4, user.getAvatar());
             pstmt.setString(5, user.getRole().getValue());
             pstmt.setString(6, user.getStatus().getValue());
-            pstmt.setInt(7, user.getPostCount());
-            pstmt.setInt(8, user.getReputation());
-            pstmt.setInt(9, user.getUserId());
+            pstmt.setInt(7, user.getReputation());
+            pstmt.setInt(8, user.getUserId());
             
             int result = pstmt.executeUpdate();
+            if (result > 0) {
+                indexNamesAfterCommit(user);
+            }
             return result > 0;
             
         } catch (SQLException e) {
@@ -131,19 +189,75 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(user.getUserId());
         }
     }
 
     @Override
     public User getUserById(int userId) {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
-        return getSingleUser(sql, userId);
+        // 事务中可能读到未提交的数据，不经过缓存
+        if (TransactionTemplate.isActive()) {
+            return withPendingCounts(loadUserById(userId));
+        }
+        return withPendingCounts(CACHE.getById(userId, this::loadUserById));
     }
 
     @Override
     public User getUserByUsername(String username) {
+        if (TransactionTemplate.isActive()) {
+            return withPendingCounts(loadUserByUsername(username));
+        }
+        return withPendingCounts(CACHE.getByUsername(username, this::loadUserByUsername));
+    }
+
+    /**
+     * 获取用户缓存状态
+     * @return UserCache.CacheStats 状态快照
+     */
+    public static UserCache.CacheStats getCacheStats() {
+        return CACHE.getStats();
+    }
+
+    // 提交后更新补全索引，不在事务中时立即更新
+    private static void indexNamesAfterCommit(User user) {
+        int userId = user.getUserId();
+        String username = user.getUsername();
+        String nickName = user.getNickName();
+        TransactionTemplate.afterCommit(() -> NAME_INDEX.put(userId, username, nickName));
+    }
+
+    // 立即失效；处于事务中时提交后再失效一次，防止事务期间其他线程读回旧数据
+    private static void invalidateCache(int userId) {
+        CACHE.invalidate(userId);
+        if (TransactionTemplate.isActive()) {
+            TransactionTemplate.afterCompletion(() -> CACHE.invalidate(userId));
+        }
+    }
+
+    // 缓存中保存数据库中的原值，读出时再叠加未落库的计数增量
+    private User loadUserById(int userId) {
+        String sql = "SELECT * FROM users WHERE user_id = ?";
+        return loadSingleUser(sql, userId);
+    }
+
+    private User loadUserByUsername(String username) {
         String sql = "SELECT * FROM users WHERE username = ?";
-        return getSingleUser(sql, username);
+        return loadSingleUser(sql, username);
+    }
+
+    // 叠加尚未写回的帖子数增量
+    private static User withPendingCounts(User user) {
+        if (user != null) {
+            long pending = CounterDaoImpl.getPending(postCountKey(user.getUserId()));
+            if (pending != 0) {
+                user.setPostCount((int) Math.max(0, user.getPostCount() + pending));
+            }
+        }
+        return user;
+    }
+
+    private static CounterKey postCountKey(int userId) {
+        return new CounterKey("users", "user_id", "post_count", userId);
     }
 
     @Override
@@ -206,6 +320,24 @@ public class UserDaoImpl implements UserDao {
         return false;
     }
 
+    @Override
+    public List<User> getUsersByIds(Collection<Integer> userIds) {
+        List<User> users = new ArrayList<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return users;
+        }
+        
+        // 去重后按批次拼接占位符，避免单条SQL参数过多
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        for (int from = 0; from < ids.size(); from += IN_QUERY_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + IN_QUERY_BATCH_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT * FROM users WHERE user_id IN (" + placeholders + ")";
+            users.addAll(getMultipleUsers(sql, batch.toArray()));
+        }
+        return users;
+    }
+
     @Override
     public List<User> getAllUsers() {
         String sql = "SELECT * FROM users ORDER BY register_time DESC";
@@ -250,11 +382,18 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
     @Override
     public boolean updatePostCount(int userId, int increment) {
+        // 启用计数聚合时只记录增量，由后台批量写回
+        CounterAggregator counters = CounterDaoImpl.getAggregator();
+        if (counters != null && counters.add(postCountKey(userId), increment)) {
+            return true;
+        }
+
         String sql = "UPDATE users SET post_count = post_count + ? WHERE user_id = ?";
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -272,6 +411,7 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
@@ -294,6 +434,7 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
@@ -316,6 +457,7 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
@@ -338,6 +480,7 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
@@ -360,6 +503,7 @@ public class UserDaoImpl implements UserDao {
             return false;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            invalidateCache(userId);
         }
     }
 
@@ -370,6 +514,24 @@ public class UserDaoImpl implements UserDao {
         return getMultipleUsers(sql, searchPattern, searchPattern);
     }
 
+    @Override
+    public List<User> suggestUsers(String prefix, int limit) {
+        List<Integer> userIds = NAME_INDEX.suggest(prefix, limit);
+        Map<Integer, User> byId = new HashMap<>();
+        for (User user : getUsersByIds(userIds)) {
+            byId.put(user.getUserId(), user);
+        }
+        // 按补全索引的顺序返回
+        List<User> users = new ArrayList<>(userIds.size());
+        for (int userId : userIds) {
+            User user = byId.get(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
     @Override
     public int getUserCount() {
         String sql = "SELECT COUNT(*) as count FROM users";
@@ -414,17 +576,34 @@ public class UserDaoImpl implements UserDao {
                 pstmt.setInt(i + 1, userIds[i]);
             }
             
-            return pstmt.executeUpdate();
+            int result = pstmt.executeUpdate();
+            if (result > 0) {
+                TransactionTemplate.afterCommit(() -> {
+                    for (int userId : userIds) {
+                        NAME_INDEX.remove(userId);
+                    }
+                });
+            }
+            return result;
         } catch (SQLException e) {
             e.printStackTrace();
             return 0;
         } finally {
             BaseDao.close(conn, pstmt, null);
+            CACHE.invalidateAll();
+            if (TransactionTemplate.isActive()) {
+                TransactionTemplate.afterCompletion(CACHE::invalidateAll);
+            }
         }
     }
 
     // 私有辅助方法：获取单个用户
     private User getSingleUser(String sql, Object... params) {
+        return withPendingCounts(loadSingleUser(sql, params));
+    }
+
+    // 私有辅助方法：获取单个用户，不叠加未落库的计数
+    private User loadSingleUser(String sql, Object... params) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -466,7 +645,7 @@ public class UserDaoImpl implements UserDao {
             
             rs = pstmt.executeQuery();
             while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
+                users.add(withPendingCounts(mapResultSetToUser(rs)));
             }
         } catch (SQLException e) {
             e.printStackTrace();
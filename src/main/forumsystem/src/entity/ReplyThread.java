@@ -0,0 +1,124 @@
+package main.forumsystem.src.entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回复树（楼中楼）
+ * 以顶级回复为分支，每个分支下按回复关系挂载子回复，同级按发表时间排序
+ */
+public class ReplyThread {
+    private final List<Node> branches;
+    private final boolean hasMoreBranches;
+    private final boolean truncated;
+
+    public ReplyThread(List<Node> branches, boolean hasMoreBranches, boolean truncated) {
+        this.branches = branches;
+        this.hasMoreBranches = hasMoreBranches;
+        this.truncated = truncated;
+    }
+
+    /**
+     * 由回复列表组装回复树
+     * 先建立 ID 到节点的映射再挂载父子关系，整体 O(n)。
+     * 父回复不在列表中（已删除或超出加载范围）的回复会被丢弃，超过最大深度的回复同样丢弃。
+     * @param replies 回复列表，应按发表时间升序排列
+     * @param maxDepth 最大深度，顶级回复深度为0
+     * @return 顶级回复节点列表
+     */
+    public static List<Node> assemble(List<Reply> replies, int maxDepth) {
+        Map<Integer, Node> nodesById = new HashMap<>();
+        for (Reply reply : replies) {
+            nodesById.put(reply.getReplyId(), new Node(reply));
+        }
+
+        List<Node> roots = new ArrayList<>();
+        for (Reply reply : replies) {
+            Node node = nodesById.get(reply.getReplyId());
+            if (reply.getReplyToId() <= 0) {
+                roots.add(node);
+            } else {
+                Node parent = nodesById.get(reply.getReplyToId());
+                if (parent != null && parent != node) {
+                    parent.children.add(node);
+                }
+            }
+        }
+
+        for (Node root : roots) {
+            assignDepth(root, 0, maxDepth);
+        }
+        return roots;
+    }
+
+    // 自顶向下计算深度，剪掉超过最大深度的子树；用显式栈避免深层递归
+    private static void assignDepth(Node root, int rootDepth, int maxDepth) {
+        List<Node> stack = new ArrayList<>();
+        root.depth = rootDepth;
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            if (node.depth >= maxDepth) {
+                node.children.clear();
+                continue;
+            }
+            for (Node child : node.children) {
+                child.depth = node.depth + 1;
+                stack.add(child);
+            }
+        }
+    }
+
+    /**
+     * 按先序遍历展开为列表（父回复在前，子回复紧随其后）
+     * @return 回复列表
+     */
+    public List<Reply> flatten() {
+        List<Reply> replies = new ArrayList<>();
+        List<Node> stack = new ArrayList<>();
+        for (int i = branches.size() - 1; i >= 0; i--) {
+            stack.add(branches.get(i));
+        }
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            replies.add(node.reply);
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                stack.add(node.children.get(i));
+            }
+        }
+        return replies;
+    }
+
+    // Getters
+    public List<Node> getBranches() { return branches; }
+
+    /**
+     * 是否还有下一页顶级回复
+     */
+    public boolean hasMoreBranches() { return hasMoreBranches; }
+
+    /**
+     * 是否因回复总数限制而省略了部分回复
+     */
+    public boolean isTruncated() { return truncated; }
+
+    /**
+     * 回复树节点
+     */
+    public static class Node {
+        private final Reply reply;
+        private final List<Node> children = new ArrayList<>();
+        private int depth;
+
+        public Node(Reply reply) {
+            this.reply = reply;
+        }
+
+        // Getters
+        public Reply getReply() { return reply; }
+        public List<Node> getChildren() { return children; }
+        public int getDepth() { return depth; }
+    }
+}
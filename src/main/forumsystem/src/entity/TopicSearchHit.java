@@ -0,0 +1,31 @@
+package main.forumsystem.src.entity;
+
+/**
+ * 讨论搜索结果
+ * 一个主题只出现一次：主题本身或其下某条回复命中时都折叠到该主题，
+ * 并附上得分最高的那篇（主题正文或回复）中命中位置附近的摘录。
+ */
+public class TopicSearchHit {
+    private final Topic topic;
+    private final Reply matchedReply;
+    private final String excerpt;
+
+    public TopicSearchHit(Topic topic, Reply matchedReply, String excerpt) {
+        this.topic = topic;
+        this.matchedReply = matchedReply;
+        this.excerpt = excerpt;
+    }
+
+    // Getters
+    public Topic getTopic() { return topic; }
+
+    /**
+     * 得分最高的回复，主题本身得分最高时为null
+     */
+    public Reply getMatchedReply() { return matchedReply; }
+
+    /**
+     * 命中位置附近的摘录，命中的词用【】标出，没有正文时为空字符串
+     */
+    public String getExcerpt() { return excerpt; }
+}
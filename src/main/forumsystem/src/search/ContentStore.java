@@ -0,0 +1,251 @@
+package main.forumsystem.src.search;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 正文缓存
+ * 按文档键（主题为主题ID，回复为负的回复ID）保存正文，用于生成搜索结果摘录，
+ * 命中时不必再从数据库读取正文。正文以 UTF-8 保存，较长的正文用 Deflate 压缩，只在压缩后更小时才保存压缩结果。
+ * 按访问顺序做LRU淘汰，总字节数（含每个条目的估算开销）不超过上限。
+ *
+ * 索引更新时写入最新正文；查询未命中时由调用方从数据库读回，用 {@link #putIfAbsent} 放入，
+ * 不会覆盖读取期间索引更新写入的新正文。压缩和解压在锁外进行。
+ */
+public class ContentStore {
+
+    // 不低于该字节数的正文才尝试压缩
+    private static final int COMPRESS_THRESHOLD = 256;
+    // 每个条目的对象头、数组头和链表节点开销估算
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long rawBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes 最多占用的字节数，0表示关闭缓存
+     */
+    public ContentStore(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * 获取正文
+     * @param key 文档键
+     * @return 正文，未缓存时返回null
+     */
+    public String get(int key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.decode();
+    }
+
+    /**
+     * 写入正文，替换原有内容，索引更新时调用
+     * @param key 文档键
+     * @param content 正文，null按空串保存
+     */
+    public void put(int key, String content) {
+        if (maxBytes == 0) {
+            return;
+        }
+        Entry entry = Entry.encode(content);
+        synchronized (this) {
+            add(key, entry);
+        }
+    }
+
+    /**
+     * 写入从数据库读回的正文，已有内容时不覆盖
+     * @param key 文档键
+     * @param content 正文
+     */
+    public void putIfAbsent(int key, String content) {
+        if (maxBytes == 0) {
+            return;
+        }
+        Entry entry = Entry.encode(content);
+        synchronized (this) {
+            if (!entries.containsKey(key)) {
+                add(key, entry);
+            }
+        }
+    }
+
+    /**
+     * 移除正文，文档删除时调用
+     * @param key 文档键
+     */
+    public synchronized void remove(int key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * 清空缓存，索引全量重建后调用
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        rawBytes = 0;
+    }
+
+    /**
+     * 获取缓存状态
+     * @return StoreStats 状态快照
+     */
+    public synchronized StoreStats getStats() {
+        return new StoreStats(entries.size(), bytes, rawBytes, maxBytes, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void add(int key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            release(previous);
+        }
+        bytes += entry.size();
+        rawBytes += entry.rawLength;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            release(evicted);
+            evictions.increment();
+        }
+    }
+
+    private void release(Entry entry) {
+        bytes -= entry.size();
+        rawBytes -= entry.rawLength;
+    }
+
+    /**
+     * 缓存条目：UTF-8 字节，compressed 为true时是 Deflate 压缩后的字节
+     */
+    private static final class Entry {
+        private final byte[] data;
+        private final int rawLength;
+        private final boolean compressed;
+
+        Entry(byte[] data, int rawLength, boolean compressed) {
+            this.data = data;
+            this.rawLength = rawLength;
+            this.compressed = compressed;
+        }
+
+        static Entry encode(String content) {
+            byte[] raw = (content != null ? content : "").getBytes(StandardCharsets.UTF_8);
+            if (raw.length < COMPRESS_THRESHOLD) {
+                return new Entry(raw, raw.length, false);
+            }
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+                byte[] buffer = new byte[Math.min(raw.length, 8192)];
+                while (!deflater.finished() && out.size() < raw.length) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return deflater.finished() && out.size() < raw.length
+                        ? new Entry(out.toByteArray(), raw.length, true)
+                        : new Entry(raw, raw.length, false);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        String decode() {
+            if (!compressed) {
+                return new String(data, StandardCharsets.UTF_8);
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                byte[] raw = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    length += inflater.inflate(raw, length, rawLength - length);
+                }
+                return new String(raw, 0, length, StandardCharsets.UTF_8);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("正文缓存数据损坏", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        long size() {
+            return data.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * 缓存状态快照
+     */
+    public static class StoreStats {
+        private final int size;
+        private final long bytes;
+        private final long rawBytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        StoreStats(int size, long bytes, long rawBytes, long maxBytes, long hits, long misses, long evictions) {
+            this.size = size;
+            this.bytes = bytes;
+            this.rawBytes = rawBytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        // Getters
+        public int getSize() { return size; }
+        public long getBytes() { return bytes; }
+        public long getRawBytes() { return rawBytes; }
+        public long getMaxBytes() { return maxBytes; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+
+        /**
+         * 命中率，尚无访问时为0
+         */
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("条目: %d, 占用: %.1f/%.1fMB (正文 %.1fMB), 命中率: %.1f%% (%d/%d), 淘汰: %d",
+                    size, bytes / 1048576.0, maxBytes / 1048576.0, rawBytes / 1048576.0,
+                    getHitRatio() * 100, hits, hits + misses, evictions);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package main.forumsystem.src.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 磁盘段
+ * 不可变的段文件，通过 {@link FileChannel#map} 只读映射。堆上只保留词典（词、文档频率、倒排表偏移）
+ * 和删除标记，文档元数据和倒排表按需从映射区读取，查询时才解码用到的倒排表。
+ *
+ * 文件格式（版本4，大端序）：
+ * <pre>
+ * 文件头   magic, version, docCount, termCount (int)；docsOffset, idMapOffset, postingsOffset, termsOffset, fileLength,
+ *          sumTitleLength, sumContentLength, signaturesOffset, topicDocCount (long)
+ * 文档区   每篇文档定长：topicId, replyId, forumId, userId (int), createTime, lastActiveTime (long),
+ *          titleLength, contentLength, replyCount, viewCount, signatureSlot (int)
+ * 键区     按键排序的 (key, ord) 对，键见 {@link Segment#ordinalOf}
+ * 签名区   每篇主题文档 {@link MinHash#NUM_HASHES} 个 int，按签名槽位存放；回复文档的槽位为-1
+ * 倒排区   每个词连续存放各倒排项：文档序号差值、标题词频、正文词频、位置数、位置差值（均为变长整数）
+ * 词典区   每个词：长度、各字符、文档频率、倒排表偏移差值（均为变长整数）
+ * </pre>
+ * 旧版本缺少排序所需的字段、签名、回复文档或中文单字，加载时报错，由调用方从数据库重建。删除标记不写入段文件，由清单记录。删除方法由 {@link InvertedIndex} 在写锁内调用。
+ */
+final class DiskSegment extends Segment {
+
+    static final int MAGIC = 0x46534958;
+    static final int VERSION = 5;
+    static final int HEADER_BYTES = 4 * 4 + 8 * 9;
+    static final int DOC_BYTES = 4 * 4 + 8 * 2 + 4 * 5;
+
+    private final String name;
+    private final long fileBytes;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int docsOffset;
+    private final int idMapOffset;
+    private final int postingsOffset;
+    private final long sumTitleLength;
+    private final long sumContentLength;
+    private final int signaturesOffset;
+    private final int topicDocCount;
+
+    private final TermDictionary terms = new TermDictionary();
+    private final int[] docFreqs;
+    private final int[] termOffsets;
+
+    private final BitSet deleted;
+    private int liveCount;
+
+    private DiskSegment(String name, long fileBytes, MappedByteBuffer buffer, BitSet deleted) throws IOException {
+        this.name = name;
+        this.fileBytes = fileBytes;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是索引段文件: " + name);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("不支持的索引段版本 " + version + ": " + name);
+        }
+        this.docCount = buffer.getInt(8);
+        int termCount = buffer.getInt(12);
+        this.docsOffset = (int) buffer.getLong(16);
+        this.idMapOffset = (int) buffer.getLong(24);
+        this.postingsOffset = (int) buffer.getLong(32);
+        int termsOffset = (int) buffer.getLong(40);
+        if (buffer.getLong(48) != fileBytes) {
+            throw new IOException("索引段文件不完整: " + name);
+        }
+        this.sumTitleLength = buffer.getLong(56);
+        this.sumContentLength = buffer.getLong(64);
+        this.signaturesOffset = (int) buffer.getLong(72);
+        this.topicDocCount = (int) buffer.getLong(80);
+
+        this.docFreqs = new int[termCount];
+        this.termOffsets = new int[termCount];
+        Reader reader = new Reader(termsOffset);
+        char[] term = new char[16];
+        int offset = 0;
+        for (int termId = 0; termId < termCount; termId++) {
+            int length = reader.readVInt();
+            if (length > term.length) {
+                term = new char[Math.max(length, term.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                term[i] = (char) reader.readVInt();
+            }
+            terms.add(term, 0, length);
+            docFreqs[termId] = reader.readVInt();
+            offset += reader.readVInt();
+            termOffsets[termId] = offset;
+        }
+
+        this.deleted = deleted != null ? deleted : new BitSet();
+        this.liveCount = docCount - this.deleted.cardinality();
+    }
+
+    /**
+     * 映射段文件并读取词典
+     * @param file 段文件
+     * @param deleted 已删除的序号，可以为null
+     */
+    static DiskSegment open(File file, BitSet deleted) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("索引段文件长度异常: " + file.getName());
+            }
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new DiskSegment(file.getName(), length, buffer, deleted);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    long fileBytes() {
+        return fileBytes;
+    }
+
+    /**
+     * 删除标记的副本
+     */
+    BitSet deletedDocs() {
+        return (BitSet) deleted.clone();
+    }
+
+    /**
+     * 标记键对应的文档为删除
+     * @param key 主题ID或回复键
+     * @return 该文档是否在本段中存活
+     */
+    boolean delete(int key) {
+        int ord = ordinalOf(key);
+        return ord >= 0 && deleteOrdinal(ord);
+    }
+
+    boolean deleteOrdinal(int ord) {
+        if (deleted.get(ord)) {
+            return false;
+        }
+        deleted.set(ord);
+        liveCount--;
+        return true;
+    }
+
+    // 在键区二分查找
+    @Override
+    int ordinalOf(int key) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = buffer.getInt(idMapOffset + mid * 8);
+            if (id < key) {
+                low = mid + 1;
+            } else if (id > key) {
+                high = mid - 1;
+            } else {
+                int ord = buffer.getInt(idMapOffset + mid * 8 + 4);
+                return deleted.get(ord) ? -1 : ord;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按词典中的编号解码倒排表，供合并使用
+     */
+    PostingList postings(int termId) {
+        int docFreq = docFreqs[termId];
+        PostingList list = new PostingList();
+        Reader reader = new Reader(postingsOffset + termOffsets[termId]);
+        int[] positions = new int[16];
+        int doc = 0;
+        for (int i = 0; i < docFreq; i++) {
+            doc += reader.readVInt();
+            int titleFreq = reader.readVInt();
+            int contentFreq = reader.readVInt();
+            int count = reader.readVInt();
+            if (count > positions.length) {
+                positions = new int[Math.max(count, positions.length * 2)];
+            }
+            int position = 0;
+            for (int j = 0; j < count; j++) {
+                position += reader.readVInt();
+                positions[j] = position;
+            }
+            list.add(doc, titleFreq, contentFreq, positions, count);
+        }
+        return list;
+    }
+
+    TermDictionary terms() {
+        return terms;
+    }
+
+    @Override
+    int maxDoc() {
+        return docCount;
+    }
+
+    @Override
+    int liveDocs() {
+        return liveCount;
+    }
+
+    @Override
+    boolean isLive(int ord) {
+        return !deleted.get(ord);
+    }
+
+    @Override
+    PostingList postings(String term) {
+        int termId = terms.find(term);
+        return termId >= 0 ? postings(termId) : null;
+    }
+
+    @Override
+    int docFreq(String term) {
+        int termId = terms.find(term);
+        return termId >= 0 ? docFreqs[termId] : 0;
+    }
+
+    @Override
+    int termCount() {
+        return terms.size();
+    }
+
+    @Override
+    int topicId(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES);
+    }
+
+    @Override
+    int replyId(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 4);
+    }
+
+    @Override
+    int forumId(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 8);
+    }
+
+    @Override
+    int userId(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 12);
+    }
+
+    @Override
+    long createTime(int ord) {
+        return buffer.getLong(docsOffset + ord * DOC_BYTES + 16);
+    }
+
+    @Override
+    long lastActiveTime(int ord) {
+        return buffer.getLong(docsOffset + ord * DOC_BYTES + 24);
+    }
+
+    @Override
+    int titleLength(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 32);
+    }
+
+    @Override
+    int contentLength(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 36);
+    }
+
+    @Override
+    int replyCount(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 40);
+    }
+
+    @Override
+    int viewCount(int ord) {
+        return buffer.getInt(docsOffset + ord * DOC_BYTES + 44);
+    }
+
+    @Override
+    void signature(int ord, int[] out) {
+        int slot = buffer.getInt(docsOffset + ord * DOC_BYTES + 48);
+        if (slot < 0) {
+            Arrays.fill(out, Integer.MAX_VALUE);
+            return;
+        }
+        int offset = signaturesOffset + slot * 4 * MinHash.NUM_HASHES;
+        for (int i = 0; i < MinHash.NUM_HASHES; i++) {
+            out[i] = buffer.getInt(offset + i * 4);
+        }
+    }
+
+    @Override
+    int topicDocs() {
+        return topicDocCount;
+    }
+
+    @Override
+    long sumTitleLength() {
+        return sumTitleLength;
+    }
+
+    @Override
+    long sumContentLength() {
+        return sumContentLength;
+    }
+
+    @Override
+    long heapBytes() {
+        return terms.estimatedBytes() + 8L * docFreqs.length + deleted.size() / 8 + 64;
+    }
+
+    /**
+     * 映射区上的顺序读取器，只使用绝对位置读取，多个查询可并发读同一段
+     */
+    private final class Reader {
+        private int position;
+
+        Reader(int position) {
+            this.position = position;
+        }
+
+        int readVInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package main.forumsystem.src.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 摘录生成器
+ * 用与索引相同的分词规则对正文分词（归一化逐字符进行，词的偏移即原文偏移），找出所有命中查询词的位置，
+ * 选出包含不同查询词最多（其次命中次数最多）的一段窗口，在原文上给命中部分加标记。
+ * 二元词相互重叠（"数据"、"据库"），相邻或重叠的命中合并为一处标记。整体为 O(正文长度)。
+ */
+public class Highlighter {
+
+    private final int maxLength;
+    private final String open;
+    private final String close;
+
+    /**
+     * @param maxLength 摘录的最大字符数（不含标记和省略号）
+     * @param open 命中部分前的标记
+     * @param close 命中部分后的标记
+     */
+    public Highlighter(int maxLength, String open, String close) {
+        this.maxLength = Math.max(1, maxLength);
+        this.open = open;
+        this.close = close;
+    }
+
+    /**
+     * 生成摘录
+     * @param text 正文，可以为null
+     * @param terms 查询词（已归一化，即 {@link SearchQuery#parseClauses()} 中的词）
+     * @return 摘录，没有命中时取正文开头，正文为空时返回空字符串
+     */
+    public String highlight(String text, Set<String> terms) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        // 命中的词：起点、终点和词在 terms 中的编号
+        List<int[]> matches = new ArrayList<>();
+        Map<String, Integer> termIds = new HashMap<>();
+        int maxTermLength = 0;
+        for (String term : terms) {
+            termIds.putIfAbsent(term, termIds.size());
+            maxTermLength = Math.max(maxTermLength, term.length());
+        }
+        if (!termIds.isEmpty()) {
+            int longest = maxTermLength;
+            Tokenizer.tokenize(text, (buffer, offset, length, position) -> {
+                if (length > longest) {
+                    return;
+                }
+                Integer termId = termIds.get(new String(buffer, offset, length));
+                if (termId != null) {
+                    matches.add(new int[]{offset, offset + length, termId});
+                }
+            });
+        }
+
+        int begin = bestWindow(matches, termIds.size());
+        if (begin > 0) {
+            // 命中位置前保留约四分之一长度的上下文，靠近结尾时整体前移
+            begin = Math.max(0, Math.min(begin - maxLength / 4, text.length() - maxLength));
+        }
+        int end = Math.min(text.length(), begin + maxLength);
+
+        StringBuilder snippet = new StringBuilder(end - begin + 16);
+        if (begin > 0) {
+            snippet.append("...");
+        }
+        int cursor = begin;
+        int i = 0;
+        while (i < matches.size()) {
+            int start = matches.get(i)[0];
+            int stop = matches.get(i)[1];
+            i++;
+            while (i < matches.size() && matches.get(i)[0] <= stop) {
+                stop = Math.max(stop, matches.get(i)[1]);
+                i++;
+            }
+            start = Math.max(start, begin);
+            stop = Math.min(stop, end);
+            if (start >= stop) {
+                continue;
+            }
+            appendPlain(snippet, text, cursor, start);
+            snippet.append(open);
+            appendPlain(snippet, text, start, stop);
+            snippet.append(close);
+            cursor = stop;
+        }
+        appendPlain(snippet, text, cursor, end);
+        if (end < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString().trim();
+    }
+
+    // 滑动窗口：以某个命中为起点的窗口中不同词最多、其次命中最多的起点，没有命中时为0
+    // 窗口长度扣除前面保留的上下文，选中的命中在摘录中都能完整显示
+    private int bestWindow(List<int[]> matches, int termCount) {
+        int best = 0;
+        int bestDistinct = 0;
+        int bestCount = 0;
+        int[] counts = new int[termCount];
+        int distinct = 0;
+        int right = 0;
+        for (int left = 0; left < matches.size(); left++) {
+            // 比窗口还长的词不会被计入，右端可能落后于左端
+            right = Math.max(right, left);
+            int limit = matches.get(left)[0] + maxLength - maxLength / 4;
+            while (right < matches.size() && matches.get(right)[1] <= limit) {
+                if (counts[matches.get(right)[2]]++ == 0) {
+                    distinct++;
+                }
+                right++;
+            }
+            int count = right - left;
+            if (distinct > bestDistinct || (distinct == bestDistinct && count > bestCount)) {
+                best = matches.get(left)[0];
+                bestDistinct = distinct;
+                bestCount = count;
+            }
+            if (right > left && --counts[matches.get(left)[2]] == 0) {
+                distinct--;
+            }
+        }
+        return best;
+    }
+
+    // 换行和连续空白压缩为一个空格，摘录保持单行
+    private static void appendPlain(StringBuilder snippet, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (snippet.length() > 0 && snippet.charAt(snippet.length() - 1) != ' ') {
+                    snippet.append(' ');
+                }
+            } else {
+                snippet.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,968 @@
+package main.forumsystem.src.search;
+
+import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.Topic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 主题倒排索引
+ * 主题和回复各自作为文档索引，回复文档记录所属主题。
+ * 由一个可写的内存段和若干不可变的磁盘段组成。新索引的文档追加到内存段，
+ * 修改或删除时在文档所在的段上标记删除；配置了索引目录时，内存段达到一定文档数后写成磁盘段并提交清单。
+ * 磁盘段由后台线程按大小分层合并，合并时丢弃已删除的文档。
+ *
+ * 查询在每个段上从最短的倒排表出发跳跃求交集，再校验短语位置和过滤条件，所有段共用一个有界堆取前K个。
+ * 只查主题时跳过回复文档；包含回复时命中按所属主题折叠，每个主题取得分最高的一篇文档，
+ * 所属主题已不在索引中的回复被忽略（主题删除时不逐条删除其回复，由合并和重建清理）。
+ * 相关度所需的文档数、平均字段长度和文档频率在读锁内跨所有段汇总，同一文档无论落在哪个段得分都相同。
+ * 每个主题的 {@link MinHash} 签名随段保存，存活主题的 LSH 桶只在内存中维护，加载时由段内签名恢复，用于查找相似主题。
+ * 读写通过读写锁隔离，查询之间互不阻塞；写方法之间互斥，写段文件时不持有写锁。
+ */
+public class InvertedIndex {
+
+    // 层内段数达到该值时合并为一个段
+    private static final int MERGE_FACTOR = 4;
+    // 合并后段文件的上限，映射区不能超过2GB
+    private static final long MAX_MERGED_BYTES = 1L << 30;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SegmentDirectory directory;
+    private final int flushDocs;
+    private final ExecutorService merger;
+
+    private MemorySegment buffer = new MemorySegment();
+    // 存活主题的相似度桶，与段在同一写锁内更新
+    private final LshIndex related = new LshIndex();
+    // 写锁内整体替换，读锁内只读
+    private List<DiskSegment> segments = new ArrayList<>();
+    private boolean merging;
+    private boolean closed;
+
+    /**
+     * 纯内存索引
+     */
+    public InvertedIndex() {
+        this(null, 0);
+    }
+
+    /**
+     * @param directory 索引目录，为null时只在内存中保存
+     * @param flushDocs 内存段写成磁盘段的文档数
+     */
+    public InvertedIndex(SegmentDirectory directory, int flushDocs) {
+        this.directory = directory;
+        this.flushDocs = Math.max(1, flushDocs);
+        this.merger = directory == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "search-merger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 按最新的清单加载索引，只映射段文件并读取词典
+     * @param directory 索引目录
+     * @param flushDocs 内存段写成磁盘段的文档数
+     * @throws IOException 没有清单或文件损坏
+     */
+    public static InvertedIndex open(SegmentDirectory directory, int flushDocs) throws IOException {
+        SegmentDirectory.Manifest manifest = directory.readManifest();
+        if (manifest == null) {
+            throw new IOException("索引目录中没有清单");
+        }
+        InvertedIndex index = new InvertedIndex(directory, flushDocs);
+        try {
+            for (int i = 0; i < manifest.segmentNames.size(); i++) {
+                File file = directory.segmentFile(manifest.segmentNames.get(i));
+                index.segments.add(DiskSegment.open(file, manifest.deletions.get(i)));
+            }
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+        index.restoreRelated();
+        synchronized (index) {
+            index.maybeMerge();
+        }
+        return index;
+    }
+
+    /**
+     * 由已构建好的段组装索引，供并行重建使用；段文件尚未写入清单，需要再 {@link #commit()}
+     * @param directory 索引目录，为null时 segments 必须为空
+     * @param flushDocs 内存段写成磁盘段的文档数
+     * @param segments 已写好的磁盘段
+     * @param buffer 作为可写内存段的剩余文档
+     */
+    static InvertedIndex assemble(SegmentDirectory directory, int flushDocs,
+                                  List<DiskSegment> segments, MemorySegment buffer) {
+        InvertedIndex index = new InvertedIndex(directory, flushDocs);
+        index.segments.addAll(segments);
+        index.buffer = buffer;
+        index.restoreRelated();
+        synchronized (index) {
+            index.maybeMerge();
+        }
+        return index;
+    }
+
+    /**
+     * 把内存段的存活文档写成磁盘段文件并映射
+     * 失败时段文件不被引用，下次提交时删除
+     */
+    static DiskSegment writeSegment(SegmentDirectory directory, MemorySegment segment) throws IOException {
+        File file = directory.newSegment();
+        SegmentWriter writer = new SegmentWriter(file);
+        try {
+            segment.writeTo(writer);
+            writer.finish();
+            return DiskSegment.open(file, null);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            directory.release(file.getName());
+            throw e;
+        }
+    }
+
+    /**
+     * 索引主题，已存在时替换旧内容
+     * 分词和文档内词频汇总在加锁之前完成，写锁只覆盖词编号和倒排表的追加
+     * @param topic 主题
+     */
+    public synchronized void index(Topic topic) {
+        MemorySegment.AnalyzedDocument analyzed = MemorySegment.analyze(topic);
+        lock.writeLock().lock();
+        try {
+            delete(topic.getTopicId());
+            buffer.append(topic, analyzed);
+            related.add(topic.getTopicId(), analyzed.signature());
+            buffer.compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        flushIfNeeded();
+    }
+
+    /**
+     * 批量应用变更：索引或替换 updates 中的主题，移除 removals 中的主题
+     * 所有主题先在锁外分词，整批只获取一次写锁，查询看到的要么是整批之前、要么是整批之后的状态
+     * @param updates 需要索引的主题
+     * @param removals 需要移除的主题ID
+     */
+    public void apply(List<Topic> updates, Collection<Integer> removals) {
+        apply(updates, removals, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * 批量应用主题和回复的变更，整批只获取一次写锁
+     * @param updates 需要索引的主题
+     * @param removals 需要移除的主题ID
+     * @param replyUpdates 需要索引的回复
+     * @param replyRemovals 需要移除的回复ID
+     */
+    public synchronized void apply(List<Topic> updates, Collection<Integer> removals,
+                                   List<Reply> replyUpdates, Collection<Integer> replyRemovals) {
+        List<MemorySegment.AnalyzedDocument> analyzed = new ArrayList<>(updates.size());
+        for (Topic topic : updates) {
+            analyzed.add(MemorySegment.analyze(topic));
+        }
+        List<MemorySegment.AnalyzedDocument> analyzedReplies = new ArrayList<>(replyUpdates.size());
+        for (Reply reply : replyUpdates) {
+            analyzedReplies.add(MemorySegment.analyze(reply));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int topicId : removals) {
+                delete(topicId);
+            }
+            for (int replyId : replyRemovals) {
+                delete(Segment.replyKey(replyId));
+            }
+            for (int i = 0; i < updates.size(); i++) {
+                delete(updates.get(i).getTopicId());
+                buffer.append(updates.get(i), analyzed.get(i));
+                related.add(updates.get(i).getTopicId(), analyzed.get(i).signature());
+            }
+            for (int i = 0; i < replyUpdates.size(); i++) {
+                delete(Segment.replyKey(replyUpdates.get(i).getReplyId()));
+                buffer.appendReply(replyUpdates.get(i), analyzedReplies.get(i));
+            }
+            buffer.compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        flushIfNeeded();
+    }
+
+    /**
+     * 从索引中移除主题，其回复在查询时被忽略
+     * @param topicId 主题ID
+     */
+    public synchronized void remove(int topicId) {
+        lock.writeLock().lock();
+        try {
+            delete(topicId);
+            buffer.compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引，下次提交后磁盘段被删除
+     */
+    public synchronized void clear() {
+        lock.writeLock().lock();
+        try {
+            if (directory != null) {
+                for (DiskSegment segment : segments) {
+                    directory.release(segment.name());
+                }
+            }
+            segments = new ArrayList<>();
+            buffer = new MemorySegment();
+            related.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 提交：把内存段写成磁盘段，并写入记录所有段及删除标记的清单
+     * 未配置索引目录或已关闭时不做任何事
+     */
+    public synchronized void commit() throws IOException {
+        if (directory == null || closed) {
+            return;
+        }
+        flush();
+        directory.commit(segments);
+    }
+
+    /**
+     * 停止后台合并，之后的提交和合并结果都被丢弃；查询仍可继续使用已加载的段
+     * 关闭前需要保留的变更应先 {@link #commit()}
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (merger != null) {
+            merger.shutdown();
+            try {
+                // 合并线程替换段时需要获取本对象的锁，不能在持有锁时等待
+                merger.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (directory != null) {
+                for (DiskSegment segment : segments) {
+                    directory.release(segment.name());
+                }
+            }
+        }
+    }
+
+    /**
+     * 按默认参数检索
+     * @param query 搜索条件
+     * @return SearchResult 当前页的主题ID和命中总数
+     */
+    public SearchResult search(SearchQuery query) {
+        return search(query, TopicScorer.DEFAULT);
+    }
+
+    /**
+     * 检索，按查询的排序方式取当前页
+     * @param query 搜索条件
+     * @param scorer 相关度评分，按发布时间排序时不使用
+     * @return SearchResult 当前页的主题ID和命中总数
+     */
+    public SearchResult search(SearchQuery query, TopicScorer scorer) {
+        long start = System.nanoTime();
+        List<List<String>> clauses = query.parseClauses();
+        int offset = Math.max(0, query.getOffset());
+        int limit = Math.max(0, query.getLimit());
+        if (clauses.isEmpty()) {
+            return new SearchResult(0, new ArrayList<>(), System.nanoTime() - start);
+        }
+
+        // 每个不同的词一个槽位
+        Map<String, Integer> termSlots = new LinkedHashMap<>();
+        for (List<String> clause : clauses) {
+            for (String term : clause) {
+                termSlots.putIfAbsent(term, termSlots.size());
+            }
+        }
+        String[] slotTerms = termSlots.keySet().toArray(new String[0]);
+        int[][] phraseSlots = toPhraseSlots(clauses, termSlots);
+        QueryFilter filter = new QueryFilter(query);
+
+        // 结果以主题ID标识，同一主题最多在一个段中存活
+        int capacity = limit == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        TopKCollector collector = new TopKCollector(capacity);
+        Collapser collapser = query.isIncludeReplies() ? new Collapser(query.getForumId()) : null;
+        lock.readLock().lock();
+        try {
+            // 只计数时不需要得分
+            Ranking ranking = query.getSortOrder() == SearchQuery.SortOrder.NEWEST || limit == 0
+                    ? null : newRanking(scorer, slotTerms);
+            for (DiskSegment segment : segments) {
+                searchSegment(segment, slotTerms, phraseSlots, filter, ranking, collector, collapser);
+            }
+            searchSegment(buffer, slotTerms, phraseSlots, filter, ranking, collector, collapser);
+            if (collapser != null) {
+                collapser.drainTo(collector);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Integer> topicIds = collector.drain(offset);
+        if (collapser == null) {
+            return new SearchResult(collector.getTotalHits(), topicIds, System.nanoTime() - start);
+        }
+        return new SearchResult(collector.getTotalHits(), topicIds, collapser.matchedReplyIds(topicIds),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * 查找与主题内容相似的主题
+     * 从 LSH 桶取出与该主题至少共享一个桶的候选，按签名估计的 Jaccard 相似度取前 limit 个
+     * @param topicId 主题ID
+     * @param limit 数量限制
+     * @return 主题ID，按相似度降序；主题不在索引中时为空
+     */
+    public List<Integer> related(int topicId, int limit) {
+        lock.readLock().lock();
+        try {
+            int[] signature = new int[MinHash.NUM_HASHES];
+            if (!findSignature(topicId, signature)) {
+                return new ArrayList<>();
+            }
+            TopKCollector collector = new TopKCollector(limit);
+            Set<Integer> seen = new HashSet<>();
+            seen.add(topicId);
+            int[] candidate = new int[MinHash.NUM_HASHES];
+            related.forEachCandidate(signature, candidateId -> {
+                if (seen.add(candidateId) && findSignature(candidateId, candidate)) {
+                    collector.collect(candidateId, MinHash.similarity(signature, candidate), candidateId);
+                }
+            });
+            return collector.drain(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取索引状态
+     * @return IndexStats 状态快照
+     */
+    public IndexStats getStats() {
+        lock.readLock().lock();
+        try {
+            int live = buffer.liveDocs();
+            int deleted = buffer.maxDoc() - buffer.liveDocs();
+            int termCount = buffer.termCount();
+            long bytes = buffer.heapBytes() + related.heapBytes();
+            for (DiskSegment segment : segments) {
+                live += segment.liveDocs();
+                deleted += segment.maxDoc() - segment.liveDocs();
+                termCount = Math.max(termCount, segment.termCount());
+                bytes += segment.heapBytes();
+            }
+            long diskBytes = directory != null ? directory.diskBytes() : 0;
+            return new IndexStats(live, deleted, termCount, bytes, segments.size(), diskBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 调用方持有读锁：跨所有段汇总文档数、平均字段长度和每个词的文档频率
+    private Ranking newRanking(TopicScorer scorer, String[] slotTerms) {
+        long docCount = buffer.maxDoc();
+        long topicDocs = buffer.topicDocs();
+        long titleLengths = buffer.sumTitleLength();
+        long contentLengths = buffer.sumContentLength();
+        long[] docFreqs = new long[slotTerms.length];
+        for (int slot = 0; slot < slotTerms.length; slot++) {
+            docFreqs[slot] = buffer.docFreq(slotTerms[slot]);
+        }
+        for (DiskSegment segment : segments) {
+            docCount += segment.maxDoc();
+            topicDocs += segment.topicDocs();
+            titleLengths += segment.sumTitleLength();
+            contentLengths += segment.sumContentLength();
+            for (int slot = 0; slot < slotTerms.length; slot++) {
+                docFreqs[slot] += segment.docFreq(slotTerms[slot]);
+            }
+        }
+        double[] idfs = new double[slotTerms.length];
+        for (int slot = 0; slot < slotTerms.length; slot++) {
+            idfs[slot] = scorer.idf(docCount, docFreqs[slot]);
+        }
+        // 长度为0的字段不参与归一化，平均长度至少取1；只有主题有标题
+        double avgTitleLength = Math.max(1.0, (double) titleLengths / Math.max(1, topicDocs));
+        double avgContentLength = Math.max(1.0, (double) contentLengths / Math.max(1, docCount));
+        return new Ranking(scorer, idfs, avgTitleLength, avgContentLength, System.currentTimeMillis());
+    }
+
+    // 不折叠时只收集主题文档；折叠时交给 collapser，最后再统一取前K个
+    private static void searchSegment(Segment segment, String[] slotTerms, int[][] phraseSlots,
+                                      QueryFilter filter, Ranking ranking, TopKCollector collector,
+                                      Collapser collapser) {
+        if (segment.liveDocs() == 0) {
+            return;
+        }
+        // 任一词在本段不存在则本段无结果
+        PostingList[] lists = new PostingList[slotTerms.length];
+        for (int slot = 0; slot < slotTerms.length; slot++) {
+            PostingList list = segment.postings(slotTerms[slot]);
+            if (list == null || list.size() == 0) {
+                return;
+            }
+            lists[slot] = list;
+        }
+
+        // 短表在前，跳跃次数最少
+        Integer[] order = new Integer[lists.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(slot -> lists[slot].size()));
+
+        int[] cursors = new int[lists.length];
+        PostingList lead = lists[order[0]];
+        int target = lead.doc(0);
+
+        outer:
+        while (true) {
+            for (Integer slot : order) {
+                PostingList list = lists[slot];
+                int index = list.advance(cursors[slot], target);
+                cursors[slot] = index;
+                if (index == list.size()) {
+                    break outer;
+                }
+                int doc = list.doc(index);
+                if (doc != target) {
+                    target = doc;
+                    continue outer;
+                }
+            }
+
+            if (segment.isLive(target) && (collapser != null || segment.replyId(target) == 0)
+                    && filter.accepts(segment, target) && matchesPhrases(lists, cursors, phraseSlots)) {
+                double score = ranking != null
+                        ? ranking.score(segment, target, lists, cursors) : segment.createTime(target);
+                if (collapser != null) {
+                    collapser.collect(segment, target, score);
+                } else {
+                    int topicId = segment.topicId(target);
+                    collector.collect(topicId, score, topicId);
+                }
+            }
+
+            int leadSlot = order[0];
+            if (++cursors[leadSlot] >= lead.size()) {
+                break;
+            }
+            target = lead.doc(cursors[leadSlot]);
+        }
+    }
+
+    // 每个短语子句的词在 lists 中的槽位，单词子句无需校验位置
+    private static int[][] toPhraseSlots(List<List<String>> clauses, Map<String, Integer> termSlots) {
+        List<int[]> phrases = new ArrayList<>();
+        for (List<String> clause : clauses) {
+            if (clause.size() > 1) {
+                int[] slots = new int[clause.size()];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = termSlots.get(clause.get(i));
+                }
+                phrases.add(slots);
+            }
+        }
+        return phrases.toArray(new int[0][]);
+    }
+
+    // 每个短语都存在某个起点 p，使第 j 个词出现在 p + j
+    private static boolean matchesPhrases(PostingList[] lists, int[] cursors, int[][] phraseSlots) {
+        for (int[] phrase : phraseSlots) {
+            PostingList first = lists[phrase[0]];
+            int firstIndex = cursors[phrase[0]];
+            boolean found = false;
+            for (int p = first.positionStart(firstIndex); p < first.positionEnd(firstIndex) && !found; p++) {
+                int base = first.position(p);
+                found = true;
+                for (int j = 1; j < phrase.length; j++) {
+                    PostingList list = lists[phrase[j]];
+                    int index = cursors[phrase[j]];
+                    if (Arrays.binarySearch(list.positions(), list.positionStart(index),
+                            list.positionEnd(index), base + j) < 0) {
+                        found = false;
+                        break;
+                    }
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 加载或组装时由各段存活文档的签名恢复 LSH 桶，索引尚未对外可见，不需要加锁
+    private void restoreRelated() {
+        int[] signature = new int[MinHash.NUM_HASHES];
+        List<Segment> all = new ArrayList<>(segments);
+        all.add(buffer);
+        for (Segment segment : all) {
+            for (int ord = 0; ord < segment.maxDoc(); ord++) {
+                if (segment.isLive(ord) && segment.replyId(ord) == 0) {
+                    segment.signature(ord, signature);
+                    related.add(segment.topicId(ord), signature);
+                }
+            }
+        }
+    }
+
+    // 调用方持有读锁或写锁：主题存活文档所在的板块，主题不在索引中时返回-1
+    private int topicForum(int topicId) {
+        int ord = buffer.ordinalOf(topicId);
+        if (ord >= 0) {
+            return buffer.forumId(ord);
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            DiskSegment segment = segments.get(i);
+            ord = segment.ordinalOf(topicId);
+            if (ord >= 0) {
+                return segment.forumId(ord);
+            }
+        }
+        return -1;
+    }
+
+    // 调用方持有读锁或写锁：读取主题存活文档的签名，主题不在索引中时返回false
+    private boolean findSignature(int topicId, int[] out) {
+        int ord = buffer.ordinalOf(topicId);
+        if (ord >= 0) {
+            buffer.signature(ord, out);
+            return true;
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            DiskSegment segment = segments.get(i);
+            ord = segment.ordinalOf(topicId);
+            if (ord >= 0) {
+                segment.signature(ord, out);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 调用方持有写锁：在文档所在的段上标记删除
+    private void delete(int key) {
+        if (key > 0) {
+            related.remove(key);
+        }
+        if (buffer.delete(key)) {
+            return;
+        }
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (segments.get(i).delete(key)) {
+                return;
+            }
+        }
+    }
+
+    // 调用方持有本对象的锁
+    private void flushIfNeeded() {
+        if (directory == null || closed || buffer.maxDoc() < flushDocs) {
+            return;
+        }
+        try {
+            flush();
+            directory.commit(segments);
+        } catch (IOException e) {
+            // 内存段保持不变，下次达到阈值时重试
+            e.printStackTrace();
+        }
+    }
+
+    // 调用方持有本对象的锁：其它写方法被阻塞，写段文件期间内存段不会变化，查询照常进行
+    private void flush() throws IOException {
+        if (buffer.liveDocs() == 0) {
+            if (buffer.maxDoc() > 0) {
+                lock.writeLock().lock();
+                try {
+                    buffer = new MemorySegment();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            return;
+        }
+
+        DiskSegment segment = writeSegment(directory, buffer);
+        lock.writeLock().lock();
+        try {
+            List<DiskSegment> updated = new ArrayList<>(segments);
+            updated.add(segment);
+            segments = updated;
+            buffer = new MemorySegment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeMerge();
+    }
+
+    // 调用方持有本对象的锁：同一时间只有一个合并在进行
+    private void maybeMerge() {
+        if (merger == null || merging || closed) {
+            return;
+        }
+        List<DiskSegment> picked = pickMerge();
+        if (picked != null) {
+            merging = true;
+            merger.execute(() -> merge(picked));
+        }
+    }
+
+    // 删除过半的段单独重写；否则按文档数分层，某层段数达到 MERGE_FACTOR 时合并该层最小的几个段
+    private List<DiskSegment> pickMerge() {
+        for (DiskSegment segment : segments) {
+            if (segment.maxDoc() >= flushDocs && segment.liveDocs() * 2 < segment.maxDoc()) {
+                return List.of(segment);
+            }
+        }
+        Map<Integer, List<DiskSegment>> levels = new LinkedHashMap<>();
+        for (DiskSegment segment : segments) {
+            int level = 0;
+            for (long size = segment.maxDoc() / flushDocs; size >= MERGE_FACTOR; size /= MERGE_FACTOR) {
+                level++;
+            }
+            levels.computeIfAbsent(level, k -> new ArrayList<>()).add(segment);
+        }
+        for (List<DiskSegment> level : levels.values()) {
+            if (level.size() >= MERGE_FACTOR) {
+                level.sort(Comparator.comparingInt(DiskSegment::maxDoc));
+                List<DiskSegment> picked = level.subList(0, MERGE_FACTOR);
+                long bytes = 0;
+                for (DiskSegment segment : picked) {
+                    bytes += segment.fileBytes();
+                }
+                if (bytes <= MAX_MERGED_BYTES) {
+                    return new ArrayList<>(picked);
+                }
+            }
+        }
+        return null;
+    }
+
+    // 在合并线程中执行：按删除标记的快照写出合并段，再在写锁内补上合并期间新增的删除并替换源段
+    private void merge(List<DiskSegment> sources) {
+        File file = null;
+        try {
+            BitSet[] snapshot = new BitSet[sources.size()];
+            lock.readLock().lock();
+            try {
+                for (int i = 0; i < sources.size(); i++) {
+                    snapshot[i] = sources.get(i).deletedDocs();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                file = directory.newSegment();
+            }
+            int[][] remap = new int[sources.size()][];
+            writeMerged(file, sources, snapshot, remap);
+            DiskSegment merged = DiskSegment.open(file, null);
+
+            synchronized (this) {
+                if (closed) {
+                    directory.release(file.getName());
+                    return;
+                }
+                lock.writeLock().lock();
+                try {
+                    for (int i = 0; i < sources.size(); i++) {
+                        DiskSegment source = sources.get(i);
+                        for (int ord = 0; ord < source.maxDoc(); ord++) {
+                            if (!source.isLive(ord) && remap[i][ord] >= 0) {
+                                merged.deleteOrdinal(remap[i][ord]);
+                            }
+                        }
+                    }
+                    List<DiskSegment> updated = new ArrayList<>(segments.size());
+                    for (DiskSegment segment : segments) {
+                        if (segment == sources.get(0)) {
+                            updated.add(merged);
+                        } else if (!sources.contains(segment)) {
+                            updated.add(segment);
+                        }
+                    }
+                    segments = updated;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                for (DiskSegment source : sources) {
+                    directory.release(source.name());
+                }
+                file = null;
+                directory.commit(segments);
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            if (file != null) {
+                file.delete();
+                directory.release(file.getName());
+            }
+        } finally {
+            synchronized (this) {
+                merging = false;
+                maybeMerge();
+            }
+        }
+    }
+
+    // 源段的存活文档依次重新编号；remap[i][ord] 为源段 i 中序号 ord 在合并段中的序号，已删除为-1
+    private static void writeMerged(File file, List<DiskSegment> sources, BitSet[] snapshot, int[][] remap)
+            throws IOException {
+        SegmentWriter writer = new SegmentWriter(file);
+        try {
+            int[] signature = new int[MinHash.NUM_HASHES];
+            int next = 0;
+            for (int i = 0; i < sources.size(); i++) {
+                DiskSegment source = sources.get(i);
+                remap[i] = new int[source.maxDoc()];
+                for (int ord = 0; ord < source.maxDoc(); ord++) {
+                    if (snapshot[i].get(ord)) {
+                        remap[i][ord] = -1;
+                        continue;
+                    }
+                    remap[i][ord] = next++;
+                    int replyId = source.replyId(ord);
+                    source.signature(ord, signature);
+                    writer.addDoc(source.topicId(ord), replyId, source.forumId(ord), source.userId(ord),
+                            source.createTime(ord), source.lastActiveTime(ord), source.titleLength(ord),
+                            source.contentLength(ord), source.replyCount(ord), source.viewCount(ord),
+                            replyId == 0 ? signature : null);
+                }
+            }
+
+            TermDictionary mergedTerms = new TermDictionary();
+            for (DiskSegment source : sources) {
+                TermDictionary terms = source.terms();
+                for (int termId = 0; termId < terms.size(); termId++) {
+                    mergedTerms.add(terms.pool(), terms.start(termId), terms.length(termId));
+                }
+            }
+            for (int termId = 0; termId < mergedTerms.size(); termId++) {
+                char[] pool = mergedTerms.pool();
+                int start = mergedTerms.start(termId);
+                int length = mergedTerms.length(termId);
+                writer.startTerm(pool, start, length);
+                for (int i = 0; i < sources.size(); i++) {
+                    int sourceTerm = sources.get(i).terms().find(pool, start, length);
+                    if (sourceTerm < 0) {
+                        continue;
+                    }
+                    PostingList list = sources.get(i).postings(sourceTerm);
+                    for (int p = 0; p < list.size(); p++) {
+                        int ord = remap[i][list.doc(p)];
+                        if (ord >= 0) {
+                            writer.addPosting(ord, list.titleFreq(p), list.contentFreq(p), list.positions(),
+                                    list.positionStart(p), list.positionEnd(p) - list.positionStart(p));
+                        }
+                    }
+                }
+                writer.finishTerm();
+            }
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * 查询的过滤条件
+     */
+    private static final class QueryFilter {
+        private final int forumId;
+        private final int userId;
+        private final long startMillis;
+        private final long endMillis;
+
+        QueryFilter(SearchQuery query) {
+            this.forumId = query.getForumId();
+            this.userId = query.getUserId();
+            this.startMillis = query.getStartTime() != null ? MemorySegment.toMillis(query.getStartTime()) : Long.MIN_VALUE;
+            this.endMillis = query.getEndTime() != null ? MemorySegment.toMillis(query.getEndTime()) : Long.MAX_VALUE;
+        }
+
+        // 回复文档的板块由 Collapser 按所属主题检查
+        boolean accepts(Segment segment, int ord) {
+            if (forumId > 0 && segment.replyId(ord) == 0 && segment.forumId(ord) != forumId) {
+                return false;
+            }
+            if (userId > 0 && segment.userId(ord) != userId) {
+                return false;
+            }
+            long createTime = segment.createTime(ord);
+            return createTime >= startMillis && createTime <= endMillis;
+        }
+    }
+
+    /**
+     * 把命中按所属主题折叠，每个主题保留得分最高的文档，得分相同时主题本身优先
+     * 回复命中要求所属主题仍在索引中并满足板块条件，每个主题只查找一次。在读锁内使用
+     */
+    private final class Collapser {
+        private final int forumId;
+        // 主题ID到所在板块，主题不在索引中时为-1
+        private final Map<Integer, Integer> parentForums = new HashMap<>();
+        private final Map<Integer, Hit> best = new HashMap<>();
+
+        Collapser(int forumId) {
+            this.forumId = forumId;
+        }
+
+        void collect(Segment segment, int ord, double score) {
+            int topicId = segment.topicId(ord);
+            int replyId = segment.replyId(ord);
+            if (replyId != 0) {
+                int parentForum = parentForums.computeIfAbsent(topicId, InvertedIndex.this::topicForum);
+                if (parentForum < 0 || (forumId > 0 && parentForum != forumId)) {
+                    return;
+                }
+            }
+            Hit hit = best.get(topicId);
+            if (hit == null) {
+                best.put(topicId, new Hit(score, replyId));
+            } else if (score > hit.score || (score == hit.score && replyId < hit.replyId)) {
+                hit.score = score;
+                hit.replyId = replyId;
+            }
+        }
+
+        void drainTo(TopKCollector collector) {
+            best.forEach((topicId, hit) -> collector.collect(topicId, hit.score, topicId));
+        }
+
+        // 每个主题得分最高的回复，主题本身得分最高时为0
+        List<Integer> matchedReplyIds(List<Integer> topicIds) {
+            List<Integer> replyIds = new ArrayList<>(topicIds.size());
+            for (int topicId : topicIds) {
+                replyIds.add(best.get(topicId).replyId);
+            }
+            return replyIds;
+        }
+    }
+
+    private static final class Hit {
+        private double score;
+        private int replyId;
+
+        Hit(double score, int replyId) {
+            this.score = score;
+            this.replyId = replyId;
+        }
+    }
+
+    /**
+     * 一次查询的相关度参数，lists 与 cursors 按词槽位对齐
+     */
+    private static final class Ranking {
+        private final TopicScorer scorer;
+        private final double[] idfs;
+        private final double avgTitleLength;
+        private final double avgContentLength;
+        private final long now;
+
+        Ranking(TopicScorer scorer, double[] idfs, double avgTitleLength, double avgContentLength, long now) {
+            this.scorer = scorer;
+            this.idfs = idfs;
+            this.avgTitleLength = avgTitleLength;
+            this.avgContentLength = avgContentLength;
+            this.now = now;
+        }
+
+        double score(Segment segment, int ord, PostingList[] lists, int[] cursors) {
+            int titleLength = segment.titleLength(ord);
+            int contentLength = segment.contentLength(ord);
+            double text = 0;
+            for (int slot = 0; slot < lists.length; slot++) {
+                text += scorer.termScore(idfs[slot],
+                        lists[slot].titleFreq(cursors[slot]), titleLength, avgTitleLength,
+                        lists[slot].contentFreq(cursors[slot]), contentLength, avgContentLength);
+            }
+            return text * scorer.docBoost(segment.replyCount(ord), segment.viewCount(ord),
+                    segment.lastActiveTime(ord), now);
+        }
+    }
+
+    /**
+     * 索引状态快照
+     */
+    public static class IndexStats {
+        private final int liveDocs;
+        private final int deletedDocs;
+        private final int terms;
+        private final long estimatedBytes;
+        private final int segments;
+        private final long diskBytes;
+
+        IndexStats(int liveDocs, int deletedDocs, int terms, long estimatedBytes, int segments, long diskBytes) {
+            this.liveDocs = liveDocs;
+            this.deletedDocs = deletedDocs;
+            this.terms = terms;
+            this.estimatedBytes = estimatedBytes;
+            this.segments = segments;
+            this.diskBytes = diskBytes;
+        }
+
+        // Getters
+        public int getLiveDocs() { return liveDocs; }
+        public int getDeletedDocs() { return deletedDocs; }
+        public int getTerms() { return terms; }
+        public long getEstimatedBytes() { return estimatedBytes; }
+        public int getSegments() { return segments; }
+        public long getDiskBytes() { return diskBytes; }
+
+        @Override
+        public String toString() {
+            return String.format("文档: %d (已删除 %d), 词: %d, 磁盘段: %d (%.1fMB), 堆约 %.1fMB",
+                    liveDocs, deletedDocs, terms, segments, diskBytes / 1024.0 / 1024.0,
+                    estimatedBytes / 1024.0 / 1024.0);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package main.forumsystem.src.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 局部敏感哈希（LSH）桶
+ * 每个主题占一个槽位，槽位的每一带对应一个条目；桶键相同的条目串成双向链表，
+ * 表头记录在以桶键为键的开放寻址表中。增删一个主题只需改动 {@link MinHash#BANDS} 个条目。
+ * 全部使用基本类型数组，不为每个桶分配对象。
+ * 非线程安全，由 {@link InvertedIndex} 加锁。
+ */
+final class LshIndex {
+
+    private static final int BANDS = MinHash.BANDS;
+    // 表中的空位和已清空的桶
+    private static final int FREE = -1;
+    private static final int EMPTY_CHAIN = -2;
+
+    private final Map<Integer, Integer> slotByTopic = new HashMap<>();
+    private int[] topicIds = new int[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    // 条目编号为 槽位 * BANDS + 带号
+    private long[] entryKeys = new long[16 * BANDS];
+    private int[] entryNext = new int[16 * BANDS];
+    private int[] entryPrev = new int[16 * BANDS];
+
+    private long[] tableKeys = new long[64];
+    private int[] tableHeads = new int[64];
+    // 占用的表位，含已清空的桶
+    private int tableUsed;
+
+    LshIndex() {
+        Arrays.fill(tableHeads, FREE);
+    }
+
+    /**
+     * 加入主题的签名，已存在时替换；空签名不加入
+     */
+    void add(int topicId, int[] signature) {
+        remove(topicId);
+        if (MinHash.isEmpty(signature)) {
+            return;
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+        ensureSlotCapacity(slotCount);
+        topicIds[slot] = topicId;
+        slotByTopic.put(topicId, slot);
+        for (int band = 0; band < BANDS; band++) {
+            int entry = slot * BANDS + band;
+            long key = MinHash.bandKey(signature, band);
+            entryKeys[entry] = key;
+            entryPrev[entry] = -1;
+            int index = findOrInsert(key);
+            int head = tableHeads[index];
+            entryNext[entry] = head >= 0 ? head : -1;
+            if (head >= 0) {
+                entryPrev[head] = entry;
+            }
+            tableHeads[index] = entry;
+        }
+    }
+
+    /**
+     * 移除主题，不存在时不做任何事
+     */
+    void remove(int topicId) {
+        Integer slot = slotByTopic.remove(topicId);
+        if (slot == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            int entry = slot * BANDS + band;
+            int prev = entryPrev[entry];
+            int next = entryNext[entry];
+            if (prev >= 0) {
+                entryNext[prev] = next;
+            } else {
+                tableHeads[find(entryKeys[entry])] = next >= 0 ? next : EMPTY_CHAIN;
+            }
+            if (next >= 0) {
+                entryPrev[next] = prev;
+            }
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    void clear() {
+        slotByTopic.clear();
+        freeCount = 0;
+        slotCount = 0;
+        Arrays.fill(tableHeads, FREE);
+        tableUsed = 0;
+    }
+
+    /**
+     * 依次给出与签名至少共享一个桶的主题，共享多个桶的主题会重复给出
+     */
+    void forEachCandidate(int[] signature, IntConsumer consumer) {
+        for (int band = 0; band < BANDS; band++) {
+            int index = find(MinHash.bandKey(signature, band));
+            if (index < 0) {
+                continue;
+            }
+            for (int entry = tableHeads[index]; entry >= 0; entry = entryNext[entry]) {
+                consumer.accept(topicIds[entry / BANDS]);
+            }
+        }
+    }
+
+    int size() {
+        return slotByTopic.size();
+    }
+
+    long heapBytes() {
+        return 4L * (topicIds.length + freeSlots.length) + 16L * entryKeys.length
+                + 12L * tableKeys.length + 48L * slotByTopic.size();
+    }
+
+    private int find(long key) {
+        int mask = tableKeys.length - 1;
+        for (int index = (int) key & mask; tableHeads[index] != FREE; index = (index + 1) & mask) {
+            if (tableKeys[index] == key) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int findOrInsert(long key) {
+        int index = find(key);
+        if (index >= 0) {
+            return index;
+        }
+        if ((tableUsed + 1) * 2 > tableKeys.length) {
+            rehash();
+        }
+        int mask = tableKeys.length - 1;
+        index = (int) key & mask;
+        while (tableHeads[index] != FREE) {
+            index = (index + 1) & mask;
+        }
+        tableKeys[index] = key;
+        tableHeads[index] = EMPTY_CHAIN;
+        tableUsed++;
+        return index;
+    }
+
+    // 丢弃已清空的桶，按剩余桶数确定新容量
+    private void rehash() {
+        int live = 0;
+        for (int head : tableHeads) {
+            if (head >= 0) {
+                live++;
+            }
+        }
+        int capacity = 64;
+        while (capacity < (live + 1) * 4) {
+            capacity <<= 1;
+        }
+        long[] oldKeys = tableKeys;
+        int[] oldHeads = tableHeads;
+        tableKeys = new long[capacity];
+        tableHeads = new int[capacity];
+        Arrays.fill(tableHeads, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] >= 0) {
+                int index = (int) oldKeys[i] & mask;
+                while (tableHeads[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                tableKeys[index] = oldKeys[i];
+                tableHeads[index] = oldHeads[i];
+            }
+        }
+        tableUsed = live;
+    }
+
+    private void ensureSlotCapacity(int capacity) {
+        if (capacity > topicIds.length) {
+            int newCapacity = Math.max(capacity, topicIds.length * 2);
+            topicIds = Arrays.copyOf(topicIds, newCapacity);
+            entryKeys = Arrays.copyOf(entryKeys, newCapacity * BANDS);
+            entryNext = Arrays.copyOf(entryNext, newCapacity * BANDS);
+            entryPrev = Arrays.copyOf(entryPrev, newCapacity * BANDS);
+        }
+    }
+}
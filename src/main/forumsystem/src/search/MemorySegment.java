@@ -0,0 +1,522 @@
+package main.forumsystem.src.search;
+
+import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.Topic;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内存段
+ * 新索引的主题先追加到内存段：词经 {@link TermDictionary} 编号，倒排表按编号存放在数组中。
+ * 修改主题或回复时旧序号标记为删除并追加新序号，倒排表始终只需追加；删除的序号超过存活文档数时整体压缩一次。
+ * 只有主题文档有 {@link MinHash} 签名，按签名槽位连续存放，回复文档不占签名空间。
+ * 配置了索引目录时，内存段达到一定文档数后写成磁盘段并清空。
+ * 非线程安全，由 {@link InvertedIndex} 加锁。
+ */
+final class MemorySegment extends Segment {
+
+    // 压缩的最小删除文档数，避免频繁压缩小索引
+    private static final int MIN_COMPACT_DELETED = 1024;
+
+    private final TermDictionary terms = new TermDictionary();
+    // 按词编号保存的倒排表
+    private PostingList[] postings = new PostingList[16];
+    private final Map<Integer, Integer> ordinalByKey = new HashMap<>();
+    private final BitSet live = new BitSet();
+
+    // 按文档序号保存的元数据
+    private int[] topicIds = new int[16];
+    private int[] replyIds = new int[16];
+    private int[] forumIds = new int[16];
+    private int[] userIds = new int[16];
+    private long[] createTimes = new long[16];
+    private int[] titleLengths = new int[16];
+    private int[] contentLengths = new int[16];
+    private int[] replyCounts = new int[16];
+    private int[] viewCounts = new int[16];
+    private long[] lastActiveTimes = new long[16];
+    // 主题文档的签名槽位，回复文档为-1
+    private int[] signatureSlots = new int[16];
+    // 每个槽位 NUM_HASHES 个值连续存放
+    private int[] signatures = new int[16 * MinHash.NUM_HASHES];
+    private int slotCount;
+    private int topicDocCount;
+    private long sumTitleLength;
+    private long sumContentLength;
+    private int docCount;
+    private int liveCount;
+
+    /**
+     * 追加主题，调用方已删除该主题的旧文档
+     */
+    void append(Topic topic, AnalyzedDocument analyzed) {
+        long createTime = toMillis(topic.getCreateTime());
+        long lastActiveTime = topic.getLastReplyTime() != null ? toMillis(topic.getLastReplyTime()) : createTime;
+        appendDoc(topic.getTopicId(), 0, topic.getForumId(), topic.getUserId(), createTime, lastActiveTime,
+                topic.getReplyCount(), topic.getViewCount(), analyzed);
+    }
+
+    /**
+     * 追加回复，调用方已删除该回复的旧文档
+     */
+    void appendReply(Reply reply, AnalyzedDocument analyzed) {
+        long createTime = toMillis(reply.getCreateTime());
+        appendDoc(reply.getTopicId(), reply.getReplyId(), 0, reply.getUserId(), createTime, createTime,
+                0, 0, analyzed);
+    }
+
+    private void appendDoc(int topicId, int replyId, int forumId, int userId, long createTime,
+                           long lastActiveTime, int replyCount, int viewCount, AnalyzedDocument analyzed) {
+        int ord = docCount++;
+        ensureCapacity(docCount);
+        topicIds[ord] = topicId;
+        replyIds[ord] = replyId;
+        forumIds[ord] = forumId;
+        userIds[ord] = userId;
+        createTimes[ord] = createTime;
+        titleLengths[ord] = analyzed.titleLength;
+        contentLengths[ord] = analyzed.contentLength;
+        replyCounts[ord] = replyCount;
+        viewCounts[ord] = viewCount;
+        lastActiveTimes[ord] = lastActiveTime;
+        signatureSlots[ord] = addSignature(analyzed.signature);
+        if (replyId == 0) {
+            topicDocCount++;
+        }
+        sumTitleLength += analyzed.titleLength;
+        sumContentLength += analyzed.contentLength;
+        for (int local = 0; local < analyzed.terms.size(); local++) {
+            int termId = terms.add(analyzed.terms.pool(), analyzed.terms.start(local), analyzed.terms.length(local));
+            if (termId == postings.length) {
+                postings = Arrays.copyOf(postings, termId + (termId >> 1) + 1);
+            }
+            if (postings[termId] == null) {
+                postings[termId] = new PostingList();
+            }
+            postings[termId].add(ord, analyzed.titleFreqs[local], analyzed.contentFreqs[local],
+                    analyzed.positions[local], analyzed.positionCounts[local]);
+        }
+        live.set(ord);
+        liveCount++;
+        ordinalByKey.put(key(ord), ord);
+    }
+
+    // 分配签名槽位，没有签名时返回-1
+    private int addSignature(int[] signature) {
+        if (signature == null) {
+            return -1;
+        }
+        int slot = slotCount++;
+        if (slotCount * MinHash.NUM_HASHES > signatures.length) {
+            signatures = Arrays.copyOf(signatures,
+                    Math.max(slotCount, signatures.length / MinHash.NUM_HASHES * 3 / 2) * MinHash.NUM_HASHES);
+        }
+        System.arraycopy(signature, 0, signatures, slot * MinHash.NUM_HASHES, MinHash.NUM_HASHES);
+        return slot;
+    }
+
+    /**
+     * 把另一个内存段的存活文档追加到本段，序号接在本段已有文档之后，倒排表仍只需追加
+     * 用于合并并行构建的部分索引，调用方保证两段的文档互不重叠
+     * @param other 被合并的段，之后不应再使用
+     */
+    void appendAll(MemorySegment other) {
+        ensureCapacity(docCount + other.liveCount);
+        int[] remap = new int[other.docCount];
+        int[] signature = new int[MinHash.NUM_HASHES];
+        for (int source = 0; source < other.docCount; source++) {
+            if (!other.live.get(source)) {
+                remap[source] = -1;
+                continue;
+            }
+            int ord = docCount++;
+            remap[source] = ord;
+            topicIds[ord] = other.topicIds[source];
+            replyIds[ord] = other.replyIds[source];
+            forumIds[ord] = other.forumIds[source];
+            userIds[ord] = other.userIds[source];
+            createTimes[ord] = other.createTimes[source];
+            titleLengths[ord] = other.titleLengths[source];
+            contentLengths[ord] = other.contentLengths[source];
+            replyCounts[ord] = other.replyCounts[source];
+            viewCounts[ord] = other.viewCounts[source];
+            lastActiveTimes[ord] = other.lastActiveTimes[source];
+            signatureSlots[ord] = -1;
+            if (other.signatureSlots[source] >= 0) {
+                other.signature(source, signature);
+                signatureSlots[ord] = addSignature(signature);
+            }
+            if (replyIds[ord] == 0) {
+                topicDocCount++;
+            }
+            sumTitleLength += titleLengths[ord];
+            sumContentLength += contentLengths[ord];
+            live.set(ord);
+            liveCount++;
+            ordinalByKey.put(key(ord), ord);
+        }
+
+        for (int sourceTerm = 0; sourceTerm < other.terms.size(); sourceTerm++) {
+            PostingList list = other.postings[sourceTerm];
+            if (list == null) {
+                continue;
+            }
+            int termId = terms.add(other.terms.pool(), other.terms.start(sourceTerm), other.terms.length(sourceTerm));
+            if (termId >= postings.length) {
+                postings = Arrays.copyOf(postings, termId + (termId >> 1) + 1);
+            }
+            if (postings[termId] == null) {
+                postings[termId] = new PostingList();
+            }
+            for (int i = 0; i < list.size(); i++) {
+                int ord = remap[list.doc(i)];
+                if (ord >= 0) {
+                    postings[termId].add(ord, list.titleFreq(i), list.contentFreq(i), list.positions(),
+                            list.positionStart(i), list.positionEnd(i) - list.positionStart(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * 标记键对应的文档为删除
+     * @param key 主题ID或回复键
+     * @return 该文档是否在本段中存活
+     */
+    boolean delete(int key) {
+        Integer ord = ordinalByKey.remove(key);
+        if (ord != null && live.get(ord)) {
+            live.clear(ord);
+            liveCount--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 丢弃已删除的序号并重新编号，倒排表按新序号重建
+     */
+    void compactIfNeeded() {
+        int deleted = docCount - liveCount;
+        if (deleted < MIN_COMPACT_DELETED || deleted < liveCount) {
+            return;
+        }
+
+        int[] remap = new int[docCount];
+        int next = 0;
+        int nextSlot = 0;
+        for (int ord = 0; ord < docCount; ord++) {
+            if (live.get(ord)) {
+                remap[ord] = next;
+                topicIds[next] = topicIds[ord];
+                replyIds[next] = replyIds[ord];
+                forumIds[next] = forumIds[ord];
+                userIds[next] = userIds[ord];
+                createTimes[next] = createTimes[ord];
+                titleLengths[next] = titleLengths[ord];
+                contentLengths[next] = contentLengths[ord];
+                replyCounts[next] = replyCounts[ord];
+                viewCounts[next] = viewCounts[ord];
+                lastActiveTimes[next] = lastActiveTimes[ord];
+                // 槽位按序号顺序分配，存活文档的新槽位不会超过旧槽位
+                int slot = signatureSlots[ord];
+                if (slot >= 0) {
+                    System.arraycopy(signatures, slot * MinHash.NUM_HASHES, signatures,
+                            nextSlot * MinHash.NUM_HASHES, MinHash.NUM_HASHES);
+                    slot = nextSlot++;
+                }
+                signatureSlots[next] = slot;
+                ordinalByKey.put(key(next), next);
+                next++;
+            } else {
+                if (replyIds[ord] == 0) {
+                    topicDocCount--;
+                }
+                sumTitleLength -= titleLengths[ord];
+                sumContentLength -= contentLengths[ord];
+                remap[ord] = -1;
+            }
+        }
+
+        // 词典只增不删，倒排表清空的词保留编号
+        for (int termId = 0; termId < terms.size(); termId++) {
+            PostingList old = postings[termId];
+            if (old == null) {
+                continue;
+            }
+            PostingList compacted = new PostingList();
+            for (int i = 0; i < old.size(); i++) {
+                int ord = remap[old.doc(i)];
+                if (ord >= 0) {
+                    compacted.add(ord, old.titleFreq(i), old.contentFreq(i), old.positions(),
+                            old.positionStart(i), old.positionEnd(i) - old.positionStart(i));
+                }
+            }
+            postings[termId] = compacted.size() > 0 ? compacted : null;
+        }
+
+        live.clear();
+        live.set(0, next);
+        docCount = next;
+        liveCount = next;
+        slotCount = nextSlot;
+    }
+
+    /**
+     * 把存活的文档写成磁盘段，序号按原顺序重新连续编号
+     */
+    void writeTo(SegmentWriter writer) throws IOException {
+        int[] remap = new int[docCount];
+        int[] signature = new int[MinHash.NUM_HASHES];
+        int next = 0;
+        for (int ord = 0; ord < docCount; ord++) {
+            if (live.get(ord)) {
+                remap[ord] = next++;
+                signature(ord, signature);
+                writer.addDoc(topicIds[ord], replyIds[ord], forumIds[ord], userIds[ord], createTimes[ord],
+                        lastActiveTimes[ord], titleLengths[ord], contentLengths[ord], replyCounts[ord],
+                        viewCounts[ord], signatureSlots[ord] >= 0 ? signature : null);
+            } else {
+                remap[ord] = -1;
+            }
+        }
+        for (int termId = 0; termId < terms.size(); termId++) {
+            PostingList list = postings[termId];
+            if (list == null) {
+                continue;
+            }
+            writer.startTerm(terms.pool(), terms.start(termId), terms.length(termId));
+            for (int i = 0; i < list.size(); i++) {
+                int ord = remap[list.doc(i)];
+                if (ord >= 0) {
+                    writer.addPosting(ord, list.titleFreq(i), list.contentFreq(i), list.positions(),
+                            list.positionStart(i), list.positionEnd(i) - list.positionStart(i));
+                }
+            }
+            writer.finishTerm();
+        }
+    }
+
+    @Override
+    int maxDoc() {
+        return docCount;
+    }
+
+    @Override
+    int liveDocs() {
+        return liveCount;
+    }
+
+    @Override
+    boolean isLive(int ord) {
+        return live.get(ord);
+    }
+
+    @Override
+    int ordinalOf(int key) {
+        Integer ord = ordinalByKey.get(key);
+        return ord != null ? ord : -1;
+    }
+
+    @Override
+    PostingList postings(String term) {
+        int termId = terms.find(term);
+        return termId >= 0 ? postings[termId] : null;
+    }
+
+    @Override
+    int docFreq(String term) {
+        PostingList list = postings(term);
+        return list != null ? list.size() : 0;
+    }
+
+    @Override
+    int termCount() {
+        int count = 0;
+        for (int termId = 0; termId < terms.size(); termId++) {
+            if (postings[termId] != null && postings[termId].size() > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    int topicId(int ord) {
+        return topicIds[ord];
+    }
+
+    @Override
+    int replyId(int ord) {
+        return replyIds[ord];
+    }
+
+    @Override
+    int forumId(int ord) {
+        return forumIds[ord];
+    }
+
+    @Override
+    int userId(int ord) {
+        return userIds[ord];
+    }
+
+    @Override
+    long createTime(int ord) {
+        return createTimes[ord];
+    }
+
+    @Override
+    int titleLength(int ord) {
+        return titleLengths[ord];
+    }
+
+    @Override
+    int contentLength(int ord) {
+        return contentLengths[ord];
+    }
+
+    @Override
+    int replyCount(int ord) {
+        return replyCounts[ord];
+    }
+
+    @Override
+    int viewCount(int ord) {
+        return viewCounts[ord];
+    }
+
+    @Override
+    long lastActiveTime(int ord) {
+        return lastActiveTimes[ord];
+    }
+
+    @Override
+    void signature(int ord, int[] out) {
+        int slot = signatureSlots[ord];
+        if (slot >= 0) {
+            System.arraycopy(signatures, slot * MinHash.NUM_HASHES, out, 0, MinHash.NUM_HASHES);
+        } else {
+            Arrays.fill(out, Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    int topicDocs() {
+        return topicDocCount;
+    }
+
+    @Override
+    long sumTitleLength() {
+        return sumTitleLength;
+    }
+
+    @Override
+    long sumContentLength() {
+        return sumContentLength;
+    }
+
+    @Override
+    long heapBytes() {
+        long bytes = 4L * 9 * topicIds.length + 8L * 2 * createTimes.length + 4L * signatures.length
+                + terms.estimatedBytes() + 4L * postings.length;
+        for (int termId = 0; termId < terms.size(); termId++) {
+            if (postings[termId] != null) {
+                bytes += postings[termId].estimatedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > topicIds.length) {
+            int newCapacity = Math.max(capacity, topicIds.length + (topicIds.length >> 1));
+            topicIds = Arrays.copyOf(topicIds, newCapacity);
+            replyIds = Arrays.copyOf(replyIds, newCapacity);
+            forumIds = Arrays.copyOf(forumIds, newCapacity);
+            userIds = Arrays.copyOf(userIds, newCapacity);
+            createTimes = Arrays.copyOf(createTimes, newCapacity);
+            titleLengths = Arrays.copyOf(titleLengths, newCapacity);
+            contentLengths = Arrays.copyOf(contentLengths, newCapacity);
+            replyCounts = Arrays.copyOf(replyCounts, newCapacity);
+            viewCounts = Arrays.copyOf(viewCounts, newCapacity);
+            lastActiveTimes = Arrays.copyOf(lastActiveTimes, newCapacity);
+            signatureSlots = Arrays.copyOf(signatureSlots, newCapacity);
+        }
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    // 分词并按词汇总词频和位置；正文位置接在标题之后并空出一位，短语不会跨字段匹配
+    static AnalyzedDocument analyze(Topic topic) {
+        AnalyzedDocument analyzed = new AnalyzedDocument();
+        int titleEnd = Tokenizer.tokenize(topic.getTitle(), (buffer, offset, length, position) ->
+                analyzed.add(buffer, offset, length, position, true));
+        int contentEnd = Tokenizer.tokenize(topic.getContent(), titleEnd + 1, (buffer, offset, length, position) ->
+                analyzed.add(buffer, offset, length, position, false));
+        analyzed.titleLength = titleEnd;
+        analyzed.contentLength = contentEnd - titleEnd - 1;
+        analyzed.signature = MinHash.signature(analyzed.terms);
+        return analyzed;
+    }
+
+    // 回复只有正文，不计算签名：相似主题只在主题之间查找
+    static AnalyzedDocument analyze(Reply reply) {
+        AnalyzedDocument analyzed = new AnalyzedDocument();
+        analyzed.contentLength = Tokenizer.tokenize(reply.getContent(), 0, (buffer, offset, length, position) ->
+                analyzed.add(buffer, offset, length, position, false));
+        return analyzed;
+    }
+
+    /**
+     * 分词后的文档：文档内词典及按文档内词编号保存的词频和位置
+     */
+    static final class AnalyzedDocument {
+        private final TermDictionary terms = new TermDictionary();
+        private int[] titleFreqs = new int[16];
+        private int[] contentFreqs = new int[16];
+        private int[][] positions = new int[16][];
+        private int[] positionCounts = new int[16];
+        private int titleLength;
+        private int contentLength;
+        // 回复文档为null
+        private int[] signature;
+
+        int[] signature() {
+            return signature;
+        }
+
+        void add(char[] buffer, int offset, int length, int position, boolean inTitle) {
+            int local = terms.add(buffer, offset, length);
+            if (local == titleFreqs.length) {
+                int capacity = local * 2;
+                titleFreqs = Arrays.copyOf(titleFreqs, capacity);
+                contentFreqs = Arrays.copyOf(contentFreqs, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                positionCounts = Arrays.copyOf(positionCounts, capacity);
+            }
+            if (inTitle) {
+                titleFreqs[local]++;
+            } else {
+                contentFreqs[local]++;
+            }
+            int[] termPositions = positions[local];
+            int count = positionCounts[local];
+            if (termPositions == null) {
+                termPositions = positions[local] = new int[2];
+            } else if (count == termPositions.length) {
+                termPositions = positions[local] = Arrays.copyOf(termPositions, count * 2);
+            }
+            termPositions[count] = position;
+            positionCounts[local] = count + 1;
+        }
+    }
+}
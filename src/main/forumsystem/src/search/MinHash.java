@@ -0,0 +1,111 @@
+package main.forumsystem.src.search;
+
+import java.util.Arrays;
+
+/**
+ * MinHash 签名
+ * 文档的特征集合取标题和正文分词后的词集合（中文为二元词，相当于字符级的 2-shingle；
+ * 索引时附带输出的中文单字不计入，常用字会让无关文档显得相似），
+ * 对每个词计算 {@link #NUM_HASHES} 个独立哈希，各取最小值构成签名。
+ * 两篇文档签名中相同位置取值相等的比例是其词集合 Jaccard 相似度的无偏估计。
+ *
+ * 签名按 {@link #BANDS} 个带切分，每带 {@link #ROWS} 行：同一带内各行全部相等的两篇文档落入同一个桶。
+ * 相似度为 s 的两篇文档至少共享一个桶的概率为 1 - (1 - s^ROWS)^BANDS，约在 s = 0.5 处陡升。
+ *
+ * 签名写入段文件，哈希种子和参数改变时必须同时提升 {@link DiskSegment#VERSION}。
+ */
+final class MinHash {
+
+    static final int NUM_HASHES = 64;
+    static final int BANDS = 16;
+    static final int ROWS = NUM_HASHES / BANDS;
+
+    private static final long[] SEEDS = new long[NUM_HASHES];
+
+    static {
+        // 固定种子，同一个词在不同进程中的哈希值不变
+        long state = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            SEEDS[i] = mix64(state);
+        }
+    }
+
+    private MinHash() {
+    }
+
+    /**
+     * 计算词集合的签名，词集合为空时签名各位均为 {@link Integer#MAX_VALUE}
+     */
+    static int[] signature(TermDictionary terms) {
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        char[] pool = terms.pool();
+        for (int termId = 0; termId < terms.size(); termId++) {
+            if (terms.length(termId) == 1 && Tokenizer.isCjk(pool[terms.start(termId)])) {
+                continue;
+            }
+            long base = hash(pool, terms.start(termId), terms.length(termId));
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int value = (int) (mix64(base ^ SEEDS[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 没有任何词的文档不参与相似度计算
+     */
+    static boolean isEmpty(int[] signature) {
+        for (int value : signature) {
+            if (value != Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 签名第 band 带的桶键，带号参与哈希，不同带的桶互不混淆
+     */
+    static long bandKey(int[] signature, int band) {
+        long key = band + 1;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            key = mix64(key * 31 + signature[i]);
+        }
+        return key;
+    }
+
+    /**
+     * 估计的 Jaccard 相似度
+     */
+    static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / NUM_HASHES;
+    }
+
+    // FNV-1a
+    private static long hash(char[] buffer, int offset, int length) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= buffer[i];
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3 的 64 位终结函数
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB93FE1A85EC3L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,299 @@
+package main.forumsystem.src.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并行全量构建
+ * 把 (0, 最大主题ID] 切成固定宽度的ID区间，在 {@link ForkJoinPool} 上递归二分：每个叶子任务用一条连接
+ * 依次流式读取一个区间的主题及其回复，分词后写入自己的内存段，配置了索引目录时每满 flushDocs 篇写成一个磁盘段；
+ * 两半都完成后把剩余的内存段合并（小段追加到大段），最终组装成一个 {@link InvertedIndex}。
+ * 区间互不重叠，合并时不需要处理重复文档。
+ *
+ * 工作线程数就是同时占用的数据库连接数，阻塞在读取上时线程池不额外补偿线程；
+ * 另有所有线程共享的限速，限制每秒读取的行数，避免重建压满数据库。
+ * 进度按完成的区间数统计，每完成一成输出一次。每个实例只构建一次。
+ */
+public class ParallelIndexBuilder {
+
+    /**
+     * 默认的区间宽度（主题ID数）
+     */
+    public static final int DEFAULT_RANGE_SIZE = 10000;
+
+    // 每读取这么多行申请一次限速额度
+    private static final int THROTTLE_BATCH = 64;
+
+    private final TopicSearchEngine.TopicSource source;
+    private final SegmentDirectory directory;
+    private final int flushDocs;
+    private final int parallelism;
+    private final int rangeSize;
+    private final Throttle throttle;
+
+    // 已写出的磁盘段，构建失败时释放
+    private final List<DiskSegment> written = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder rows = new LongAdder();
+    private final AtomicInteger rangesDone = new AtomicInteger();
+    private volatile int rangeCount;
+    private volatile long startNanos;
+    // 构建结束前为0
+    private volatile long finishNanos;
+
+    /**
+     * @param source 主题数据来源，区间读取会被多个线程并发调用
+     * @param directory 索引目录，为null时索引只保存在内存中
+     * @param flushDocs 内存段写成磁盘段的文档数
+     * @param parallelism 工作线程数
+     * @param rangeSize 每个区间的主题ID数
+     * @param maxRowsPerSecond 每秒最多读取的行数，0表示不限速
+     */
+    public ParallelIndexBuilder(TopicSearchEngine.TopicSource source, SegmentDirectory directory, int flushDocs,
+                                int parallelism, int rangeSize, int maxRowsPerSecond) {
+        this.source = source;
+        this.directory = directory;
+        this.flushDocs = Math.max(1, flushDocs);
+        this.parallelism = Math.max(1, parallelism);
+        this.rangeSize = Math.max(1, rangeSize);
+        this.throttle = new Throttle(maxRowsPerSecond);
+    }
+
+    /**
+     * 从数据来源构建索引，段文件尚未写入清单，需要再 {@link InvertedIndex#commit()}
+     * @return 构建好的索引
+     * @throws IOException 写段文件失败
+     */
+    public InvertedIndex build() throws IOException {
+        startNanos = System.nanoTime();
+        ForkJoinPool pool = null;
+        try {
+            int maxTopicId = source.maxTopicId();
+            rangeCount = (int) ((maxTopicId + (long) rangeSize - 1) / rangeSize);
+            Partial result;
+            if (rangeCount == 0) {
+                result = new Partial();
+            } else {
+                // 不补偿阻塞的工作线程，同时读取的连接数不超过 parallelism
+                pool = new ForkJoinPool(parallelism, ParallelIndexBuilder::newWorker, null, false,
+                        parallelism, parallelism, 1, p -> true, 60, TimeUnit.SECONDS);
+                result = pool.invoke(new RangeTask(0, rangeCount));
+            }
+            return InvertedIndex.assemble(directory, flushDocs, result.segments, result.tail);
+        } catch (UncheckedIOException e) {
+            release();
+            throw e.getCause();
+        } catch (RuntimeException | Error e) {
+            release();
+            throw e;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            finishNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * 获取构建进度
+     * @return Progress 进度快照
+     */
+    public Progress getProgress() {
+        long start = startNanos;
+        long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+        long elapsedMillis = start != 0 ? TimeUnit.NANOSECONDS.toMillis(end - start) : 0;
+        return new Progress(rows.sum(), rangesDone.get(), rangeCount, parallelism, elapsedMillis, finishNanos != 0);
+    }
+
+    private void release() {
+        if (directory == null) {
+            return;
+        }
+        synchronized (written) {
+            for (DiskSegment segment : written) {
+                directory.release(segment.name());
+            }
+        }
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("search-rebuild-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    // 读取第 range 个区间 (range * rangeSize, (range + 1) * rangeSize] 的主题和回复
+    private Partial scanRange(int range) {
+        long fromId = (long) range * rangeSize;
+        int toId = (int) Math.min(Integer.MAX_VALUE, fromId + rangeSize);
+        Partial partial = new Partial();
+        int[] unpaid = new int[1];
+        source.scanTopics((int) fromId, toId, topic -> {
+            partial.tail.append(topic, MemorySegment.analyze(topic));
+            partial.added(unpaid);
+        });
+        source.scanReplies((int) fromId, toId, reply -> {
+            partial.tail.appendReply(reply, MemorySegment.analyze(reply));
+            partial.added(unpaid);
+        });
+        throttle.acquire(unpaid[0]);
+
+        int done = rangesDone.incrementAndGet();
+        int total = rangeCount;
+        if (total >= 10 && done < total && done * 10 / total != (done - 1) * 10 / total) {
+            System.out.println("主题搜索索引重建 " + done * 100 / total + "%，" + getProgress());
+        }
+        return partial;
+    }
+
+    /**
+     * 构建第 [from, to) 个区间，只剩一个区间时直接读取，否则两半并行后合并
+     * 任务只在线程池内使用，不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private final class RangeTask extends RecursiveTask<Partial> {
+        private final int from;
+        private final int to;
+
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                return scanRange(from);
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask right = new RangeTask(mid, to);
+            right.fork();
+            Partial left = new RangeTask(from, mid).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    /**
+     * 部分索引：已写出的磁盘段和不足 flushDocs 篇的剩余文档，只由一个任务持有
+     */
+    private final class Partial {
+        private final List<DiskSegment> segments = new ArrayList<>();
+        private MemorySegment tail = new MemorySegment();
+
+        // 每加入一篇文档调用一次：计数、按批申请限速额度、满 flushDocs 篇时写出
+        void added(int[] unpaid) {
+            rows.increment();
+            if (++unpaid[0] == THROTTLE_BATCH) {
+                throttle.acquire(THROTTLE_BATCH);
+                unpaid[0] = 0;
+            }
+            if (directory != null && tail.maxDoc() >= flushDocs) {
+                flushTail();
+            }
+        }
+
+        void flushTail() {
+            try {
+                DiskSegment segment = InvertedIndex.writeSegment(directory, tail);
+                written.add(segment);
+                segments.add(segment);
+                tail = new MemorySegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        Partial merge(Partial other) {
+            segments.addAll(other.segments);
+            if (other.tail.maxDoc() > tail.maxDoc()) {
+                other.tail.appendAll(tail);
+                tail = other.tail;
+            } else {
+                tail.appendAll(other.tail);
+            }
+            if (directory != null && tail.maxDoc() >= flushDocs) {
+                flushTail();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * 限速：每行占用固定的时间片，各线程在锁内预约时间片、在锁外等待
+     */
+    private static final class Throttle {
+        private final long nanosPerRow;
+        private long nextFreeNanos;
+
+        Throttle(int maxRowsPerSecond) {
+            this.nanosPerRow = maxRowsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond : 0;
+        }
+
+        void acquire(int count) {
+            if (nanosPerRow == 0 || count == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                nextFreeNanos = Math.max(nextFreeNanos, now) + count * nanosPerRow;
+                waitNanos = nextFreeNanos - now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("索引重建被中断");
+            }
+        }
+    }
+
+    /**
+     * 构建进度快照
+     */
+    public static class Progress {
+        private final long rows;
+        private final int rangesDone;
+        private final int rangeCount;
+        private final int parallelism;
+        private final long elapsedMillis;
+        private final boolean finished;
+
+        Progress(long rows, int rangesDone, int rangeCount, int parallelism, long elapsedMillis, boolean finished) {
+            this.rows = rows;
+            this.rangesDone = rangesDone;
+            this.rangeCount = rangeCount;
+            this.parallelism = parallelism;
+            this.elapsedMillis = elapsedMillis;
+            this.finished = finished;
+        }
+
+        // Getters
+        public long getRows() { return rows; }
+        public int getRangesDone() { return rangesDone; }
+        public int getRangeCount() { return rangeCount; }
+        public int getParallelism() { return parallelism; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isFinished() { return finished; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis > 0 ? rows * 1000.0 / elapsedMillis : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s区间 %d/%d, 主题和回复 %d 条, %.0f 条/秒, 线程 %d, 耗时 %.1fs",
+                    finished ? "" : "进行中: ", rangesDone, rangeCount, rows, getRowsPerSecond(),
+                    parallelism, elapsedMillis / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package main.forumsystem.src.search;
+
+import java.util.Arrays;
+
+/**
+ * 倒排表
+ * 记录包含某个词的文档序号（升序）、该词在标题和正文中的词频以及出现位置。
+ * 各项保存在可增长的基本类型数组中，不为每条记录创建对象。
+ * 只能按文档序号递增的顺序追加。
+ */
+final class PostingList {
+
+    private int[] docs = new int[4];
+    private int[] titleFreqs = new int[4];
+    private int[] contentFreqs = new int[4];
+    // 第i篇文档的位置保存在 positions[positionStarts[i], positionStarts[i + 1])
+    private int[] positionStarts = new int[5];
+    private int[] positions = new int[8];
+    private int size;
+
+    /**
+     * 追加一篇文档
+     * @param doc 文档序号，必须大于已有的所有序号
+     * @param titleFreq 标题中的词频
+     * @param contentFreq 正文中的词频
+     * @param docPositions 出现位置（升序）
+     * @param positionCount 位置个数
+     */
+    void add(int doc, int titleFreq, int contentFreq, int[] docPositions, int positionCount) {
+        add(doc, titleFreq, contentFreq, docPositions, 0, positionCount);
+    }
+
+    /**
+     * 追加一篇文档，位置从 docPositions[positionOffset] 开始读取
+     */
+    void add(int doc, int titleFreq, int contentFreq, int[] docPositions, int positionOffset, int positionCount) {
+        if (size == docs.length) {
+            int capacity = size + (size >> 1) + 1;
+            docs = Arrays.copyOf(docs, capacity);
+            titleFreqs = Arrays.copyOf(titleFreqs, capacity);
+            contentFreqs = Arrays.copyOf(contentFreqs, capacity);
+            positionStarts = Arrays.copyOf(positionStarts, capacity + 1);
+        }
+        int start = positionStarts[size];
+        if (start + positionCount > positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(start + positionCount, positions.length + (positions.length >> 1)));
+        }
+        System.arraycopy(docPositions, positionOffset, positions, start, positionCount);
+
+        docs[size] = doc;
+        titleFreqs[size] = titleFreq;
+        contentFreqs[size] = contentFreq;
+        positionStarts[size + 1] = start + positionCount;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int index) {
+        return docs[index];
+    }
+
+    int titleFreq(int index) {
+        return titleFreqs[index];
+    }
+
+    int contentFreq(int index) {
+        return contentFreqs[index];
+    }
+
+    int positionStart(int index) {
+        return positionStarts[index];
+    }
+
+    int positionEnd(int index) {
+        return positionStarts[index + 1];
+    }
+
+    int position(int offset) {
+        return positions[offset];
+    }
+
+    int[] positions() {
+        return positions;
+    }
+
+    /**
+     * 从 fromIndex 开始查找第一个序号不小于 target 的文档，先倍增步长再二分
+     * @param fromIndex 起始下标
+     * @param target 目标文档序号
+     * @return 下标，不存在时返回 size()
+     */
+    int advance(int fromIndex, int target) {
+        if (fromIndex >= size || docs[fromIndex] >= target) {
+            return fromIndex;
+        }
+        int step = 1;
+        int low = fromIndex;
+        int high = fromIndex + step;
+        while (high < size && docs[high] < target) {
+            low = high;
+            step <<= 1;
+            high = fromIndex + step;
+        }
+        int index = Arrays.binarySearch(docs, low + 1, Math.min(high, size - 1) + 1, target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * 估算占用的堆内存（字节）
+     */
+    long estimatedBytes() {
+        return 4L * (docs.length + titleFreqs.length + contentFreqs.length + positionStarts.length + positions.length) + 64;
+    }
+}
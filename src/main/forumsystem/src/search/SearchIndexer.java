@@ -0,0 +1,334 @@
+package main.forumsystem.src.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 搜索索引更新线程
+ * 写操作提交后把变更事件放入队列，由唯一的后台线程按小批次取出：合并同一对象的重复事件，
+ * 整批交给 {@link BatchHandler} 从数据库读回最新数据并一次性应用到索引。
+ * 索引只有这一个写入方，各写操作之间不需要为索引加锁协调。
+ *
+ * 队列已满或应用失败时放弃增量更新，改为从数据库全量重建；重建失败按退避间隔重试。
+ * 重建开始前清空队列（已提交的变更会被扫描读到），重建期间到达的事件在重建完成后继续应用。
+ * 延迟指标为尚未应用的最早事件已等待的时间。停止时先把队列中的事件应用完。
+ */
+public class SearchIndexer {
+
+    // 空闲时检查重建请求和停止标志的间隔（毫秒）
+    private static final long IDLE_POLL_MILLIS = 100;
+    // 重建失败后的最长重试间隔（毫秒）
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+    // 停止时等待队列排空的最长时间（毫秒）
+    private static final long SHUTDOWN_DRAIN_MILLIS = 10_000;
+
+    /**
+     * 变更对象类型
+     */
+    public enum ChangeType {
+        TOPIC, REPLY
+    }
+
+    private final BatchHandler handler;
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<ChangeEvent> queue;
+    private final Thread worker;
+
+    private volatile boolean stopped;
+    private volatile boolean rebuildRequested;
+    private volatile boolean rebuilding;
+    // 首次请求构建后开始接收事件，此后不再关闭
+    private volatile boolean accepting;
+    private volatile boolean ready;
+    // 正在应用的批次中最早事件的入队时间，0表示没有批次在应用
+    private volatile long applyingSinceNanos;
+    private volatile long maxLagNanos;
+    private volatile long lastRebuildMillis;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder rebuildCount = new LongAdder();
+
+    /**
+     * @param name 线程名
+     * @param queueCapacity 队列容量，超出时转为全量重建
+     * @param maxBatchSize 每批最多应用的事件数
+     * @param handler 批次处理函数
+     */
+    public SearchIndexer(String name, int queueCapacity, int maxBatchSize, BatchHandler handler) {
+        this.handler = handler;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 记录一次变更，应在事务提交后调用
+     * 索引尚未构建且没有构建请求时忽略，构建时会从数据库读到该变更
+     * @param type 对象类型
+     * @param id 对象ID
+     */
+    public void enqueue(ChangeType type, int id) {
+        if (!accepting) {
+            return;
+        }
+        enqueued.increment();
+        if (!queue.offer(new ChangeEvent(type, id, System.nanoTime()))) {
+            overflowCount.increment();
+            requestRebuild();
+        }
+    }
+
+    /**
+     * 请求从数据库全量重建，由后台线程异步执行
+     */
+    public void requestRebuild() {
+        accepting = true;
+        rebuildRequested = true;
+    }
+
+    /**
+     * 标记索引已可用（例如已从磁盘加载），之后的变更开始进入队列
+     */
+    public void markReady() {
+        accepting = true;
+        ready = true;
+    }
+
+    /**
+     * 索引是否可用：尚未构建且没有进行中或待执行的构建时请求构建，不等待构建完成
+     * 构建失败时由后台线程按退避间隔重试，期间一直返回false
+     * @return boolean 索引是否已构建
+     */
+    public boolean checkReady() {
+        if (!ready && !rebuildRequested && !rebuilding && !stopped) {
+            requestRebuild();
+        }
+        return ready;
+    }
+
+    /**
+     * 索引是否已构建
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 当前延迟：尚未应用的最早事件已等待的时间
+     * @return long 毫秒，没有待应用事件时为0
+     */
+    public long getLagMillis() {
+        long oldest = applyingSinceNanos;
+        ChangeEvent head = queue.peek();
+        if (oldest == 0 && head != null) {
+            oldest = head.enqueuedNanos;
+        }
+        return oldest == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+    }
+
+    /**
+     * 停止后台线程：等待已入队的事件应用完，超时则中断
+     * @return boolean 是否所有事件都已应用，且没有待执行的重建
+     */
+    public boolean shutdown() {
+        stopped = true;
+        try {
+            worker.join(SHUTDOWN_DRAIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+            return false;
+        }
+        return queue.isEmpty() && !rebuildRequested && applyingSinceNanos == 0;
+    }
+
+    /**
+     * 获取更新线程状态
+     * @return IndexerStats 状态快照
+     */
+    public IndexerStats getStats() {
+        return new IndexerStats(ready, queue.size(), getLagMillis(), TimeUnit.NANOSECONDS.toMillis(maxLagNanos),
+                enqueued.sum(), applied.sum(), merged.sum(), batchCount.sum(),
+                overflowCount.sum(), failureCount.sum(), rebuildCount.sum(), lastRebuildMillis);
+    }
+
+    private void run() {
+        List<ChangeEvent> batch = new ArrayList<>(maxBatchSize);
+        long retryDelay = IDLE_POLL_MILLIS;
+        // 停止后继续应用队列中剩余的事件，但不再重建
+        while (!stopped || (!rebuildRequested && !queue.isEmpty())) {
+            try {
+                if (rebuildRequested) {
+                    if (rebuild()) {
+                        retryDelay = IDLE_POLL_MILLIS;
+                    } else {
+                        Thread.sleep(retryDelay);
+                        retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+                    }
+                    continue;
+                }
+                ChangeEvent first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                applyBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<ChangeEvent> batch) {
+        Set<Integer> topicIds = new LinkedHashSet<>();
+        Set<Integer> replyIds = new LinkedHashSet<>();
+        for (ChangeEvent event : batch) {
+            (event.type == ChangeType.TOPIC ? topicIds : replyIds).add(event.id);
+        }
+
+        applyingSinceNanos = batch.get(0).enqueuedNanos;
+        try {
+            handler.apply(topicIds, replyIds);
+            long lag = System.nanoTime() - applyingSinceNanos;
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+            batchCount.increment();
+            applied.add(batch.size());
+            merged.add(batch.size() - topicIds.size() - replyIds.size());
+        } catch (RuntimeException e) {
+            // 无法确定索引与数据库是否一致，以数据库为准全量重建
+            e.printStackTrace();
+            failureCount.increment();
+            requestRebuild();
+        } finally {
+            applyingSinceNanos = 0;
+        }
+    }
+
+    private boolean rebuild() {
+        rebuilding = true;
+        rebuildRequested = false;
+        queue.clear();
+        long start = System.currentTimeMillis();
+        boolean succeeded = false;
+        try {
+            handler.rebuild();
+            succeeded = true;
+            rebuildCount.increment();
+            lastRebuildMillis = System.currentTimeMillis() - start;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            failureCount.increment();
+            rebuildRequested = true;
+        }
+        if (succeeded) {
+            ready = true;
+        }
+        rebuilding = false;
+        return succeeded;
+    }
+
+    /**
+     * 批次处理函数，只在更新线程中调用
+     */
+    public interface BatchHandler {
+        /**
+         * 按数据库中的最新数据更新索引，失败时抛出异常
+         * @param topicIds 变更的主题ID（已去重）
+         * @param replyIds 变更的回复ID（已去重）
+         */
+        void apply(Set<Integer> topicIds, Set<Integer> replyIds);
+
+        /**
+         * 从数据库全量重建索引，失败时抛出异常且不影响当前索引
+         */
+        void rebuild();
+    }
+
+    private static final class ChangeEvent {
+        private final ChangeType type;
+        private final int id;
+        private final long enqueuedNanos;
+
+        ChangeEvent(ChangeType type, int id, long enqueuedNanos) {
+            this.type = type;
+            this.id = id;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * 更新线程状态快照
+     */
+    public static class IndexerStats {
+        private final boolean ready;
+        private final int pending;
+        private final long lagMillis;
+        private final long maxLagMillis;
+        private final long enqueued;
+        private final long applied;
+        private final long merged;
+        private final long batchCount;
+        private final long overflowCount;
+        private final long failureCount;
+        private final long rebuildCount;
+        private final long lastRebuildMillis;
+
+        IndexerStats(boolean ready, int pending, long lagMillis, long maxLagMillis,
+                     long enqueued, long applied, long merged, long batchCount,
+                     long overflowCount, long failureCount, long rebuildCount, long lastRebuildMillis) {
+            this.ready = ready;
+            this.pending = pending;
+            this.lagMillis = lagMillis;
+            this.maxLagMillis = maxLagMillis;
+            this.enqueued = enqueued;
+            this.applied = applied;
+            this.merged = merged;
+            this.batchCount = batchCount;
+            this.overflowCount = overflowCount;
+            this.failureCount = failureCount;
+            this.rebuildCount = rebuildCount;
+            this.lastRebuildMillis = lastRebuildMillis;
+        }
+
+        // Getters
+        public boolean isReady() { return ready; }
+        public int getPending() { return pending; }
+        public long getLagMillis() { return lagMillis; }
+        public long getMaxLagMillis() { return maxLagMillis; }
+        public long getEnqueued() { return enqueued; }
+        public long getApplied() { return applied; }
+        public long getMerged() { return merged; }
+        public long getBatchCount() { return batchCount; }
+        public long getOverflowCount() { return overflowCount; }
+        public long getFailureCount() { return failureCount; }
+        public long getRebuildCount() { return rebuildCount; }
+        public long getLastRebuildMillis() { return lastRebuildMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("待应用: %d, 延迟: %dms (最大 %dms), 事件: %d (已应用 %d, 合并 %d), 批次: %d, "
+                            + "溢出: %d, 失败: %d, 重建: %d次 (最近 %dms)",
+                    pending, lagMillis, maxLagMillis, enqueued, applied, merged, batchCount,
+                    overflowCount, failureCount, rebuildCount, lastRebuildMillis);
+        }
+    }
+}
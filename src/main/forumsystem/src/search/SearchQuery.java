@@ -0,0 +1,108 @@
+package main.forumsystem.src.search;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索条件
+ * 关键词按空白切分为多个子句，所有子句都必须命中（AND）；用双引号括起的部分作为一个子句。
+ * 每个子句分词后的词必须在同一字段中相邻出现（短语匹配），
+ * 因此不带空格的中文关键词切成的二元词会按原文顺序匹配，而不是分散命中。
+ * 结果默认按相关度排序，见 {@link TopicScorer}。
+ * 默认只检索主题；包含回复时回复的命中折叠到所属主题，作者和时间条件作用于命中的主题或回复本身。
+ */
+public class SearchQuery {
+
+    /**
+     * 结果排序方式
+     */
+    public enum SortOrder {
+        RELEVANCE,  // 相关度（文本相关度、热度、最后回复时间）
+        NEWEST      // 发布时间降序
+    }
+
+    private final String keyword;
+    private int forumId;
+    private int userId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private int offset;
+    private int limit = 10;
+    private SortOrder sortOrder = SortOrder.RELEVANCE;
+    private boolean includeReplies;
+
+    public SearchQuery(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public SearchQuery(String keyword, int offset, int limit) {
+        this.keyword = keyword;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * 解析关键词为短语子句，每个子句是分词后的词序列，分词结果为空的部分被忽略
+     * @return 子句列表
+     */
+    public List<List<String>> parseClauses() {
+        List<List<String>> clauses = new ArrayList<>();
+        if (keyword == null) {
+            return clauses;
+        }
+
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (c == '"' || c == '＂') {
+                addClause(clauses, current);
+                quoted = !quoted;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                addClause(clauses, current);
+            } else {
+                current.append(c);
+            }
+        }
+        addClause(clauses, current);
+        return clauses;
+    }
+
+    private static void addClause(List<List<String>> clauses, StringBuilder text) {
+        if (text.length() > 0) {
+            List<String> tokens = Tokenizer.tokenizeQuery(text.toString());
+            if (!tokens.isEmpty()) {
+                clauses.add(tokens);
+            }
+            text.setLength(0);
+        }
+    }
+
+    // Getters and Setters
+    public String getKeyword() { return keyword; }
+
+    public int getForumId() { return forumId; }
+    public void setForumId(int forumId) { this.forumId = forumId; }
+
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+
+    public LocalDateTime getStartTime() { return startTime; }
+    public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; }
+
+    public LocalDateTime getEndTime() { return endTime; }
+    public void setEndTime(LocalDateTime endTime) { this.endTime = endTime; }
+
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+
+    public SortOrder getSortOrder() { return sortOrder; }
+    public void setSortOrder(SortOrder sortOrder) { this.sortOrder = sortOrder; }
+
+    public boolean isIncludeReplies() { return includeReplies; }
+    public void setIncludeReplies(boolean includeReplies) { this.includeReplies = includeReplies; }
+}
@@ -0,0 +1,43 @@
+package main.forumsystem.src.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 搜索结果
+ * 当前页的主题ID（按排序顺序）以及命中总数；包含回复的检索还给出每个主题得分最高的回复
+ */
+public class SearchResult {
+
+    private final int totalHits;
+    private final List<Integer> topicIds;
+    private final List<Integer> matchedReplyIds;
+    private final long tookNanos;
+
+    public SearchResult(int totalHits, List<Integer> topicIds, long tookNanos) {
+        this(totalHits, topicIds, Collections.nCopies(topicIds.size(), 0), tookNanos);
+    }
+
+    public SearchResult(int totalHits, List<Integer> topicIds, List<Integer> matchedReplyIds, long tookNanos) {
+        this.totalHits = totalHits;
+        this.topicIds = topicIds;
+        this.matchedReplyIds = matchedReplyIds;
+        this.tookNanos = tookNanos;
+    }
+
+    // Getters
+    public int getTotalHits() { return totalHits; }
+    public List<Integer> getTopicIds() { return topicIds; }
+
+    /**
+     * 与 {@link #getTopicIds()} 一一对应的最佳匹配回复ID，主题本身匹配最好或只检索主题时为0
+     */
+    public List<Integer> getMatchedReplyIds() { return matchedReplyIds; }
+
+    /**
+     * 检索耗时（毫秒），不含从数据库加载主题
+     */
+    public double getTookMillis() {
+        return tookNanos / 1_000_000.0;
+    }
+}
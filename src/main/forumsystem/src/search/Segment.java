@@ -0,0 +1,119 @@
+package main.forumsystem.src.search;
+
+/**
+ * 索引段
+ * 一组文档及其倒排表，文档以段内序号标识。文档分为主题和回复两种：
+ * 主题文档的键为主题ID，回复文档的键为回复ID的相反数，两者共用一个键空间。
+ * 查询在每个段上分别求交集，再按键合并结果；同一个键最多在一个段中存活。
+ */
+abstract class Segment {
+
+    /**
+     * 回复文档的键
+     */
+    static int replyKey(int replyId) {
+        return -replyId;
+    }
+
+    /**
+     * 序号上界（包含已删除的文档）
+     */
+    abstract int maxDoc();
+
+    /**
+     * 存活的文档数
+     */
+    abstract int liveDocs();
+
+    abstract boolean isLive(int ord);
+
+    /**
+     * 查找键对应的存活文档
+     * @param key 主题ID，或 {@link #replyKey} 得到的回复键
+     * @return 序号，不在本段或已删除时返回-1
+     */
+    abstract int ordinalOf(int key);
+
+    /**
+     * 读取词的倒排表
+     * @param term 词
+     * @return 倒排表，词不存在时返回null
+     */
+    abstract PostingList postings(String term);
+
+    /**
+     * 包含词的文档数（含已删除的文档），词不存在时为0
+     */
+    abstract int docFreq(String term);
+
+    /**
+     * 词典中的词数
+     */
+    abstract int termCount();
+
+    /**
+     * 主题文档为主题ID，回复文档为所属主题的ID
+     */
+    abstract int topicId(int ord);
+
+    /**
+     * 回复文档的回复ID，主题文档为0
+     */
+    abstract int replyId(int ord);
+
+    /**
+     * 文档的键，见 {@link #ordinalOf}
+     */
+    int key(int ord) {
+        int replyId = replyId(ord);
+        return replyId != 0 ? replyKey(replyId) : topicId(ord);
+    }
+
+    /**
+     * 回复文档不记录板块（为0），过滤时以所属主题为准
+     */
+    abstract int forumId(int ord);
+
+    abstract int userId(int ord);
+
+    abstract long createTime(int ord);
+
+    abstract int titleLength(int ord);
+
+    abstract int contentLength(int ord);
+
+    abstract int replyCount(int ord);
+
+    abstract int viewCount(int ord);
+
+    /**
+     * 最后回复时间，没有回复时为发布时间（毫秒）
+     */
+    abstract long lastActiveTime(int ord);
+
+    /**
+     * 读取文档的 {@link MinHash} 签名，回复文档不计算签名，各位均为 {@link Integer#MAX_VALUE}
+     * @param out 长度为 {@link MinHash#NUM_HASHES} 的数组
+     */
+    abstract void signature(int ord, int[] out);
+
+    /**
+     * 主题文档数（含已删除），回复没有标题，平均标题长度按主题文档计算
+     */
+    abstract int topicDocs();
+
+    /**
+     * 所有文档（含已删除）的标题长度之和，用于计算平均长度
+     */
+    abstract long sumTitleLength();
+
+    /**
+     * 所有文档（含已删除）的正文长度之和
+     */
+    abstract long sumContentLength();
+
+    /**
+     * 估算占用的堆内存（字节）
+     */
+    abstract long heapBytes();
+}
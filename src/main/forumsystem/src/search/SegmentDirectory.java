@@ -0,0 +1,226 @@
+package main.forumsystem.src.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 索引目录
+ * 保存段文件和清单。清单记录当前生效的段及各段的删除标记，每次提交写一个新版本的清单：
+ * 先写临时文件并刷盘，再原子改名，读取时取版本号最大的清单，因此提交要么完整生效、要么不生效。
+ * 提交后删除旧清单以及既不被清单引用、也没有索引在使用的段文件（删除失败的下次提交再试）。
+ *
+ * 打开索引写入时创建脏标记，正常关闭并提交后删除。启动时存在脏标记说明上次没有正常关闭，
+ * 最后一次提交之后的变更已丢失，应从数据库重建。
+ */
+public class SegmentDirectory {
+
+    private static final int MANIFEST_MAGIC = 0x4653494D;
+    private static final int MANIFEST_VERSION = 1;
+    private static final String MANIFEST_PREFIX = "manifest-";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final String DIRTY_MARKER = "index.dirty";
+
+    private final File dir;
+    private long generation;
+    private long nextSegment;
+    // 已创建或已打开、尚未释放的段，清理时不删除
+    private final Set<String> inUse = new HashSet<>();
+
+    /**
+     * @param dir 目录，不存在时创建
+     */
+    public SegmentDirectory(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建索引目录: " + dir);
+        }
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(MANIFEST_PREFIX)) {
+                    generation = Math.max(generation, parseNumber(name, MANIFEST_PREFIX, ""));
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    nextSegment = Math.max(nextSegment, parseNumber(name, SEGMENT_PREFIX, SEGMENT_SUFFIX) + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否存在可直接加载的索引：有清单且上次正常关闭
+     */
+    public synchronized boolean hasCleanIndex() {
+        return generation > 0 && !new File(dir, DIRTY_MARKER).exists();
+    }
+
+    /**
+     * 标记索引正在写入
+     */
+    public void markDirty() throws IOException {
+        File marker = new File(dir, DIRTY_MARKER);
+        if (!marker.exists() && !marker.createNewFile() && !marker.exists()) {
+            throw new IOException("无法创建脏标记: " + marker);
+        }
+    }
+
+    /**
+     * 标记索引已正常关闭，调用前应已提交
+     */
+    public void markClean() {
+        File marker = new File(dir, DIRTY_MARKER);
+        if (marker.exists() && !marker.delete()) {
+            System.err.println("删除脏标记失败: " + marker);
+        }
+    }
+
+    /**
+     * 分配新的段文件
+     */
+    synchronized File newSegment() {
+        String name = String.format("%s%08d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX);
+        inUse.add(name);
+        return new File(dir, name);
+    }
+
+    synchronized File segmentFile(String name) {
+        inUse.add(name);
+        return new File(dir, name);
+    }
+
+    /**
+     * 段不再被使用，下次提交时若不在清单中则删除
+     */
+    synchronized void release(String name) {
+        inUse.remove(name);
+    }
+
+    /**
+     * 读取最新的清单
+     * @return 清单，没有清单时返回null
+     */
+    synchronized Manifest readManifest() throws IOException {
+        if (generation == 0) {
+            return null;
+        }
+        File file = new File(dir, MANIFEST_PREFIX + generation);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("不是索引清单文件: " + file);
+            }
+            int version = in.readInt();
+            if (version != MANIFEST_VERSION) {
+                throw new IOException("不支持的索引清单版本 " + version + ": " + file);
+            }
+            long stored = in.readLong();
+            int count = in.readInt();
+            List<String> names = new ArrayList<>(count);
+            List<BitSet> deletions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(in.readUTF());
+                long[] words = new long[in.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                deletions.add(BitSet.valueOf(words));
+            }
+            return new Manifest(stored, names, deletions);
+        }
+    }
+
+    /**
+     * 提交：写入新版本的清单并清理不再需要的文件
+     * @param segments 生效的段，按顺序
+     */
+    synchronized void commit(List<DiskSegment> segments) throws IOException {
+        long next = generation + 1;
+        File tmp = new File(dir, MANIFEST_PREFIX + next + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeLong(next);
+            out.writeInt(segments.size());
+            for (DiskSegment segment : segments) {
+                out.writeUTF(segment.name());
+                long[] words = segment.deletedDocs().toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(dir, MANIFEST_PREFIX + next).toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        generation = next;
+
+        Set<String> referenced = new HashSet<>();
+        for (DiskSegment segment : segments) {
+            referenced.add(segment.name());
+        }
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            boolean stale = name.startsWith(MANIFEST_PREFIX) && !name.equals(MANIFEST_PREFIX + generation)
+                    || name.startsWith(SEGMENT_PREFIX) && !referenced.contains(name) && !inUse.contains(name);
+            if (stale) {
+                // 仍被映射的文件在部分系统上无法删除，留待下次提交
+                new File(dir, name).delete();
+            }
+        }
+    }
+
+    /**
+     * 目录中段文件的总字节数
+     */
+    long diskBytes() {
+        long bytes = 0;
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX));
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static long parseNumber(String name, String prefix, String suffix) {
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 清单内容：生效的段及其删除标记
+     */
+    static final class Manifest {
+        final long generation;
+        final List<String> segmentNames;
+        final List<BitSet> deletions;
+
+        Manifest(long generation, List<String> segmentNames, List<BitSet> deletions) {
+            this.generation = generation;
+            this.segmentNames = segmentNames;
+            this.deletions = deletions;
+        }
+    }
+}
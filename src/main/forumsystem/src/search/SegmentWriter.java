@@ -0,0 +1,291 @@
+package main.forumsystem.src.search;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 段文件写入器
+ * 先依次加入所有文档，再按词依次加入倒排项，最后 {@link #finish()}。
+ * 倒排项边写边输出，堆上只保留文档元数据和词典；文件格式见 {@link DiskSegment}。
+ */
+final class SegmentWriter {
+
+    private final File file;
+    private final CountingOutputStream out;
+
+    private int[] topicIds = new int[64];
+    private int[] replyIds = new int[64];
+    private int[] forumIds = new int[64];
+    private int[] userIds = new int[64];
+    private long[] createTimes = new long[64];
+    private int[] titleLengths = new int[64];
+    private int[] contentLengths = new int[64];
+    private long[] lastActiveTimes = new long[64];
+    private int[] replyCounts = new int[64];
+    private int[] viewCounts = new int[64];
+    private int[] signatureSlots = new int[64];
+    private int[] signatures = new int[64 * MinHash.NUM_HASHES];
+    private int slotCount;
+    private int topicDocCount;
+    private long sumTitleLength;
+    private long sumContentLength;
+    private int docCount;
+
+    private long docsOffset;
+    private long idMapOffset;
+    private long signaturesOffset;
+    private long postingsOffset = -1;
+
+    private char[] termChars = new char[256];
+    private int termCharCount;
+    private int[] termLengths = new int[64];
+    private int[] docFreqs = new int[64];
+    // 倒排表相对倒排区起点的偏移
+    private long[] termOffsets = new long[64];
+    private int termCount;
+
+    private int currentStart;
+    private int currentLength;
+    private int currentDocFreq;
+    private long currentOffset;
+    private int previousDoc;
+
+    SegmentWriter(File file) throws IOException {
+        this.file = file;
+        this.out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.write(new byte[DiskSegment.HEADER_BYTES]);
+    }
+
+    /**
+     * 加入一篇文档，序号按加入顺序从0开始
+     * @param replyId 回复文档的回复ID，主题文档为0
+     * @param signature 签名，回复文档为null
+     */
+    void addDoc(int topicId, int replyId, int forumId, int userId, long createTime, long lastActiveTime,
+                int titleLength, int contentLength, int replyCount, int viewCount, int[] signature) {
+        if (postingsOffset >= 0) {
+            throw new IllegalStateException("文档必须在倒排项之前加入");
+        }
+        if (docCount == topicIds.length) {
+            int capacity = docCount * 2;
+            topicIds = Arrays.copyOf(topicIds, capacity);
+            replyIds = Arrays.copyOf(replyIds, capacity);
+            forumIds = Arrays.copyOf(forumIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            createTimes = Arrays.copyOf(createTimes, capacity);
+            titleLengths = Arrays.copyOf(titleLengths, capacity);
+            contentLengths = Arrays.copyOf(contentLengths, capacity);
+            lastActiveTimes = Arrays.copyOf(lastActiveTimes, capacity);
+            replyCounts = Arrays.copyOf(replyCounts, capacity);
+            viewCounts = Arrays.copyOf(viewCounts, capacity);
+            signatureSlots = Arrays.copyOf(signatureSlots, capacity);
+        }
+        topicIds[docCount] = topicId;
+        replyIds[docCount] = replyId;
+        forumIds[docCount] = forumId;
+        userIds[docCount] = userId;
+        createTimes[docCount] = createTime;
+        titleLengths[docCount] = titleLength;
+        contentLengths[docCount] = contentLength;
+        lastActiveTimes[docCount] = lastActiveTime;
+        replyCounts[docCount] = replyCount;
+        viewCounts[docCount] = viewCount;
+        signatureSlots[docCount] = -1;
+        if (signature != null) {
+            if ((slotCount + 1) * MinHash.NUM_HASHES > signatures.length) {
+                signatures = Arrays.copyOf(signatures, signatures.length * 2);
+            }
+            System.arraycopy(signature, 0, signatures, slotCount * MinHash.NUM_HASHES, MinHash.NUM_HASHES);
+            signatureSlots[docCount] = slotCount++;
+        }
+        if (replyId == 0) {
+            topicDocCount++;
+        }
+        sumTitleLength += titleLength;
+        sumContentLength += contentLength;
+        docCount++;
+    }
+
+    /**
+     * 开始一个词的倒排表，没有加入倒排项的词不会写入
+     */
+    void startTerm(char[] buffer, int offset, int length) throws IOException {
+        if (postingsOffset < 0) {
+            writeDocs();
+            postingsOffset = out.count;
+        }
+        if (termCharCount + length > termChars.length) {
+            termChars = Arrays.copyOf(termChars, Math.max(termCharCount + length, termChars.length * 2));
+        }
+        System.arraycopy(buffer, offset, termChars, termCharCount, length);
+        currentStart = termCharCount;
+        currentLength = length;
+        currentDocFreq = 0;
+        currentOffset = out.count - postingsOffset;
+        previousDoc = 0;
+    }
+
+    /**
+     * 加入一个倒排项，文档序号必须递增
+     */
+    void addPosting(int doc, int titleFreq, int contentFreq, int[] positions, int offset, int count) throws IOException {
+        writeVInt(doc - previousDoc);
+        writeVInt(titleFreq);
+        writeVInt(contentFreq);
+        writeVInt(count);
+        int previousPosition = 0;
+        for (int i = offset; i < offset + count; i++) {
+            writeVInt(positions[i] - previousPosition);
+            previousPosition = positions[i];
+        }
+        previousDoc = doc;
+        currentDocFreq++;
+    }
+
+    void finishTerm() {
+        if (currentDocFreq == 0) {
+            return;
+        }
+        if (termCount == termLengths.length) {
+            termLengths = Arrays.copyOf(termLengths, termCount * 2);
+            docFreqs = Arrays.copyOf(docFreqs, termCount * 2);
+            termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+        }
+        termLengths[termCount] = currentLength;
+        docFreqs[termCount] = currentDocFreq;
+        termOffsets[termCount] = currentOffset;
+        termCount++;
+        termCharCount = currentStart + currentLength;
+    }
+
+    /**
+     * 写入词典和文件头并刷盘
+     * @return 写入的文档数
+     */
+    int finish() throws IOException {
+        if (postingsOffset < 0) {
+            writeDocs();
+            postingsOffset = out.count;
+        }
+        long termsOffset = out.count;
+        int charOffset = 0;
+        long previousOffset = 0;
+        for (int term = 0; term < termCount; term++) {
+            writeVInt(termLengths[term]);
+            for (int i = 0; i < termLengths[term]; i++) {
+                writeVInt(termChars[charOffset + i]);
+            }
+            charOffset += termLengths[term];
+            writeVInt(docFreqs[term]);
+            writeVInt((int) (termOffsets[term] - previousOffset));
+            previousOffset = termOffsets[term];
+        }
+        long fileLength = out.count;
+        out.close();
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("段文件超过2GB，无法映射: " + file.getName());
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(DiskSegment.HEADER_BYTES);
+        header.putInt(DiskSegment.MAGIC).putInt(DiskSegment.VERSION).putInt(docCount).putInt(termCount)
+                .putLong(docsOffset).putLong(idMapOffset).putLong(postingsOffset).putLong(termsOffset)
+                .putLong(fileLength).putLong(sumTitleLength).putLong(sumContentLength).putLong(signaturesOffset)
+                .putLong(topicDocCount);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(header.array());
+            raf.getChannel().force(true);
+        }
+        return docCount;
+    }
+
+    /**
+     * 放弃写入并删除文件
+     */
+    void abort() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (!file.delete() && file.exists()) {
+            System.err.println("删除未完成的段文件失败: " + file);
+        }
+    }
+
+    // 文档元数据定长存放，之后是按键排序的（键, 序号）对，删除时二分查找，最后是主题文档的签名
+    private void writeDocs() throws IOException {
+        docsOffset = out.count;
+        ByteBuffer row = ByteBuffer.allocate(DiskSegment.DOC_BYTES);
+        for (int ord = 0; ord < docCount; ord++) {
+            row.clear();
+            row.putInt(topicIds[ord]).putInt(replyIds[ord]).putInt(forumIds[ord]).putInt(userIds[ord])
+                    .putLong(createTimes[ord]).putLong(lastActiveTimes[ord]).putInt(titleLengths[ord])
+                    .putInt(contentLengths[ord]).putInt(replyCounts[ord]).putInt(viewCounts[ord])
+                    .putInt(signatureSlots[ord]);
+            out.write(row.array());
+        }
+
+        idMapOffset = out.count;
+        long[] pairs = new long[docCount];
+        for (int ord = 0; ord < docCount; ord++) {
+            int key = replyIds[ord] != 0 ? Segment.replyKey(replyIds[ord]) : topicIds[ord];
+            // 序号非负，低32位不影响按键的有符号排序
+            pairs[ord] = ((long) key << 32) | ord;
+        }
+        Arrays.sort(pairs);
+        ByteBuffer pair = ByteBuffer.allocate(8);
+        for (long value : pairs) {
+            pair.clear();
+            pair.putLong(value);
+            out.write(pair.array());
+        }
+
+        signaturesOffset = out.count;
+        ByteBuffer signature = ByteBuffer.allocate(4 * MinHash.NUM_HASHES);
+        for (int slot = 0; slot < slotCount; slot++) {
+            signature.clear();
+            signature.asIntBuffer().put(signatures, slot * MinHash.NUM_HASHES, MinHash.NUM_HASHES);
+            out.write(signature.array());
+        }
+    }
+
+    private void writeVInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
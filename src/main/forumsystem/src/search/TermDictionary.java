@@ -0,0 +1,168 @@
+package main.forumsystem.src.search;
+
+import java.util.Arrays;
+
+/**
+ * 词典
+ * 把词映射为从0开始的连续编号。词的字符连续存放在一个 char[] 池中，
+ * 用开放寻址哈希表按字符片段直接查找，查找和新增都不需要先创建字符串。
+ * 词只增不删。非线程安全，由调用方加锁。
+ */
+final class TermDictionary {
+
+    private char[] pool = new char[256];
+    private int poolSize;
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int[] hashes = new int[16];
+    private int size;
+
+    // 槽位保存 编号+1，0表示空槽
+    private int[] table = new int[32];
+
+    /**
+     * 查找词的编号
+     * @return 编号，不存在时返回-1
+     */
+    int find(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && equalsAt(id, buffer, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * 查找词的编号
+     * @return 编号，不存在时返回-1
+     */
+    int find(String term) {
+        return find(term.toCharArray(), 0, term.length());
+    }
+
+    /**
+     * 查找词的编号，不存在时加入词典
+     * @return 编号
+     */
+    int add(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                break;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && equalsAt(id, buffer, offset, length)) {
+                return id;
+            }
+        }
+
+        int id = size++;
+        if (id == starts.length) {
+            int capacity = id + (id >> 1) + 1;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + length, pool.length * 2));
+        }
+        System.arraycopy(buffer, offset, pool, poolSize, length);
+        starts[id] = poolSize;
+        lengths[id] = length;
+        hashes[id] = hash;
+        poolSize += length;
+
+        table[slot] = id + 1;
+        // 负载因子超过0.5时扩容
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 词的字符串形式，仅用于展示和持久化
+     */
+    String term(int id) {
+        return new String(pool, starts[id], lengths[id]);
+    }
+
+    char[] pool() {
+        return pool;
+    }
+
+    int start(int id) {
+        return starts[id];
+    }
+
+    int length(int id) {
+        return lengths[id];
+    }
+
+    /**
+     * 清空词典
+     */
+    void clear() {
+        poolSize = 0;
+        size = 0;
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * 估算占用的堆内存（字节）
+     */
+    long estimatedBytes() {
+        return 2L * pool.length + 4L * (starts.length + lengths.length + hashes.length + table.length);
+    }
+
+    private boolean equalsAt(int id, char[] buffer, int offset, int length) {
+        if (lengths[id] != length) {
+            return false;
+        }
+        int start = starts[id];
+        for (int i = 0; i < length; i++) {
+            if (pool[start + i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] newTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = id + 1;
+        }
+        table = newTable;
+    }
+
+    private static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buffer[offset + i];
+        }
+        // 打散低位，线性探测对聚集敏感
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,161 @@
+package main.forumsystem.src.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索分词器
+ * 先做字符归一化：全角字母数字和标点转为半角，全角空格转为半角空格，字母统一转小写。
+ * 归一化后，连续的字母数字切为一个词；连续的中日韩文字按相邻两字切为二元词（"数据库" → "数据"、"据库"），
+ * 只有一个字时保留单字；其余字符作为分隔符。每个词占一个位置，短语匹配依赖相邻位置。
+ *
+ * 索引时另外为两字以上的中文片段输出每个单字，使单字查询（"书"）能命中"读书会"。单字与从该字开始的二元词
+ * 同一位置（最后一个字与最后一个二元词同一位置），不占用新位置，二元词和其后各词的位置与不输出单字时相同。
+ * 查询用 {@link #tokenizeQuery}，不输出这些单字：多字子句仍按二元词做短语匹配，单字子句直接查单字。
+ *
+ * 分词在一个按线程复用的 char[] 上进行，词以（缓冲区, 起点, 长度）的片段交给 {@link TokenSink}，
+ * 不为每个词创建字符串；需要保留词的调用方自行复制片段。
+ */
+public final class Tokenizer {
+
+    // 超过该长度的缓冲区用完即丢弃，不长期占用线程内存
+    private static final int MAX_CACHED_BUFFER = 1 << 16;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+
+    private Tokenizer() {
+    }
+
+    /**
+     * 词片段接收器
+     */
+    @FunctionalInterface
+    public interface TokenSink {
+        /**
+         * 接收一个词，buffer 在回调返回后会被复用，不能保留引用
+         * @param buffer 字符缓冲区
+         * @param offset 词的起点
+         * @param length 词的长度
+         * @param position 词的位置
+         */
+        void token(char[] buffer, int offset, int length, int position);
+    }
+
+    /**
+     * 按索引规则分词（含单字），位置从0开始
+     * @param text 文本，可以为null
+     * @param sink 词片段接收器
+     * @return int 占用的位置数，即下一个可用位置
+     */
+    public static int tokenize(String text, TokenSink sink) {
+        return tokenize(text, 0, true, sink);
+    }
+
+    /**
+     * 按索引规则分词（含单字）
+     * @param text 文本，可以为null
+     * @param startPosition 第一个词的位置
+     * @param sink 词片段接收器
+     * @return int 最后一个词之后的位置
+     */
+    public static int tokenize(String text, int startPosition, TokenSink sink) {
+        return tokenize(text, startPosition, true, sink);
+    }
+
+    private static int tokenize(String text, int startPosition, boolean unigrams, TokenSink sink) {
+        if (text == null || text.isEmpty()) {
+            return startPosition;
+        }
+
+        int length = text.length();
+        char[] buffer = BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            if (buffer.length <= MAX_CACHED_BUFFER) {
+                BUFFER.set(buffer);
+            }
+        }
+        text.getChars(0, length, buffer, 0);
+        for (int i = 0; i < length; i++) {
+            buffer[i] = normalize(buffer[i]);
+        }
+
+        int position = startPosition;
+        int i = 0;
+        while (i < length) {
+            char c = buffer[i];
+            if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(buffer[i])) {
+                    i++;
+                }
+                int runLength = i - start;
+                if (runLength == 1) {
+                    sink.token(buffer, start, 1, position++);
+                } else {
+                    for (int j = start; j < i - 1; j++) {
+                        sink.token(buffer, j, 2, position);
+                        if (unigrams) {
+                            sink.token(buffer, j, 1, position);
+                        }
+                        position++;
+                    }
+                    // 最后一个字与前一个字相同时已在同一位置输出过
+                    if (unigrams && buffer[i - 1] != buffer[i - 2]) {
+                        sink.token(buffer, i - 1, 1, position - 1);
+                    }
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && !isCjk(buffer[i]) && Character.isLetterOrDigit(buffer[i])) {
+                    i++;
+                }
+                sink.token(buffer, start, i - start, position++);
+            } else {
+                i++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 按查询规则分词（不输出多字片段中的单字），并把词复制为字符串
+     * 返回的词依次占用相邻位置，可以直接作为短语
+     * @param text 文本，可以为null
+     * @return 按出现顺序排列的词
+     */
+    public static List<String> tokenizeQuery(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, 0, false, (buffer, offset, length, position) -> tokens.add(new String(buffer, offset, length)));
+        return tokens;
+    }
+
+    /**
+     * 归一化单个字符：全角转半角并转小写
+     * @param c 字符
+     * @return char 归一化后的字符
+     */
+    public static char normalize(char c) {
+        if (c == '　') {
+            return ' ';
+        }
+        if (c >= '！' && c <= '～') {
+            c = (char) (c - 0xFEE0);
+        }
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.isUpperCase(c) ? Character.toLowerCase(c) : c;
+    }
+
+    static boolean isCjk(char c) {
+        if (c < 0x3040) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
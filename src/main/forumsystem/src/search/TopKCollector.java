@@ -0,0 +1,144 @@
+package main.forumsystem.src.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 有界堆 Top-K 收集器
+ * 只保留得分最高的K个文档，堆顶是当前第K名，新文档得分不超过堆顶时直接丢弃，
+ * 收集开销为 O(命中数 * log K)，内存与命中数无关。得分相同时主题ID大者优先。
+ */
+final class TopKCollector {
+
+    // 堆数组按需增长，K很大而命中很少时不预先分配
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int capacity;
+    private double[] scores;
+    private int[] docs;
+    private int[] tieBreaks;
+    private int size;
+    private int totalHits;
+
+    /**
+     * @param capacity 保留的文档数K
+     */
+    TopKCollector(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        int initial = Math.min(this.capacity, INITIAL_CAPACITY);
+        this.scores = new double[initial];
+        this.docs = new int[initial];
+        this.tieBreaks = new int[initial];
+    }
+
+    /**
+     * 收集一个命中文档
+     * @param doc 文档序号
+     * @param score 得分
+     * @param tieBreak 得分相同时的次序键（主题ID）
+     */
+    void collect(int doc, double score, int tieBreak) {
+        totalHits++;
+        if (capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            if (size == docs.length) {
+                int grown = (int) Math.min(capacity, docs.length * 2L);
+                scores = Arrays.copyOf(scores, grown);
+                docs = Arrays.copyOf(docs, grown);
+                tieBreaks = Arrays.copyOf(tieBreaks, grown);
+            }
+            scores[size] = score;
+            docs[size] = doc;
+            tieBreaks[size] = tieBreak;
+            siftUp(size++);
+        } else if (greater(score, tieBreak, scores[0], tieBreaks[0])) {
+            scores[0] = score;
+            docs[0] = doc;
+            tieBreaks[0] = tieBreak;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * 最小得分门槛：堆未满时为负无穷，之后为堆顶得分，低于它的文档无需精确计算
+     */
+    double threshold() {
+        return size < capacity ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * 按得分降序取出 [offset, K) 范围内的文档序号，调用后收集器清空
+     * @param offset 跳过的文档数
+     * @return 文档序号列表
+     */
+    List<Integer> drain(int offset) {
+        int count = size;
+        int[] ordered = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            ordered[i] = docs[0];
+            size--;
+            scores[0] = scores[size];
+            docs[0] = docs[size];
+            tieBreaks[0] = tieBreaks[size];
+            siftDown(0);
+        }
+        List<Integer> result = new ArrayList<>(Math.max(0, count - offset));
+        for (int i = offset; i < count; i++) {
+            result.add(ordered[i]);
+        }
+        return result;
+    }
+
+    private static boolean greater(double score, int tieBreak, double otherScore, int otherTieBreak) {
+        return score > otherScore || (score == otherScore && tieBreak > otherTieBreak);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!greater(scores[parent], tieBreaks[parent], scores[index], tieBreaks[index])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && greater(scores[left], tieBreaks[left], scores[right], tieBreaks[right])) {
+                smallest = right;
+            }
+            if (!greater(scores[index], tieBreaks[index], scores[smallest], tieBreaks[smallest])) {
+                break;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        int doc = docs[a];
+        docs[a] = docs[b];
+        docs[b] = doc;
+        int tieBreak = tieBreaks[a];
+        tieBreaks[a] = tieBreaks[b];
+        tieBreaks[b] = tieBreak;
+    }
+}
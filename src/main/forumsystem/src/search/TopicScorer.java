@@ -0,0 +1,72 @@
+package main.forumsystem.src.search;
+
+/**
+ * 主题相关度评分
+ * 文本相关度采用按字段加权的 BM25（BM25F）：标题词频乘以标题权重，两个字段的词频各自按字段长度归一化后相加，
+ * 再代入 BM25 的饱和函数，乘以逆文档频率。文本得分再乘以热度和时间衰减两个因子：
+ * <pre>
+ * 得分 = Σ BM25F(词) × (1 + 热度权重 × ln(1 + 回复数 + 浏览数 / 10))
+ *                   × (下限 + (1 - 下限) × 0.5 ^ (距最后回复天数 / 半衰期))
+ * </pre>
+ * 时间衰减设有下限，很久以前的高相关主题不会被完全压下去。不可变，可在多个查询间共享。
+ */
+public class TopicScorer {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // 浏览数折算为回复数的比例
+    private static final double VIEWS_PER_REPLY = 10.0;
+    private static final double RECENCY_FLOOR = 0.3;
+    private static final double DAY_MILLIS = 24 * 3600 * 1000.0;
+
+    /**
+     * 默认参数：标题权重2，热度权重0.2，半衰期30天
+     */
+    public static final TopicScorer DEFAULT = new TopicScorer(2.0, 0.2, 30);
+
+    private final double titleBoost;
+    private final double engagementWeight;
+    private final double halfLifeDays;
+
+    /**
+     * @param titleBoost 标题词频相对正文的权重
+     * @param engagementWeight 热度因子的权重，0表示不考虑热度
+     * @param halfLifeDays 时间衰减的半衰期（天），不大于0表示不考虑时间
+     */
+    public TopicScorer(double titleBoost, double engagementWeight, double halfLifeDays) {
+        this.titleBoost = titleBoost;
+        this.engagementWeight = engagementWeight;
+        this.halfLifeDays = halfLifeDays;
+    }
+
+    /**
+     * 逆文档频率，文档数和文档频率都包含尚未压缩掉的已删除文档
+     */
+    double idf(long docCount, long docFreq) {
+        return Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /**
+     * 单个词的 BM25F 得分
+     */
+    double termScore(double idf, int titleFreq, int titleLength, double avgTitleLength,
+                     int contentFreq, int contentLength, double avgContentLength) {
+        double tf = titleBoost * titleFreq / (1 - B + B * titleLength / avgTitleLength)
+                + contentFreq / (1 - B + B * contentLength / avgContentLength);
+        return idf * tf * (K1 + 1) / (tf + K1);
+    }
+
+    /**
+     * 热度和时间衰减因子之积
+     * @param lastActiveTime 最后回复时间，没有回复时为发布时间（毫秒）
+     * @param now 当前时间（毫秒）
+     */
+    double docBoost(int replyCount, int viewCount, long lastActiveTime, long now) {
+        double boost = 1 + engagementWeight * Math.log1p(Math.max(0, replyCount) + Math.max(0, viewCount) / VIEWS_PER_REPLY);
+        if (halfLifeDays > 0) {
+            double ageDays = Math.max(0, now - lastActiveTime) / DAY_MILLIS;
+            boost *= RECENCY_FLOOR + (1 - RECENCY_FLOOR) * Math.pow(0.5, ageDays / halfLifeDays);
+        }
+        return boost;
+    }
+}
@@ -0,0 +1,374 @@
+package main.forumsystem.src.search;
+
+import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.Topic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 主题搜索引擎
+ * 在进程内维护主题和回复的倒排索引，回复的命中可折叠到所属主题。配置了索引目录且上次正常关闭时，启动时直接加载磁盘上的段；
+ * 否则首次搜索时请求后台从数据库全量构建，构建完成前搜索不等待，返回null由调用方改用数据库查询。
+ * 主题和回复的写操作在提交后登记变更，由 {@link SearchIndexer} 的后台线程按批从数据库读回并更新索引
+ * （回复变更同时刷新所属主题的回复数和最后回复时间），
+ * 写操作本身不等待索引。全量重建由 {@link ParallelIndexBuilder} 按主题ID区间并行读取和分词，
+ * 在新索引上进行，完成后整体替换，重建期间查询仍使用旧索引。
+ * 索引更新时把正文写入有上限的 {@link ContentStore}，生成结果摘录时优先从中读取，不必再读数据库。
+ */
+public class TopicSearchEngine {
+
+    private final TopicSource source;
+    private final SegmentDirectory directory;
+    private final int flushDocs;
+    private final TopicScorer scorer;
+    private final int rebuildThreads;
+    private final int rebuildMaxRowsPerSecond;
+    private final SearchIndexer indexer;
+    private final ContentStore contents;
+    private volatile InvertedIndex index;
+    // 最近一次（或正在进行的）全量重建
+    private volatile ParallelIndexBuilder lastRebuild;
+
+    /**
+     * @param source 主题数据来源
+     * @param queueCapacity 变更队列容量，超出时转为全量重建
+     * @param maxBatchSize 每批最多应用的变更数
+     * @param directory 索引目录，为null时索引只保存在内存中
+     * @param flushDocs 内存段写成磁盘段的文档数
+     * @param scorer 相关度评分
+     * @param rebuildThreads 全量重建的并行线程数，每个线程占用一个数据库连接
+     * @param rebuildMaxRowsPerSecond 全量重建每秒最多读取的行数（主题和回复），0表示不限速
+     * @param contentCacheBytes 正文缓存的字节数上限，0表示不缓存
+     */
+    public TopicSearchEngine(TopicSource source, int queueCapacity, int maxBatchSize,
+                             SegmentDirectory directory, int flushDocs, TopicScorer scorer,
+                             int rebuildThreads, int rebuildMaxRowsPerSecond, long contentCacheBytes) {
+        this.source = source;
+        this.directory = directory;
+        this.flushDocs = flushDocs;
+        this.scorer = scorer;
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildMaxRowsPerSecond = rebuildMaxRowsPerSecond;
+        this.contents = new ContentStore(contentCacheBytes);
+        this.index = new InvertedIndex(directory, flushDocs);
+        this.indexer = new SearchIndexer("search-indexer", queueCapacity, maxBatchSize, new SearchIndexer.BatchHandler() {
+            @Override
+            public void apply(Set<Integer> topicIds, Set<Integer> replyIds) {
+                applyChanges(topicIds, replyIds);
+            }
+
+            @Override
+            public void rebuild() {
+                rebuildIndex();
+            }
+        });
+        if (directory != null && directory.hasCleanIndex()) {
+            load();
+        }
+    }
+
+    // 从磁盘加载上次提交的索引，失败时保持未构建状态，首次搜索时请求从数据库重建
+    private void load() {
+        long start = System.currentTimeMillis();
+        try {
+            InvertedIndex loaded = InvertedIndex.open(directory, flushDocs);
+            directory.markDirty();
+            index.close();
+            index = loaded;
+            indexer.markReady();
+            System.out.println("主题搜索索引已从磁盘加载，" + loaded.getStats() + "，耗时 "
+                    + (System.currentTimeMillis() - start) + "ms");
+        } catch (IOException e) {
+            System.err.println("加载主题搜索索引失败，将从数据库重建: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止索引更新线程并提交索引；队列中的变更全部应用且提交成功时标记为正常关闭，下次启动直接加载
+     */
+    public void shutdown() {
+        boolean drained = indexer.shutdown();
+        InvertedIndex current = index;
+        if (!indexer.isReady()) {
+            // 从未构建过，不写清单
+            current.close();
+            return;
+        }
+        try {
+            current.commit();
+            if (drained && directory != null) {
+                directory.markClean();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            current.close();
+        }
+    }
+
+    /**
+     * 检索主题，包含回复时回复的命中折叠到所属主题
+     * @param query 搜索条件
+     * @return SearchResult 当前页的主题ID和命中总数；索引尚未构建（或构建失败正在重试）时请求后台构建并返回null
+     */
+    public SearchResult search(SearchQuery query) {
+        if (!indexer.checkReady()) {
+            return null;
+        }
+        return index.search(query, scorer);
+    }
+
+    /**
+     * 为检索结果生成摘录：折叠了回复的结果取得分最高的回复，否则取主题正文
+     * 正文优先从正文缓存读取，未缓存的一次批量从数据来源读回并放入缓存；读回失败时这些结果的摘录为空
+     * @param query 检索时的搜索条件，用于取查询词
+     * @param result 检索结果
+     * @param highlighter 摘录生成器
+     * @return 与 {@link SearchResult#getTopicIds()} 对齐的摘录
+     */
+    public List<String> excerpts(SearchQuery query, SearchResult result, Highlighter highlighter) {
+        List<Integer> topicIds = result.getTopicIds();
+        List<Integer> keys = new ArrayList<>(topicIds.size());
+        Map<Integer, String> texts = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < topicIds.size(); i++) {
+            int replyId = result.getMatchedReplyIds().get(i);
+            int key = replyId != 0 ? Segment.replyKey(replyId) : topicIds.get(i);
+            keys.add(key);
+            String text = contents.get(key);
+            if (text != null) {
+                texts.put(key, text);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            try {
+                source.loadContents(missing).forEach((key, text) -> {
+                    contents.putIfAbsent(key, text);
+                    texts.put(key, text);
+                });
+            } catch (RuntimeException e) {
+                System.err.println("读取搜索结果正文失败: " + e.getMessage());
+            }
+        }
+
+        Set<String> terms = new LinkedHashSet<>();
+        query.parseClauses().forEach(terms::addAll);
+        List<String> excerpts = new ArrayList<>(keys.size());
+        for (int key : keys) {
+            excerpts.add(highlighter.highlight(texts.get(key), terms));
+        }
+        return excerpts;
+    }
+
+    /**
+     * 查找内容相似的主题
+     * @param topicId 主题ID
+     * @param limit 数量限制
+     * @return 主题ID，按相似度降序；索引尚未构建时请求后台构建并返回null
+     */
+    public List<Integer> relatedTopics(int topicId, int limit) {
+        if (!indexer.checkReady()) {
+            return null;
+        }
+        return index.related(topicId, limit);
+    }
+
+    /**
+     * 主题已变更（新增、修改、删除、状态或板块变化），应在事务提交后调用
+     * @param topicId 主题ID
+     */
+    public void topicChanged(int topicId) {
+        indexer.enqueue(SearchIndexer.ChangeType.TOPIC, topicId);
+    }
+
+    /**
+     * 回复已变更，应在事务提交后调用；更新线程会刷新回复所属主题
+     * @param replyId 回复ID
+     */
+    public void replyChanged(int replyId) {
+        indexer.enqueue(SearchIndexer.ChangeType.REPLY, replyId);
+    }
+
+    /**
+     * 请求从数据库全量重建索引，由后台线程异步执行
+     */
+    public void rebuild() {
+        indexer.requestRebuild();
+    }
+
+    /**
+     * 获取索引状态
+     * @return InvertedIndex.IndexStats 状态快照，尚未构建时返回null
+     */
+    public InvertedIndex.IndexStats getStats() {
+        return indexer.isReady() ? index.getStats() : null;
+    }
+
+    /**
+     * 获取正文缓存状态
+     * @return ContentStore.StoreStats 状态快照
+     */
+    public ContentStore.StoreStats getContentStats() {
+        return contents.getStats();
+    }
+
+    /**
+     * 获取索引更新线程状态
+     * @return SearchIndexer.IndexerStats 状态快照
+     */
+    public SearchIndexer.IndexerStats getIndexerStats() {
+        return indexer.getStats();
+    }
+
+    /**
+     * 获取最近一次全量重建的进度
+     * @return ParallelIndexBuilder.Progress 进度快照，从未重建（如直接从磁盘加载）时返回null
+     */
+    public ParallelIndexBuilder.Progress getRebuildProgress() {
+        ParallelIndexBuilder builder = lastRebuild;
+        return builder != null ? builder.getProgress() : null;
+    }
+
+    private void applyChanges(Set<Integer> topicIds, Set<Integer> replyIds) {
+        Set<Integer> changed = new LinkedHashSet<>(topicIds);
+        List<Reply> replyUpdates = new ArrayList<>();
+        List<Integer> replyRemovals = new ArrayList<>();
+        if (!replyIds.isEmpty()) {
+            Map<Integer, Reply> replies = source.loadReplies(replyIds);
+            for (int replyId : replyIds) {
+                Reply reply = replies.get(replyId);
+                if (reply == null || reply.getStatus() != Reply.ReplyStatus.NORMAL) {
+                    replyRemovals.add(replyId);
+                } else {
+                    replyUpdates.add(reply);
+                }
+                if (reply != null) {
+                    changed.add(reply.getTopicId());
+                }
+            }
+        }
+        if (changed.isEmpty() && replyRemovals.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Topic> topics = changed.isEmpty() ? new HashMap<>() : source.loadTopics(changed);
+        List<Topic> updates = new ArrayList<>(topics.size());
+        List<Integer> removals = new ArrayList<>();
+        for (int topicId : changed) {
+            Topic topic = topics.get(topicId);
+            if (topic == null || topic.getStatus() != Topic.TopicStatus.NORMAL) {
+                removals.add(topicId);
+            } else {
+                updates.add(topic);
+            }
+        }
+        index.apply(updates, removals, replyUpdates, replyRemovals);
+
+        for (Topic topic : updates) {
+            contents.put(topic.getTopicId(), topic.getContent());
+        }
+        for (int topicId : removals) {
+            contents.remove(topicId);
+        }
+        for (Reply reply : replyUpdates) {
+            contents.put(Segment.replyKey(reply.getReplyId()), reply.getContent());
+        }
+        for (int replyId : replyRemovals) {
+            contents.remove(Segment.replyKey(replyId));
+        }
+    }
+
+    private void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        if (directory != null) {
+            try {
+                directory.markDirty();
+            } catch (IOException e) {
+                throw new IllegalStateException("标记索引目录失败！", e);
+            }
+        }
+        ParallelIndexBuilder builder = new ParallelIndexBuilder(source, directory, flushDocs,
+                rebuildThreads, ParallelIndexBuilder.DEFAULT_RANGE_SIZE, rebuildMaxRowsPerSecond);
+        lastRebuild = builder;
+        InvertedIndex rebuilt;
+        try {
+            rebuilt = builder.build();
+        } catch (IOException e) {
+            throw new IllegalStateException("写入主题搜索索引失败！", e);
+        }
+        try {
+            // 旧索引先停止合并和提交，新索引的清单才是最后写入的
+            index.close();
+            rebuilt.commit();
+        } catch (IOException e) {
+            rebuilt.close();
+            throw new IllegalStateException("提交主题搜索索引失败！", e);
+        } catch (RuntimeException e) {
+            rebuilt.close();
+            throw e;
+        }
+        index = rebuilt;
+        // 重建通常因变更丢失而起，缓存中的正文可能已过期
+        contents.clear();
+        System.out.println("主题搜索索引构建完成，" + rebuilt.getStats() + "，" + builder.getProgress()
+                + "，总耗时 " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 主题数据来源，读取失败时抛出异常
+     */
+    public interface TopicSource {
+        /**
+         * 按ID批量读取主题，不论状态
+         * @param topicIds 主题ID
+         * @return 主题ID到主题的映射，不存在的主题不在其中
+         */
+        Map<Integer, Topic> loadTopics(Collection<Integer> topicIds);
+
+        /**
+         * 按ID批量读取回复，不论状态
+         * @param replyIds 回复ID
+         * @return 回复ID到回复的映射，已物理删除的回复不在其中
+         */
+        Map<Integer, Reply> loadReplies(Collection<Integer> replyIds);
+
+        /**
+         * 最大的主题ID，不论状态
+         * @return 主题ID，没有主题时为0
+         */
+        int maxTopicId();
+
+        /**
+         * 按ID升序依次读取ID在 (fromId, toId] 内的正常状态主题，多个区间会被并发读取
+         * @param fromId 起始ID（不含）
+         * @param toId 结束ID（含）
+         * @param consumer 主题处理函数
+         */
+        void scanTopics(int fromId, int toId, Consumer<Topic> consumer);
+
+        /**
+         * 依次读取所属主题ID在 (fromTopicId, toTopicId] 内、主题和回复均为正常状态的回复，多个区间会被并发读取
+         * @param fromTopicId 起始主题ID（不含）
+         * @param toTopicId 结束主题ID（含）
+         * @param consumer 回复处理函数
+         */
+        void scanReplies(int fromTopicId, int toTopicId, Consumer<Reply> consumer);
+
+        /**
+         * 按文档键批量读取正文，用于生成摘录
+         * @param keys 文档键，主题为主题ID，回复为负的回复ID
+         * @return 文档键到正文的映射，不存在的文档不在其中
+         */
+        Map<Integer, String> loadContents(Collection<Integer> keys);
+    }
+}
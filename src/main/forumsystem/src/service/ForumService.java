@@ -3,7 +3,9 @@ package main.forumsystem.src.service;
 import main.forumsystem.src.entity.User;
 import main.forumsystem.src.entity.Forum;
 import main.forumsystem.src.entity.Topic;
+import main.forumsystem.src.entity.TopicSearchHit;
 import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.ReplyThread;
 
 import java.util.List;
 
@@ -52,6 +54,12 @@ public interface ForumService {
      */
     List<Topic> getTopicsByForum(int forumId, int page, int size);
     
+    /**
+     * 游标分页获取板块下的主题列表，深分页与第一页开销相同
+     * @param cursor 上一页返回的 nextCursor，null表示第一页
+     */
+    TopicPage getTopicsByForum(int forumId, String cursor, int size);
+    
     /**
      * 更新主题信息
      */
@@ -89,6 +97,11 @@ public interface ForumService {
      */
     List<Reply> getRepliesByTopic(int topicId, int page, int size);
     
+    /**
+     * 分页获取主题的回复树（楼中楼），按顶级回复分页
+     */
+    ReplyThread getReplyThread(int topicId, int page, int size);
+    
     /**
      * 更新回复内容
      */
@@ -100,11 +113,24 @@ public interface ForumService {
      * 搜索主题
      */
     List<Topic> searchTopics(String keyword, int page, int size);
+
+    /**
+     * 分页搜索讨论：主题和回复一起检索，回复的命中折叠到所属主题，每个结果附命中位置附近的摘录
+     * @param countTotal 是否统计命中总数，翻页时通常不需要
+     */
+    SearchPage searchTopicPage(String keyword, int page, int size, boolean countTotal);
     
     /**
      * 搜索板块
      */
     List<Forum> searchForums(String keyword);
+
+    /**
+     * 按名称前缀补全板块，用于输入时的自动补全
+     * @param prefix 名称前缀
+     * @param limit 最多返回的板块数
+     */
+    List<Forum> suggestForums(String prefix, int limit);
     
     // ==================== 统计信息 ====================
     
@@ -159,6 +185,49 @@ public interface ForumService {
         }
     }
     
+    /**
+     * 主题分页结果类
+     * 不统计总数，只通过多查一行判断是否还有下一页
+     */
+    class TopicPage {
+        private final List<Topic> topics;
+        private final String nextCursor;
+        private final boolean hasMore;
+        
+        public TopicPage(List<Topic> topics, String nextCursor, boolean hasMore) {
+            this.topics = topics;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+        
+        // Getters
+        public List<Topic> getTopics() { return topics; }
+        public String getNextCursor() { return nextCursor; }
+        public boolean hasMore() { return hasMore; }
+    }
+    
+    /**
+     * 搜索结果分页类
+     * 多查一行判断是否还有下一页，命中总数只在请求时统计
+     */
+    class SearchPage {
+        private final List<TopicSearchHit> hits;
+        private final boolean hasMore;
+        private final int totalHits;
+        
+        public SearchPage(List<TopicSearchHit> hits, boolean hasMore, int totalHits) {
+            this.hits = hits;
+            this.hasMore = hasMore;
+            this.totalHits = totalHits;
+        }
+        
+        // Getters
+        public List<TopicSearchHit> getHits() { return hits; }
+        public boolean hasMore() { return hasMore; }
+        /** 命中总数，未统计时为-1 */
+        public int getTotalHits() { return totalHits; }
+    }
+    
     /**
      * 板块统计信息类
      */
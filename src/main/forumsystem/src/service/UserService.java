@@ -1,7 +1,9 @@
 package main.forumsystem.src.service;
 
 import main.forumsystem.src.entity.User;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户服务接口
@@ -16,6 +18,12 @@ public interface UserService {
      */
     String getUserName(int userId);
     
+    /**
+     * 批量获取用户名称，一次查询解析所有ID
+     * @return 用户ID到用户名的映射，不存在的用户不包含在内
+     */
+    Map<Integer, String> getUserNames(Collection<Integer> userIds);
+    
     /**
      * 获取用户详细信息
      */
@@ -60,6 +68,13 @@ public interface UserService {
      */
     List<User> searchUsers(String keyword);
     
+    /**
+     * 按用户名或昵称前缀补全用户，用于输入时的自动补全
+     * @param prefix 名称前缀
+     * @param limit 最多返回的用户数
+     */
+    List<User> suggestUsers(String prefix, int limit);
+    
     /**
      * 获取指定角色的用户
      */
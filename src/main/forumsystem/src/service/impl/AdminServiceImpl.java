@@ -1,5 +1,6 @@
 package main.forumsystem.src.service.impl;
 
+import main.forumsystem.src.dao.BaseDao;
 import main.forumsystem.src.dao.UserDao;
 import main.forumsystem.src.dao.ForumDao;
 import main.forumsystem.src.dao.TopicDao;
@@ -7,6 +8,7 @@ import main.forumsystem.src.dao.ReplyDao;
 import main.forumsystem.src.dao.BanRecordDao;
 import main.forumsystem.src.dao.SensitiveWordDao;
 import main.forumsystem.src.dao.impl.UserDaoImpl;
+import main.forumsystem.src.dao.impl.CounterDaoImpl;
 import main.forumsystem.src.dao.impl.ForumDaoImpl;
 import main.forumsystem.src.dao.impl.TopicDaoImpl;
 import main.forumsystem.src.dao.impl.ReplyDaoImpl;
@@ -19,6 +21,7 @@ import main.forumsystem.src.entity.Reply;
 import main.forumsystem.src.entity.BanRecord;
 import main.forumsystem.src.entity.SensitiveWord;
 import main.forumsystem.src.service.AdminService;
+import main.forumsystem.src.util.TransactionTemplate;
 import main.forumsystem.src.util.ValidationUtil;
 
 import java.time.LocalDateTime;
@@ -76,6 +79,31 @@ public class AdminServiceImpl implements AdminService {
             // 敏感词统计
             List<SensitiveWord> sensitiveWords = sensitiveWordDao.getAllSensitiveWords();
             stats.put("totalSensitiveWords", sensitiveWords.size());
+            stats.put("sensitiveWordMatcher", SensitiveWordDaoImpl.getMatcherStats());
+            
+            // 连接池状态
+            stats.put("connectionPool", BaseDao.getPoolStats());
+            
+            // 用户缓存状态
+            stats.put("userCache", UserDaoImpl.getCacheStats());
+            
+            // 浏览量写回缓冲状态
+            stats.put("viewCountBuffer", TopicDaoImpl.getViewCountStats());
+            
+            // 计数聚合状态
+            stats.put("counterAggregator", CounterDaoImpl.getStats());
+            
+            // 搜索索引状态
+            stats.put("searchIndex", TopicDaoImpl.getSearchIndexStats());
+            
+            // 搜索结果正文缓存状态
+            stats.put("searchContent", TopicDaoImpl.getSearchContentStats());
+            
+            // 搜索索引更新线程状态
+            stats.put("searchIndexer", TopicDaoImpl.getSearchIndexerStats());
+            
+            // 搜索索引全量重建进度
+            stats.put("searchRebuild", TopicDaoImpl.getSearchRebuildProgress());
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -168,22 +196,31 @@ public class AdminServiceImpl implements AdminService {
         }
         
         try {
-            Forum forum = forumDao.getForumById(forumId);
-            if (forum == null) {
-                return new AdminResult(false, "板块不存在");
-            }
-            
-            // 检查板块是否有内容
-            if (forum.getTopicCount() > 0) {
-                return new AdminResult(false, "板块内有主题，无法删除");
-            }
-            
-            boolean success = forumDao.deleteForum(forumId);
-            if (success) {
-                return new AdminResult(true, "板块删除成功");
-            } else {
-                return new AdminResult(false, "删除失败，请重试");
-            }
+            // 检查与删除在同一事务中完成：锁定版块行，并锁定版块内的主题使其他事务无法插入新主题
+            return TransactionTemplate.inTransaction(() -> {
+                Forum forum = forumDao.getForumByIdForUpdate(forumId);
+                if (forum == null) {
+                    return new AdminResult(false, "板块不存在");
+                }
+                
+                // 检查板块是否有内容：直接统计主题表，冗余的主题数可能还有增量未写回
+                int topicCount = forumDao.countTopicsForUpdate(forumId);
+                if (topicCount < 0) {
+                    TransactionTemplate.setRollbackOnly();
+                    return new AdminResult(false, "删除失败，请重试");
+                }
+                if (topicCount > 0) {
+                    return new AdminResult(false, "板块内有主题，无法删除");
+                }
+                
+                boolean success = forumDao.deleteForum(forumId);
+                if (success) {
+                    return new AdminResult(true, "板块删除成功");
+                } else {
+                    TransactionTemplate.setRollbackOnly();
+                    return new AdminResult(false, "删除失败，请重试");
+                }
+            });
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -337,13 +374,7 @@ public class AdminServiceImpl implements AdminService {
         }
         
         try {
-            List<SensitiveWord> sensitiveWords = sensitiveWordDao.getAllSensitiveWords();
-            for (SensitiveWord word : sensitiveWords) {
-                if (text.toLowerCase().contains(word.getWord().toLowerCase())) {
-                    return true;
-                }
-            }
-            return false;
+            return sensitiveWordDao.containsSensitiveWord(text);
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -514,7 +545,11 @@ public class AdminServiceImpl implements AdminService {
             
             for (Forum forum : allForums) {
                 if (forum.getTopicCount() == 0 && forum.getPostCount() == 0) {
-                    if (forumDao.deleteForum(forum.getForumId())) {
+                    // 冗余计数可能还有增量未写回，删除前在事务中直接统计主题表确认
+                    int forumId = forum.getForumId();
+                    boolean deleted = TransactionTemplate.inTransaction(() ->
+                            forumDao.countTopicsForUpdate(forumId) == 0 && forumDao.deleteForum(forumId));
+                    if (deleted) {
                         cleanedCount++;
                     }
                 }
@@ -1,8 +1,6 @@
 package main.forumsystem.src.service.impl;
 
 import main.forumsystem.src.service.ForumService;
-import main.forumsystem.src.service.AdminService;
-import main.forumsystem.src.service.impl.AdminServiceImpl;
 import main.forumsystem.src.dao.UserDao;
 import main.forumsystem.src.dao.ForumDao;
 import main.forumsystem.src.dao.TopicDao;
@@ -16,12 +14,17 @@ import main.forumsystem.src.dao.impl.SensitiveWordDaoImpl;
 import main.forumsystem.src.entity.User;
 import main.forumsystem.src.entity.Forum;
 import main.forumsystem.src.entity.Topic;
+import main.forumsystem.src.entity.TopicSearchHit;
 import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.ReplyThread;
 import main.forumsystem.src.factory.UserFactory;
 import main.forumsystem.src.factory.UserOperationFactory;
 import main.forumsystem.src.factory.impl.UserFactoryImpl;
 import main.forumsystem.src.service.UserBlockService;
 import main.forumsystem.src.service.impl.UserBlockServiceImpl;
+import main.forumsystem.src.util.ContentScreeningResult;
+import main.forumsystem.src.util.TopicCursor;
+import main.forumsystem.src.util.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,13 +37,16 @@ import java.util.Map;
  */
 public class ForumServiceImpl implements ForumService {
     
+    // 回复树的最大深度和每页最多加载的回复数
+    private static final int REPLY_THREAD_MAX_DEPTH = 10;
+    private static final int REPLY_THREAD_MAX_REPLIES = 200;
+    
     private final UserDao userDao;
     private final ForumDao forumDao;
     private final TopicDao topicDao;
     private final ReplyDao replyDao;
     private final UserFactory userFactory;
     private final UserBlockService userBlockService;
-    private final AdminService adminService;
     private final SensitiveWordDao sensitiveWordDao;
     
     public ForumServiceImpl() {
@@ -50,7 +56,6 @@ public class ForumServiceImpl implements ForumService {
         this.replyDao = new ReplyDaoImpl();
         this.userFactory = new UserFactoryImpl();
         this.userBlockService = new UserBlockServiceImpl();
-        this.adminService = new AdminServiceImpl();
         this.sensitiveWordDao = new SensitiveWordDaoImpl();
     }
     
@@ -166,34 +171,33 @@ public class ForumServiceImpl implements ForumService {
                 return new ForumResult(false, "您没有在该板块发帖的权限");
             }
             
-            // === 敏感词检查和过滤 ===
-            String originalTitle = title;
-            String originalContent = content;
-            
-            // 检查标题是否包含敏感词
-            if (adminService.containsSensitiveWord(title)) {
+            // === 敏感词检查和过滤（标题和内容一次扫描） ===
+            ContentScreeningResult screening = sensitiveWordDao.screen(title, content);
+            if (screening.hasHit(0)) {
                 System.out.println("检测到标题包含敏感词，自动替换中...");
-                title = sensitiveWordDao.replaceSensitiveWords(title);
             }
-            
-            // 检查内容是否包含敏感词
-            if (adminService.containsSensitiveWord(content)) {
+            if (screening.hasHit(1)) {
                 System.out.println("检测到内容包含敏感词，自动替换中...");
-                content = sensitiveWordDao.replaceSensitiveWords(content);
             }
+            title = screening.getFilteredText(0);
+            content = screening.getFilteredText(1);
             
             // 使用工厂创建主题对象（使用过滤后的内容）
             Topic topic = operationFactory.createTopic(title, content, forumId, user);
             
-            // 保存主题到数据库
-            boolean success = topicDao.addTopic(topic);
+            // 保存主题并更新统计数据，任一步失败则整体回滚
+            boolean success = TransactionTemplate.inTransaction(() -> {
+                if (!topicDao.addTopic(topic)
+                        || !userDao.updatePostCount(userId, 1)
+                        || !forumDao.updateTopicCount(forumId, 1)) {
+                    TransactionTemplate.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
             if (success) {
-                // 更新统计数据
-                userDao.updatePostCount(userId, 1);
-                forumDao.updateTopicCount(forumId, 1);
-                
                 // 如果内容被过滤，提示用户
-                if (!originalTitle.equals(title) || !originalContent.equals(content)) {
+                if (screening.hasHit()) {
                     return new ForumResult(true, "主题发布成功！检测到敏感词已自动替换。");
                 } else {
                     return new ForumResult(true, "主题发布成功");
@@ -237,6 +241,30 @@ public class ForumServiceImpl implements ForumService {
         }
     }
     
+    @Override
+    public TopicPage getTopicsByForum(int forumId, String cursor, int size) {
+        if (forumId <= 0 || size <= 0) {
+            return new TopicPage(new ArrayList<>(), null, false);
+        }
+        
+        try {
+            TopicCursor after = cursor != null ? TopicCursor.decode(cursor) : null;
+            
+            // 多查一行用于判断是否还有下一页，避免 COUNT(*)
+            List<Topic> topics = topicDao.getTopicsAfter(forumId, after, size + 1);
+            boolean hasMore = topics.size() > size;
+            if (hasMore) {
+                topics = new ArrayList<>(topics.subList(0, size));
+            }
+            
+            String nextCursor = hasMore ? TopicCursor.of(topics.get(topics.size() - 1)).encode() : null;
+            return new TopicPage(topics, nextCursor, hasMore);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new TopicPage(new ArrayList<>(), null, false);
+        }
+    }
+    
     @Override
     public ForumResult updateTopic(int topicId, String title, String content) {
         if (topicId <= 0) {
@@ -249,11 +277,16 @@ public class ForumServiceImpl implements ForumService {
                 return new ForumResult(false, "主题不存在");
             }
             
-            topic.setTitle(title);
-            topic.setContent(content);
+            // 敏感词检查和过滤
+            ContentScreeningResult screening = sensitiveWordDao.screen(title, content);
+            topic.setTitle(screening.getFilteredText(0));
+            topic.setContent(screening.getFilteredText(1));
             
             boolean success = topicDao.updateTopic(topic);
             if (success) {
+                if (screening.hasHit()) {
+                    return new ForumResult(true, "主题更新成功！检测到敏感词已自动替换。");
+                }
                 return new ForumResult(true, "主题更新成功");
             } else {
                 return new ForumResult(false, "更新失败，请重试");
@@ -331,33 +364,35 @@ public class ForumServiceImpl implements ForumService {
             }
             
             // === 敏感词检查和过滤 ===
-            String originalContent = content;
-            
-            // 检查回复内容是否包含敏感词
-            if (adminService.containsSensitiveWord(content)) {
+            ContentScreeningResult screening = sensitiveWordDao.screen(content);
+            if (screening.hasHit()) {
                 System.out.println("检测到回复内容包含敏感词，自动替换中...");
-                content = sensitiveWordDao.replaceSensitiveWords(content);
+                content = screening.getFilteredText(0);
             }
             
             // 使用工厂创建回复对象（使用过滤后的内容）
             Reply reply = operationFactory.createReply(content, topicId, user);
             
-            // 保存回复到数据库
-            boolean success = replyDao.addReply(reply);
-            if (success) {
-                // 更新统计数据
-                userDao.updatePostCount(userId, 1);
-                topicDao.updateReplyCount(topicId, 1);
-                topicDao.updateLastReplyInfo(topicId, userId);
+            // 保存回复并更新用户、主题、板块统计，任一步失败则整体回滚
+            boolean success = TransactionTemplate.inTransaction(() -> {
+                if (!replyDao.addReply(reply)
+                        || !userDao.updatePostCount(userId, 1)
+                        || !topicDao.updateReplyCount(topicId, 1)
+                        || !topicDao.updateLastReplyInfo(topicId, userId)) {
+                    TransactionTemplate.setRollbackOnly();
+                    return false;
+                }
                 
-                // 更新板块统计
                 Topic topic = topicDao.getTopicById(topicId);
-                if (topic != null) {
-                    forumDao.updatePostCount(topic.getForumId(), 1);
+                if (topic == null || !forumDao.updatePostCount(topic.getForumId(), 1)) {
+                    TransactionTemplate.setRollbackOnly();
+                    return false;
                 }
-                
+                return true;
+            });
+            if (success) {
                 // 如果内容被过滤，提示用户
-                if (!originalContent.equals(content)) {
+                if (screening.hasHit()) {
                     return new ForumResult(true, "回复发表成功！检测到敏感词已自动替换。");
                 } else {
                     return new ForumResult(true, "回复发表成功");
@@ -401,6 +436,20 @@ public class ForumServiceImpl implements ForumService {
         }
     }
     
+    @Override
+    public ReplyThread getReplyThread(int topicId, int page, int size) {
+        if (topicId <= 0 || page <= 0 || size <= 0) {
+            return new ReplyThread(new ArrayList<>(), false, false);
+        }
+        
+        try {
+            return replyDao.getReplyThread(topicId, page, size, REPLY_THREAD_MAX_DEPTH, REPLY_THREAD_MAX_REPLIES);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ReplyThread(new ArrayList<>(), false, false);
+        }
+    }
+    
     @Override
     public ForumResult updateReply(int replyId, String content) {
         if (replyId <= 0) {
@@ -413,10 +462,15 @@ public class ForumServiceImpl implements ForumService {
                 return new ForumResult(false, "回复不存在");
             }
             
-            reply.setContent(content);
+            // 敏感词检查和过滤
+            ContentScreeningResult screening = sensitiveWordDao.screen(content);
+            reply.setContent(screening.getFilteredText(0));
             
             boolean success = replyDao.updateReply(reply);
             if (success) {
+                if (screening.hasHit()) {
+                    return new ForumResult(true, "回复更新成功！检测到敏感词已自动替换。");
+                }
                 return new ForumResult(true, "回复更新成功");
             } else {
                 return new ForumResult(false, "更新失败，请重试");
@@ -484,18 +538,8 @@ public class ForumServiceImpl implements ForumService {
         }
         
         try {
-            // 修复：使用实际存在的searchTopics方法，传入正确的参数
-            List<Topic> allTopics = topicDao.searchTopics(keyword.trim(), 0); // 0表示全站搜索
-            
-            // 手动分页
-            int startIndex = (page - 1) * size;
-            int endIndex = Math.min(startIndex + size, allTopics.size());
-            
-            if (startIndex >= allTopics.size()) {
-                return new ArrayList<>();
-            }
-            
-            return allTopics.subList(startIndex, endIndex);
+            // 由搜索索引直接取当前页，0表示全站搜索
+            return topicDao.searchTopics(keyword.trim(), 0, page, size);
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -503,6 +547,27 @@ public class ForumServiceImpl implements ForumService {
         }
     }
     
+    @Override
+    public SearchPage searchTopicPage(String keyword, int page, int size, boolean countTotal) {
+        if (keyword == null || keyword.trim().isEmpty() || page <= 0 || size <= 0) {
+            return new SearchPage(new ArrayList<>(), false, countTotal ? 0 : -1);
+        }
+        
+        try {
+            // 多查一行判断是否还有下一页
+            List<TopicSearchHit> hits = topicDao.searchDiscussions(keyword.trim(), 0, 0, (page - 1) * size, size + 1);
+            boolean hasMore = hits.size() > size;
+            if (hasMore) {
+                hits = new ArrayList<>(hits.subList(0, size));
+            }
+            int totalHits = countTotal ? topicDao.countDiscussions(keyword.trim(), 0, 0) : -1;
+            return new SearchPage(hits, hasMore, totalHits);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new SearchPage(new ArrayList<>(), false, countTotal ? 0 : -1);
+        }
+    }
+    
     @Override
     public List<Forum> searchForums(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) {
@@ -529,6 +594,20 @@ public class ForumServiceImpl implements ForumService {
             return new ArrayList<>();
         }
     }
+    
+    @Override
+    public List<Forum> suggestForums(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        
+        try {
+            return forumDao.suggestForums(prefix.trim(), limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
     // ==================== 权限检查 ====================
     
@@ -16,6 +16,7 @@ import main.forumsystem.src.entity.Reply;
 import main.forumsystem.src.entity.User;
 import main.forumsystem.src.entity.BanRecord;
 import main.forumsystem.src.service.ModeratorService;
+import main.forumsystem.src.util.TransactionTemplate;
 import main.forumsystem.src.util.ValidationUtil;
 
 import java.time.LocalDateTime;
@@ -169,18 +170,26 @@ public class ModeratorServiceImpl implements ModeratorService {
                 return new ModeratorResult(false, "只有管理员或板块版主可以删除板块");
             }
             
-            // 检查板块是否有内容
-            if (forum.getTopicCount() > 0) {
-                return new ModeratorResult(false, "板块内有主题，无法删除");
-            }
-            
-            // 删除板块
-            boolean success = forumDao.deleteForum(forumId);
-            if (success) {
-                return new ModeratorResult(true, "板块删除成功");
-            } else {
-                return new ModeratorResult(false, "删除失败，请重试");
-            }
+            // 检查与删除在同一事务中完成：直接统计主题表并锁定，冗余的主题数可能还有增量未写回
+            return TransactionTemplate.inTransaction(() -> {
+                int topicCount = forumDao.countTopicsForUpdate(forumId);
+                if (topicCount < 0) {
+                    TransactionTemplate.setRollbackOnly();
+                    return new ModeratorResult(false, "删除失败，请重试");
+                }
+                if (topicCount > 0) {
+                    return new ModeratorResult(false, "板块内有主题，无法删除");
+                }
+                
+                // 删除板块
+                boolean success = forumDao.deleteForum(forumId);
+                if (success) {
+                    return new ModeratorResult(true, "板块删除成功");
+                } else {
+                    TransactionTemplate.setRollbackOnly();
+                    return new ModeratorResult(false, "删除失败，请重试");
+                }
+            });
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -531,13 +540,17 @@ public class ModeratorServiceImpl implements ModeratorService {
             
             int originalForumId = topic.getForumId();
             
-            // 移动主题
-            boolean success = topicDao.moveTopic(topicId, targetForumId);
+            // 移动主题并更新两个板块的主题数量，任一步失败则整体回滚
+            boolean success = TransactionTemplate.inTransaction(() -> {
+                if (!topicDao.moveTopic(topicId, targetForumId)
+                        || !forumDao.updateTopicCount(originalForumId, -1)
+                        || !forumDao.updateTopicCount(targetForumId, 1)) {
+                    TransactionTemplate.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
             if (success) {
-                // 更新板块主题数量
-                forumDao.updateTopicCount(originalForumId, -1);
-                forumDao.updateTopicCount(targetForumId, 1);
-                
                 return new ModeratorResult(true, "主题移动成功");
             } else {
                 return new ModeratorResult(false, "移动失败，请重试");
@@ -17,6 +17,8 @@ import main.forumsystem.src.service.UserBlockService;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -192,18 +194,15 @@ public class UserBlockServiceImpl implements UserBlockService {
         
         try {
             List<UserBlock> blockList = userBlockDao.getUserBlockList(userId);
-            List<User> blockedUsers = new ArrayList<>();
+            List<Integer> userIds = new ArrayList<>();
             
             for (UserBlock block : blockList) {
                 if (block.getStatus() == UserBlock.BlockStatus.ACTIVE) {
-                    User user = userDao.getUserById(block.getBlockedId());
-                    if (user != null) {
-                        blockedUsers.add(user);
-                    }
+                    userIds.add(block.getBlockedId());
                 }
             }
             
-            return blockedUsers;
+            return getUsersInOrder(userIds);
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -219,18 +218,15 @@ public class UserBlockServiceImpl implements UserBlockService {
         
         try {
             List<UserBlock> blockList = userBlockDao.getBlockedByList(userId);
-            List<User> blockedByUsers = new ArrayList<>();
+            List<Integer> userIds = new ArrayList<>();
             
             for (UserBlock block : blockList) {
                 if (block.getStatus() == UserBlock.BlockStatus.ACTIVE) {
-                    User user = userDao.getUserById(block.getBlockerId());
-                    if (user != null) {
-                        blockedByUsers.add(user);
-                    }
+                    userIds.add(block.getBlockerId());
                 }
             }
             
-            return blockedByUsers;
+            return getUsersInOrder(userIds);
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -238,6 +234,25 @@ public class UserBlockServiceImpl implements UserBlockService {
         }
     }
     
+    /**
+     * 批量查询用户，并按传入ID的顺序返回
+     */
+    private List<User> getUsersInOrder(List<Integer> userIds) {
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : userDao.getUsersByIds(userIds)) {
+            usersById.put(user.getUserId(), user);
+        }
+        
+        List<User> users = new ArrayList<>();
+        for (Integer userId : userIds) {
+            User user = usersById.get(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+    
     @Override
     @SuppressWarnings("unchecked")
     public <T> List<T> filterBlockedContent(int viewerId, List<T> contentList) {
@@ -6,7 +6,10 @@ import main.forumsystem.src.entity.User;
 import main.forumsystem.src.service.UserService;
 import main.forumsystem.src.util.ValidationUtil;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户服务实现类
@@ -26,6 +29,23 @@ public class UserServiceImpl implements UserService {
         return user != null ? user.getUsername() : "未知用户";
     }
 
+    @Override
+    public Map<Integer, String> getUserNames(Collection<Integer> userIds) {
+        Map<Integer, String> names = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return names;
+        }
+        
+        try {
+            for (User user : userDao.getUsersByIds(userIds)) {
+                names.put(user.getUserId(), user.getUsername());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return names;
+    }
+
     @Override
     public User getUserById(int userId) {
         if (userId <= 0) {
@@ -211,6 +231,20 @@ public class UserServiceImpl implements UserService {
         }
     }
     
+    @Override
+    public List<User> suggestUsers(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        try {
+            return userDao.suggestUsers(prefix.trim(), limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+    
     @Override
     public List<User> getUsersByRole(User.UserRole role) {
         if (role == null) {
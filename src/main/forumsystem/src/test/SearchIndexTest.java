@@ -0,0 +1,263 @@
+package main.forumsystem.src.test;
+
+import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.Topic;
+import main.forumsystem.src.search.Highlighter;
+import main.forumsystem.src.search.InvertedIndex;
+import main.forumsystem.src.search.SearchQuery;
+import main.forumsystem.src.search.SearchResult;
+import main.forumsystem.src.search.SegmentDirectory;
+import main.forumsystem.src.search.Tokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 主题搜索行为测试
+ * 不需要数据库：直接向 {@link InvertedIndex} 写入主题和回复，检查分词、AND 与短语子句、板块/作者/时间条件、
+ * 删除和更新后的可见性、回复折叠、分页以及摘录高亮。
+ * 同一组检查分别在纯内存索引和每2篇写出一个磁盘段的索引上运行。
+ */
+public class SearchIndexTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== 主题搜索行为测试开始 ===\n");
+
+        System.out.println("1. 分词:");
+        check("全角转半角、大小写折叠、中文切为二元词",
+                Tokenizer.tokenizeQuery("Ｈｅｌｌｏ 数据库ABC"), List.of("hello", "数据", "据库", "abc"));
+        List<String> indexed = new ArrayList<>();
+        Tokenizer.tokenize("读书会 java", (buffer, offset, length, position) ->
+                indexed.add(new String(buffer, offset, length) + "@" + position));
+        check("索引时单字与二元词同位置，其后位置不变",
+                indexed, List.of("读书@0", "读@0", "书会@1", "书@1", "会@1", "java@2"));
+        check("双引号括起的部分作为一个子句",
+                new SearchQuery("\"java 并发\" 数据库").parseClauses(),
+                List.of(List.of("java", "并发"), List.of("数据", "据库")));
+
+        System.out.println("\n2. 内存索引:");
+        runScenario(new InvertedIndex());
+
+        File dir = Files.createTempDirectory("search-index-test").toFile();
+        try {
+            System.out.println("\n3. 磁盘段索引（每2篇写出一个段）:");
+            runScenario(new InvertedIndex(new SegmentDirectory(dir), 2));
+        } finally {
+            deleteRecursively(dir);
+        }
+
+        System.out.println("\n4. 分页:");
+        testPaging();
+
+        System.out.println("\n5. 摘录高亮:");
+        testHighlighter();
+
+        System.out.println("\n=== 主题搜索行为测试完成: " + (failures == 0 ? "✅ 全部通过" : "❌ 失败 " + failures + " 项") + " ===");
+    }
+
+    private static void runScenario(InvertedIndex index) {
+        try {
+            index.apply(List.of(
+                    topic(1, 1, 10, "数据库索引优化", "介绍 MySQL 的 B+树 索引", 0),
+                    topic(2, 1, 11, "索引数据库", "Java 并发 编程", 31),
+                    topic(3, 2, 10, "Java 缓存 设计", "讨论 数据库 连接池", 60),
+                    topic(4, 2, 12, "论坛 公告", "无关内容", 91)
+            ), List.of(), List.of(
+                    reply(100, 4, 13, "我觉得 数据库索引 很重要", 92),
+                    reply(101, 1, 13, "数据库 回复", 93)
+            ), List.of());
+
+            System.out.println("   查询子句:");
+            checkIds("多个子句同时命中（可在不同字段）", topics(index, query("数据库 java")), 2, 3);
+            checkIds("中文短语按原文顺序匹配", topics(index, query("数据库索引")), 1);
+            checkIds("引号短语按顺序匹配", topics(index, query("\"java 并发\"")), 2);
+            checkIds("引号短语顺序颠倒不命中", topics(index, query("\"并发 java\"")));
+            checkIds("全角大写关键词", topics(index, query("ＭＹＳＱＬ")), 1);
+            checkIds("单个汉字命中词中的字", topics(index, query("缓")), 3);
+            checkIds("单个汉字命中词尾的字", topics(index, query("计")), 3);
+            checkIds("词尾的字与其后的词组成短语", topics(index, query("\"存 设计\"")), 3);
+
+            System.out.println("   过滤条件:");
+            SearchQuery byForum = query("数据库");
+            byForum.setForumId(1);
+            checkIds("板块", topics(index, byForum), 1, 2);
+            SearchQuery byUser = query("数据库");
+            byUser.setUserId(10);
+            checkIds("作者", topics(index, byUser), 1, 3);
+            SearchQuery byTime = query("数据库");
+            byTime.setStartTime(BASE_TIME.plusDays(15));
+            byTime.setEndTime(BASE_TIME.plusDays(45));
+            checkIds("时间范围", topics(index, byTime), 2);
+
+            System.out.println("   回复折叠:");
+            checkIds("不包含回复时只检索主题", topics(index, query("数据库索引")), 1);
+            SearchResult withReplies = index.search(replies("数据库索引"));
+            checkIds("回复命中折叠到所属主题", sorted(withReplies.getTopicIds()), 1, 4);
+            check("主题4的最佳匹配是回复100", matchedReply(withReplies, 4), 100);
+            check("主题1本身匹配时不带回复", matchedReply(withReplies, 1), 0);
+            SearchQuery replyForum = replies("数据库索引");
+            replyForum.setForumId(2);
+            checkIds("回复按所属主题的板块过滤", topics(index, replyForum), 4);
+            SearchQuery replyUser = replies("数据库");
+            replyUser.setUserId(13);
+            SearchResult byReplyUser = index.search(replyUser);
+            checkIds("作者条件作用于回复本身", sorted(byReplyUser.getTopicIds()), 1, 4);
+            check("主题1由回复101命中", matchedReply(byReplyUser, 1), 101);
+
+            System.out.println("   删除和更新:");
+            index.remove(1);
+            checkIds("删除的主题不再命中", topics(index, query("数据库索引")));
+            checkIds("已删除主题的回复不再命中", topics(index, replyUser), 4);
+            index.apply(List.of(topic(2, 1, 11, "数据库索引 入门", "Java 并发 编程", 31),
+                    topic(3, 2, 10, "Java 缓存 设计", "讨论 数据库", 60)), List.of());
+            checkIds("更新后的标题可以命中", topics(index, query("数据库索引")), 2);
+            checkIds("更新后旧内容不再命中", topics(index, query("连接池")));
+            check("更新不产生重复结果", index.search(query("java")).getTotalHits(), 2);
+            index.apply(List.of(), List.of(), List.of(), List.of(100));
+            checkIds("删除的回复不再命中", topics(index, replies("数据库索引")), 2);
+        } finally {
+            index.close();
+        }
+    }
+
+    private static void testPaging() {
+        InvertedIndex index = new InvertedIndex();
+        List<Topic> topics = new ArrayList<>();
+        for (int id = 1; id <= 25; id++) {
+            topics.add(topic(id, 1, 10, "分页 测试 " + id, "内容", id));
+        }
+        index.apply(topics, List.of());
+
+        Set<Integer> seen = new HashSet<>();
+        List<Integer> all = new ArrayList<>();
+        boolean totalsMatch = true;
+        for (int offset = 0; offset < 30; offset += 10) {
+            SearchQuery page = new SearchQuery("分页", offset, 10);
+            page.setSortOrder(SearchQuery.SortOrder.NEWEST);
+            SearchResult result = index.search(page);
+            totalsMatch &= result.getTotalHits() == 25;
+            all.addAll(result.getTopicIds());
+            seen.addAll(result.getTopicIds());
+        }
+        check("每页命中总数都是25", totalsMatch, true);
+        check("三页共25条且不重复", Arrays.asList(all.size(), seen.size()), List.of(25, 25));
+        List<Integer> newestFirst = new ArrayList<>();
+        for (int id = 25; id >= 1; id--) {
+            newestFirst.add(id);
+        }
+        check("按发布时间降序", all, newestFirst);
+
+        SearchQuery countOnly = new SearchQuery("分页", 0, 0);
+        SearchResult counted = index.search(countOnly);
+        check("limit为0时只计数", Arrays.asList(counted.getTotalHits(), counted.getTopicIds().size()), List.of(25, 0));
+        check("offset超出总数时为空页", index.search(new SearchQuery("分页", 40, 10)).getTopicIds().size(), 0);
+        index.close();
+    }
+
+    private static void testHighlighter() {
+        Highlighter highlighter = new Highlighter(20, "【", "】");
+        check("命中部分加标记，重叠的二元词合并",
+                highlighter.highlight("这是关于数据库索引的介绍", terms("数据库索引")), "这是关于【数据库索引】的介绍");
+        check("单字查询高亮词中的字",
+                highlighter.highlight("欢迎参加读书会", terms("书")), "欢迎参加读【书】会");
+        check("没有命中时取正文开头", highlighter.highlight("没有任何相关内容", terms("数据库")), "没有任何相关内容");
+        check("空正文", highlighter.highlight(null, terms("数据库")), "");
+
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            longText.append("无关文字");
+        }
+        longText.append("Java 并发");
+        for (int i = 0; i < 50; i++) {
+            longText.append("无关文字");
+        }
+        String excerpt = highlighter.highlight(longText.toString(), terms("java 并发"));
+        check("长正文取命中附近的窗口",
+                excerpt.startsWith("...") && excerpt.endsWith("...") && excerpt.contains("【Java】 【并发】"), true);
+    }
+
+    private static SearchQuery query(String keyword) {
+        return new SearchQuery(keyword, 0, 100);
+    }
+
+    private static SearchQuery replies(String keyword) {
+        SearchQuery query = query(keyword);
+        query.setIncludeReplies(true);
+        return query;
+    }
+
+    private static Set<String> terms(String keyword) {
+        Set<String> terms = new LinkedHashSet<>();
+        new SearchQuery(keyword).parseClauses().forEach(terms::addAll);
+        return terms;
+    }
+
+    private static List<Integer> topics(InvertedIndex index, SearchQuery query) {
+        return sorted(index.search(query).getTopicIds());
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        List<Integer> copy = new ArrayList<>(ids);
+        copy.sort(null);
+        return copy;
+    }
+
+    private static int matchedReply(SearchResult result, int topicId) {
+        int i = result.getTopicIds().indexOf(topicId);
+        return i >= 0 ? result.getMatchedReplyIds().get(i) : -1;
+    }
+
+    private static Topic topic(int topicId, int forumId, int userId, String title, String content, int day) {
+        Topic topic = new Topic(forumId, userId, title, content);
+        topic.setTopicId(topicId);
+        topic.setCreateTime(BASE_TIME.plusDays(day));
+        topic.setStatus(Topic.TopicStatus.NORMAL);
+        return topic;
+    }
+
+    private static Reply reply(int replyId, int topicId, int userId, String content, int day) {
+        Reply reply = new Reply(topicId, userId, content);
+        reply.setReplyId(replyId);
+        reply.setCreateTime(BASE_TIME.plusDays(day));
+        return reply;
+    }
+
+    private static void checkIds(String name, List<Integer> actual, int... expected) {
+        List<Integer> expectedList = new ArrayList<>();
+        for (int id : expected) {
+            expectedList.add(id);
+        }
+        check(name, actual, expectedList);
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        boolean passed = expected.equals(actual);
+        if (!passed) {
+            failures++;
+        }
+        System.out.println("   " + (passed ? "✅ " : "❌ ") + name
+                + (passed ? "" : "：期望 " + expected + "，实际 " + actual));
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
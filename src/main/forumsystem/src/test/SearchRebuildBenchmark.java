@@ -0,0 +1,183 @@
+package main.forumsystem.src.test;
+
+import main.forumsystem.src.entity.Reply;
+import main.forumsystem.src.entity.Topic;
+import main.forumsystem.src.search.InvertedIndex;
+import main.forumsystem.src.search.ParallelIndexBuilder;
+import main.forumsystem.src.search.SearchQuery;
+import main.forumsystem.src.search.TopicSearchEngine;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * 搜索索引并行重建基准
+ * 用内存中生成的主题和回复代替数据库，按 1, 2, 4 ... 直到最大线程数分别全量构建，
+ * 输出每秒处理的行数和相对单线程的加速比，并检查各次构建的文档数和检索结果（含回复折叠）一致。
+ * 有模拟延迟时读取以等待为主，线程数超过CPU核数仍能提速，可用来观察数据库延迟下的扩展情况。
+ * 参数：主题数（默认200000）、每个区间读取前的模拟延迟毫秒数（默认0）、最大线程数（默认CPU核数）
+ */
+public class SearchRebuildBenchmark {
+
+    private static final String[] WORDS = {
+            "数据库", "索引", "连接池", "事务", "缓存", "线程", "并发", "性能", "查询", "优化",
+            "Java", "MySQL", "论坛", "回复", "主题", "搜索", "分词", "内存", "磁盘", "合并"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int topicCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int latencyMillis = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+        TopicSearchEngine.TopicSource source = new SyntheticSource(topicCount, latencyMillis);
+
+        System.out.println("=== 搜索索引并行重建基准: " + topicCount + " 个主题, 区间延迟 " + latencyMillis
+                + "ms, CPU核数 " + cores + " ===\n");
+        // 预热一次，避免首轮包含类加载和即时编译
+        new ParallelIndexBuilder(source, null, 0, cores, ParallelIndexBuilder.DEFAULT_RANGE_SIZE, 0).build();
+
+        SearchQuery query = new SearchQuery("数据库 索引");
+        query.setIncludeReplies(true);
+        double baseline = 0;
+        int expectedDocs = -1;
+        int expectedHits = -1;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ParallelIndexBuilder builder = new ParallelIndexBuilder(source, null, 0, threads,
+                    ParallelIndexBuilder.DEFAULT_RANGE_SIZE, 0);
+            InvertedIndex index = builder.build();
+            ParallelIndexBuilder.Progress progress = builder.getProgress();
+            int docs = index.getStats().getLiveDocs();
+            int hits = index.search(query).getTotalHits();
+            if (baseline == 0) {
+                baseline = progress.getRowsPerSecond();
+                expectedDocs = docs;
+                expectedHits = hits;
+            }
+            System.out.printf("线程 %2d: %10.0f 条/秒, 加速比 %.2f, 文档 %d, 命中 %d %s%n",
+                    threads, progress.getRowsPerSecond(), progress.getRowsPerSecond() / baseline, docs, hits,
+                    docs == expectedDocs && hits == expectedHits ? "✅" : "❌ 结果不一致");
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 按ID确定性生成主题，ID为3的倍数的主题视为已删除，不会被扫描到；
+     * 每个主题有 主题ID % 4 条回复，回复ID为 主题ID * 4 + 序号
+     */
+    private static class SyntheticSource implements TopicSearchEngine.TopicSource {
+        private final int topicCount;
+        private final int latencyMillis;
+
+        SyntheticSource(int topicCount, int latencyMillis) {
+            this.topicCount = topicCount;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Map<Integer, Topic> loadTopics(Collection<Integer> topicIds) {
+            Map<Integer, Topic> topics = new HashMap<>();
+            for (int topicId : topicIds) {
+                if (topicId > 0 && topicId <= topicCount && topicId % 3 != 0) {
+                    topics.put(topicId, createTopic(topicId));
+                }
+            }
+            return topics;
+        }
+
+        @Override
+        public Map<Integer, Reply> loadReplies(Collection<Integer> replyIds) {
+            Map<Integer, Reply> replies = new HashMap<>();
+            for (int replyId : replyIds) {
+                int topicId = replyId / 4;
+                if (topicId > 0 && topicId <= topicCount && replyId % 4 < topicId % 4) {
+                    replies.put(replyId, createReply(replyId));
+                }
+            }
+            return replies;
+        }
+
+        @Override
+        public Map<Integer, String> loadContents(Collection<Integer> keys) {
+            Map<Integer, String> contents = new HashMap<>();
+            for (int key : keys) {
+                if (key > 0) {
+                    loadTopics(List.of(key)).values().forEach(topic -> contents.put(key, topic.getContent()));
+                } else {
+                    loadReplies(List.of(-key)).values().forEach(reply -> contents.put(key, reply.getContent()));
+                }
+            }
+            return contents;
+        }
+
+        @Override
+        public int maxTopicId() {
+            return topicCount;
+        }
+
+        @Override
+        public void scanTopics(int fromId, int toId, Consumer<Topic> consumer) {
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            for (int topicId = fromId + 1; topicId <= Math.min(toId, topicCount); topicId++) {
+                if (topicId % 3 != 0) {
+                    consumer.accept(createTopic(topicId));
+                }
+            }
+        }
+
+        @Override
+        public void scanReplies(int fromTopicId, int toTopicId, Consumer<Reply> consumer) {
+            for (int topicId = fromTopicId + 1; topicId <= Math.min(toTopicId, topicCount); topicId++) {
+                if (topicId % 3 == 0) {
+                    continue;
+                }
+                for (int k = 0; k < topicId % 4; k++) {
+                    consumer.accept(createReply(topicId * 4 + k));
+                }
+            }
+        }
+
+        private Reply createReply(int replyId) {
+            Random random = new Random(-replyId);
+            Reply reply = new Reply(replyId / 4, random.nextInt(1000) + 1, words(random, 20));
+            reply.setReplyId(replyId);
+            reply.setCreateTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(replyId));
+            reply.setStatus(Reply.ReplyStatus.NORMAL);
+            return reply;
+        }
+
+        private Topic createTopic(int topicId) {
+            Random random = new Random(topicId);
+            Topic topic = new Topic(random.nextInt(20) + 1, random.nextInt(1000) + 1,
+                    words(random, 4), words(random, 60));
+            topic.setTopicId(topicId);
+            topic.setReplyCount(random.nextInt(50));
+            topic.setViewCount(random.nextInt(5000));
+            topic.setCreateTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(topicId));
+            topic.setStatus(Topic.TopicStatus.NORMAL);
+            return topic;
+        }
+
+        private static String words(Random random, int count) {
+            List<String> parts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                parts.add(WORDS[random.nextInt(WORDS.length)]);
+            }
+            return String.join(" ", parts);
+        }
+    }
+}
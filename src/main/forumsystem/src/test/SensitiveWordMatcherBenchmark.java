@@ -0,0 +1,167 @@
+package main.forumsystem.src.test;
+
+import main.forumsystem.src.entity.SensitiveWord;
+import main.forumsystem.src.util.SensitiveWordMatcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * 敏感词自动机基准
+ * 随机生成中英文混合的词表，构建双数组自动机，输出构建耗时、每个词占用的字节数，
+ * 并与每个状态一个节点对象（HashMap 保存子节点）的传统实现比较堆占用和扫描速度，检查两者的命中数一致。
+ * 参数：词数（默认100000）、扫描文本的字符数（默认2000000）
+ */
+public class SensitiveWordMatcherBenchmark {
+
+    public static void main(String[] args) {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int textLength = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        Random random = new Random(42);
+
+        List<SensitiveWord> words = new ArrayList<>(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+            words.add(new SensitiveWord(randomWord(random, 2 + random.nextInt(5)), null));
+        }
+        StringBuilder text = new StringBuilder(textLength);
+        while (text.length() < textLength) {
+            text.append(randomWord(random, 1 + random.nextInt(8))).append(random.nextInt(10) == 0 ? "，" : "");
+        }
+        String sample = text.toString();
+
+        System.out.println("=== 敏感词自动机基准: " + wordCount + " 个词, 文本 " + textLength + " 字符 ===\n");
+        // 预热一次，避免首轮包含类加载和即时编译
+        new SensitiveWordMatcher(words).findAll(sample);
+
+        long before = usedMemory();
+        SensitiveWordMatcher matcher = new SensitiveWordMatcher(words);
+        long matcherHeap = usedMemory() - before;
+        SensitiveWordMatcher.MatcherStats stats = matcher.getStats();
+        System.out.println("双数组: " + stats);
+
+        before = usedMemory();
+        long start = System.nanoTime();
+        ObjectTrie reference = new ObjectTrie(words);
+        long referenceMillis = (System.nanoTime() - start) / 1_000_000;
+        long referenceHeap = usedMemory() - before;
+        System.out.printf("节点对象: 状态: %d, 构建耗时: %dms%n", reference.states, referenceMillis);
+
+        // 词和替换字符串由词表持有，两边都不计入
+        System.out.printf("%n堆占用: 双数组 %.1fKB (%.1f 字节/词), 节点对象 %.1fKB (%.1f 字节/词), 节省 %.1f 倍%n",
+                matcherHeap / 1024.0, (double) matcherHeap / wordCount,
+                referenceHeap / 1024.0, (double) referenceHeap / wordCount,
+                (double) referenceHeap / Math.max(1, matcherHeap));
+
+        int hits = 0;
+        start = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            hits = matcher.findAll(sample).size();
+        }
+        double matcherRate = textLength * 5 / ((System.nanoTime() - start) / 1e9) / 1e6;
+        int referenceHits = 0;
+        start = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            referenceHits = reference.count(sample);
+        }
+        double referenceRate = textLength * 5 / ((System.nanoTime() - start) / 1e9) / 1e6;
+        System.out.printf("扫描: 双数组 %.1f M字符/秒, 节点对象 %.1f M字符/秒, 命中 %d/%d %s%n",
+                matcherRate, referenceRate, hits, referenceHits, hits == referenceHits ? "✅" : "❌ 结果不一致");
+    }
+
+    // 小写字母和一段常用汉字混合，字符集较小，词之间有大量公共前缀和后缀
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(random.nextInt(4) == 0
+                    ? (char) ('a' + random.nextInt(26))
+                    : (char) (0x4E00 + random.nextInt(3000)));
+        }
+        return word.toString();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 对照实现：每个状态一个节点对象，子节点放在 HashMap 中，失败链接是对象引用
+     * 只做与词表相同的精确匹配（不归一化、不跳过干扰字符），随机词表中没有大写和全角字符，命中数可以直接比较
+     */
+    private static class ObjectTrie {
+        private final Node root = new Node();
+        private int states = 1;
+
+        ObjectTrie(List<SensitiveWord> words) {
+            for (SensitiveWord word : words) {
+                Node node = root;
+                for (char c : word.getWord().toCharArray()) {
+                    Node child = node.children.get(c);
+                    if (child == null) {
+                        child = new Node();
+                        node.children.put(c, child);
+                        states++;
+                    }
+                    node = child;
+                }
+                if (node.word == null) {
+                    node.word = word.getWord();
+                    node.replacement = word.getReplacement();
+                }
+            }
+            Queue<Node> queue = new ArrayDeque<>();
+            root.fail = root;
+            for (Node child : root.children.values()) {
+                child.fail = root;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                    Node child = entry.getValue();
+                    Node f = node.fail;
+                    while (f != root && !f.children.containsKey(entry.getKey())) {
+                        f = f.fail;
+                    }
+                    Node target = f.children.get(entry.getKey());
+                    child.fail = target != null && target != child ? target : root;
+                    child.output = child.fail.word != null ? child.fail : child.fail.output;
+                    queue.add(child);
+                }
+            }
+        }
+
+        int count(String text) {
+            int count = 0;
+            Node node = root;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                while (node != root && !node.children.containsKey(c)) {
+                    node = node.fail;
+                }
+                Node next = node.children.get(c);
+                node = next != null ? next : root;
+                for (Node hit = node.word != null ? node : node.output; hit != null; hit = hit.output) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private Node fail;
+        private Node output;
+        private String word;
+        private String replacement;
+    }
+}
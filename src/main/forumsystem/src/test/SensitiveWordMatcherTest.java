@@ -0,0 +1,66 @@
+package main.forumsystem.src.test;
+
+import main.forumsystem.src.entity.SensitiveWord;
+import main.forumsystem.src.util.SensitiveWordMatcher;
+
+import java.util.List;
+
+/**
+ * 敏感词匹配器测试
+ * 不需要数据库：使用与 database.properties 相同的干扰字符和 maxNoiseRun=3 构建自动机，
+ * 检查全角、大小写、标点和空白拆分的写法能命中，而相邻的英文单词和跨断句标点的文字不会拼成敏感词。
+ */
+public class SensitiveWordMatcherTest {
+
+    private static final String NOISE_CHARS = "*-_'\"`~@#$%^&+=|\\/()[]{}<>·…—‘’“”【】《》";
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        List<SensitiveWord> words = List.of(
+                new SensitiveWord("sb", "**"),
+                new SensitiveWord("ass", "**"),
+                new SensitiveWord("shit", "**"),
+                new SensitiveWord("法轮", "**"));
+        SensitiveWordMatcher matcher = new SensitiveWordMatcher(words, NOISE_CHARS, 3);
+
+        System.out.println("=== 敏感词匹配器测试开始 ===\n");
+
+        System.out.println("1. 拆分和变形的写法应命中:");
+        check("标点拆开的字母", matcher.replace("you a-s-s"), "you **");
+        check("全角大写", matcher.replace("你是ＳＢ吗"), "你是**吗");
+        check("空白和标点拆开的汉字", matcher.replace("法 - 轮功"), "**功");
+        check("空白拆开的单个字母", matcher.replace("s b"), "**");
+        check("单词中间的敏感词", matcher.replace("classic"), "cl**ic");
+
+        System.out.println("\n2. 相邻的英文单词不应拼成敏感词:");
+        check("this bad idea", matcher.replace("this bad idea"), "this bad idea");
+        check("I was sent home", matcher.replace("I was sent home"), "I was sent home");
+        check("he is best", matcher.replace("he is best"), "he is best");
+        check("文末的单个字母", matcher.replace("this b"), "this b");
+        check("标点隔开的两个单词", matcher.replace("yes-hit"), "yes-hit");
+        check("containsAny 与 replace 一致", matcher.containsAny("this bad idea"), false);
+
+        System.out.println("\n3. 断句的标点不是干扰字符:");
+        check("逗号隔开的单词", matcher.replace("yes,hit"), "yes,hit");
+        check("句点隔开的字母", matcher.replace("a.s.s"), "a.s.s");
+        check("全角逗号隔开的汉字", matcher.replace("看法，轮到你了"), "看法，轮到你了");
+        check("顿号隔开的汉字", matcher.replace("看法、轮换"), "看法、轮换");
+
+        System.out.println("\n4. 关闭跳过空白:");
+        SensitiveWordMatcher noWhitespace = new SensitiveWordMatcher(words, NOISE_CHARS, false, 3);
+        check("空白不再被跳过", noWhitespace.replace("s b"), "s b");
+        check("标点仍被跳过", noWhitespace.replace("a*s*s"), "**");
+
+        System.out.println("\n=== 敏感词匹配器测试完成: " + (failures == 0 ? "✅ 全部通过" : "❌ 失败 " + failures + " 项") + " ===");
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        boolean passed = expected.equals(actual);
+        if (!passed) {
+            failures++;
+        }
+        System.out.println("   " + (passed ? "✅ " : "❌ ") + name
+                + (passed ? "" : "：期望 " + expected + "，实际 " + actual));
+    }
+}
@@ -0,0 +1,494 @@
+package main.forumsystem.src.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库连接池
+ * 复用物理连接，支持最小/最大连接数、空闲回收、借出校验和有界等待，
+ * 并统计活跃数、空闲数、等待数以及获取连接耗时分布。
+ * 每个物理连接附带按SQL文本缓存的预编译语句（见 {@link StatementCache}），可选使用服务端预编译。
+ * 开启泄漏检测后，借出超过阈值仍未归还的连接会连同最后执行的SQL和借出堆栈一起报告。
+ */
+public class ConnectionPool {
+
+    // 获取连接耗时直方图的桶上界（毫秒），最后一个桶统计超过最大上界的请求
+    private static final long[] LATENCY_BUCKETS_MS = {1, 5, 10, 50, 100, 500, 1000};
+
+    private final String url;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final boolean validateOnBorrow;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionThresholdMillis;
+    private final int statementCacheSize;
+    private final Properties connectionProperties = new Properties();
+
+    // 许可数即最大连接数，借出时获取、归还时释放
+    private final Semaphore permits;
+    // 空闲连接，后进先出，使热连接保持复用、冷连接自然老化
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    // 借出中的连接，用于泄漏检测
+    private final Set<LeaseHandler> leases = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS_MS.length + 1];
+
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * 根据配置创建连接池
+     * @param url 数据库URL
+     * @param username 用户名
+     * @param password 密码
+     * @param properties 连接池配置（pool.* 前缀），缺省项使用默认值
+     */
+    public ConnectionPool(String url, String username, String password, Properties properties) {
+        this.url = url;
+        connectionProperties.setProperty("user", username);
+        connectionProperties.setProperty("password", password);
+
+        this.maxSize = Math.max(1, intProperty(properties, "pool.maxSize", 10));
+        this.minSize = Math.max(0, Math.min(maxSize, intProperty(properties, "pool.minSize", 2)));
+        this.maxWaitMillis = longProperty(properties, "pool.maxWaitMillis", 5000);
+        this.idleTimeoutMillis = longProperty(properties, "pool.idleTimeoutMillis", 600000);
+        this.validateOnBorrow = Boolean.parseBoolean(properties.getProperty("pool.validateOnBorrow", "true"));
+        this.validationIntervalMillis = longProperty(properties, "pool.validationIntervalMillis", 500);
+        this.validationTimeoutSeconds = intProperty(properties, "pool.validationTimeoutSeconds", 2);
+        this.leakDetectionThresholdMillis = longProperty(properties, "pool.leakDetectionThresholdMillis", 0);
+        this.statementCacheSize = intProperty(properties, "pool.statementCacheSize", 64);
+        long evictionIntervalMillis = longProperty(properties, "pool.evictionIntervalMillis", 30000);
+
+        // 服务端预编译：语句只在MySQL端解析一次，之后仅传输参数
+        if (Boolean.parseBoolean(properties.getProperty("pool.useServerPrepStmts", "false"))) {
+            connectionProperties.setProperty("useServerPrepStmts", "true");
+        }
+
+        this.permits = new Semaphore(maxSize, true);
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictAndFill,
+                evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+        if (leakDetectionThresholdMillis > 0) {
+            long checkInterval = Math.max(1000, leakDetectionThresholdMillis / 2);
+            evictor.scheduleWithFixedDelay(this::detectLeaks, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        }
+
+        // 预热最小连接数，失败不影响启动，首次借出时会再次尝试
+        evictAndFill();
+    }
+
+    /**
+     * 借出连接，最多等待 pool.maxWaitMillis 毫秒
+     * 调用方关闭返回的连接即归还连接池
+     * @return Connection 连接对象
+     * @throws SQLException 连接池已关闭、等待超时或创建连接失败
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("连接池已关闭");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiterCount.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待数据库连接时被中断", e);
+        } finally {
+            waiterCount.decrementAndGet();
+        }
+
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new SQLTimeoutException("获取数据库连接超时（" + maxWaitMillis + "ms），活跃连接数: " + activeCount.get());
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = create();
+            }
+            activeCount.incrementAndGet();
+            borrowCount.increment();
+            recordLatency(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 获取连接池当前状态快照
+     * @return PoolStats 状态快照
+     */
+    public PoolStats getStats() {
+        long[] histogram = new long[latencyBuckets.length];
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            histogram[i] = latencyBuckets[i].sum();
+        }
+        return new PoolStats(activeCount.get(), idle.size(), totalCount.get(), waiterCount.get(),
+                minSize, maxSize, borrowCount.sum(), timeoutCount.sum(),
+                createdCount.sum(), destroyedCount.sum(), leakCount.sum(),
+                statementHits.sum(), statementMisses.sum(), statementEvictions.sum(), histogram);
+    }
+
+    /**
+     * 关闭连接池，释放所有空闲连接；借出中的连接在归还时关闭
+     */
+    public void shutdown() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    // 取出一个可用的空闲连接，校验失败的连接直接销毁
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (!validateOnBorrow || pooled.isRecentlyUsed(validationIntervalMillis)
+                    || pooled.isValid(validationTimeoutSeconds)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, connectionProperties);
+        totalCount.incrementAndGet();
+        createdCount.increment();
+        return new PooledConnection(physical);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalCount.decrementAndGet();
+        destroyedCount.increment();
+        try {
+            if (pooled.statementCache != null) {
+                pooled.statementCache.closeAll();
+            }
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // 物理连接可能已断开，忽略关闭异常
+        }
+    }
+
+    // 归还连接：回滚未提交事务、恢复自动提交，异常连接直接销毁
+    private void release(PooledConnection pooled) {
+        activeCount.decrementAndGet();
+        try {
+            boolean reusable = !closed && !pooled.physical.isClosed();
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // 定时任务：回收超时空闲连接，并补足最小连接数
+    private void evictAndFill() {
+        if (closed) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : idle) {
+            if (totalCount.get() <= minSize) {
+                break;
+            }
+            if (now - pooled.lastUsed > idleTimeoutMillis && idle.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        try {
+            while (!closed && totalCount.get() < minSize) {
+                idle.offerLast(create());
+            }
+        } catch (SQLException e) {
+            System.err.println("连接池预建连接失败: " + e.getMessage());
+        }
+    }
+
+    // 定时任务：报告借出时间超过阈值的连接，每个借出只报告一次
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (LeaseHandler lease : leases) {
+            long heldMillis = now - lease.borrowedAt;
+            if (heldMillis > leakDetectionThresholdMillis && !lease.leakReported) {
+                lease.leakReported = true;
+                leakCount.increment();
+                System.err.println("疑似连接泄漏: 连接已借出 " + heldMillis + "ms 未归还，线程: " +
+                        lease.borrowThread + "，最后执行的SQL: " +
+                        (lease.lastSql != null ? lease.lastSql.trim() : "无"));
+                if (lease.borrowStack != null) {
+                    lease.borrowStack.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MS.length && millis >= LATENCY_BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+        latencyBuckets[bucket].increment();
+    }
+
+    private static int intProperty(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longProperty(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * 池中的物理连接
+     * 每次借出生成一个新的代理，代理关闭后即失效，避免归还后被误用
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementHits, statementMisses, statementEvictions)
+                    : null;
+        }
+
+        boolean isRecentlyUsed(long windowMillis) {
+            return System.currentTimeMillis() - lastUsed < windowMillis;
+        }
+
+        boolean isValid(int timeoutSeconds) {
+            try {
+                return physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        Connection lease() {
+            LeaseHandler handler = new LeaseHandler(this);
+            if (leakDetectionThresholdMillis > 0) {
+                leases.add(handler);
+            }
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    handler);
+        }
+    }
+
+    /**
+     * 借出连接的代理处理器
+     * 拦截 close 将连接归还连接池，记录最后预编译的SQL，其余调用转发给物理连接
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final String borrowThread = Thread.currentThread().getName();
+        // 仅在开启泄漏检测时记录借出堆栈，避免每次借出的额外开销
+        private final Throwable borrowStack = leakDetectionThresholdMillis > 0 ? new Throwable("连接借出位置") : null;
+        private volatile String lastSql;
+        private volatile boolean leakReported;
+        private boolean released;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        leases.remove(this);
+                        release(pooled);
+                    }
+                    return null;
+                case "prepareStatement":
+                    lastSql = (String) args[0];
+                    if (!released && args.length == 1 && pooled.statementCache != null) {
+                        return pooled.statementCache.prepare(lastSql, (Connection) proxy);
+                    }
+                    break;
+                case "prepareCall":
+                    lastSql = (String) args[0];
+                    break;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + (released ? ", released" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (released) {
+                throw new SQLException("连接已归还连接池，不能继续使用");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * 连接池状态快照
+     */
+    public static class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int waiters;
+        private final int minSize;
+        private final int maxSize;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final long leakCount;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+        private final long[] acquireLatencyHistogram;
+
+        PoolStats(int active, int idle, int total, int waiters, int minSize, int maxSize,
+                  long borrowCount, long timeoutCount, long createdCount, long destroyedCount,
+                  long leakCount, long statementHits, long statementMisses, long statementEvictions,
+                  long[] acquireLatencyHistogram) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.waiters = waiters;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.leakCount = leakCount;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+            this.acquireLatencyHistogram = acquireLatencyHistogram;
+        }
+
+        // Getters
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getTotal() { return total; }
+        public int getWaiters() { return waiters; }
+        public int getMinSize() { return minSize; }
+        public int getMaxSize() { return maxSize; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getDestroyedCount() { return destroyedCount; }
+        public long getLeakCount() { return leakCount; }
+        public long getStatementHits() { return statementHits; }
+        public long getStatementMisses() { return statementMisses; }
+        public long getStatementEvictions() { return statementEvictions; }
+        public long[] getAcquireLatencyHistogram() { return acquireLatencyHistogram.clone(); }
+
+        /**
+         * 获取直方图各桶的标签，与 getAcquireLatencyHistogram 一一对应
+         * @return String[] 桶标签，如 "<1ms"、">=1000ms"
+         */
+        public static String[] getLatencyBucketLabels() {
+            String[] labels = new String[LATENCY_BUCKETS_MS.length + 1];
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                labels[i] = "<" + LATENCY_BUCKETS_MS[i] + "ms";
+            }
+            labels[LATENCY_BUCKETS_MS.length] = ">=" + LATENCY_BUCKETS_MS[LATENCY_BUCKETS_MS.length - 1] + "ms";
+            return labels;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder histogram = new StringBuilder();
+            String[] labels = getLatencyBucketLabels();
+            for (int i = 0; i < labels.length; i++) {
+                if (i > 0) {
+                    histogram.append(", ");
+                }
+                histogram.append(labels[i]).append('=').append(acquireLatencyHistogram[i]);
+            }
+            return "活跃: " + active + ", 空闲: " + idle + ", 总数: " + total + "/" + maxSize +
+                   ", 等待: " + waiters + ", 借出次数: " + borrowCount + ", 超时次数: " + timeoutCount +
+                   ", 疑似泄漏: " + leakCount +
+                   ", 语句缓存命中/未命中/淘汰: " + statementHits + "/" + statementMisses + "/" + statementEvictions +
+                   ", 获取耗时分布: {" + histogram + "}";
+        }
+    }
+}
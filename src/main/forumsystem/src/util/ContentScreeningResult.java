@@ -0,0 +1,70 @@
+package main.forumsystem.src.util;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 内容审查结果
+ * 按传入顺序保存每个字段替换后的文本和匹配到的敏感词（位置为原字段中的下标）
+ */
+public class ContentScreeningResult {
+
+    private final List<String> filteredTexts;
+    private final List<List<SensitiveWordMatcher.Match>> matches;
+
+    public ContentScreeningResult(List<String> filteredTexts, List<List<SensitiveWordMatcher.Match>> matches) {
+        this.filteredTexts = filteredTexts;
+        this.matches = matches;
+    }
+
+    /**
+     * 是否有任一字段命中敏感词
+     */
+    public boolean hasHit() {
+        for (List<SensitiveWordMatcher.Match> fieldMatches : matches) {
+            if (!fieldMatches.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 指定字段是否命中敏感词
+     * @param fieldIndex 字段序号
+     */
+    public boolean hasHit(int fieldIndex) {
+        return !matches.get(fieldIndex).isEmpty();
+    }
+
+    /**
+     * 获取替换敏感词后的字段文本
+     * @param fieldIndex 字段序号
+     * @return String 替换后的文本，未命中时为原文本
+     */
+    public String getFilteredText(int fieldIndex) {
+        return filteredTexts.get(fieldIndex);
+    }
+
+    /**
+     * 获取字段中的全部匹配（允许重叠）
+     * @param fieldIndex 字段序号
+     */
+    public List<SensitiveWordMatcher.Match> getMatches(int fieldIndex) {
+        return matches.get(fieldIndex);
+    }
+
+    /**
+     * 获取所有字段中匹配到的不同敏感词
+     */
+    public Set<String> getMatchedWords() {
+        Set<String> words = new LinkedHashSet<>();
+        for (List<SensitiveWordMatcher.Match> fieldMatches : matches) {
+            for (SensitiveWordMatcher.Match match : fieldMatches) {
+                words.add(match.getWord());
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,596 @@
+package main.forumsystem.src.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 计数聚合器
+ * 帖子数、主题数、回复数等冗余计数的增量先按（表, ID, 列）合并在内存中，
+ * 后台线程按间隔或待写回键数达到上限时，把所有增量连同检查点序号在一个事务中写回，
+ * 热门板块的计数行不再成为每次发帖的串行点。读取计数时叠加尚未落库的增量。
+ *
+ * 每个增量在进入内存前先追加到本地增量日志，并带有递增序号。写回事务同时记录已写回的最大序号，
+ * 进程崩溃后重启时只重放序号大于检查点的日志，已写回的增量不会重复计入。
+ * 日志按写回周期分段，检查点覆盖的分段在写回成功后删除。
+ *
+ * 以数据库重新统计的结果校正计数时（{@link #recount}），校正中的键不再接受增量，由调用方直接写库，
+ * 并等待已登记但所在事务尚未结束的增量记入、写回后再统计，统计结果与之后写回的增量不会重复叠加。
+ */
+public class CounterAggregator {
+
+    private static final String SEGMENT_PREFIX = "counter-deltas-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final CounterStore store;
+    private final int maxPendingKeys;
+    private final File logDir;
+    private final boolean syncLog;
+    private final ScheduledExecutorService flusher;
+    private final List<Consumer<CounterKey>> flushListeners = new CopyOnWriteArrayList<>();
+
+    // 以下字段由 this 保护
+    private Map<CounterKey, Long> pending = new HashMap<>();
+    private Map<CounterKey, Long> inFlight = Collections.emptyMap();
+    // 已登记、所在事务尚未结束的增量个数，以及正在校正的键
+    private final Map<CounterKey, Integer> uncommitted = new HashMap<>();
+    private final Set<CounterKey> recounting = new HashSet<>();
+    private long lastSeq;
+    private BufferedWriter activeLog;
+    private FileOutputStream activeLogStream;
+    private File activeSegment;
+    // 已封存、等待检查点覆盖后删除的日志分段及其最大序号
+    private final Map<File, Long> sealedSegments = new HashMap<>();
+
+    // 串行化写回，写回期间不阻塞记录增量
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushedKeys = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder logFailures = new LongAdder();
+    private volatile long replayed;
+
+    /**
+     * 创建聚合器，重放上次未写回的增量日志后开始定期写回
+     * @param store 计数存储
+     * @param flushIntervalMillis 写回间隔（毫秒）
+     * @param maxPendingKeys 待写回键数达到该值时立即触发写回
+     * @param logDir 增量日志目录
+     * @param syncLog 每次追加日志后是否强制刷盘（关闭时只能防进程崩溃，不能防断电）
+     */
+    public CounterAggregator(CounterStore store, long flushIntervalMillis, int maxPendingKeys,
+                             File logDir, boolean syncLog) {
+        this.store = store;
+        this.maxPendingKeys = Math.max(1, maxPendingKeys);
+        this.logDir = logDir;
+        this.syncLog = syncLog;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "counter-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 在写回线程上重放，避免加入调用线程上可能存在的事务
+        try {
+            flusher.submit(this::recover).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            flusher.shutdownNow();
+            throw new IllegalStateException("重放计数增量日志时被中断", e);
+        } catch (ExecutionException e) {
+            // 无法确认检查点时不能安全地分配序号
+            flusher.shutdownNow();
+            throw new IllegalStateException("重放计数增量日志失败！", e.getCause());
+        }
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一个计数增量
+     * 处于 {@link TransactionTemplate} 事务中时，提交后才记入，回滚则丢弃
+     * @param key 计数键
+     * @param delta 增量
+     * @return 是否已记入；增量日志写入失败或该键正在校正时返回false，调用方应直接更新数据库
+     */
+    public boolean add(CounterKey key, long delta) {
+        if (delta == 0) {
+            return true;
+        }
+        if (!logDir.isDirectory() && !logDir.mkdirs()) {
+            logFailures.increment();
+            return false;
+        }
+        synchronized (this) {
+            if (recounting.contains(key)) {
+                return false;
+            }
+            uncommitted.merge(key, 1, Integer::sum);
+        }
+        // 提交回调先于完成回调执行，增量记入后才解除登记
+        TransactionTemplate.afterCommit(() -> record(key, delta));
+        TransactionTemplate.afterCompletion(() -> release(key));
+        return true;
+    }
+
+    /**
+     * 以数据库重新统计的结果校正计数
+     * 校正期间这些键的新增量由调用方直接写库；先等待已登记但所在事务尚未结束的增量记入并写回，
+     * 此时数据库中的计数已包含这些键全部已记入的增量，再执行校正操作。
+     * 校正操作应在自己的事务中先锁定计数所在的行再统计，使校正期间直接写库的更新排在校正之后。
+     * 不能在登记过这些键增量的事务中调用，否则等待超时
+     * @param keys 要校正的计数键
+     * @param timeoutMillis 等待未结束事务的最长时间（毫秒）
+     * @param recount 校正操作，返回是否成功
+     * @return 是否校正成功；等待超时或写回失败时不执行校正，返回false
+     */
+    public boolean recount(Collection<CounterKey> keys, long timeoutMillis, BooleanSupplier recount) {
+        synchronized (this) {
+            for (CounterKey key : keys) {
+                if (recounting.contains(key)) {
+                    return false;
+                }
+            }
+            recounting.addAll(keys);
+        }
+        try {
+            if (!awaitCommitted(keys, timeoutMillis)) {
+                return false;
+            }
+            flush();
+            for (CounterKey key : keys) {
+                if (getPending(key) != 0) {
+                    return false;
+                }
+            }
+            return recount.getAsBoolean();
+        } finally {
+            synchronized (this) {
+                recounting.removeAll(keys);
+            }
+        }
+    }
+
+    /**
+     * 获取尚未落库的增量，包括正在写回的部分
+     * @param key 计数键
+     * @return long 未落库的增量
+     */
+    public synchronized long getPending(CounterKey key) {
+        return pending.getOrDefault(key, 0L) + inFlight.getOrDefault(key, 0L);
+    }
+
+    /**
+     * 注册写回成功后的回调，每个写回的键调用一次，常用于使缓存失效
+     * @param listener 回调
+     */
+    public void addFlushListener(Consumer<CounterKey> listener) {
+        flushListeners.add(listener);
+    }
+
+    /**
+     * 立即写回所有增量，写回失败的增量放回内存等待下次写回
+     * @return int 本次写回的键数
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            Map<CounterKey, Long> deltas;
+            long upTo;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                deltas = pending;
+                upTo = lastSeq;
+                pending = new HashMap<>();
+                inFlight = deltas;
+                sealActiveSegment();
+            }
+
+            boolean written = apply(deltas, upTo);
+            synchronized (this) {
+                inFlight = Collections.emptyMap();
+                if (written) {
+                    deleteSegmentsThrough(upTo);
+                } else {
+                    deltas.forEach((key, delta) -> pending.merge(key, delta, Long::sum));
+                }
+            }
+            if (!written) {
+                failureCount.increment();
+                return 0;
+            }
+            flushCount.increment();
+            flushedKeys.add(deltas.size());
+            notifyFlushed(deltas);
+            return deltas.size();
+        }
+    }
+
+    /**
+     * 停止后台写回并写回剩余增量，写回失败的增量留在日志中等待下次启动时重放
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+        synchronized (this) {
+            closeActiveLog();
+        }
+    }
+
+    /**
+     * 获取聚合器状态
+     * @return AggregatorStats 状态快照
+     */
+    public synchronized AggregatorStats getStats() {
+        return new AggregatorStats(pending.size(), recorded.sum(), flushCount.sum(), flushedKeys.sum(),
+                failureCount.sum(), logFailures.sum(), replayed);
+    }
+
+    // 先写日志再记入内存，日志写入失败则直接写库
+    private void record(CounterKey key, long delta) {
+        boolean logged;
+        synchronized (this) {
+            logged = appendLog(key, delta);
+            if (logged) {
+                pending.merge(key, delta, Long::sum);
+            }
+        }
+        if (!logged) {
+            logFailures.increment();
+            Map<CounterKey, Long> single = Collections.singletonMap(key, delta);
+            if (store.apply(single, 0)) {
+                notifyFlushed(single);
+            }
+            return;
+        }
+        recorded.increment();
+        if (pendingSize() >= maxPendingKeys && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // 已关闭，剩余增量由 shutdown 写回
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private synchronized int pendingSize() {
+        return pending.size();
+    }
+
+    private synchronized void release(CounterKey key) {
+        if (uncommitted.merge(key, -1, Integer::sum) == 0) {
+            uncommitted.remove(key);
+        }
+        notifyAll();
+    }
+
+    // 等待这些键上已登记的增量所在的事务全部结束
+    private synchronized boolean awaitCommitted(Collection<CounterKey> keys, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (CounterKey key : keys) {
+            while (uncommitted.containsKey(key)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // 写回并确认：提交结果未知时以检查点判断是否已经写入
+    private boolean apply(Map<CounterKey, Long> deltas, long upTo) {
+        try {
+            if (store.apply(deltas, upTo)) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        try {
+            return store.loadCheckpoint() >= upTo;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void notifyFlushed(Map<CounterKey, Long> deltas) {
+        for (CounterKey key : deltas.keySet()) {
+            for (Consumer<CounterKey> listener : flushListeners) {
+                try {
+                    listener.accept(key);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ==================== 增量日志 ====================
+
+    // 重放检查点之后的日志，重放失败的增量留在内存中由后续写回处理
+    private void recover() {
+        // 新序号必须大于检查点，即使日志目录已被清空
+        long checkpoint = store.loadCheckpoint();
+        synchronized (this) {
+            lastSeq = checkpoint;
+        }
+
+        File[] segments = logDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null || segments.length == 0) {
+            return;
+        }
+        Arrays.sort(segments);
+
+        Map<CounterKey, Long> deltas = new HashMap<>();
+        long maxSeq = checkpoint;
+        long count = 0;
+        for (File segment : segments) {
+            long segmentMax = checkpoint;
+            try (BufferedReader reader = Files.newBufferedReader(segment.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    // 崩溃时最后一行可能不完整，直接忽略
+                    if (fields.length != 6) {
+                        continue;
+                    }
+                    long seq;
+                    long delta;
+                    int id;
+                    try {
+                        seq = Long.parseLong(fields[0]);
+                        id = Integer.parseInt(fields[4]);
+                        delta = Long.parseLong(fields[5]);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    segmentMax = Math.max(segmentMax, seq);
+                    if (seq > checkpoint) {
+                        deltas.merge(new CounterKey(fields[1], fields[2], fields[3], id), delta, Long::sum);
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            sealedSegments.put(segment, segmentMax);
+            maxSeq = Math.max(maxSeq, segmentMax);
+        }
+
+        synchronized (this) {
+            lastSeq = maxSeq;
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            synchronized (this) {
+                deleteSegmentsThrough(maxSeq);
+            }
+            return;
+        }
+
+        replayed = count;
+        System.out.println("重放计数增量日志: " + count + " 条，涉及 " + deltas.size() + " 个计数");
+        if (apply(deltas, maxSeq)) {
+            synchronized (this) {
+                deleteSegmentsThrough(maxSeq);
+            }
+            notifyFlushed(deltas);
+        } else {
+            synchronized (this) {
+                deltas.forEach((key, delta) -> pending.merge(key, delta, Long::sum));
+            }
+        }
+    }
+
+    // 调用方持有 this
+    private boolean appendLog(CounterKey key, long delta) {
+        try {
+            if (activeLog == null) {
+                activeSegment = new File(logDir, String.format("%s%020d%s", SEGMENT_PREFIX, lastSeq + 1, SEGMENT_SUFFIX));
+                activeLogStream = new FileOutputStream(activeSegment, true);
+                activeLog = new BufferedWriter(new OutputStreamWriter(activeLogStream, StandardCharsets.UTF_8));
+            }
+            long seq = lastSeq + 1;
+            activeLog.write(seq + "\t" + key.table + "\t" + key.idColumn + "\t" + key.column
+                    + "\t" + key.id + "\t" + delta + "\n");
+            activeLog.flush();
+            if (syncLog) {
+                activeLogStream.getFD().sync();
+            }
+            lastSeq = seq;
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeActiveLog();
+            return false;
+        }
+    }
+
+    // 调用方持有 this
+    private void sealActiveSegment() {
+        if (activeLog != null) {
+            sealedSegments.put(activeSegment, lastSeq);
+            closeActiveLog();
+        }
+    }
+
+    // 调用方持有 this
+    private void closeActiveLog() {
+        if (activeLog != null) {
+            try {
+                activeLog.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        activeLog = null;
+        activeLogStream = null;
+        activeSegment = null;
+    }
+
+    // 调用方持有 this
+    private void deleteSegmentsThrough(long checkpoint) {
+        List<File> covered = new ArrayList<>();
+        sealedSegments.forEach((segment, maxSeq) -> {
+            if (maxSeq <= checkpoint) {
+                covered.add(segment);
+            }
+        });
+        for (File segment : covered) {
+            if (segment.delete() || !segment.exists()) {
+                sealedSegments.remove(segment);
+            }
+        }
+    }
+
+    /**
+     * 计数存储，负责把增量和检查点写入数据库
+     */
+    public interface CounterStore {
+        /**
+         * 读取已写回的最大日志序号
+         * @return long 检查点，从未写回时为0
+         * @throws RuntimeException 读取失败
+         */
+        long loadCheckpoint();
+
+        /**
+         * 在一个事务中写入所有增量，并把检查点推进到 checkpoint（为0时不更新检查点）
+         * @param deltas 计数键到增量的映射
+         * @param checkpoint 本次覆盖的最大日志序号
+         * @return 是否写入成功
+         */
+        boolean apply(Map<CounterKey, Long> deltas, long checkpoint);
+    }
+
+    /**
+     * 计数键：表名、主键列、计数列和行ID
+     * 表名和列名会直接拼入SQL，只能使用代码中的常量
+     */
+    public static final class CounterKey {
+        private final String table;
+        private final String idColumn;
+        private final String column;
+        private final int id;
+
+        public CounterKey(String table, String idColumn, String column, int id) {
+            this.table = table;
+            this.idColumn = idColumn;
+            this.column = column;
+            this.id = id;
+        }
+
+        // Getters
+        public String getTable() { return table; }
+        public String getIdColumn() { return idColumn; }
+        public String getColumn() { return column; }
+        public int getId() { return id; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CounterKey)) return false;
+            CounterKey that = (CounterKey) o;
+            return id == that.id && column.equals(that.column)
+                    && table.equals(that.table) && idColumn.equals(that.idColumn);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, column, id);
+        }
+
+        @Override
+        public String toString() {
+            return table + "." + column + "[" + idColumn + "=" + id + "]";
+        }
+    }
+
+    /**
+     * 聚合器状态快照
+     */
+    public static class AggregatorStats {
+        private final int pendingKeys;
+        private final long recorded;
+        private final long flushCount;
+        private final long flushedKeys;
+        private final long failureCount;
+        private final long logFailures;
+        private final long replayed;
+
+        AggregatorStats(int pendingKeys, long recorded, long flushCount, long flushedKeys,
+                        long failureCount, long logFailures, long replayed) {
+            this.pendingKeys = pendingKeys;
+            this.recorded = recorded;
+            this.flushCount = flushCount;
+            this.flushedKeys = flushedKeys;
+            this.failureCount = failureCount;
+            this.logFailures = logFailures;
+            this.replayed = replayed;
+        }
+
+        // Getters
+        public int getPendingKeys() { return pendingKeys; }
+        public long getRecorded() { return recorded; }
+        public long getFlushCount() { return flushCount; }
+        public long getFlushedKeys() { return flushedKeys; }
+        public long getFailureCount() { return failureCount; }
+        public long getLogFailures() { return logFailures; }
+        public long getReplayed() { return replayed; }
+
+        @Override
+        public String toString() {
+            return String.format("待写回: %d个计数, 累计增量: %d, 写回: %d次/%d个计数, 失败: %d, 日志失败: %d, 启动重放: %d",
+                    pendingKeys, recorded, flushCount, flushedKeys, failureCount, logFailures, replayed);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package main.forumsystem.src.util;
+
+import main.forumsystem.src.search.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 前缀补全索引
+ * 把每个ID的若干名称（如用户名和昵称）归一化后存入按 (名称, ID) 排序的数组，
+ * 补全时二分查找前缀的下界再顺序取出，耗时为 O(log n + limit)，与条目总数基本无关。
+ *
+ * 数组是不可变的快照，查询无需加锁；增删时在锁内合并出新数组再整体替换，
+ * 代价为 O(n) 次数组复制，适合注册、改名这类低频写操作。
+ * 首次查询时通过 {@link Loader} 全量加载，加载前的变更由加载结果覆盖，不单独记录。
+ */
+public class PrefixIndex {
+
+    private final Loader loader;
+    // 加载完成前为null
+    private volatile Snapshot snapshot;
+    // 每个ID当前的归一化名称，只在锁内访问
+    private final Map<Integer, String[]> keysById = new HashMap<>();
+
+    /**
+     * @param loader 全量加载函数
+     */
+    public PrefixIndex(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 按前缀补全，名称归一化规则与搜索分词一致（全角转半角、转小写）
+     * @param prefix 前缀
+     * @param limit 最多返回的ID数
+     * @return 名称以该前缀开头的ID，按名称升序，同一ID只出现一次
+     */
+    public List<Integer> suggest(String prefix, int limit) {
+        List<Integer> result = new ArrayList<>();
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return result;
+        }
+        Snapshot current = snapshot != null ? snapshot : load();
+
+        Set<Integer> seen = new LinkedHashSet<>();
+        for (int i = current.lowerBound(key, Integer.MIN_VALUE);
+             i < current.keys.length && current.keys[i].startsWith(key) && seen.size() < limit; i++) {
+            seen.add(current.ids[i]);
+        }
+        result.addAll(seen);
+        return result;
+    }
+
+    /**
+     * 设置ID的名称，替换原有名称；索引尚未加载时忽略
+     * 应在写操作提交后调用
+     * @param id ID
+     * @param names 名称，null和空字符串被忽略
+     */
+    public synchronized void put(int id, String... names) {
+        if (snapshot == null) {
+            return;
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        for (String name : names) {
+            String key = normalize(name);
+            if (!key.isEmpty()) {
+                keys.add(key);
+            }
+        }
+        String[] added = keys.toArray(new String[0]);
+        Arrays.sort(added);
+        String[] removed = keysById.get(id);
+        if (added.length == 0) {
+            keysById.remove(id);
+        } else {
+            keysById.put(id, added);
+        }
+        snapshot = snapshot.replace(id, removed, added);
+    }
+
+    /**
+     * 移除ID的所有名称；索引尚未加载时忽略
+     * @param id ID
+     */
+    public synchronized void remove(int id) {
+        if (snapshot == null) {
+            return;
+        }
+        String[] removed = keysById.remove(id);
+        if (removed != null) {
+            snapshot = snapshot.replace(id, removed, new String[0]);
+        }
+    }
+
+    /**
+     * 丢弃索引，下次查询时重新加载
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+        keysById.clear();
+    }
+
+    /**
+     * 当前的条目数（名称数），尚未加载时为0
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.keys.length : 0;
+    }
+
+    // 加载期间的 put/remove 被阻塞，加载完成后再应用，不会被加载结果覆盖
+    private synchronized Snapshot load() {
+        if (snapshot != null) {
+            return snapshot;
+        }
+        Map<Integer, List<String>> all = loader.loadAll();
+        List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> item : all.entrySet()) {
+            Set<String> keys = new LinkedHashSet<>();
+            for (String name : item.getValue()) {
+                String key = normalize(name);
+                if (!key.isEmpty()) {
+                    keys.add(key);
+                }
+            }
+            if (keys.isEmpty()) {
+                continue;
+            }
+            String[] sorted = keys.toArray(new String[0]);
+            Arrays.sort(sorted);
+            keysById.put(item.getKey(), sorted);
+            for (String key : sorted) {
+                entries.add(new Entry(key, item.getKey()));
+            }
+        }
+        entries.sort(null);
+        String[] keys = new String[entries.size()];
+        int[] ids = new int[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).key;
+            ids[i] = entries.get(i).id;
+        }
+        snapshot = new Snapshot(keys, ids);
+        return snapshot;
+    }
+
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String trimmed = name.trim();
+        char[] chars = new char[trimmed.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Tokenizer.normalize(trimmed.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 全量加载函数
+     */
+    public interface Loader {
+        /**
+         * 读取所有ID及其名称，读取失败时抛出异常
+         * @return ID到名称列表的映射
+         */
+        Map<Integer, List<String>> loadAll();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String key;
+        final int id;
+
+        Entry(String key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int cmp = key.compareTo(other.key);
+            return cmp != 0 ? cmp : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * 不可变的有序数组，keys[i] 与 ids[i] 按 (名称, ID) 升序
+     */
+    private static final class Snapshot {
+        final String[] keys;
+        final int[] ids;
+
+        Snapshot(String[] keys, int[] ids) {
+            this.keys = keys;
+            this.ids = ids;
+        }
+
+        // 第一个不小于 (key, id) 的位置
+        int lowerBound(String key, int id) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = keys[mid].compareTo(key);
+                if (cmp < 0 || (cmp == 0 && ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // 去掉 (removed[j], id)，插入 (added[j], id)；两组名称均已升序，一次顺序合并完成
+        Snapshot replace(int id, String[] removed, String[] added) {
+            int removeCount = 0;
+            if (removed != null) {
+                for (String key : removed) {
+                    int index = lowerBound(key, id);
+                    if (index < keys.length && ids[index] == id && keys[index].equals(key)) {
+                        removeCount++;
+                    }
+                }
+            }
+            int size = keys.length - removeCount + added.length;
+            String[] newKeys = new String[size];
+            int[] newIds = new int[size];
+            int next = 0;
+            int a = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (ids[i] == id && removed != null && Arrays.binarySearch(removed, keys[i]) >= 0) {
+                    continue;
+                }
+                while (a < added.length && compare(added[a], id, keys[i], ids[i]) < 0) {
+                    newKeys[next] = added[a++];
+                    newIds[next++] = id;
+                }
+                newKeys[next] = keys[i];
+                newIds[next++] = ids[i];
+            }
+            while (a < added.length) {
+                newKeys[next] = added[a++];
+                newIds[next++] = id;
+            }
+            return new Snapshot(newKeys, newIds);
+        }
+
+        private static int compare(String key, int id, String otherKey, int otherId) {
+            int cmp = key.compareTo(otherKey);
+            return cmp != 0 ? cmp : Integer.compare(id, otherId);
+        }
+    }
+}
@@ -0,0 +1,702 @@
+package main.forumsystem.src.util;
+
+import main.forumsystem.src.entity.SensitiveWord;
+import main.forumsystem.src.search.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 敏感词匹配器（Aho-Corasick 自动机）
+ * 所有敏感词构建成一个自动机，检测和替换都只需对文本做一次线性扫描，
+ * 与敏感词数量无关。实例构建后不可变，可被多个线程共享；词表变化时整体重建并替换引用。
+ *
+ * 自动机运行在归一化后的字符流上：逐字符做全角转半角和大小写折叠（与搜索分词的规则一致），
+ * 并跳过干扰字符（空白和配置的标点符号），使"敏 感-词"、"ＡＢＣ"之类的写法同样命中。
+ * 干扰字符两侧都是英文字母/数字、且至少一侧的字母/数字串长度超过1时视为单词边界，不跨越匹配，
+ * 避免把"this bad"、"this b"之类相邻的单词拼成"sb"，而"s b"、"a-s-s"这样逐个字母拆开的写法仍然命中。
+ * 敏感词本身按同样规则归一化。扫描时用环形缓冲区记录最近的有效字符在原文中的下标，
+ * 匹配位置和替换范围都换算回原文：从第一个有效字符到最后一个有效字符，中间的干扰字符一并替换。
+ * 连续超过 maxNoiseRun 个干扰字符时自动机回到初始状态，避免跨越大段文字拼出匹配。
+ *
+ * 自动机以双数组 trie 存放在几个 int[] 中，不创建节点对象：字符先按词表中的出现次数映射为从1开始的编码，
+ * 状态 s 经编码 c 转移到 t = base[s] + c，当且仅当 check[t] == s；失败链接和输出链接同样按状态下标存放。
+ * 构建时把归一化后的词排序，按层（广度优先）为每个状态的子节点寻找互不冲突的 base，
+ * 候选位置只在空闲槽位链表上枚举，槽位使用率接近100%时构建仍与状态数近似线性。
+ */
+public final class SensitiveWordMatcher {
+
+    private static final String DEFAULT_REPLACEMENT = "***";
+
+    // 根状态；空闲槽位的 check 为-1
+    private static final int ROOT = 0;
+    // 空闲槽位作为最小编码子节点的位置尝试失败这么多次后，移到只供单个子节点使用的链表
+    private static final int MAX_TRIALS = 16;
+
+    // 按词序号保存原始敏感词、替换字符和归一化后的长度
+    private final String[] words;
+    private final String[] replacements;
+    private final int[] lengths;
+    private final int maxLength;
+
+    // 归一化后视为干扰字符的字符，maxNoiseRun 为0时不跳过任何字符
+    private final BitSet noise = new BitSet();
+    private final boolean skipWhitespace;
+    private final int maxNoiseRun;
+
+    // 字符到编码，0表示不在任何词中
+    private char[] codes = new char[0];
+    // 双数组：转移、父状态、失败链接、以该状态结尾的词序号（-1表示无）、沿失败链接最近的词结尾状态（-1表示无）
+    private int[] base;
+    private int[] check;
+    private int[] fail;
+    private int[] output;
+    private int[] outputLink;
+    private int states;
+    private final long buildMillis;
+    // 仅构建时使用：空闲槽位的双向链表（-1 表示链表端点），查找 base 时跳过已占用的槽位。
+    // 0号链表供所有状态查找，1号链表是多次放不下多个子节点的槽位，只供单个子节点的状态使用
+    private int[] freeNext;
+    private int[] freePrev;
+    private byte[] trials;
+    private final int[] freeHead = {-1, -1};
+    private final int[] freeTail = {-1, -1};
+
+    /**
+     * 根据敏感词列表构建自动机，不跳过干扰字符
+     * @param sensitiveWords 敏感词列表
+     */
+    public SensitiveWordMatcher(Collection<SensitiveWord> sensitiveWords) {
+        this(sensitiveWords, "", true, 0);
+    }
+
+    /**
+     * 根据敏感词列表构建自动机，空白字符视为干扰字符
+     * @param sensitiveWords 敏感词列表
+     * @param noiseChars 干扰字符
+     * @param maxNoiseRun 两个有效字符之间最多跳过的连续干扰字符数，0表示不跳过干扰字符
+     */
+    public SensitiveWordMatcher(Collection<SensitiveWord> sensitiveWords, String noiseChars, int maxNoiseRun) {
+        this(sensitiveWords, noiseChars, true, maxNoiseRun);
+    }
+
+    /**
+     * 根据敏感词列表构建自动机
+     * 归一化后重复的词只保留第一个，归一化后为空的词被忽略
+     * @param sensitiveWords 敏感词列表
+     * @param noiseChars 干扰字符（按归一化后的字符比较，全角标点写半角即可）
+     * @param skipWhitespace 空白字符是否视为干扰字符
+     * @param maxNoiseRun 两个有效字符之间最多跳过的连续干扰字符数，0表示不跳过干扰字符
+     */
+    public SensitiveWordMatcher(Collection<SensitiveWord> sensitiveWords, String noiseChars,
+                                boolean skipWhitespace, int maxNoiseRun) {
+        long start = System.nanoTime();
+        this.skipWhitespace = skipWhitespace;
+        this.maxNoiseRun = Math.max(0, maxNoiseRun);
+        if (this.maxNoiseRun > 0) {
+            for (int i = 0; i < noiseChars.length(); i++) {
+                noise.set(Tokenizer.normalize(noiseChars.charAt(i)));
+            }
+        }
+
+        List<String> keys = new ArrayList<>();
+        List<String> wordList = new ArrayList<>();
+        List<String> replacementList = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+        for (SensitiveWord sensitiveWord : sensitiveWords) {
+            if (!sensitiveWord.isValid()) {
+                continue;
+            }
+            String word = sensitiveWord.getWord().trim();
+            String key = normalizeWord(word);
+            if (key.isEmpty() || seen.putIfAbsent(key, keys.size()) != null) {
+                continue;
+            }
+            keys.add(key);
+            wordList.add(word);
+            replacementList.add(sensitiveWord.getReplacement() != null
+                    ? sensitiveWord.getReplacement() : DEFAULT_REPLACEMENT);
+        }
+        this.words = wordList.toArray(new String[0]);
+        this.replacements = replacementList.toArray(new String[0]);
+        this.lengths = new int[keys.size()];
+        int longest = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = keys.get(i).length();
+            longest = Math.max(longest, lengths[i]);
+        }
+        this.maxLength = longest;
+
+        assignCodes(keys);
+        build(keys);
+        this.buildMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * 敏感词数量
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * 文本是否包含任一敏感词，遇到第一个匹配即返回
+     * @param text 待检查文本
+     * @return boolean 是否包含
+     */
+    public boolean containsAny(String text) {
+        if (text == null || words.length == 0) {
+            return false;
+        }
+        int state = ROOT;
+        int noiseRun = 0;
+        int wordRun = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Tokenizer.normalize(text.charAt(i));
+            if (isNoise(c)) {
+                if (++noiseRun > maxNoiseRun) {
+                    state = ROOT;
+                }
+                continue;
+            }
+            if (noiseRun > 0 && separatesWords(text, i, wordRun)) {
+                state = ROOT;
+            }
+            wordRun = isWordChar(c) ? (noiseRun == 0 ? wordRun + 1 : 1) : 0;
+            noiseRun = 0;
+            state = next(state, c);
+            if (output[state] >= 0 || outputLink[state] >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找文本中出现的所有敏感词（允许重叠）
+     * @param text 待检查文本
+     * @return List<Match> 按结束位置排序的匹配列表，位置为原文下标
+     */
+    public List<Match> findAll(String text) {
+        List<Match> matches = new ArrayList<>();
+        if (text != null && words.length > 0) {
+            scan(text, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * 查找文本中出现的不同敏感词
+     * @param text 待检查文本
+     * @return Set<String> 按首次出现顺序排列的敏感词
+     */
+    public Set<String> findWords(String text) {
+        Set<String> found = new LinkedHashSet<>();
+        for (Match match : findAll(text)) {
+            found.add(match.getWord());
+        }
+        return found;
+    }
+
+    /**
+     * 替换文本中的敏感词
+     * 重叠时取最靠左的匹配，同一起点取最长的匹配，每个词使用自己的替换字符
+     * @param text 待替换文本
+     * @return String 替换后的文本，无敏感词时返回原文本
+     */
+    public String replace(String text) {
+        if (text == null || words.length == 0) {
+            return text;
+        }
+        int[] endAt = scan(text, null);
+        return endAt != null ? applyReplacements(text, endAt) : text;
+    }
+
+    /**
+     * 审查多个文本字段，每个字段只扫描一次，同时得到匹配位置和替换后的文本
+     * @param fields 待审查的字段，如标题、内容，null视为空字段
+     * @return ContentScreeningResult 审查结果
+     */
+    public ContentScreeningResult screen(String... fields) {
+        List<String> filteredTexts = new ArrayList<>(fields.length);
+        List<List<Match>> matches = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            List<Match> fieldMatches = new ArrayList<>();
+            int[] endAt = field != null && words.length > 0 ? scan(field, fieldMatches) : null;
+            filteredTexts.add(endAt != null ? applyReplacements(field, endAt) : field);
+            matches.add(fieldMatches);
+        }
+        return new ContentScreeningResult(filteredTexts, matches);
+    }
+
+    /**
+     * 获取自动机状态
+     * @return MatcherStats 词数、状态数、数组占用和构建耗时
+     */
+    public MatcherStats getStats() {
+        return new MatcherStats(words.length, states, base.length, memoryBytes(), buildMillis);
+    }
+
+    /**
+     * 扫描文本，记录每个原文起始位置上最长匹配的结束位置和词序号
+     * @param text 文本
+     * @param matches 不为null时同时收集全部匹配（允许重叠）
+     * @return int[] 长度为 2 * 原文长度：[2i] 为从下标 i 开始的最长匹配的结束位置（0表示无），
+     *         [2i+1] 为其词序号；没有任何匹配时返回null
+     */
+    private int[] scan(String text, List<Match> matches) {
+        int[] endAt = null;
+        // 最近 maxLength 个有效字符的原文下标，第 n 个有效字符存于 n % maxLength
+        int[] offsets = new int[maxLength];
+        int count = 0;
+        int noiseRun = 0;
+        // 上一个有效字符所在的英文字母/数字串的长度，不是字母/数字时为0
+        int wordRun = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Tokenizer.normalize(text.charAt(i));
+            if (isNoise(c)) {
+                if (++noiseRun > maxNoiseRun) {
+                    state = ROOT;
+                }
+                continue;
+            }
+            if (noiseRun > 0 && separatesWords(text, i, wordRun)) {
+                state = ROOT;
+            }
+            wordRun = isWordChar(c) ? (noiseRun == 0 ? wordRun + 1 : 1) : 0;
+            noiseRun = 0;
+            offsets[count % maxLength] = i;
+            count++;
+            state = next(state, c);
+            int hit = output[state] >= 0 ? state : outputLink[state];
+            while (hit >= 0) {
+                int wordIndex = output[hit];
+                if (endAt == null) {
+                    endAt = new int[text.length() * 2];
+                }
+                int start = offsets[(count - lengths[wordIndex]) % maxLength];
+                if (endAt[2 * start] < i + 1) {
+                    endAt[2 * start] = i + 1;
+                    endAt[2 * start + 1] = wordIndex;
+                }
+                if (matches != null) {
+                    matches.add(new Match(start, i + 1, words[wordIndex], replacements[wordIndex]));
+                }
+                hit = outputLink[hit];
+            }
+        }
+        return endAt;
+    }
+
+    private String applyReplacements(String text, int[] endAt) {
+        StringBuilder result = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            int end = endAt[2 * i];
+            if (end > 0) {
+                result.append(replacements[endAt[2 * i + 1]]);
+                i = end;
+            } else {
+                result.append(text.charAt(i));
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private boolean isNoise(char c) {
+        return maxNoiseRun > 0 && (skipWhitespace && Character.isWhitespace(c) || noise.get(c));
+    }
+
+    // 下标 i 处的有效字符与前一个有效字符之间隔着干扰字符：两侧都是英文字母/数字，且至少一侧的字母/数字串长度超过1时
+    // 视为两个独立的单词，不跨越干扰字符匹配
+    private static boolean separatesWords(String text, int i, int wordRunBefore) {
+        if (wordRunBefore == 0 || !isWordChar(Tokenizer.normalize(text.charAt(i)))) {
+            return false;
+        }
+        return wordRunBefore > 1
+                || i + 1 < text.length() && isWordChar(Tokenizer.normalize(text.charAt(i + 1)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= '0' && c <= '9';
+    }
+
+    // 归一化并去掉干扰字符
+    private String normalizeWord(String word) {
+        StringBuilder key = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = Tokenizer.normalize(word.charAt(i));
+            if (!isNoise(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    // 按出现次数从多到少分配编码，常用字符编码小，子节点更集中，数组更紧凑
+    private void assignCodes(List<String> keys) {
+        int[] frequency = new int[Character.MAX_VALUE + 1];
+        int maxChar = -1;
+        for (String key : keys) {
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                frequency[c]++;
+                maxChar = Math.max(maxChar, c);
+            }
+        }
+        List<Character> alphabet = new ArrayList<>();
+        for (int c = 0; c <= maxChar; c++) {
+            if (frequency[c] > 0) {
+                alphabet.add((char) c);
+            }
+        }
+        alphabet.sort((a, b) -> Integer.compare(frequency[b], frequency[a]));
+        codes = new char[maxChar + 1];
+        for (int i = 0; i < alphabet.size(); i++) {
+            codes[alphabet.get(i)] = (char) (i + 1);
+        }
+    }
+
+    private int codeOf(char c) {
+        return c < codes.length ? codes[c] : 0;
+    }
+
+    /**
+     * 按层构建双数组，再按同样的层序计算失败链接和输出链接
+     * 每个待处理状态对应排序后词表中共享同一前缀（长度为 depth）的区间 [from, to)
+     */
+    private void build(List<String> keys) {
+        Integer[] sorted = new Integer[keys.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+
+        base = new int[0];
+        check = new int[0];
+        output = new int[0];
+        freeNext = new int[0];
+        freePrev = new int[0];
+        trials = new byte[0];
+        ensureCapacity(Math.max(64, keys.size() * 2));
+        int[] parentCode = new int[base.length];
+
+        // 层序队列：状态、区间起点、区间终点、深度；order 为状态的层序
+        int[] queue = new int[4 * (keys.size() + 1)];
+        int[] order = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        queue[tail++] = 0;
+        queue[tail++] = sorted.length;
+        queue[tail++] = 0;
+        states = 1;
+        int[] childCodes = new int[16];
+        int[] childFrom = new int[16];
+
+        while (head < tail) {
+            int state = queue[head++];
+            int from = queue[head++];
+            int to = queue[head++];
+            int depth = queue[head++];
+
+            // 词已去重，区间内至多一个词恰好在此结束，且排在最前
+            int i = from;
+            if (i < to && keys.get(sorted[i]).length() == depth) {
+                output[state] = sorted[i];
+                i++;
+            }
+            int children = 0;
+            int minCode = Integer.MAX_VALUE;
+            int maxCode = 0;
+            while (i < to) {
+                char c = keys.get(sorted[i]).charAt(depth);
+                if (children == childCodes.length) {
+                    childCodes = Arrays.copyOf(childCodes, children * 2);
+                    childFrom = Arrays.copyOf(childFrom, children * 2);
+                }
+                childCodes[children] = codeOf(c);
+                childFrom[children] = i;
+                minCode = Math.min(minCode, childCodes[children]);
+                maxCode = Math.max(maxCode, childCodes[children]);
+                children++;
+                while (i < to && keys.get(sorted[i]).charAt(depth) == c) {
+                    i++;
+                }
+            }
+            if (children == 0) {
+                continue;
+            }
+
+            int candidate = findBase(childCodes, children, minCode, maxCode);
+            if (parentCode.length < base.length) {
+                parentCode = Arrays.copyOf(parentCode, base.length);
+            }
+
+            // 队列按状态数增长，每个状态占4个槽位；已出队的部分先移走
+            if (tail + 4 * children > queue.length) {
+                int used = tail - head;
+                int[] grown = new int[Math.max(queue.length, 2 * (used + 4 * children))];
+                System.arraycopy(queue, head, grown, 0, used);
+                queue = grown;
+                tail = used;
+                head = 0;
+            }
+
+            base[state] = candidate;
+            for (int k = 0; k < children; k++) {
+                int child = candidate + childCodes[k];
+                check[child] = state;
+                unlinkFree(child);
+                parentCode[child] = childCodes[k];
+                int childTo = k + 1 < children ? childFrom[k + 1] : to;
+                queue[tail++] = child;
+                queue[tail++] = childFrom[k];
+                queue[tail++] = childTo;
+                queue[tail++] = depth + 1;
+                if (states == order.length) {
+                    order = Arrays.copyOf(order, states * 2);
+                }
+                order[states++] = child;
+            }
+        }
+
+        // 截去末尾的空闲槽位，转移时先检查下标范围
+        int size = 1;
+        for (int s = check.length - 1; s > 0; s--) {
+            if (check[s] >= 0) {
+                size = s + 1;
+                break;
+            }
+        }
+        base = Arrays.copyOf(base, size);
+        check = Arrays.copyOf(check, size);
+        output = Arrays.copyOf(output, size);
+        freeNext = null;
+        freePrev = null;
+        trials = null;
+
+        fail = new int[size];
+        outputLink = new int[size];
+        Arrays.fill(outputLink, -1);
+        for (int k = 1; k < states; k++) {
+            int state = order[k];
+            int parent = check[state];
+            int code = parentCode[state];
+            int target = ROOT;
+            if (parent != ROOT) {
+                int f = fail[parent];
+                while (true) {
+                    int t = transition(f, code);
+                    if (t >= 0) {
+                        target = t;
+                        break;
+                    }
+                    if (f == ROOT) {
+                        break;
+                    }
+                    f = fail[f];
+                }
+            }
+            fail[state] = target;
+            outputLink[state] = output[target] >= 0 ? target : outputLink[target];
+        }
+    }
+
+    /**
+     * 首个满足所有子节点槽位都空闲的 base：最小编码的子节点依次尝试每个空闲槽位，
+     * 单个子节点先在1号链表中找，任何空闲槽位都放得下
+     */
+    private int findBase(int[] childCodes, int children, int minCode, int maxCode) {
+        if (children == 1) {
+            for (int position = freeHead[1]; position >= 0; position = freeNext[position]) {
+                if (position - minCode >= 1) {
+                    return position - minCode;
+                }
+            }
+        }
+        int position = freeHead[0];
+        while (true) {
+            if (position < 0) {
+                int last = freeTail[0];
+                ensureCapacity(base.length + 1);
+                position = last < 0 ? freeHead[0] : freeNext[last];
+                continue;
+            }
+            int candidate = position - minCode;
+            if (candidate >= 1) {
+                ensureCapacity(candidate + maxCode + 1);
+                boolean free = true;
+                for (int k = 0; k < children && free; k++) {
+                    free = check[candidate + childCodes[k]] < 0;
+                }
+                if (free) {
+                    return candidate;
+                }
+            }
+            int next = freeNext[position];
+            if (trials[position] + 1 < MAX_TRIALS) {
+                trials[position]++;
+            } else {
+                unlinkFree(position);
+                trials[position] = MAX_TRIALS;
+                linkFree(position, 1);
+            }
+            position = next;
+        }
+    }
+
+    // 扩容，新槽位（根状态的0号槽位除外）接到0号链表末尾
+    private void ensureCapacity(int size) {
+        if (size <= base.length) {
+            return;
+        }
+        int capacity = Math.max(size, base.length + (base.length >> 1));
+        int old = base.length;
+        base = Arrays.copyOf(base, capacity);
+        check = Arrays.copyOf(check, capacity);
+        output = Arrays.copyOf(output, capacity);
+        freeNext = Arrays.copyOf(freeNext, capacity);
+        freePrev = Arrays.copyOf(freePrev, capacity);
+        trials = Arrays.copyOf(trials, capacity);
+        Arrays.fill(check, old, capacity, -1);
+        Arrays.fill(output, old, capacity, -1);
+        for (int slot = Math.max(old, ROOT + 1); slot < capacity; slot++) {
+            linkFree(slot, 0);
+        }
+    }
+
+    private void linkFree(int slot, int list) {
+        freePrev[slot] = freeTail[list];
+        freeNext[slot] = -1;
+        if (freeTail[list] < 0) {
+            freeHead[list] = slot;
+        } else {
+            freeNext[freeTail[list]] = slot;
+        }
+        freeTail[list] = slot;
+    }
+
+    // 槽位被占用时从所在链表中移除
+    private void unlinkFree(int slot) {
+        int list = trials[slot] >= MAX_TRIALS ? 1 : 0;
+        int prev = freePrev[slot];
+        int next = freeNext[slot];
+        if (prev < 0) {
+            freeHead[list] = next;
+        } else {
+            freeNext[prev] = next;
+        }
+        if (next < 0) {
+            freeTail[list] = prev;
+        } else {
+            freePrev[next] = prev;
+        }
+    }
+
+    // 直接转移，不存在时返回-1
+    private int transition(int state, int code) {
+        int t = base[state] + code;
+        return t > 0 && t < check.length && check[t] == state ? t : -1;
+    }
+
+    private int next(int state, char c) {
+        int code = codeOf(c);
+        if (code == 0) {
+            return ROOT;
+        }
+        while (true) {
+            int t = transition(state, code);
+            if (t >= 0) {
+                return t;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    // 自动机数组占用的字节数，不含词表字符串
+    private long memoryBytes() {
+        return 4L * (base.length + check.length + fail.length + output.length + outputLink.length + lengths.length)
+                + 2L * codes.length;
+    }
+
+    /**
+     * 一次匹配，位置为原文本中的下标 [start, end)，其间可能夹有干扰字符
+     */
+    public static class Match {
+        private final int start;
+        private final int end;
+        private final String word;
+        private final String replacement;
+
+        public Match(int start, int end, String word, String replacement) {
+            this.start = start;
+            this.end = end;
+            this.word = word;
+            this.replacement = replacement;
+        }
+
+        // Getters
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public String getWord() { return word; }
+        public String getReplacement() { return replacement; }
+
+        @Override
+        public String toString() {
+            return word + "[" + start + "," + end + ")";
+        }
+    }
+
+    /**
+     * 自动机状态快照
+     */
+    public static class MatcherStats {
+        private final int words;
+        private final int states;
+        private final int slots;
+        private final long bytes;
+        private final long buildMillis;
+
+        MatcherStats(int words, int states, int slots, long bytes, long buildMillis) {
+            this.words = words;
+            this.states = states;
+            this.slots = slots;
+            this.bytes = bytes;
+            this.buildMillis = buildMillis;
+        }
+
+        // Getters
+        public int getWords() { return words; }
+        public int getStates() { return states; }
+        public int getSlots() { return slots; }
+        public long getBytes() { return bytes; }
+        public long getBuildMillis() { return buildMillis; }
+
+        /**
+         * 平均每个词占用的字节数，没有词时为0
+         */
+        public double getBytesPerWord() {
+            return words == 0 ? 0 : (double) bytes / words;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("词数: %d, 状态: %d, 数组槽位: %d (使用率 %.1f%%), 占用: %.1fKB (%.1f 字节/词), 构建耗时: %dms",
+                    words, states, slots, slots == 0 ? 0 : states * 100.0 / slots, bytes / 1024.0,
+                    getBytesPerWord(), buildMillis);
+        }
+    }
+}
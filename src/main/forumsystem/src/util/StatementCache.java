@@ -0,0 +1,194 @@
+package main.forumsystem.src.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个物理连接上的预编译语句缓存
+ * 以SQL文本为键做LRU淘汰，调用方关闭语句时只清空参数并放回缓存，
+ * 同一条SQL在连接的多次借出之间复用，省去重复解析和预编译的开销。
+ * 物理连接同一时刻只被一个借出者使用，因此缓存本身不做同步。
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<String, CachedStatement> cache;
+
+    StatementCache(Connection physical, int capacity, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                StatementCache.this.evictions.increment();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 获取预编译语句，命中缓存则直接复用
+     * 缓存中的语句正被使用时（如遍历结果集期间执行同一条SQL），退化为不缓存的新语句
+     * @param sql SQL语句
+     * @param owner 借出连接的代理，作为语句 getConnection 的返回值
+     * @return PreparedStatement 语句代理，关闭即放回缓存
+     * @throws SQLException 预编译失败
+     */
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        CachedStatement cached = cache.get(sql);
+        if (cached != null && !cached.inUse && cached.statement.isClosed()) {
+            // 物理语句被绕过代理关闭（如通过 ResultSet.getStatement），丢弃后重新预编译
+            cache.remove(sql);
+            cached = null;
+        }
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+            return cached.checkout(owner);
+        }
+
+        misses.increment();
+        if (cached != null) {
+            return physical.prepareStatement(sql);
+        }
+
+        cached = new CachedStatement(physical.prepareStatement(sql));
+        cache.put(sql, cached);
+        return cached.checkout(owner);
+    }
+
+    /**
+     * 关闭缓存中的全部语句，在物理连接销毁前调用
+     */
+    void closeAll() {
+        for (CachedStatement cached : cache.values()) {
+            cached.evict();
+        }
+        cache.clear();
+    }
+
+    /**
+     * 缓存条目，持有物理语句
+     */
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement checkout(Connection owner) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementHandler(this, owner));
+        }
+
+        // 逻辑关闭：关闭结果集、清空参数后放回缓存；已被淘汰的语句直接物理关闭
+        void checkin(ResultSet openResultSet) {
+            inUse = false;
+            try {
+                if (openResultSet != null) {
+                    openResultSet.close();
+                }
+                if (evicted) {
+                    statement.close();
+                } else {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                }
+            } catch (SQLException e) {
+                evicted = true;
+                closeQuietly();
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // 语句所在连接可能已断开，忽略关闭异常
+            }
+        }
+    }
+
+    /**
+     * 语句代理处理器
+     * 拦截 close 放回缓存，记录最近一次查询的结果集以便归还时关闭
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private ResultSet lastResultSet;
+        private boolean closed;
+
+        StatementHandler(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.checkin(lastResultSet);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("语句已关闭");
+            }
+            try {
+                Object result = method.invoke(cached.statement, args);
+                if (result instanceof ResultSet) {
+                    lastResultSet = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
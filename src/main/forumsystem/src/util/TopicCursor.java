@@ -0,0 +1,86 @@
+package main.forumsystem.src.util;
+
+import main.forumsystem.src.entity.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 主题列表游标
+ * 记录上一页最后一行的排序键 (is_pinned, last_reply_time, topic_id)，
+ * 下一页从该位置之后继续查询，无需 OFFSET 扫描并丢弃前面的行。
+ * 对外以不透明的字符串令牌传递，调用方不应解析其内容。
+ */
+public final class TopicCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final boolean pinned;
+    private final LocalDateTime lastReplyTime;
+    private final int topicId;
+
+    public TopicCursor(boolean pinned, LocalDateTime lastReplyTime, int topicId) {
+        this.pinned = pinned;
+        this.lastReplyTime = lastReplyTime;
+        this.topicId = topicId;
+    }
+
+    /**
+     * 以主题的排序键创建游标
+     * @param topic 当前页最后一个主题
+     * @return TopicCursor 游标
+     */
+    public static TopicCursor of(Topic topic) {
+        return new TopicCursor(topic.isPinned(), topic.getLastReplyTime(), topic.getTopicId());
+    }
+
+    /**
+     * 编码为令牌
+     * @return String URL安全的Base64令牌
+     */
+    public String encode() {
+        String raw = (pinned ? "1" : "0") + SEPARATOR
+                + (lastReplyTime != null ? lastReplyTime.toString() : "") + SEPARATOR
+                + topicId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 从令牌解码游标
+     * @param token 令牌
+     * @return TopicCursor 游标
+     * @throws IllegalArgumentException 令牌格式无效
+     */
+    public static TopicCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("无效的分页令牌");
+            }
+            boolean pinned = "1".equals(parts[0]);
+            LocalDateTime lastReplyTime = parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]);
+            int topicId = Integer.parseInt(parts[2]);
+            return new TopicCursor(pinned, lastReplyTime, topicId);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页令牌", e);
+        }
+    }
+
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    /**
+     * 最后回复时间，从未被回复的主题为null
+     */
+    public LocalDateTime getLastReplyTime() {
+        return lastReplyTime;
+    }
+
+    public int getTopicId() {
+        return topicId;
+    }
+}
@@ -0,0 +1,253 @@
+package main.forumsystem.src.util;
+
+import main.forumsystem.src.dao.BaseDao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事务模板
+ * 将一个连接绑定到当前线程，事务范围内所有DAO调用（经 BaseDao.getConnection 获取连接）
+ * 复用同一连接，最后统一提交或回滚。嵌套调用时加入外层事务。
+ *
+ * 用法：
+ * <pre>
+ * boolean success = TransactionTemplate.inTransaction(() -> {
+ *     if (!topicDao.addTopic(topic)) {
+ *         TransactionTemplate.setRollbackOnly();
+ *         return false;
+ *     }
+ *     forumDao.updateTopicCount(forumId, 1);
+ *     return true;
+ * });
+ * </pre>
+ */
+public final class TransactionTemplate {
+
+    private static final ThreadLocal<TransactionContext> CONTEXT = new ThreadLocal<>();
+
+    private TransactionTemplate() {
+    }
+
+    /**
+     * 在事务中执行操作
+     * 操作抛出异常或被标记为仅回滚时回滚，否则提交
+     * @param callback 事务操作
+     * @return 事务操作的返回值
+     * @throws RuntimeException 操作抛出的异常（受检异常会被包装），或开启/提交事务失败
+     */
+    public static <T> T inTransaction(TransactionCallback<T> callback) {
+        TransactionContext existing = CONTEXT.get();
+        if (existing != null) {
+            // 已处于事务中，直接加入外层事务，由外层负责提交
+            try {
+                return callback.doInTransaction();
+            } catch (RuntimeException | Error e) {
+                existing.rollbackOnly = true;
+                throw e;
+            } catch (Exception e) {
+                existing.rollbackOnly = true;
+                throw new RuntimeException(e);
+            }
+        }
+
+        // 必须在绑定之前从连接池借出连接
+        Connection conn = BaseDao.getConnection();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            BaseDao.close(conn, null, null);
+            throw new RuntimeException("开启事务失败！", e);
+        }
+
+        TransactionContext context = new TransactionContext(conn);
+        CONTEXT.set(context);
+        boolean committed = false;
+        try {
+            T result = callback.doInTransaction();
+            if (context.rollbackOnly) {
+                conn.rollback();
+            } else {
+                conn.commit();
+                committed = true;
+            }
+            return result;
+        } catch (RuntimeException | Error e) {
+            rollbackQuietly(conn);
+            throw e;
+        } catch (Exception e) {
+            rollbackQuietly(conn);
+            throw new RuntimeException("事务执行失败！", e);
+        } finally {
+            CONTEXT.remove();
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            BaseDao.close(conn, null, null);
+            if (committed) {
+                for (Runnable commit : context.commitCallbacks) {
+                    try {
+                        commit.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            for (Runnable completion : context.completionCallbacks) {
+                try {
+                    completion.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 注册事务结束（提交或回滚）后执行的操作，常用于使缓存失效
+     * 不在事务中时立即执行
+     * @param callback 回调操作
+     */
+    public static void afterCompletion(Runnable callback) {
+        TransactionContext context = CONTEXT.get();
+        if (context != null) {
+            context.completionCallbacks.add(callback);
+        } else {
+            callback.run();
+        }
+    }
+
+    /**
+     * 注册事务提交成功后执行的操作，回滚时丢弃，常用于发布只在提交后才成立的变更
+     * 不在事务中时立即执行
+     * @param callback 回调操作
+     */
+    public static void afterCommit(Runnable callback) {
+        TransactionContext context = CONTEXT.get();
+        if (context != null) {
+            context.commitCallbacks.add(callback);
+        } else {
+            callback.run();
+        }
+    }
+
+    /**
+     * 将当前事务标记为仅回滚，不在事务中时忽略
+     */
+    public static void setRollbackOnly() {
+        TransactionContext context = CONTEXT.get();
+        if (context != null) {
+            context.rollbackOnly = true;
+        }
+    }
+
+    /**
+     * 当前事务是否已被标记为仅回滚，不在事务中时返回false
+     * @return boolean 是否仅回滚
+     */
+    public static boolean isRollbackOnly() {
+        TransactionContext context = CONTEXT.get();
+        return context != null && context.rollbackOnly;
+    }
+
+    /**
+     * 当前线程是否处于事务中
+     * @return boolean 是否处于事务中
+     */
+    public static boolean isActive() {
+        return CONTEXT.get() != null;
+    }
+
+    /**
+     * 获取当前线程绑定的事务连接
+     * 返回的连接忽略 close、commit 和 setAutoCommit，rollback 等同于 setRollbackOnly，
+     * 使事务内的DAO可以照常"关闭"连接而不影响事务边界
+     * @return Connection 事务连接，不在事务中时返回null
+     */
+    public static Connection currentConnection() {
+        TransactionContext context = CONTEXT.get();
+        return context != null ? context.boundConnection : null;
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 事务操作
+     */
+    @FunctionalInterface
+    public interface TransactionCallback<T> {
+        T doInTransaction() throws Exception;
+    }
+
+    /**
+     * 线程绑定的事务上下文
+     */
+    private static class TransactionContext {
+        private final Connection boundConnection;
+        private final List<Runnable> commitCallbacks = new ArrayList<>();
+        private final List<Runnable> completionCallbacks = new ArrayList<>();
+        private boolean rollbackOnly;
+
+        TransactionContext(Connection conn) {
+            this.boundConnection = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new BoundConnectionHandler(conn, this));
+        }
+    }
+
+    /**
+     * 事务连接代理处理器，事务边界只由 inTransaction 控制
+     */
+    private static class BoundConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final TransactionContext context;
+
+        BoundConnectionHandler(Connection target, TransactionContext context) {
+            this.target = target;
+            this.context = context;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        context.rollbackOnly = true;
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
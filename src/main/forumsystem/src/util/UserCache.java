@@ -0,0 +1,262 @@
+package main.forumsystem.src.util;
+
+import main.forumsystem.src.entity.User;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 用户缓存
+ * 按用户ID做LRU淘汰并按TTL过期，同时维护用户名到ID的索引，两种键共用同一条目。
+ * 缓存中保存的是副本，读出时再复制一份，调用方修改返回的对象不会污染缓存。
+ * 加载期间如发生失效，则丢弃本次加载结果，避免把失效前读到的旧数据放回缓存。
+ */
+public class UserCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> idByUsername = new HashMap<>();
+    // 每次失效递增，用于识别加载期间发生的失效
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param maxSize 最多缓存的用户数，0表示关闭缓存
+     * @param ttlMillis 条目过期时间（毫秒）
+     */
+    public UserCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 按用户ID获取用户，未命中时通过 loader 加载并放入缓存
+     * @param userId 用户ID
+     * @param loader 加载函数
+     * @return User 用户，不存在时返回null
+     */
+    public User getById(int userId, IntFunction<User> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = lookup(userId);
+            if (entry != null) {
+                hits.increment();
+                return copyOf(entry.user);
+            }
+            loadGeneration = generation;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        User user = loader.apply(userId);
+        recordLoad(start);
+        if (user != null) {
+            put(user, loadGeneration);
+        }
+        return user;
+    }
+
+    /**
+     * 按用户名获取用户，未命中时通过 loader 加载并放入缓存
+     * @param username 用户名
+     * @param loader 加载函数
+     * @return User 用户，不存在时返回null
+     */
+    public User getByUsername(String username, Function<String, User> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Integer userId = idByUsername.get(username);
+            Entry entry = userId != null ? lookup(userId) : null;
+            if (entry != null) {
+                hits.increment();
+                return copyOf(entry.user);
+            }
+            loadGeneration = generation;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        User user = loader.apply(username);
+        recordLoad(start);
+        if (user != null) {
+            put(user, loadGeneration);
+        }
+        return user;
+    }
+
+    /**
+     * 使指定用户的缓存失效，用户信息变更后调用
+     * @param userId 用户ID
+     */
+    public synchronized void invalidate(int userId) {
+        generation++;
+        invalidations.increment();
+        Entry entry = byId.remove(userId);
+        if (entry != null) {
+            idByUsername.remove(entry.user.getUsername());
+        }
+    }
+
+    /**
+     * 清空缓存，用于批量变更
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.increment();
+        byId.clear();
+        idByUsername.clear();
+    }
+
+    /**
+     * 获取缓存状态
+     * @return CacheStats 状态快照
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(byId.size(), maxSize, hits.sum(), misses.sum(), evictions.sum(),
+                expirations.sum(), invalidations.sum(), loadCount.sum(), loadNanos.sum());
+    }
+
+    // 查找未过期的条目，过期条目顺带移除
+    private Entry lookup(int userId) {
+        Entry entry = byId.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+            byId.remove(userId);
+            idByUsername.remove(entry.user.getUsername());
+            expirations.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(User user, long loadGeneration) {
+        if (maxSize == 0 || loadGeneration != generation) {
+            return;
+        }
+
+        Entry previous = byId.remove(user.getUserId());
+        if (previous != null) {
+            idByUsername.remove(previous.user.getUsername());
+        }
+        byId.put(user.getUserId(), new Entry(copyOf(user)));
+        idByUsername.put(user.getUsername(), user.getUserId());
+
+        Iterator<Entry> eldest = byId.values().iterator();
+        while (byId.size() > maxSize) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            idByUsername.remove(evicted.user.getUsername());
+            evictions.increment();
+        }
+    }
+
+    private void recordLoad(long start) {
+        loadCount.increment();
+        loadNanos.add(System.nanoTime() - start);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setUserId(user.getUserId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setEmail(user.getEmail());
+        copy.setNickName(user.getNickName());
+        copy.setAvatar(user.getAvatar());
+        copy.setRole(user.getRole());
+        copy.setStatus(user.getStatus());
+        copy.setRegisterTime(user.getRegisterTime());
+        copy.setLastLogin(user.getLastLogin());
+        copy.setPostCount(user.getPostCount());
+        copy.setReputation(user.getReputation());
+        return copy;
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        private final User user;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(User user) {
+            this.user = user;
+        }
+    }
+
+    /**
+     * 缓存状态快照
+     */
+    public static class CacheStats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+        private final long loadCount;
+        private final long loadNanos;
+
+        CacheStats(int size, int maxSize, long hits, long misses, long evictions,
+                   long expirations, long invalidations, long loadCount, long loadNanos) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+            this.loadCount = loadCount;
+            this.loadNanos = loadNanos;
+        }
+
+        // Getters
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+        public long getLoadCount() { return loadCount; }
+
+        /**
+         * 命中率，尚无访问时为0
+         */
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        /**
+         * 平均加载耗时（毫秒）
+         */
+        public double getAverageLoadMillis() {
+            return loadCount == 0 ? 0 : loadNanos / 1_000_000.0 / loadCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("条目: %d/%d, 命中率: %.1f%% (%d/%d), 淘汰: %d, 过期: %d, 失效: %d, 平均加载耗时: %.2fms",
+                    size, maxSize, getHitRatio() * 100, hits, hits + misses,
+                    evictions, expirations, invalidations, getAverageLoadMillis());
+        }
+    }
+}
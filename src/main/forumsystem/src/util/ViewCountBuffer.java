@@ -0,0 +1,199 @@
+package main.forumsystem.src.util;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 浏览量写回缓冲
+ * 每个主题一个 LongAdder 累积浏览增量，后台线程定期把增量合并成一次批量UPDATE写回，
+ * 热门主题的大量浏览不再逐次争抢同一行锁。读取浏览量时叠加尚未落库的增量。
+ *
+ * 一个周期内没有新增浏览的计数器会被移除。移除与并发递增之间通过 sumThenReset 交接：
+ * 计数器被移除后，递增方和写回线程都会排空它，每次浏览恰好被计入一次。
+ */
+public class ViewCountBuffer {
+
+    private final DeltaWriter writer;
+    private final ScheduledExecutorService flusher;
+
+    private final ConcurrentHashMap<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+    // 已从缓冲取出、正在写库的增量，写库期间读取仍能看到
+    private final ConcurrentHashMap<Integer, Long> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    /**
+     * @param flushIntervalMillis 写回间隔（毫秒）
+     * @param writer 增量写库函数
+     */
+    public ViewCountBuffer(long flushIntervalMillis, DeltaWriter writer) {
+        this.writer = writer;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "view-count-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次浏览
+     * @param topicId 主题ID
+     */
+    public void increment(int topicId) {
+        LongAdder adder = pending.computeIfAbsent(topicId, id -> new LongAdder());
+        adder.increment();
+        recorded.increment();
+        if (pending.get(topicId) != adder) {
+            // 计数器已被写回线程移除，自行排空并转入新的计数器
+            requeue(topicId, adder.sumThenReset());
+        }
+    }
+
+    /**
+     * 获取主题尚未落库的浏览增量
+     * @param topicId 主题ID
+     * @return long 未落库的增量
+     */
+    public long getUnflushed(int topicId) {
+        LongAdder adder = pending.get(topicId);
+        Long writing = inFlight.get(topicId);
+        return (adder != null ? adder.sum() : 0) + (writing != null ? writing : 0);
+    }
+
+    /**
+     * 立即把缓冲中的增量写回数据库，写库失败的增量放回缓冲等待下次写回
+     * @return int 本次写回的主题数
+     */
+    public synchronized int flush() {
+        SortedMap<Integer, Long> deltas = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : pending.entrySet()) {
+            LongAdder adder = entry.getValue();
+            long delta = adder.sumThenReset();
+            if (delta == 0 && pending.remove(entry.getKey(), adder)) {
+                // 移除后可能还有递增落在旧计数器上
+                delta = adder.sumThenReset();
+            }
+            if (delta != 0) {
+                deltas.put(entry.getKey(), delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        inFlight.putAll(deltas);
+        boolean written = false;
+        try {
+            written = writer.write(deltas);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            if (!written) {
+                failureCount.increment();
+                deltas.forEach(this::requeue);
+            }
+            inFlight.clear();
+        }
+        if (!written) {
+            return 0;
+        }
+        flushCount.increment();
+        flushedRows.add(deltas.size());
+        return deltas.size();
+    }
+
+    /**
+     * 停止后台写回并写回剩余增量
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * 获取缓冲状态
+     * @return BufferStats 状态快照
+     */
+    public BufferStats getStats() {
+        long unflushed = 0;
+        for (LongAdder adder : pending.values()) {
+            unflushed += adder.sum();
+        }
+        return new BufferStats(pending.size(), unflushed, recorded.sum(),
+                flushCount.sum(), flushedRows.sum(), failureCount.sum());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void requeue(int topicId, long delta) {
+        if (delta != 0) {
+            pending.computeIfAbsent(topicId, id -> new LongAdder()).add(delta);
+        }
+    }
+
+    /**
+     * 增量写库函数
+     */
+    @FunctionalInterface
+    public interface DeltaWriter {
+        /**
+         * 在一个事务中写入所有增量
+         * @param deltas 主题ID到浏览增量的映射，按主题ID升序以固定加锁顺序
+         * @return 是否写入成功
+         */
+        boolean write(SortedMap<Integer, Long> deltas);
+    }
+
+    /**
+     * 缓冲状态快照
+     */
+    public static class BufferStats {
+        private final int pendingTopics;
+        private final long pendingViews;
+        private final long recorded;
+        private final long flushCount;
+        private final long flushedRows;
+        private final long failureCount;
+
+        BufferStats(int pendingTopics, long pendingViews, long recorded,
+                    long flushCount, long flushedRows, long failureCount) {
+            this.pendingTopics = pendingTopics;
+            this.pendingViews = pendingViews;
+            this.recorded = recorded;
+            this.flushCount = flushCount;
+            this.flushedRows = flushedRows;
+            this.failureCount = failureCount;
+        }
+
+        // Getters
+        public int getPendingTopics() { return pendingTopics; }
+        public long getPendingViews() { return pendingViews; }
+        public long getRecorded() { return recorded; }
+        public long getFlushCount() { return flushCount; }
+        public long getFlushedRows() { return flushedRows; }
+        public long getFailureCount() { return failureCount; }
+
+        @Override
+        public String toString() {
+            return String.format("待写回: %d个主题/%d次浏览, 累计浏览: %d, 写回: %d次/%d行, 失败: %d",
+                    pendingTopics, pendingViews, recorded, flushCount, flushedRows, failureCount);
+        }
+    }
+}